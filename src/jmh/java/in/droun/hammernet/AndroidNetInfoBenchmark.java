@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.mockito.Mockito.*;
+
+import android.content.Context;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import java.net.SocketException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link AndroidNetInfo#getIp4Address(String)}, with the Context, WifiManager and
+ * WifiInfo stubbed the way AndroidNetInfoTest does and the interfaces served by
+ * {@link SyntheticInterfaceQuery}. The Wi-Fi interface is the middle one, or none has the Wi-Fi
+ * MAC address for the miss path, as on emulators, which falls back to the first interface. The
+ * stubs do not record invocations, so they neither leak nor allocate more than a real Context
+ * would.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AndroidNetInfoBenchmark {
+
+    @Param({ "1", "10", "100", "1000", "10000" })
+    public int mInterfaceCount;
+
+    private AndroidNetInfo mAndroidNetInfo;
+
+    private AndroidNetInfo mNoWifiNetInfo;
+
+    private String mDefaultInterface;
+
+    @Setup
+    public void setup() {
+        mAndroidNetInfo = stubbed(SyntheticInterfaceQuery.macAddressOf(mInterfaceCount / 2));
+        // One past the last interface, so none has it
+        mNoWifiNetInfo = stubbed(SyntheticInterfaceQuery.macAddressOf(mInterfaceCount));
+        mDefaultInterface = SyntheticInterfaceQuery.nameOf(0);
+    }
+
+    private AndroidNetInfo stubbed(final long wifiMacAddress) {
+        final WifiInfo wifiInfo = mock(WifiInfo.class, withSettings().stubOnly());
+        when(wifiInfo.getMacAddress()).thenReturn(MacAddress.valueOf(wifiMacAddress).toString());
+
+        final WifiManager wifiManager = mock(WifiManager.class, withSettings().stubOnly());
+        when(wifiManager.getConnectionInfo()).thenReturn(wifiInfo);
+
+        final Context context = mock(Context.class, withSettings().stubOnly());
+        when(context.getSystemService(Context.WIFI_SERVICE)).thenReturn(wifiManager);
+
+        return new AndroidNetInfo(context,
+                new NetworkInterfaceInfo(new SyntheticInterfaceQuery(mInterfaceCount)));
+    }
+
+    @Benchmark
+    public String getIp4Address() throws SocketException {
+        return mAndroidNetInfo.getIp4Address(null);
+    }
+
+    @Benchmark
+    public String getIp4AddressNoWifi() throws SocketException {
+        return mNoWifiNetInfo.getIp4Address(mDefaultInterface);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import in.droun.hammernet.NetworkInterfaceInfo.InterfaceQuery;
+import java.net.SocketException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@link java.net.NetworkInterface} and sysfs {@link InterfaceQuery} backends on
+ * the interfaces of the machine running the benchmark.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InterfaceQueryBenchmark {
+
+    @Param({ "jdk", "sysfs" })
+    public String mBackend;
+
+    private InterfaceQuery mInterfaceQuery;
+
+    private NetworkInterfaceInfo mInterfaceInfo;
+
+    private MacAddress mMissingMac;
+
+    @Setup
+    public void setup() {
+        if ("sysfs".equals(mBackend)) {
+            if (!SysfsInterfaceQuery.isAvailable()) {
+                throw new IllegalStateException("/sys/class/net is not readable");
+            }
+            mInterfaceQuery = new SysfsInterfaceQuery();
+        } else {
+            mInterfaceQuery = new InterfaceQuery();
+        }
+        mInterfaceInfo = new NetworkInterfaceInfo(mInterfaceQuery);
+        // Not found, so every interface's hardware address is read
+        mMissingMac = MacAddress.valueOf(0x02005E10FFFFL);
+    }
+
+    @Benchmark
+    public InterfaceSnapshot snapshot() throws SocketException {
+        return mInterfaceQuery.snapshot();
+    }
+
+    @Benchmark
+    public String getNameByMacAddress() throws SocketException {
+        return mInterfaceInfo.getNameByMacAddress(mMissingMac);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of converting MAC address strings, on valid input and on input rejected half way
+ * through, and of formatting them back to text.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MacAddressBenchmark {
+
+    // Not constants, so the JIT cannot fold the conversions away
+    public String mValid = "50:d1:5f:4e:be:75";
+
+    public String mInvalid = "50:d1:5f:4x:be:75";
+
+    public long mMacAddress = 0x50D15F4EBE75L;
+
+    private final char[] mText = new char[MacAddressParser.MAX_MAC_STRING_LENGTH];
+
+    private final StringBuilder mLine = new StringBuilder();
+
+    @Benchmark
+    public BigInteger macAddressToBigInteger_valid() {
+        return NetworkInterfaceInfo.macAddressToBigInteger(mValid);
+    }
+
+    @Benchmark
+    public BigInteger macAddressToBigInteger_invalid() {
+        return NetworkInterfaceInfo.macAddressToBigInteger(mInvalid);
+    }
+
+    @Benchmark
+    public long macAddressToLong_valid() {
+        return NetworkInterfaceInfo.macAddressToLong(mValid);
+    }
+
+    @Benchmark
+    public long macAddressToLong_invalid() {
+        return NetworkInterfaceInfo.macAddressToLong(mInvalid);
+    }
+
+    @Benchmark
+    public char[] format_charArray() {
+        MacAddressFormatter.COLON.format(mMacAddress, mText, 0);
+        return mText;
+    }
+
+    @Benchmark
+    public StringBuilder append_stringBuilder() {
+        mLine.setLength(0);
+        return MacAddressFormatter.COLON.append(mMacAddress, mLine.append("mac="));
+    }
+
+    @Benchmark
+    public String toString_macAddress() {
+        return MacAddress.valueOf(mMacAddress).toString();
+    }
+}
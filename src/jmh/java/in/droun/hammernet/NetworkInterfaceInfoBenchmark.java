@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.math.BigInteger;
+import java.net.Inet4Address;
+import java.net.SocketException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the uncached {@link NetworkInterfaceInfo} lookups over
+ * {@link SyntheticInterfaceQuery} interfaces, from a phone's handful up to a router's
+ * thousands. The MAC address lookups hit the first interface, the middle one, or none, which is
+ * the slowest case since every interface is read. Each runs with no {@link NetInfoMetrics}, the
+ * default, and with a {@link RecordingNetInfoMetrics}, showing what measuring costs.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NetworkInterfaceInfoBenchmark {
+
+    @Param({ "1", "10", "100", "1000", "10000" })
+    public int mInterfaceCount;
+
+    @Param({ "none", "recording" })
+    public String mMetrics;
+
+    private NetworkInterfaceInfo mInterfaceInfo;
+
+    private BigInteger mFirstMac;
+
+    private BigInteger mMiddleMac;
+
+    private BigInteger mMissingMac;
+
+    private String mMiddleName;
+
+    @Setup
+    public void setup() {
+        mInterfaceInfo = new NetworkInterfaceInfo(new SyntheticInterfaceQuery(mInterfaceCount),
+                "recording".equals(mMetrics)
+                ? new RecordingNetInfoMetrics() : NetInfoMetrics.NONE);
+        final int middle = mInterfaceCount / 2;
+        mFirstMac = BigInteger.valueOf(SyntheticInterfaceQuery.macAddressOf(0));
+        mMiddleMac = BigInteger.valueOf(SyntheticInterfaceQuery.macAddressOf(middle));
+        mMissingMac
+                = BigInteger.valueOf(SyntheticInterfaceQuery.macAddressOf(mInterfaceCount));
+        mMiddleName = SyntheticInterfaceQuery.nameOf(middle);
+    }
+
+    @Benchmark
+    public String getNameByMacAddress_first() throws SocketException {
+        return mInterfaceInfo.getNameByMacAddress(mFirstMac);
+    }
+
+    @Benchmark
+    public String getNameByMacAddress_middle() throws SocketException {
+        return mInterfaceInfo.getNameByMacAddress(mMiddleMac);
+    }
+
+    @Benchmark
+    public String getNameByMacAddress_miss() throws SocketException {
+        return mInterfaceInfo.getNameByMacAddress(mMissingMac);
+    }
+
+    @Benchmark
+    public String getHostAddressByName() throws SocketException {
+        return mInterfaceInfo.getHostAddressByName(mMiddleName, Inet4Address.class);
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Every {@link NetworkInterfaceInfo} lookup under load from several threads, on hosts of up to a
+ * container host's 20,000 interfaces served by {@link SyntheticInterfaceQuery}, with slow platform
+ * calls, interfaces failing with "No such device" and interfaces coming and going. Reports
+ * throughput and, from the sampled latencies, the p50, p99 and p999 of each lookup, uncached and
+ * served from an {@link InterfaceSnapshotCache}, with snapshots read by one thread or several.
+ * <p>
+ * The lookups by name and MAC address are for the middle interface, which churn eventually
+ * replaces, from then on they miss. The lookups by policy prefer unique local IPv6 addresses to
+ * private IPv4 ones, so every interface is looked at. The defaults cover a mid-sized and a
+ * container host, both churning, with and without the cache. Sweep the other dimensions with -p,
+ * for example <code>-p mInterfaceCount=100,1000,10000,20000 -p mLatencyNanos=0,1000
+ * -p mChurnPerSecond=0,100 -p mParallelism=1,4</code>.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class NetworkInterfaceInfoLoadBenchmark {
+
+    private static final long CACHE_TTL_MILLIS = 100;
+
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    @Param({ "1000", "20000" })
+    public int mInterfaceCount;
+
+    /**
+     * Time every hardware address read takes, and enumerating per interface listed.
+     */
+    @Param({ "1000" })
+    public long mLatencyNanos;
+
+    @Param({ "0.01" })
+    public double mFailureRate;
+
+    /**
+     * Interfaces replaced per second, from a thread of their own.
+     */
+    @Param({ "100" })
+    public int mChurnPerSecond;
+
+    @Param({ "none", "cached" })
+    public String mCache;
+
+    /**
+     * Threads reading the interfaces of one snapshot, see
+     * {@link NetworkInterfaceInfo#setParallelCollection}.
+     */
+    @Param({ "1" })
+    public int mParallelism;
+
+    private NetworkInterfaceInfo mInterfaceInfo;
+
+    private ScheduledExecutorService mChurner;
+
+    private ExecutorService mCollectors;
+
+    private MacAddress mMiddleMac;
+
+    private MacAddress mMissingMac;
+
+    private String mMiddleName;
+
+    private CidrTrie<String> mClassifier;
+
+    private List<String> mPreference;
+
+    @Setup
+    public void setup() {
+        final SyntheticInterfaceQuery interfaceQuery
+                = new SyntheticInterfaceQuery(mInterfaceCount, mFailureRate, mInterfaceCount);
+        interfaceQuery.setLatencies(mLatencyNanos, mLatencyNanos, TimeUnit.NANOSECONDS);
+        mInterfaceInfo = "cached".equals(mCache)
+                ? new NetworkInterfaceInfo(new InterfaceSnapshotCache(interfaceQuery,
+                                CACHE_TTL_MILLIS, TimeUnit.MILLISECONDS))
+                : new NetworkInterfaceInfo(interfaceQuery);
+        if (mParallelism > 1) {
+            mCollectors = Executors.newFixedThreadPool(mParallelism - 1);
+            mInterfaceInfo.setParallelCollection(mCollectors, mParallelism, PARALLEL_THRESHOLD);
+        }
+        if (mChurnPerSecond > 0) {
+            mChurner = Executors.newSingleThreadScheduledExecutor();
+            mChurner.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    interfaceQuery.churn(1);
+                }
+            }, 0, TimeUnit.SECONDS.toNanos(1) / mChurnPerSecond, TimeUnit.NANOSECONDS);
+        }
+        final int middle = mInterfaceCount / 2;
+        mMiddleMac = MacAddress.valueOf(SyntheticInterfaceQuery.macAddressOf(middle));
+        // Ids only grow, so no interface ever has this one
+        mMissingMac = MacAddress.valueOf(SyntheticInterfaceQuery.macAddressOf(-1));
+        mMiddleName = SyntheticInterfaceQuery.nameOf(middle);
+        mClassifier = CidrTrie.standard();
+        mPreference = Arrays.asList(CidrTrie.ULA, CidrTrie.PRIVATE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (mChurner != null) {
+            mChurner.shutdownNow();
+        }
+        if (mCollectors != null) {
+            mCollectors.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public String getNameByMacAddress_middle() throws SocketException {
+        return mInterfaceInfo.getNameByMacAddress(mMiddleMac);
+    }
+
+    @Benchmark
+    public String getNameByMacAddress_miss() throws SocketException {
+        return mInterfaceInfo.getNameByMacAddress(mMissingMac);
+    }
+
+    @Benchmark
+    public int getIp4AddressByName() throws SocketException {
+        return mInterfaceInfo.getIp4AddressByName(mMiddleName);
+    }
+
+    @Benchmark
+    public boolean getIp6AddressByName(final Ip6Destination destination)
+            throws SocketException {
+        return mInterfaceInfo.getIp6AddressByName(mMiddleName, destination.mAddress);
+    }
+
+    @Benchmark
+    public String getIp4HostAddressByName() throws SocketException {
+        return mInterfaceInfo.getIp4HostAddressByName(mMiddleName);
+    }
+
+    @Benchmark
+    public String getHostAddressByName() throws SocketException {
+        return mInterfaceInfo.getHostAddressByName(mMiddleName, Inet6Address.class);
+    }
+
+    @Benchmark
+    public InetAddress getAddressByPolicy() throws SocketException {
+        return mInterfaceInfo.getAddressByPolicy(mClassifier, mPreference);
+    }
+
+    @Benchmark
+    public String getDefaultRouteInterfaceName() throws SocketException {
+        return mInterfaceInfo.getDefaultRouteInterfaceName();
+    }
+
+    @Benchmark
+    public InterfaceSnapshot snapshot() throws SocketException {
+        return mInterfaceInfo.snapshot();
+    }
+
+    /**
+     * Address {@link #getIp6AddressByName(Ip6Destination)} writes to, one per thread.
+     */
+    @State(Scope.Thread)
+    public static class Ip6Destination {
+
+        private final long[] mAddress = new long[2];
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import in.droun.hammernet.NetworkInterfaceInfo.InterfaceQuery;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of one {@link TrafficSampler#sample()} of every interface of the machine running the
+ * benchmark, which should stay well below the 10 ms of a 100 Hz sampling period and allocate
+ * nothing. The same for a synthetic <code>/proc/net/dev</code> of thousands of interfaces, every
+ * one watched, as on a container host.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TrafficSamplerBenchmark {
+
+    private TrafficSampler mSampler;
+
+    @Setup
+    public void setup() throws IOException {
+        if (!TrafficSampler.isAvailable()) {
+            throw new IllegalStateException("/proc/net/dev is not readable");
+        }
+        mSampler = new TrafficSampler(new InterfaceQuery().snapshot(), 1, TimeUnit.SECONDS);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mSampler.close();
+    }
+
+    @Benchmark
+    public int sample() throws IOException {
+        return mSampler.sample();
+    }
+
+    @Benchmark
+    public int sampleSynthetic(final SyntheticHost host) throws IOException {
+        return host.mSampler.sample();
+    }
+
+    /**
+     * Sampler of a written <code>/proc/net/dev</code> listing <i>mInterfaceCount</i> interfaces.
+     */
+    @State(Scope.Benchmark)
+    public static class SyntheticHost {
+
+        @Param({ "1000", "20000" })
+        public int mInterfaceCount;
+
+        private File mFile;
+
+        private TrafficSampler mSampler;
+
+        @Setup
+        public void setup() throws IOException {
+            mFile = File.createTempFile("net-dev", ".txt");
+            final String[] names = new String[mInterfaceCount];
+            final Writer writer = new OutputStreamWriter(new FileOutputStream(mFile), "US-ASCII");
+            try {
+                writer.write("Inter-|   Receive |  Transmit\n face |bytes |bytes\n");
+                for (int i = 0; i < names.length; i++) {
+                    names[i] = SyntheticInterfaceQuery.nameOf(i);
+                    writer.write(String.format("%6s: %d 1 0 0 0 0 0 0 %d 1 0 0 0 0 0 0%n",
+                            names[i], i, i));
+                }
+            } finally {
+                writer.close();
+            }
+            mSampler = new TrafficSampler(mFile, 1, TimeUnit.SECONDS, names);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            mSampler.close();
+            if (!mFile.delete()) {
+                mFile.deleteOnExit();
+            }
+        }
+    }
+}
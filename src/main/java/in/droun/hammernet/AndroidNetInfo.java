@@ -13,14 +13,26 @@ import static org.apache.commons.lang3.StringUtils.isBlank;
 import android.content.Context;
 import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
+import in.droun.hammernet.NetInfoMetrics.Operation;
 import java.math.BigInteger;
+import java.net.Inet4Address;
+import java.net.InetAddress;
 import java.net.SocketException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class is mostly here to allow for dependency injection and to simplify unit testing. Since
  * we have no way of inheriting from {@link  java.net.NetworkInterface} or
  * {@link  android.content.Context} This class provides a nice wrapper around both when it comes to
  * networking functionality.
+ * <p>
+ * Instances are thread safe and meant to be kept: the WifiManager and the Wi-Fi interface found
+ * are remembered, and later lookups only check that interface still exists with the same MAC
+ * address instead of asking the WifiManager and going through every interface again. When no
+ * interface has the Wi-Fi MAC address, as on emulators, that is remembered too, and later lookups
+ * only ask the WifiManager whether the MAC address changed, see
+ * {@link #setWifiSearchInterval(long, TimeUnit)}.
  *
  * @author Pedro F. Hernandez <digitalrounin@gmail.com>
  */
@@ -33,6 +45,40 @@ public class AndroidNetInfo {
 
     private final transient NetworkInterfaceInfo mInterfaceInfo;
 
+    /**
+     * Where WifiManager calls are reported, {@link NetInfoMetrics#NONE} unless asked for.
+     */
+    private final transient NetInfoMetrics mMetrics;
+
+    /**
+     * Shared by the static methods, see {@link #shared(Context)}.
+     */
+    private static AndroidNetInfo sShared;
+
+    /**
+     * How long no interface having the Wi-Fi MAC address is trusted by default.
+     */
+    private static final long DEFAULT_WIFI_SEARCH_INTERVAL_SECONDS = 60;
+
+    /**
+     * WifiManager, once the context returned one.
+     */
+    private transient volatile WifiManager mWifiManager;
+
+    /**
+     * Wi-Fi interface last found, null until found or once it failed revalidation.
+     */
+    private transient volatile WifiInterface mWifiInterface;
+
+    /**
+     * Wi-Fi MAC address no interface had, last time the interfaces were searched, null until
+     * then or once an interface had it.
+     */
+    private transient volatile WifiMiss mWifiMiss;
+
+    private transient volatile long mWifiSearchIntervalNanos
+            = TimeUnit.SECONDS.toNanos(DEFAULT_WIFI_SEARCH_INTERVAL_SECONDS);
+
     /**
      * Initialize with an Android Context.
      *
@@ -40,14 +86,38 @@ public class AndroidNetInfo {
      * @param interfaceInfo
      */
     public AndroidNetInfo(final Context context, final NetworkInterfaceInfo interfaceInfo) {
+        this(context, interfaceInfo, NetInfoMetrics.NONE);
+    }
+
+    /**
+     * Initialize with an Android Context, reporting WifiManager calls to <i>metrics</i>.
+     *
+     * @param context       Android context.
+     * @param interfaceInfo interface lookups, usually reporting to the same <i>metrics</i>.
+     * @param metrics       sink for call counts and latencies.
+     */
+    public AndroidNetInfo(final Context context, final NetworkInterfaceInfo interfaceInfo,
+            final NetInfoMetrics metrics) {
         mAndroidContext = context;
         mInterfaceInfo = interfaceInfo;
+        mMetrics = metrics;
     }
 
     public AndroidNetInfo(final Context context) {
         this(context, new NetworkInterfaceInfo());
     }
 
+    /**
+     * Initialize with an Android Context, reporting every platform call, WifiManager and
+     * interface lookups alike, to <i>metrics</i>.
+     *
+     * @param context Android context.
+     * @param metrics sink for call counts, latencies and skipped interfaces.
+     */
+    public AndroidNetInfo(final Context context, final NetInfoMetrics metrics) {
+        this(context, new NetworkInterfaceInfo(metrics), metrics);
+    }
+
     /**
      *
      * Wrapper static method that allows for getting the IP address in a single call:
@@ -81,6 +151,7 @@ public class AndroidNetInfo {
      * </pre>
      *
      * The <i>defaultInterface</i> for testing on emulators, where there is no wifi interface.
+     * {@link #wifiOrDefaultRouteIp4Address(Context)} finds the right interface by itself.
      *
      * @param context          {@link android.content.Context}
      * @param defaultInterface if unable to find wifi interface, it will return the IP address of
@@ -92,8 +163,47 @@ public class AndroidNetInfo {
      */
     public static String wifiOrDefaultIp4Address(final Context context,
             final String defaultInterface) throws SocketException {
-        final AndroidNetInfo androidNetInfo = new AndroidNetInfo(context);
-        return androidNetInfo.getIp4Address(defaultInterface);
+        return shared(context).getIp4Address(defaultInterface);
+    }
+
+    /**
+     *
+     * Wrapper static method that allows for getting the IP address in a single call, falling back
+     * to the interface of the default route when there is no wifi interface, as on emulators:
+     *
+     * <pre>
+     *{@code
+     *    final String ipAddress = AndroidNetInfo.wifiOrDefaultRouteIp4Address(this);
+     *}
+     * </pre>
+     *
+     * @param context {@link android.content.Context}
+     *
+     * @return IP address, or null if unable to obtain
+     *
+     * @throws SocketException
+     */
+    public static String wifiOrDefaultRouteIp4Address(final Context context)
+            throws SocketException {
+        return shared(context).getWifiOrDefaultRouteIp4Address();
+    }
+
+    /**
+     * Returns the instance the static methods share for <i>context</i>'s application, so what it
+     * remembers is reused from call to call. A new one is only created when called with another
+     * application's context, as in tests.
+     *
+     * @param context any context of the application.
+     *
+     * @return the shared instance.
+     */
+    static synchronized AndroidNetInfo shared(final Context context) {
+        final Context applicationContext = context.getApplicationContext() != null
+                ? context.getApplicationContext() : context;
+        if (sShared == null || sShared.mAndroidContext != applicationContext) {
+            sShared = new AndroidNetInfo(applicationContext);
+        }
+        return sShared;
     }
 
     /**
@@ -113,11 +223,75 @@ public class AndroidNetInfo {
      *
      */
     public String wifiInterfaceName() throws SocketException {
+        final WifiInterface cached = mWifiInterface;
+        final String result;
+        if (cached != null && revalidate(cached) != null) {
+            result = cached.mName;
+        } else {
+            final WifiInterface resolved = resolveWifiInterface();
+            result = resolved != null ? resolved.mName : null;
+        }
+        return result;
+    }
 
-        final BigInteger wifiMac = wifiMacAddress();
-        final String interfaceName = wifiMac != null
-                ? mInterfaceInfo.getNameByMacAddress(wifiMac) : null;
-        return isNotBlank(interfaceName) ? interfaceName : null;
+    /**
+     * Sets how long, once no interface had the Wi-Fi MAC address, the interfaces are not
+     * searched again while the WifiManager keeps reporting that same MAC address. A new MAC
+     * address is searched right away. Zero searches the interfaces on every lookup.
+     *
+     * @param interval time between searches for a MAC address no interface had.
+     * @param unit     unit of <i>interval</i>.
+     */
+    public void setWifiSearchInterval(final long interval, final TimeUnit unit) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("Negative interval: " + interval);
+        }
+        mWifiSearchIntervalNanos = unit.toNanos(interval);
+        mWifiMiss = null;
+    }
+
+    /**
+     * Finds the Wi-Fi interface the long way, through the WifiManager and every interface, and
+     * remembers it. If no interface had the Wi-Fi MAC address last time, and the WifiManager
+     * still reports that one, the interfaces are only searched again once the search interval
+     * elapsed.
+     *
+     * @return the Wi-Fi interface, or null if there is none.
+     */
+    private WifiInterface resolveWifiInterface() throws SocketException {
+        final MacAddress wifiMac = wifiMac();
+        final long macAddress = wifiMac != null ? wifiMac.toLong() : MacAddressParser.INVALID;
+        final WifiMiss miss = mWifiMiss;
+        final long now = System.nanoTime();
+        WifiInterface result = null;
+        if (miss == null || miss.mMacAddress != macAddress
+                || now - miss.mSearchTime >= mWifiSearchIntervalNanos) {
+            final String interfaceName = wifiMac != null
+                    ? mInterfaceInfo.getNameByMacAddress(wifiMac) : null;
+            if (isNotBlank(interfaceName)) {
+                result = new WifiInterface(macAddress, interfaceName);
+                mWifiMiss = null;
+            } else {
+                mWifiMiss = new WifiMiss(macAddress, now);
+            }
+        }
+        mWifiInterface = result;
+        return result;
+    }
+
+    /**
+     * Checks a remembered Wi-Fi interface still exists with the same MAC address, forgetting it
+     * otherwise.
+     *
+     * @return the interface's addresses, or null if the check failed.
+     */
+    private List<InetAddress> revalidate(final WifiInterface cached) throws SocketException {
+        final List<InetAddress> result
+                = mInterfaceInfo.getInetAddressesByNameAndMac(cached.mName, cached.mMacAddress);
+        if (result == null) {
+            mWifiInterface = null;
+        }
+        return result;
     }
 
     /**
@@ -129,20 +303,46 @@ public class AndroidNetInfo {
      *         any errors encountered while trying to obtain the MAC address.
      */
     public BigInteger wifiMacAddress() {
+        final MacAddress wifiMac = wifiMac();
+        return wifiMac != null ? wifiMac.toBigInteger() : null;
+    }
 
-        // Get WiFi interface's MAC address as a BigInteger.
-        final WifiManager wifiManager
-                = (WifiManager) mAndroidContext.getSystemService(Context.WIFI_SERVICE);
-        final WifiInfo wifiInfo = wifiManager != null ? wifiManager.getConnectionInfo() : null;
-        final String wifiMacString = wifiInfo != null ? wifiInfo.getMacAddress() : null;
+    /**
+     * Finds the devices WiFi interface and returns its MAC address as a {@link MacAddress}.
+     * <p>
+     * This method tries it's best to always return null if any problems occur.
+     *
+     * @return The WiFi device's MAC address, null if there is no WiFi interface, or if there are
+     *         any errors encountered while trying to obtain the MAC address.
+     */
+    public MacAddress wifiMac() {
 
-        BigInteger result;
-        if (isNotBlank(wifiMacString)) {
-            result = NetworkInterfaceInfo.macAddressToBigInteger(wifiMacString);
-        } else {
-            result = null;
+        // Get WiFi interface's MAC address
+        final long startTime = mMetrics != NetInfoMetrics.NONE ? System.nanoTime() : 0;
+        final String wifiMacString;
+        try {
+            final WifiManager wifiManager = wifiManager();
+            final WifiInfo wifiInfo
+                    = wifiManager != null ? wifiManager.getConnectionInfo() : null;
+            wifiMacString = wifiInfo != null ? wifiInfo.getMacAddress() : null;
+        } finally {
+            if (mMetrics != NetInfoMetrics.NONE) {
+                mMetrics.callCompleted(Operation.WIFI_MANAGER, System.nanoTime() - startTime);
+            }
         }
 
+        return isNotBlank(wifiMacString) ? MacAddress.parse(wifiMacString) : null;
+    }
+
+    /**
+     * @return the WifiManager, only asked from the context until it returned one.
+     */
+    private WifiManager wifiManager() {
+        WifiManager result = mWifiManager;
+        if (result == null) {
+            result = (WifiManager) mAndroidContext.getSystemService(Context.WIFI_SERVICE);
+            mWifiManager = result;
+        }
         return result;
     }
 
@@ -151,20 +351,93 @@ public class AndroidNetInfo {
     }
 
     public String getIp4Address(final String defaultInterface) throws SocketException {
+        return getIp4Address(defaultInterface, false);
+    }
+
+    /**
+     * Returns the Wi-Fi IPv4 address or, if there is no Wi-Fi interface, the IPv4 address of the
+     * interface the default route goes through, see
+     * {@link NetworkInterfaceInfo#getDefaultRouteInterfaceName()}.
+     *
+     * @return IP address, or null if unable to obtain
+     *
+     * @throws SocketException
+     */
+    public String getWifiOrDefaultRouteIp4Address() throws SocketException {
+        return getIp4Address(null, true);
+    }
+
+    private String getIp4Address(final String defaultInterface, final boolean defaultRoute)
+            throws SocketException {
         String ipAddress = null;
-        // Find Wifi IP address
-        String interfaceName = wifiInterfaceName();
+        // Reuse the Wifi interface found last time, if it is still there with the same MAC
+        final WifiInterface cached = mWifiInterface;
+        final List<InetAddress> cachedAddresses = cached != null ? revalidate(cached) : null;
+        if (cachedAddresses != null) {
+            ipAddress = firstIp4HostAddress(cachedAddresses);
+        } else {
+            // Find Wifi IP address
+            final WifiInterface resolved = resolveWifiInterface();
+            String interfaceName = resolved != null ? resolved.mName : null;
 
-        // Use defaultInterface if no wifi interface found
-        if (isBlank(interfaceName)) {
-            interfaceName = defaultInterface;
-        }
+            // Use defaultInterface, or the default route's, if no wifi interface found
+            if (isBlank(interfaceName)) {
+                interfaceName = defaultRoute
+                        ? mInterfaceInfo.getDefaultRouteInterfaceName() : defaultInterface;
+            }
 
-        // Actually get the IP address
-        if (isNotBlank(interfaceName)) {
-            ipAddress = mInterfaceInfo.getIp4HostAddressByName(interfaceName);
+            // Actually get the IP address
+            if (isNotBlank(interfaceName)) {
+                ipAddress = mInterfaceInfo.getIp4HostAddressByName(interfaceName);
+            }
         }
 
         return ipAddress;
     }
+
+    /**
+     * @return text form of the first IPv4 address of <i>addresses</i>, or null.
+     */
+    private static String firstIp4HostAddress(final List<InetAddress> addresses) {
+        String result = null;
+        for (final InetAddress address : addresses) {
+            if (address instanceof Inet4Address) {
+                result = address.getHostAddress();
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Wi-Fi interface found by {@link #resolveWifiInterface()}, immutable so it can be published
+     * through a volatile field.
+     */
+    private static final class WifiInterface {
+
+        private final transient long mMacAddress;
+
+        private final transient String mName;
+
+        WifiInterface(final long macAddress, final String name) {
+            mMacAddress = macAddress;
+            mName = name;
+        }
+    }
+
+    /**
+     * Wi-Fi MAC address no interface had, {@link MacAddressParser#INVALID} if the WifiManager
+     * reported none, and when the interfaces were searched for it.
+     */
+    private static final class WifiMiss {
+
+        private final transient long mMacAddress;
+
+        private final transient long mSearchTime;
+
+        WifiMiss(final long macAddress, final long searchTime) {
+            mMacAddress = macAddress;
+            mSearchTime = searchTime;
+        }
+    }
 }
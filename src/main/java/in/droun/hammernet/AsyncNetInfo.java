@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import android.content.Context;
+import java.lang.reflect.InvocationTargetException;
+import java.net.SocketException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non blocking front end of {@link AndroidNetInfo}, for the Android main thread and for servers
+ * that cannot pin a request thread on {@link android.net.wifi.WifiManager#getConnectionInfo()}
+ * and an interface enumeration:
+ *
+ * <pre>
+ *{@code
+ *    final AsyncNetInfo asyncNetInfo = new AsyncNetInfo(new AndroidNetInfo(this));
+ *    asyncNetInfo.getIp4Address(null, new NetInfoCallback<String>() {
+ *        ...
+ *    });
+ *}
+ * </pre>
+ *
+ * Lookups run on a pluggable {@link Executor}, by default one virtual thread per lookup where the
+ * JDK has them and a shared pool of daemon threads otherwise. Concurrent identical lookups share
+ * one execution. Each caller's {@link Future} can be cancelled or waited on with a timeout without
+ * affecting the other callers.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public class AsyncNetInfo {
+
+    /**
+     * Request key standing for a null default interface, concurrent maps take no null keys.
+     */
+    private static final Object NO_DEFAULT_INTERFACE = new Object();
+
+    /**
+     * Shared by the static methods, see {@link #shared(Context)}.
+     */
+    private static AsyncNetInfo sShared;
+
+    private final transient AndroidNetInfo mAndroidNetInfo;
+
+    private final transient CoalescingExecutor<Object, String> mIp4Requests;
+
+    private final transient CoalescingExecutor<Object, String> mInterfaceNameRequests;
+
+    /**
+     * Lazily created default executor.
+     */
+    private static final class DefaultExecutorHolder {
+        static final Executor INSTANCE = createDefaultExecutor();
+    }
+
+    /**
+     * Runs lookups on {@link #defaultExecutor()}.
+     *
+     * @param androidNetInfo does the blocking lookups.
+     */
+    public AsyncNetInfo(final AndroidNetInfo androidNetInfo) {
+        this(androidNetInfo, defaultExecutor());
+    }
+
+    /**
+     * @param androidNetInfo does the blocking lookups.
+     * @param executor       runs the lookups.
+     */
+    public AsyncNetInfo(final AndroidNetInfo androidNetInfo, final Executor executor) {
+        mAndroidNetInfo = androidNetInfo;
+        mIp4Requests = new CoalescingExecutor<Object, String>(executor);
+        mInterfaceNameRequests = new CoalescingExecutor<Object, String>(executor);
+    }
+
+    /**
+     * Asynchronous {@link AndroidNetInfo#wifiOrDefaultIp4Address(Context, String)}.
+     *
+     * @param context          {@link android.content.Context}
+     * @param defaultInterface interface to use if there is no wifi interface, may be null.
+     *
+     * @return the pending IP address, its value null if unable to obtain.
+     */
+    public static Future<String> wifiOrDefaultIp4Address(final Context context,
+            final String defaultInterface) {
+        return shared(context).getIp4Address(defaultInterface);
+    }
+
+    /**
+     * Returns the instance shared by the static methods, one per application context as
+     * {@link AndroidNetInfo#shared(Context)}, so concurrent static callers share lookups too.
+     *
+     * @param context any context of the application.
+     *
+     * @return the shared instance.
+     */
+    static synchronized AsyncNetInfo shared(final Context context) {
+        final AndroidNetInfo androidNetInfo = AndroidNetInfo.shared(context);
+        if (sShared == null || sShared.mAndroidNetInfo != androidNetInfo) {
+            sShared = new AsyncNetInfo(androidNetInfo);
+        }
+        return sShared;
+    }
+
+    /**
+     * Returns the shared default executor: one virtual thread per task on JDKs that have virtual
+     * threads, a cached pool of daemon threads otherwise.
+     *
+     * @return the default executor.
+     */
+    public static Executor defaultExecutor() {
+        return DefaultExecutorHolder.INSTANCE;
+    }
+
+    /**
+     * Asynchronous {@link AndroidNetInfo#getIp4Address(String)}.
+     *
+     * @param defaultInterface interface to use if there is no wifi interface, may be null.
+     *
+     * @return the pending IP address, its value null if unable to obtain.
+     */
+    public Future<String> getIp4Address(final String defaultInterface) {
+        return getIp4Address(defaultInterface, null);
+    }
+
+    /**
+     * Asynchronous {@link AndroidNetInfo#getIp4Address(String)}, calling <i>callback</i> once
+     * done.
+     *
+     * @param defaultInterface interface to use if there is no wifi interface, may be null.
+     * @param callback         told about the result, may be null.
+     *
+     * @return the pending IP address, its value null if unable to obtain.
+     */
+    public Future<String> getIp4Address(final String defaultInterface,
+            final NetInfoCallback<? super String> callback) {
+        return mIp4Requests.submit(
+                defaultInterface != null ? defaultInterface : NO_DEFAULT_INTERFACE,
+                new Callable<String>() {
+                    @Override
+                    public String call() throws SocketException {
+                        return mAndroidNetInfo.getIp4Address(defaultInterface);
+                    }
+                }, callback);
+    }
+
+    /**
+     * {@link AndroidNetInfo#getIp4Address(String)} waiting at most <i>timeout</i>. A timed out
+     * lookup is withdrawn, and cancelled if no other caller is waiting for it.
+     *
+     * @param defaultInterface interface to use if there is no wifi interface, may be null.
+     * @param timeout          how long to wait.
+     * @param unit             unit of <i>timeout</i>.
+     *
+     * @return IP address, or null if unable to obtain.
+     *
+     * @throws SocketException      if the lookup failed.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws TimeoutException     if the lookup did not finish in time.
+     */
+    public String getIp4Address(final String defaultInterface, final long timeout,
+            final TimeUnit unit) throws SocketException, InterruptedException, TimeoutException {
+        return await(getIp4Address(defaultInterface), timeout, unit);
+    }
+
+    /**
+     * Asynchronous {@link AndroidNetInfo#wifiInterfaceName()}.
+     *
+     * @param callback told about the result, may be null.
+     *
+     * @return the pending interface name, its value null if there is no wifi interface.
+     */
+    public Future<String> wifiInterfaceName(final NetInfoCallback<? super String> callback) {
+        return mInterfaceNameRequests.submit(NO_DEFAULT_INTERFACE, new Callable<String>() {
+            @Override
+            public String call() throws SocketException {
+                return mAndroidNetInfo.wifiInterfaceName();
+            }
+        }, callback);
+    }
+
+    /**
+     * Waits for a lookup, withdrawing from it on timeout or interruption.
+     */
+    private static String await(final Future<String> future, final long timeout,
+            final TimeUnit unit) throws SocketException, InterruptedException, TimeoutException {
+        String result = null;
+        boolean finished = false;
+        try {
+            result = future.get(timeout, unit);
+            finished = true;
+        } catch (ExecutionException executionException) {
+            finished = true;
+            throw CoalescingExecutor.unwrap(executionException);
+        } finally {
+            if (!finished) {
+                future.cancel(true);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Looks up Executors.newVirtualThreadPerTaskExecutor() reflectively, so this still runs on
+     * Android and older JDKs.
+     */
+    private static Executor createDefaultExecutor() {
+        Executor result = null;
+        try {
+            result = (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (NoSuchMethodException noSuchMethodException) {
+            result = null;
+        } catch (IllegalAccessException illegalAccessException) {
+            result = null;
+        } catch (InvocationTargetException invocationTargetException) {
+            result = null;
+        }
+        if (result == null) {
+            final AtomicInteger threadCount = new AtomicInteger();
+            result = Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable,
+                            "hammernet-async-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return result;
+    }
+}
@@ -0,0 +1,496 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.util.Arrays;
+
+/**
+ * Labels IP addresses by longest prefix match against a set of CIDR prefixes, such as "private"
+ * for 10.0.0.0/8 or "site" for an organization's own prefixes. Prefixes live in one path
+ * compressed binary (PATRICIA) trie, so a lookup visits at most one node per distinct prefix
+ * length on the way down, and takes primitive addresses without allocating.
+ * <p>
+ * IPv4 prefixes are stored as their IPv4 mapped IPv6 form, ::ffff:0:0/96, so one trie holds both
+ * families. {@link #standard()} returns a trie of the well known special purpose ranges, and
+ * {@link NetworkInterfaceInfo#getAddressByPolicy(CidrTrie, java.util.List)} picks the interface
+ * address whose label is preferred. Not thread safe while being filled, safe to share once it is
+ * no longer modified.
+ *
+ * @param <L> type of the labels.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public final class CidrTrie<L> {
+
+    /**
+     * RFC 1918 IPv4 private ranges.
+     */
+    public static final String PRIVATE = "private";
+
+    /**
+     * RFC 6598 carrier grade NAT range, 100.64.0.0/10.
+     */
+    public static final String CGNAT = "cgnat";
+
+    /**
+     * IPv4 169.254.0.0/16 and IPv6 fe80::/10.
+     */
+    public static final String LINK_LOCAL = "link-local";
+
+    /**
+     * IPv6 unique local addresses, fc00::/7.
+     */
+    public static final String ULA = "ula";
+
+    /**
+     * IPv4 127.0.0.0/8 and IPv6 ::1/128.
+     */
+    public static final String LOOPBACK = "loopback";
+
+    private static final int ADDRESS_BITS = 128;
+
+    private static final int HALF_BITS = 64;
+
+    private static final int IP4_BITS = 32;
+
+    /**
+     * Upper bits of the lower half of an IPv4 mapped address.
+     */
+    private static final long IP4_MAPPED = 0xFFFF00000000L;
+
+    private static final long IP4_MASK = 0xFFFFFFFFL;
+
+    private static final int IP4_BYTES = 4;
+
+    private static final int IP6_BYTES = 16;
+
+    private static final int MAX_IP4_DIGITS = 3;
+
+    private static final int MAX_GROUP_DIGITS = 4;
+
+    private static final int OCTET_MASK = 0xFF;
+
+    private static final int DECIMAL = 10;
+
+    private final transient Node<L> mRoot = new Node<L>(0, 0, 0, null);
+
+    private transient int mSize;
+
+    /**
+     * A prefix, labelled or only joining two branches. Children are split on the first bit after
+     * the prefix.
+     */
+    private static final class Node<L> {
+        private final long mHigh;
+        private final long mLow;
+        private final int mLength;
+        private L mLabel;
+        private Node<L> mZero;
+        private Node<L> mOne;
+
+        Node(final long high, final long low, final int length, final L label) {
+            mHigh = high;
+            mLow = low;
+            mLength = length;
+            mLabel = label;
+        }
+
+        Node<L> child(final int bit) {
+            return bit == 0 ? mZero : mOne;
+        }
+
+        void setChild(final int bit, final Node<L> child) {
+            if (bit == 0) {
+                mZero = child;
+            } else {
+                mOne = child;
+            }
+        }
+    }
+
+    /**
+     * @return a new trie labelling the IPv4 and IPv6 private, CGNAT, link local, unique local and
+     *         loopback ranges with the String constants of this class.
+     */
+    public static CidrTrie<String> standard() {
+        final CidrTrie<String> result = new CidrTrie<String>();
+        result.put("10.0.0.0/8", PRIVATE);
+        result.put("172.16.0.0/12", PRIVATE);
+        result.put("192.168.0.0/16", PRIVATE);
+        result.put("100.64.0.0/10", CGNAT);
+        result.put("169.254.0.0/16", LINK_LOCAL);
+        result.put("127.0.0.0/8", LOOPBACK);
+        result.put("fe80::/10", LINK_LOCAL);
+        result.put("fc00::/7", ULA);
+        result.put("::1/128", LOOPBACK);
+        return result;
+    }
+
+    /**
+     * Reads one "prefix label" pair per line, such as "192.0.2.0/24 lab". Blank lines and lines
+     * starting with '#' are skipped.
+     *
+     * @param reader prefixes to read, not closed.
+     *
+     * @return a new trie.
+     *
+     * @throws IOException              if reading fails.
+     * @throws IllegalArgumentException if a line is not a prefix followed by a label.
+     */
+    public static CidrTrie<String> load(final Reader reader) throws IOException {
+        final CidrTrie<String> result = new CidrTrie<String>();
+        final BufferedReader lines = new BufferedReader(reader);
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            final String trimmed = line.trim();
+            if (trimmed.length() > 0 && trimmed.charAt(0) != '#') {
+                final String[] fields = trimmed.split("\\s+", 2);
+                if (fields.length != 2) {
+                    throw new IllegalArgumentException("No label: " + line);
+                }
+                result.put(fields[0], fields[1]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds a prefix in "address/length" form, IPv4 or IPv6. A bare address is a host prefix.
+     *
+     * @param cidr  prefix such as "192.0.2.0/24" or "2001:db8::/32".
+     * @param label label to attach, not null.
+     *
+     * @return the label previously attached to the same prefix, or null.
+     *
+     * @throws IllegalArgumentException if <i>cidr</i> is not a numeric prefix or <i>label</i> is
+     *                                  null.
+     */
+    public L put(final String cidr, final L label) {
+        final int slash = cidr.indexOf('/');
+        final String address = slash >= 0 ? cidr.substring(0, slash) : cidr;
+        final byte[] bytes = parseNumeric(address);
+        final int maxLength = bytes.length * Byte.SIZE;
+        int length = maxLength;
+        if (slash >= 0) {
+            try {
+                length = Integer.parseInt(cidr.substring(slash + 1));
+            } catch (NumberFormatException numberFormatException) {
+                throw new IllegalArgumentException("Bad prefix length: " + cidr,
+                        numberFormatException);
+            }
+        }
+        if (length < 0 || length > maxLength) {
+            throw new IllegalArgumentException("Bad prefix length: " + cidr);
+        }
+        final L result;
+        if (bytes.length == IP4_BYTES) {
+            result = putIp4(InetAddressFormat.ip4ToInt(bytes), length, label);
+        } else {
+            result = putIp6(InetAddressFormat.ip6HalfToLong(bytes, 0),
+                    InetAddressFormat.ip6HalfToLong(bytes, HALF_BITS / Byte.SIZE), length, label);
+        }
+        return result;
+    }
+
+    /**
+     * Adds an IPv4 prefix.
+     *
+     * @param address      prefix address, most significant byte first. Bits past the prefix
+     *                     length are ignored.
+     * @param prefixLength 0 to 32.
+     * @param label        label to attach, not null.
+     *
+     * @return the label previously attached to the same prefix, or null.
+     */
+    public L putIp4(final int address, final int prefixLength, final L label) {
+        if (prefixLength < 0 || prefixLength > IP4_BITS) {
+            throw new IllegalArgumentException("Bad IPv4 prefix length: " + prefixLength);
+        }
+        return insert(0, IP4_MAPPED | address & IP4_MASK,
+                ADDRESS_BITS - IP4_BITS + prefixLength, label);
+    }
+
+    /**
+     * Adds an IPv6 prefix.
+     *
+     * @param high         upper 64 bits of the prefix address.
+     * @param low          lower 64 bits of the prefix address. Bits past the prefix length are
+     *                     ignored.
+     * @param prefixLength 0 to 128.
+     * @param label        label to attach, not null.
+     *
+     * @return the label previously attached to the same prefix, or null.
+     */
+    public L putIp6(final long high, final long low, final int prefixLength, final L label) {
+        if (prefixLength < 0 || prefixLength > ADDRESS_BITS) {
+            throw new IllegalArgumentException("Bad IPv6 prefix length: " + prefixLength);
+        }
+        return insert(high, low, prefixLength, label);
+    }
+
+    /**
+     * @param address IPv4 address, most significant byte first.
+     *
+     * @return label of the longest prefix holding <i>address</i>, or null.
+     */
+    public L lookupIp4(final int address) {
+        return lookup(0, IP4_MAPPED | address & IP4_MASK);
+    }
+
+    /**
+     * @param high upper 64 bits of the IPv6 address.
+     * @param low  lower 64 bits of the IPv6 address.
+     *
+     * @return label of the longest prefix holding the address, or null.
+     */
+    public L lookupIp6(final long high, final long low) {
+        return lookup(high, low);
+    }
+
+    /**
+     * @param address address to classify, may be null.
+     *
+     * @return label of the longest prefix holding <i>address</i>, or null.
+     */
+    public L lookup(final InetAddress address) {
+        L result = null;
+        if (address != null) {
+            final byte[] bytes = address.getAddress();
+            result = bytes.length == IP4_BITS / Byte.SIZE
+                    ? lookupIp4(InetAddressFormat.ip4ToInt(bytes))
+                    : lookupIp6(InetAddressFormat.ip6HalfToLong(bytes, 0),
+                    InetAddressFormat.ip6HalfToLong(bytes, HALF_BITS / Byte.SIZE));
+        }
+        return result;
+    }
+
+    /**
+     * @return number of labelled prefixes.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    private L insert(final long high, final long low, final int length, final L label) {
+        if (label == null) {
+            throw new IllegalArgumentException("Null label");
+        }
+        final long maskedHigh = high & highMask(length);
+        final long maskedLow = low & lowMask(length);
+        Node<L> node = mRoot;
+        L result = null;
+        while (true) {
+            // The node's prefix is a prefix of the new one
+            if (node.mLength == length) {
+                result = node.mLabel;
+                node.mLabel = label;
+                break;
+            }
+            final int bit = bit(maskedHigh, maskedLow, node.mLength);
+            final Node<L> child = node.child(bit);
+            if (child == null) {
+                node.setChild(bit, new Node<L>(maskedHigh, maskedLow, length, label));
+                break;
+            }
+            final int common = Math.min(Math.min(child.mLength, length),
+                    commonLength(child.mHigh, child.mLow, maskedHigh, maskedLow));
+            if (common == child.mLength) {
+                node = child;
+                continue;
+            }
+            // The new prefix ends, or branches off, inside the child's compressed path
+            final Node<L> split;
+            if (common == length) {
+                split = new Node<L>(maskedHigh, maskedLow, length, label);
+            } else {
+                split = new Node<L>(maskedHigh & highMask(common), maskedLow & lowMask(common),
+                        common, null);
+                split.setChild(bit(maskedHigh, maskedLow, common),
+                        new Node<L>(maskedHigh, maskedLow, length, label));
+            }
+            split.setChild(bit(child.mHigh, child.mLow, common), child);
+            node.setChild(bit, split);
+            break;
+        }
+        if (result == null) {
+            mSize++;
+        }
+        return result;
+    }
+
+    private L lookup(final long high, final long low) {
+        Node<L> node = mRoot;
+        L result = null;
+        while (node != null && (high & highMask(node.mLength)) == node.mHigh
+                && (low & lowMask(node.mLength)) == node.mLow) {
+            if (node.mLabel != null) {
+                result = node.mLabel;
+            }
+            node = node.mLength < ADDRESS_BITS ? node.child(bit(high, low, node.mLength)) : null;
+        }
+        return result;
+    }
+
+    private static int bit(final long high, final long low, final int index) {
+        return (int) (index < HALF_BITS ? high >>> HALF_BITS - 1 - index
+                : low >>> ADDRESS_BITS - 1 - index) & 1;
+    }
+
+    private static long highMask(final int length) {
+        return length == 0 ? 0 : length >= HALF_BITS ? -1L : -1L << HALF_BITS - length;
+    }
+
+    private static long lowMask(final int length) {
+        return length <= HALF_BITS ? 0
+                : length == ADDRESS_BITS ? -1L : -1L << ADDRESS_BITS - length;
+    }
+
+    /**
+     * @return number of leading bits two addresses share.
+     */
+    private static int commonLength(final long high1, final long low1, final long high2,
+            final long low2) {
+        final long highDifference = high1 ^ high2;
+        return highDifference != 0 ? Long.numberOfLeadingZeros(highDifference)
+                : HALF_BITS + Long.numberOfLeadingZeros(low1 ^ low2);
+    }
+
+    /**
+     * Parses a numeric IPv4 or IPv6 address by hand, {@link InetAddress#getByName(String)} would
+     * go to DNS for anything it does not take for a literal. IPv4 addresses are four decimal
+     * parts, IPv6 ones may compress zeros with "::" and end with a dotted quad. Scope ids are
+     * refused, a prefix has none.
+     */
+    private static byte[] parseNumeric(final String address) {
+        final byte[] result;
+        if (address.indexOf(':') >= 0) {
+            result = parseIp6(address);
+        } else {
+            result = new byte[IP4_BYTES];
+            parseIp4(address, 0, address.length(), result, 0);
+        }
+        return result;
+    }
+
+    private static byte[] parseIp6(final String address) {
+        final byte[] result = new byte[IP6_BYTES];
+        final int end = address.length();
+        int written = 0;
+        // Bytes written when the "::" was met
+        int gap = -1;
+        int index = 0;
+        if (address.startsWith("::")) {
+            gap = 0;
+            index = 2;
+        }
+        while (index < end) {
+            final int colon = address.indexOf(':', index);
+            final int groupEnd = colon >= 0 ? colon : end;
+            if (colon < 0 && address.indexOf('.', index) >= 0) {
+                // Trailing dotted quad, as in ::ffff:192.0.2.1
+                if (written > IP6_BYTES - IP4_BYTES) {
+                    throw notNumeric(address);
+                }
+                parseIp4(address, index, end, result, written);
+                written += IP4_BYTES;
+            } else {
+                if (written == IP6_BYTES) {
+                    throw notNumeric(address);
+                }
+                final int group = parseGroup(address, index, groupEnd);
+                result[written++] = (byte) (group >>> Byte.SIZE);
+                result[written++] = (byte) group;
+            }
+            index = groupEnd;
+            if (index < end) {
+                index++;
+                if (index < end && address.charAt(index) == ':') {
+                    if (gap >= 0) {
+                        throw notNumeric(address);
+                    }
+                    gap = written;
+                    index++;
+                } else if (index == end) {
+                    throw notNumeric(address);
+                }
+            }
+        }
+        if (gap >= 0 ? written == IP6_BYTES : written < IP6_BYTES) {
+            throw notNumeric(address);
+        }
+        if (gap >= 0) {
+            // Groups after the "::" move to the end, zeros in between
+            final int tail = written - gap;
+            System.arraycopy(result, gap, result, IP6_BYTES - tail, tail);
+            Arrays.fill(result, gap, IP6_BYTES - tail, (byte) 0);
+        }
+        return result;
+    }
+
+    /**
+     * Parses exactly four decimal parts of ASCII digits, no legacy forms such as "1.2.3".
+     */
+    private static void parseIp4(final String address, final int start, final int end,
+            final byte[] destination, final int offset) {
+        int index = start;
+        for (int part = 0; part < IP4_BYTES; part++) {
+            if (part > 0) {
+                if (index == end || address.charAt(index) != '.') {
+                    throw notNumeric(address);
+                }
+                index++;
+            }
+            int value = 0;
+            final int partStart = index;
+            while (index < end && index - partStart < MAX_IP4_DIGITS
+                    && address.charAt(index) >= '0' && address.charAt(index) <= '9') {
+                value = value * DECIMAL + address.charAt(index) - '0';
+                index++;
+            }
+            if (index == partStart || value > OCTET_MASK) {
+                throw notNumeric(address);
+            }
+            destination[offset + part] = (byte) value;
+        }
+        if (index != end) {
+            throw notNumeric(address);
+        }
+    }
+
+    /**
+     * Parses one to four ASCII hex digits.
+     */
+    private static int parseGroup(final String address, final int start, final int end) {
+        if (end == start || end - start > MAX_GROUP_DIGITS) {
+            throw notNumeric(address);
+        }
+        int result = 0;
+        for (int index = start; index < end; index++) {
+            final char character = address.charAt(index);
+            final int digit;
+            if (character >= '0' && character <= '9') {
+                digit = character - '0';
+            } else if (character >= 'a' && character <= 'f') {
+                digit = character - 'a' + DECIMAL;
+            } else if (character >= 'A' && character <= 'F') {
+                digit = character - 'A' + DECIMAL;
+            } else {
+                throw notNumeric(address);
+            }
+            result = result << 4 | digit;
+        }
+        return result;
+    }
+
+    private static IllegalArgumentException notNumeric(final String address) {
+        return new IllegalArgumentException("Not a numeric address: " + address);
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs requests on an {@link Executor}, sharing one execution between every caller asking for the
+ * same key while it is in flight. Each caller gets its own {@link Future}: cancelling it only
+ * withdraws that caller, the shared execution is cancelled, and interrupted, once every caller
+ * withdrew.
+ *
+ * @param <K> type of the request keys.
+ * @param <V> type of the results.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+final class CoalescingExecutor<K, V> {
+
+    private final transient Executor mExecutor;
+
+    private final transient ConcurrentMap<K, Call> mInFlight = new ConcurrentHashMap<K, Call>();
+
+    /**
+     * @param executor runs the requests.
+     */
+    CoalescingExecutor(final Executor executor) {
+        mExecutor = executor;
+    }
+
+    /**
+     * Joins the request in flight for <i>key</i>, or starts <i>callable</i> if there is none.
+     *
+     * @param key      request key, not null.
+     * @param callable computes the result if nothing is in flight for <i>key</i>.
+     * @param callback told about the result, may be null.
+     *
+     * @return this caller's view of the request.
+     *
+     * @throws RejectedExecutionException if the executor does not accept the request.
+     */
+    Future<V> submit(final K key, final Callable<V> callable,
+            final NetInfoCallback<? super V> callback) {
+        Handle result = null;
+        while (result == null) {
+            Call call = mInFlight.get(key);
+            boolean created = false;
+            if (call == null) {
+                final Call newCall = new Call(key, callable);
+                call = mInFlight.putIfAbsent(key, newCall);
+                if (call == null) {
+                    call = newCall;
+                    created = true;
+                }
+            }
+            result = call.join(callback);
+            if (result == null) {
+                // Finished or cancelled since it was looked up
+                mInFlight.remove(key, call);
+            } else if (created) {
+                try {
+                    mExecutor.execute(call);
+                } catch (RejectedExecutionException rejectedExecutionException) {
+                    mInFlight.remove(key, call);
+                    call.cancel(false);
+                    throw rejectedExecutionException;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Rethrows what a lookup run through a {@link FutureTask} failed with.
+     *
+     * @param executionException failure of the lookup.
+     *
+     * @return the SocketException the lookup failed with, for the caller to throw. Any other
+     *         failure is thrown.
+     */
+    static SocketException unwrap(final ExecutionException executionException) {
+        final Throwable cause = executionException.getCause();
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        } else if (!(cause instanceof SocketException)) {
+            throw new IllegalStateException(cause);
+        }
+        return (SocketException) cause;
+    }
+
+    /**
+     * @return number of distinct requests in flight.
+     */
+    int inFlightCount() {
+        return mInFlight.size();
+    }
+
+    /**
+     * One shared execution, and the callers waiting for it.
+     */
+    private final class Call extends FutureTask<V> {
+
+        private final transient K mKey;
+
+        private final transient List<Handle> mHandles = new ArrayList<Handle>();
+
+        private transient int mActive;
+
+        /**
+         * Set once no caller can join anymore.
+         */
+        private transient boolean mClosed;
+
+        Call(final K key, final Callable<V> callable) {
+            super(callable);
+            mKey = key;
+        }
+
+        /**
+         * @return a new handle, or null if this call can no longer be joined.
+         */
+        synchronized Handle join(final NetInfoCallback<? super V> callback) {
+            Handle result = null;
+            // Completed calls are only closed by done(), after their result is already visible
+            if (!mClosed && !isDone()) {
+                result = new Handle(this, callback);
+                mHandles.add(result);
+                mActive++;
+            }
+            return result;
+        }
+
+        void leave() {
+            boolean cancel = false;
+            synchronized (this) {
+                mActive--;
+                if (mActive == 0 && !isDone()) {
+                    mClosed = true;
+                    cancel = true;
+                }
+            }
+            if (cancel) {
+                mInFlight.remove(mKey, this);
+                cancel(true);
+            }
+        }
+
+        @Override
+        protected void done() {
+            final List<Handle> handles;
+            synchronized (this) {
+                mClosed = true;
+                handles = new ArrayList<Handle>(mHandles);
+            }
+            mInFlight.remove(mKey, this);
+            for (final Handle handle : handles) {
+                handle.finished(!isCancelled());
+            }
+        }
+    }
+
+    /**
+     * One caller's view of a shared {@link Call}.
+     */
+    private final class Handle implements Future<V> {
+
+        private final transient Call mCall;
+
+        private final transient NetInfoCallback<? super V> mCallback;
+
+        private final transient AtomicBoolean mCancelled = new AtomicBoolean();
+
+        /**
+         * Released once the call finished or this caller cancelled, whichever comes first.
+         */
+        private final transient CountDownLatch mDone = new CountDownLatch(1);
+
+        Handle(final Call call, final NetInfoCallback<? super V> callback) {
+            mCall = call;
+            mCallback = callback;
+        }
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            // The shared call is always interrupted once the last caller is gone
+            final boolean result = !mCall.isDone() && mCancelled.compareAndSet(false, true);
+            if (result) {
+                mDone.countDown();
+                mCall.leave();
+            }
+            return result;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return mCancelled.get();
+        }
+
+        @Override
+        public boolean isDone() {
+            return mCancelled.get() || mCall.isDone();
+        }
+
+        @Override
+        public V get() throws InterruptedException, ExecutionException {
+            mDone.await();
+            checkCancelled();
+            return mCall.get();
+        }
+
+        @Override
+        public V get(final long timeout, final TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            if (!mDone.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            checkCancelled();
+            return mCall.get();
+        }
+
+        private void checkCancelled() {
+            if (mCancelled.get()) {
+                throw new CancellationException();
+            }
+        }
+
+        /**
+         * Wakes this caller up once the call finished, and passes its outcome to the callback
+         * unless this caller cancelled.
+         *
+         * @param notify false if the call was cancelled, there is no outcome to pass.
+         */
+        void finished(final boolean notify) {
+            mDone.countDown();
+            if (notify && mCallback != null && !mCancelled.get()) {
+                V result = null;
+                Throwable failure = null;
+                try {
+                    result = mCall.get();
+                } catch (ExecutionException executionException) {
+                    failure = executionException.getCause();
+                } catch (InterruptedException interruptedException) {
+                    // Cannot happen, the call is done
+                    Thread.currentThread().interrupt();
+                    failure = interruptedException;
+                }
+                if (failure != null) {
+                    mCallback.onFailure(failure);
+                } else {
+                    mCallback.onResult(result);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Finds the interface the default route goes through, from the kernel routing tables in
+ * <code>/proc/net/route</code> and, if there is no IPv4 default route,
+ * <code>/proc/net/ipv6_route</code>. Of the default routes that are up, not rejecting and not on
+ * the loopback interface, the one with the lowest metric wins.
+ * <p>
+ * The tables are streamed through a small reused buffer, a field at a time, without creating a
+ * String per line or field. The name found is only turned into a String when it differs from the
+ * last one returned. Calls are serialized, the routing tables are read once per
+ * {@link NetworkInterfaceInfo.InterfaceQuery#snapshot()} at most.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+class DefaultRouteDetector {
+
+    /**
+     * IPv4 routing table, tab separated, a header line first.
+     */
+    static final File PROC_NET_ROUTE = new File("/proc/net/route");
+
+    /**
+     * IPv6 routing table, space separated, no header.
+     */
+    static final File PROC_NET_IPV6_ROUTE = new File("/proc/net/ipv6_route");
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    // From linux/route.h
+    private static final int RTF_UP = 0x0001;
+    private static final int RTF_REJECT = 0x0200;
+
+    /**
+     * IFNAMSIZ in linux/if.h, including the terminating zero.
+     */
+    private static final int MAX_NAME_LENGTH = 16;
+
+    private static final int BUFFER_SIZE = 512;
+
+    private static final int RADIX_HEX = 16;
+
+    private static final int RADIX_DECIMAL = 10;
+
+    private static final byte[] LOOPBACK = "lo".getBytes(US_ASCII);
+
+    /**
+     * Columns of /proc/net/route, see fib_route_seq_show() in net/ipv4/fib_trie.c.
+     */
+    private static final Table IPV4 = new Table(0, 1, 7, 3, 6, RADIX_DECIMAL);
+
+    /**
+     * Columns of /proc/net/ipv6_route, see ipv6_route_native_seq_show() in net/ipv6/route.c.
+     */
+    private static final Table IPV6 = new Table(9, 0, 1, 8, 5, RADIX_HEX);
+
+    private final transient File mRoute;
+
+    private final transient File mIpv6Route;
+
+    private final transient byte[] mBuffer = new byte[BUFFER_SIZE];
+
+    /**
+     * Name column of the line being parsed.
+     */
+    private final transient byte[] mLineName = new byte[MAX_NAME_LENGTH];
+
+    private transient int mLineNameLength;
+
+    /**
+     * Name of the best default route found so far in the table being read.
+     */
+    private final transient byte[] mBestName = new byte[MAX_NAME_LENGTH];
+
+    private transient int mBestNameLength;
+
+    private transient long mBestMetric;
+
+    /**
+     * Last name returned, handed out again while the default route stays on that interface.
+     */
+    private transient String mLastResult;
+
+    // State of the line and field being parsed
+    private transient int mColumn;
+    private transient boolean mInField;
+    private transient boolean mAllZeros;
+    private transient boolean mValid;
+    private transient long mValue;
+    private transient boolean mDefault;
+    private transient long mFlags;
+    private transient long mMetric;
+
+    DefaultRouteDetector() {
+        this(PROC_NET_ROUTE, PROC_NET_IPV6_ROUTE);
+    }
+
+    /**
+     * @param route     IPv4 routing table to read, for testing.
+     * @param ipv6Route IPv6 routing table to read, for testing.
+     */
+    DefaultRouteDetector(final File route, final File ipv6Route) {
+        mRoute = route;
+        mIpv6Route = ipv6Route;
+    }
+
+    /**
+     * @return name of the interface of the IPv4 default route, or of the IPv6 one if there is no
+     *         IPv4 default route, null if there is neither or the tables cannot be read.
+     */
+    synchronized String getInterfaceName() {
+        boolean found = read(mRoute, IPV4);
+        if (!found) {
+            found = read(mIpv6Route, IPV6);
+        }
+        String result = null;
+        if (found) {
+            result = mLastResult;
+            if (result == null || !contentEquals(result, mBestName, mBestNameLength)) {
+                result = new String(mBestName, 0, mBestNameLength, US_ASCII);
+                mLastResult = result;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Streams a routing table, keeping the best default route in {@link #mBestName}.
+     *
+     * @return true if a usable default route was found.
+     */
+    private boolean read(final File file, final Table table) {
+        mBestNameLength = 0;
+        mBestMetric = Long.MAX_VALUE;
+        startLine();
+        FileInputStream stream = null;
+        try {
+            stream = new FileInputStream(file);
+            int read = stream.read(mBuffer);
+            while (read >= 0) {
+                for (int i = 0; i < read; i++) {
+                    accept(mBuffer[i], table);
+                }
+                read = stream.read(mBuffer);
+            }
+            // The last line may not end with a new line
+            accept((byte) '\n', table);
+        } catch (IOException ioException) {
+            mBestNameLength = 0;
+        } finally {
+            closeQuietly(stream);
+        }
+        return mBestNameLength > 0;
+    }
+
+    private static void closeQuietly(final FileInputStream stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException ioException) {
+                // Read only file, nothing lost
+                return;
+            }
+        }
+    }
+
+    private void accept(final byte character, final Table table) {
+        if (character == '\n') {
+            endField(table);
+            endLine(table);
+        } else if (character == ' ' || character == '\t') {
+            endField(table);
+        } else {
+            if (!mInField) {
+                mInField = true;
+                mAllZeros = true;
+                mValid = true;
+                mValue = 0;
+            }
+            if (mColumn == table.mNameColumn) {
+                mValid &= mLineNameLength < MAX_NAME_LENGTH - 1;
+                if (mValid) {
+                    mLineName[mLineNameLength++] = character;
+                }
+            } else {
+                final int digit = Character.digit(character, table.radixOf(mColumn));
+                mValid &= digit >= 0;
+                mAllZeros &= digit == 0;
+                mValue = mValue * table.radixOf(mColumn) + digit;
+            }
+        }
+    }
+
+    private void endField(final Table table) {
+        if (mInField) {
+            if (mColumn == table.mDestinationColumn || mColumn == table.mPrefixColumn) {
+                mDefault &= mValid && mAllZeros;
+            } else if (mColumn == table.mFlagsColumn) {
+                mFlags = mValid ? mValue : -1;
+            } else if (mColumn == table.mMetricColumn) {
+                mMetric = mValid ? mValue : -1;
+            } else if (mColumn == table.mNameColumn) {
+                mDefault &= mValid;
+            }
+            mInField = false;
+            mColumn++;
+        }
+    }
+
+    private void endLine(final Table table) {
+        if (mColumn > table.mLastColumn && mDefault && mFlags >= 0 && mMetric >= 0
+                && (mFlags & RTF_UP) != 0 && (mFlags & RTF_REJECT) == 0
+                && mMetric < mBestMetric
+                && !contentEquals(mLineName, mLineNameLength, LOOPBACK)) {
+            System.arraycopy(mLineName, 0, mBestName, 0, mLineNameLength);
+            mBestNameLength = mLineNameLength;
+            mBestMetric = mMetric;
+        }
+        startLine();
+    }
+
+    private void startLine() {
+        mColumn = 0;
+        mInField = false;
+        mDefault = true;
+        mFlags = -1;
+        mMetric = -1;
+        mLineNameLength = 0;
+    }
+
+    private static boolean contentEquals(final byte[] bytes, final int length,
+            final byte[] other) {
+        boolean result = length == other.length;
+        for (int i = 0; i < length && result; i++) {
+            result = bytes[i] == other[i];
+        }
+        return result;
+    }
+
+    private static boolean contentEquals(final String text, final byte[] bytes,
+            final int length) {
+        boolean result = text.length() == length;
+        for (int i = 0; i < length && result; i++) {
+            result = text.charAt(i) == bytes[i];
+        }
+        return result;
+    }
+
+    /**
+     * Where the columns of interest are in one of the routing tables.
+     */
+    private static final class Table {
+
+        private final transient int mNameColumn;
+
+        private final transient int mDestinationColumn;
+
+        /**
+         * Netmask or prefix length, zero for a default route.
+         */
+        private final transient int mPrefixColumn;
+
+        private final transient int mFlagsColumn;
+
+        private final transient int mMetricColumn;
+
+        private final transient int mMetricRadix;
+
+        private final transient int mLastColumn;
+
+        Table(final int nameColumn, final int destinationColumn, final int prefixColumn,
+                final int flagsColumn, final int metricColumn, final int metricRadix) {
+            mNameColumn = nameColumn;
+            mDestinationColumn = destinationColumn;
+            mPrefixColumn = prefixColumn;
+            mFlagsColumn = flagsColumn;
+            mMetricColumn = metricColumn;
+            mMetricRadix = metricRadix;
+            mLastColumn = Math.max(Math.max(nameColumn, destinationColumn),
+                    Math.max(Math.max(prefixColumn, flagsColumn), metricColumn));
+        }
+
+        int radixOf(final int column) {
+            return column == mMetricColumn ? mMetricRadix : RADIX_HEX;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link MacSet} whose table lives in a direct {@link ByteBuffer}, outside the Java heap, so
+ * million entry lists add nothing to garbage collection work. Takes the same 11 to 21 bytes per
+ * address. Not thread safe.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public final class DirectMacSet {
+
+    private final transient MacSet mSet;
+
+    /**
+     * @param expectedSize number of addresses the set is sized for without growing.
+     *
+     * @throws IllegalArgumentException if <i>expectedSize</i> is negative or more than the
+     *                                  largest direct table, 2^27 slots, holds.
+     */
+    public DirectMacSet(final int expectedSize) {
+        mSet = new MacSet(expectedSize, true);
+    }
+
+    /**
+     * See {@link MacSet#add(long)}.
+     */
+    public boolean add(final long macAddress) {
+        return mSet.add(macAddress);
+    }
+
+    /**
+     * See {@link MacSet#addAll(long[], int, int)}.
+     */
+    public int addAll(final long[] macAddresses, final int offset, final int length) {
+        return mSet.addAll(macAddresses, offset, length);
+    }
+
+    /**
+     * See {@link MacSet#contains(long)}.
+     */
+    public boolean contains(final long macAddress) {
+        return mSet.contains(macAddress);
+    }
+
+    /**
+     * See {@link MacSet#contains(MacAddress)}.
+     */
+    public boolean contains(final MacAddress macAddress) {
+        return mSet.contains(macAddress);
+    }
+
+    /**
+     * See {@link MacSet#filter(long[], int, int)}.
+     */
+    public int filter(final long[] macAddresses, final int offset, final int length) {
+        return mSet.filter(macAddresses, offset, length);
+    }
+
+    /**
+     * See {@link MacSet#remove(long)}.
+     */
+    public boolean remove(final long macAddress) {
+        return mSet.remove(macAddress);
+    }
+
+    /**
+     * @return number of addresses in the set.
+     */
+    public int size() {
+        return mSet.size();
+    }
+
+    /**
+     * @return true if the set holds no address.
+     */
+    public boolean isEmpty() {
+        return mSet.isEmpty();
+    }
+
+    /**
+     * Removes every address, keeping the table allocated.
+     */
+    public void clear() {
+        mSet.clear();
+    }
+
+    /**
+     * @return the addresses in the set, in no particular order.
+     */
+    public long[] toArray() {
+        return mSet.toArray();
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the interfaces whose hardware address could not be read, "No such device", or that
+ * have none, such as loopback and tunnels, so
+ * {@link NetworkInterfaceInfo#getNameByMacAddress(MacAddress)} does not pay for the same failed
+ * system call, and its exception, on every lookup. Interfaces are known by name and index, an
+ * interface recreated under the same name is a new one.
+ * <p>
+ * A remembered interface is skipped for a backoff that doubles with every failure in a row, from
+ * the initial one up to the maximum, then read again. A successful read forgets it. Everything is
+ * forgotten as soon as the set of interface names and indices changes, which is cheap to notice
+ * since enumerations carry both. Safe for use from any number of threads.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public final class FailingInterfaceCache {
+
+    private static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 1000;
+
+    private static final long DEFAULT_MAX_BACKOFF_MILLIS = 60000;
+
+    /**
+     * Failures in a row counted at most, the backoff is at its maximum long before.
+     */
+    private static final int MAX_COUNT = Long.SIZE;
+
+    private static final int HASH_MULTIPLIER = 31;
+
+    private final transient ConcurrentMap<String, Failure> mFailures
+            = new ConcurrentHashMap<String, Failure>();
+
+    private final transient AtomicLong mAvoidedReads = new AtomicLong();
+
+    private final transient AtomicLong mClears = new AtomicLong();
+
+    private transient volatile long mInitialBackoffNanos;
+
+    private transient volatile long mMaxBackoffNanos;
+
+    /**
+     * Fingerprint of the interfaces when the first failure was remembered.
+     */
+    private transient volatile long mInterfaceSet;
+
+    /**
+     * Creates a cache backing off from one second up to one minute.
+     */
+    public FailingInterfaceCache() {
+        setBackoff(DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Changes how long failing interfaces are skipped. Already remembered interfaces are
+     * forgotten.
+     *
+     * @param initialBackoff how long an interface is skipped after its first failure, zero to
+     *                       remember nothing.
+     * @param maxBackoff     longest an interface is skipped, however often it failed.
+     * @param unit           unit of both backoffs.
+     *
+     * @throws IllegalArgumentException if a backoff is negative or <i>maxBackoff</i> below
+     *                                  <i>initialBackoff</i>.
+     */
+    public void setBackoff(final long initialBackoff, final long maxBackoff,
+            final TimeUnit unit) {
+        if (initialBackoff < 0 || maxBackoff < initialBackoff) {
+            throw new IllegalArgumentException("Invalid backoff: " + initialBackoff + " to "
+                    + maxBackoff);
+        }
+        mInitialBackoffNanos = unit.toNanos(initialBackoff);
+        mMaxBackoffNanos = unit.toNanos(maxBackoff);
+        mFailures.clear();
+    }
+
+    /**
+     * @return number of interfaces currently remembered as failing.
+     */
+    public int getSize() {
+        return mFailures.size();
+    }
+
+    /**
+     * @return how many hardware address reads were skipped because the interface was remembered
+     *         as failing.
+     */
+    public long getAvoidedReadCount() {
+        return mAvoidedReads.get();
+    }
+
+    /**
+     * @return how many times everything was forgotten because the interfaces changed.
+     */
+    public long getClearCount() {
+        return mClears.get();
+    }
+
+    /**
+     * Forgets every remembered interface.
+     */
+    public void clear() {
+        mFailures.clear();
+    }
+
+    /**
+     * @return true if nothing is remembered, so there is nothing to check.
+     */
+    boolean isEmpty() {
+        return mFailures.isEmpty();
+    }
+
+    /**
+     * Forgets everything if the interfaces changed since the first failure was remembered. Call
+     * with every enumeration.
+     *
+     * @param handles the interfaces just enumerated.
+     */
+    void checkInterfaces(final List<InterfaceHandle> handles) {
+        if (!mFailures.isEmpty() && fingerprint(handles) != mInterfaceSet) {
+            mFailures.clear();
+            mClears.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param name  interface name.
+     * @param index interface index.
+     * @param now   current {@link System#nanoTime()}.
+     *
+     * @return true if the interface failed recently and should not be read now.
+     */
+    boolean isFailing(final String name, final int index, final long now) {
+        boolean result = false;
+        final Failure failure = name != null ? mFailures.get(name) : null;
+        if (failure != null) {
+            if (failure.mIndex != index) {
+                // Another interface under the same name
+                mFailures.remove(name, failure);
+            } else if (now - failure.mRetryTime < 0) {
+                mAvoidedReads.incrementAndGet();
+                result = true;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Remembers an interface whose hardware address could not be read or is missing.
+     *
+     * @param name    interface name.
+     * @param index   interface index.
+     * @param now     current {@link System#nanoTime()}.
+     * @param handles every interface of the enumeration it was found in.
+     */
+    void failed(final String name, final int index, final long now,
+            final List<InterfaceHandle> handles) {
+        final long initialBackoff = mInitialBackoffNanos;
+        if (name != null && initialBackoff > 0) {
+            if (mFailures.isEmpty()) {
+                mInterfaceSet = fingerprint(handles);
+            }
+            final Failure previous = mFailures.get(name);
+            final int count = previous != null && previous.mIndex == index
+                    ? Math.min(previous.mCount + 1, MAX_COUNT) : 1;
+            // Doubled while that cannot overflow, capped anyway long before
+            final int doublings = count - 1;
+            final long backoff = doublings < Long.numberOfLeadingZeros(initialBackoff) - 1
+                    ? Math.min(initialBackoff << doublings, mMaxBackoffNanos) : mMaxBackoffNanos;
+            mFailures.put(name, new Failure(index, count, now + backoff));
+        }
+    }
+
+    /**
+     * Forgets an interface whose hardware address was read.
+     *
+     * @param name interface name.
+     */
+    void succeeded(final String name) {
+        if (name != null && !mFailures.isEmpty()) {
+            mFailures.remove(name);
+        }
+    }
+
+    /**
+     * @return a hash of every interface's name and index, in order.
+     */
+    private static long fingerprint(final List<InterfaceHandle> handles) {
+        long result = handles.size();
+        for (final InterfaceHandle handle : handles) {
+            final String name = handle.getName();
+            result = result * HASH_MULTIPLIER + (name != null ? name.hashCode() : 0);
+            result = result * HASH_MULTIPLIER + handle.getIndex();
+        }
+        return result;
+    }
+
+    /**
+     * Failures in a row of one interface, immutable.
+     */
+    private static final class Failure {
+
+        private final transient int mIndex;
+
+        private final transient int mCount;
+
+        /**
+         * {@link System#nanoTime()} from which the interface is read again.
+         */
+        private final transient long mRetryTime;
+
+        Failure(final int index, final int count, final long retryTime) {
+            mIndex = index;
+            mCount = count;
+            mRetryTime = retryTime;
+        }
+    }
+}
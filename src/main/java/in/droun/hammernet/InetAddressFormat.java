@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+/**
+ * Allocation free text formatting of IP addresses held as primitives, as returned by
+ * {@link NetworkInterfaceInfo#getIp4AddressByName(String)} and
+ * {@link NetworkInterfaceInfo#getIp6AddressByName(String, long[])}. IPv4 addresses are written
+ * in dotted quad form, IPv6 addresses in the canonical RFC 5952 form: lower case, no leading
+ * zeros, the longest run of zero groups shortened to "::", and IPv4 mapped addresses written as
+ * "::ffff:192.0.2.1".
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public final class InetAddressFormat {
+
+    /**
+     * Longest dotted quad, "255.255.255.255".
+     */
+    public static final int MAX_IP4_LENGTH = 15;
+
+    /**
+     * Longest RFC 5952 IPv6 text, eight groups of four digits.
+     */
+    public static final int MAX_IP6_LENGTH = 39;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final int GROUPS = 8;
+
+    private static final int GROUPS_PER_LONG = 4;
+
+    private static final int GROUP_BITS = 16;
+
+    private static final int GROUP_MASK = 0xFFFF;
+
+    private static final int OCTET_MASK = 0xFF;
+
+    private static final int DECIMAL = 10;
+
+    private static final int HUNDRED = 100;
+
+    /**
+     * Upper 32 bits of the low half of an IPv4 mapped IPv6 address, ::ffff:0:0/96.
+     */
+    private static final long IP4_MAPPED = 0xFFFFL;
+
+    /**
+     * Per thread scratch space for the StringBuilder overloads.
+     */
+    private static final ThreadLocal<char[]> SCRATCH = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[MAX_IP6_LENGTH];
+        }
+    };
+
+    private InetAddressFormat() {
+    }
+
+    /**
+     * Converts IPv4 address bytes, as returned by {@link java.net.InetAddress#getAddress()}.
+     *
+     * @param address four bytes, most significant first.
+     *
+     * @return the address as an int, most significant byte first.
+     */
+    static int ip4ToInt(final byte[] address) {
+        int result = 0;
+        for (int i = 0; i < 4; i++) {
+            result = result << Byte.SIZE | address[i] & OCTET_MASK;
+        }
+        return result;
+    }
+
+    /**
+     * Converts eight of the sixteen IPv6 address bytes, as returned by
+     * {@link java.net.InetAddress#getAddress()}.
+     *
+     * @param address sixteen bytes, most significant first.
+     * @param offset  0 for the upper half, 8 for the lower half.
+     *
+     * @return that half of the address as a long.
+     */
+    static long ip6HalfToLong(final byte[] address, final int offset) {
+        long result = 0;
+        for (int i = offset; i < offset + Long.SIZE / Byte.SIZE; i++) {
+            result = result << Byte.SIZE | address[i] & OCTET_MASK;
+        }
+        return result;
+    }
+
+    /**
+     * Writes an IPv4 address in dotted quad form.
+     *
+     * @param address     the address, most significant byte first.
+     * @param destination where to write, needs room for up to {@link #MAX_IP4_LENGTH} chars.
+     * @param offset      index of the first char written.
+     *
+     * @return number of chars written.
+     */
+    public static int formatIp4(final int address, final char[] destination, final int offset) {
+        int position = offset;
+        for (int shift = Integer.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+            final int octet = address >>> shift & OCTET_MASK;
+            if (octet >= HUNDRED) {
+                destination[position++] = (char) ('0' + octet / HUNDRED);
+            }
+            if (octet >= DECIMAL) {
+                destination[position++] = (char) ('0' + octet / DECIMAL % DECIMAL);
+            }
+            destination[position++] = (char) ('0' + octet % DECIMAL);
+            if (shift > 0) {
+                destination[position++] = '.';
+            }
+        }
+        return position - offset;
+    }
+
+    /**
+     * Writes an IPv6 address in RFC 5952 form.
+     *
+     * @param high        upper 64 bits of the address.
+     * @param low         lower 64 bits of the address.
+     * @param destination where to write, needs room for up to {@link #MAX_IP6_LENGTH} chars.
+     * @param offset      index of the first char written.
+     *
+     * @return number of chars written.
+     */
+    public static int formatIp6(final long high, final long low, final char[] destination,
+            final int offset) {
+        int position = offset;
+        if (high == 0 && low >>> Integer.SIZE == IP4_MAPPED) {
+            final String prefix = "::ffff:";
+            prefix.getChars(0, prefix.length(), destination, position);
+            position += prefix.length();
+            position += formatIp4((int) low, destination, position);
+        } else {
+            // Longest run of at least two zero groups, the first one on a tie
+            int runStart = -1;
+            int runLength = 1;
+            for (int i = 0; i < GROUPS;) {
+                int end = i;
+                while (end < GROUPS && group(high, low, end) == 0) {
+                    end++;
+                }
+                if (end - i > runLength) {
+                    runStart = i;
+                    runLength = end - i;
+                }
+                i = end + 1;
+            }
+
+            boolean needsColon = false;
+            for (int i = 0; i < GROUPS; i++) {
+                if (i == runStart) {
+                    destination[position++] = ':';
+                    destination[position++] = ':';
+                    i += runLength - 1;
+                    needsColon = false;
+                } else {
+                    if (needsColon) {
+                        destination[position++] = ':';
+                    }
+                    position += formatGroup(group(high, low, i), destination, position);
+                    needsColon = true;
+                }
+            }
+        }
+        return position - offset;
+    }
+
+    /**
+     * Appends an IPv4 address in dotted quad form.
+     *
+     * @param address     the address, most significant byte first.
+     * @param destination where to append.
+     *
+     * @return <i>destination</i>.
+     */
+    public static StringBuilder appendIp4(final int address, final StringBuilder destination) {
+        final char[] scratch = SCRATCH.get();
+        return destination.append(scratch, 0, formatIp4(address, scratch, 0));
+    }
+
+    /**
+     * Appends an IPv6 address in RFC 5952 form.
+     *
+     * @param high        upper 64 bits of the address.
+     * @param low         lower 64 bits of the address.
+     * @param destination where to append.
+     *
+     * @return <i>destination</i>.
+     */
+    public static StringBuilder appendIp6(final long high, final long low,
+            final StringBuilder destination) {
+        final char[] scratch = SCRATCH.get();
+        return destination.append(scratch, 0, formatIp6(high, low, scratch, 0));
+    }
+
+    private static int group(final long high, final long low, final int index) {
+        final long half = index < GROUPS_PER_LONG ? high : low;
+        final int shift = (GROUPS_PER_LONG - 1 - index % GROUPS_PER_LONG) * GROUP_BITS;
+        return (int) (half >>> shift) & GROUP_MASK;
+    }
+
+    /**
+     * Writes one group in hex without leading zeros.
+     */
+    private static int formatGroup(final int group, final char[] destination, final int offset) {
+        int position = offset;
+        boolean leading = true;
+        for (int shift = GROUP_BITS - 4; shift >= 0; shift -= 4) {
+            final int nibble = group >>> shift & 0x0F;
+            if (nibble != 0 || !leading || shift == 0) {
+                destination[position++] = HEX_DIGITS[nibble];
+                leading = false;
+            }
+        }
+        return position - offset;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.net.InetAddress;
+
+/**
+ * A single difference between two {@link InterfaceSnapshot}s, as reported by
+ * {@link InterfaceWatcher} to its {@link InterfaceChangeListener}s.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public final class InterfaceChangeEvent {
+
+    /**
+     * Kind of change.
+     */
+    public enum Type {
+        /**
+         * A new interface appeared, {@link #getPrevious()} is null.
+         */
+        INTERFACE_ADDED,
+        /**
+         * An interface disappeared, {@link #getCurrent()} is null.
+         */
+        INTERFACE_REMOVED,
+        /**
+         * An address was bound to the interface, see {@link #getAddress()}.
+         */
+        ADDRESS_ADDED,
+        /**
+         * An address was removed from the interface, see {@link #getAddress()}.
+         */
+        ADDRESS_REMOVED,
+        /**
+         * The interface's hardware address changed.
+         */
+        MAC_CHANGED,
+        /**
+         * The interface came up.
+         */
+        LINK_UP,
+        /**
+         * The interface went down.
+         */
+        LINK_DOWN
+    }
+
+    private final transient Type mType;
+
+    private final transient InterfaceRecord mPrevious;
+
+    private final transient InterfaceRecord mCurrent;
+
+    private final transient InetAddress mAddress;
+
+    /**
+     * @param type     kind of change.
+     * @param previous interface as it was, null for {@link Type#INTERFACE_ADDED}.
+     * @param current  interface as it is now, null for {@link Type#INTERFACE_REMOVED}.
+     * @param address  address added or removed, null for the other types.
+     */
+    InterfaceChangeEvent(final Type type, final InterfaceRecord previous,
+            final InterfaceRecord current, final InetAddress address) {
+        mType = type;
+        mPrevious = previous;
+        mCurrent = current;
+        mAddress = address;
+    }
+
+    /**
+     * @return kind of change.
+     */
+    public Type getType() {
+        return mType;
+    }
+
+    /**
+     * @return name of the interface that changed.
+     */
+    public String getName() {
+        return mCurrent != null ? mCurrent.getName() : mPrevious.getName();
+    }
+
+    /**
+     * @return the interface as it was, null for {@link Type#INTERFACE_ADDED}.
+     */
+    public InterfaceRecord getPrevious() {
+        return mPrevious;
+    }
+
+    /**
+     * @return the interface as it is now, null for {@link Type#INTERFACE_REMOVED}.
+     */
+    public InterfaceRecord getCurrent() {
+        return mCurrent;
+    }
+
+    /**
+     * @return the address added or removed, null unless the type is {@link Type#ADDRESS_ADDED}
+     *         or {@link Type#ADDRESS_REMOVED}.
+     */
+    public InetAddress getAddress() {
+        return mAddress;
+    }
+
+    @Override
+    public String toString() {
+        return mType + " " + getName() + (mAddress != null ? " " + mAddress : "");
+    }
+}
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+/**
+ * Receives the interface changes found by an {@link InterfaceWatcher}.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public interface InterfaceChangeListener {
+
+    /**
+     * Called once per change, on the watcher's polling thread. Implementations should return
+     * quickly.
+     *
+     * @param event the change.
+     */
+    void interfaceChanged(InterfaceChangeEvent event);
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable set of conditions an interface must meet to be considered by a lookup, such as
+ * {@link NetworkInterfaceInfo#getNameByMacAddress(MacAddress, InterfaceFilter)}. Conditions are
+ * added by chaining, each call returning a new filter:
+ *
+ * <pre>
+ *{@code
+ *    final InterfaceFilter filter = InterfaceFilter.ANY.withName(Pattern.compile("wlan\\d+"))
+ *            .withFlags(InterfaceRecord.FLAG_UP).withoutFlags(InterfaceRecord.FLAG_LOOPBACK);
+ *}
+ * </pre>
+ * <p>
+ * Conditions are checked in order of cost, stopping at the first one failing: the name, index
+ * and virtual flag an enumeration already carries first, then the addresses, then the up,
+ * loopback and point to point flags, which cost a system call each and are only read if a
+ * condition is on them. An interface rejected that way never has its hardware address read.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public final class InterfaceFilter {
+
+    /**
+     * Accepts every interface.
+     */
+    public static final InterfaceFilter ANY = new InterfaceFilter(null, Integer.MIN_VALUE,
+            Integer.MAX_VALUE, 0, 0, null);
+
+    /**
+     * Accepts the interfaces a Wi-Fi or Ethernet adapter can be: up, neither loopback, virtual
+     * nor point to point.
+     */
+    public static final InterfaceFilter ADAPTERS = ANY.withFlags(InterfaceRecord.FLAG_UP)
+            .withoutFlags(InterfaceRecord.FLAG_LOOPBACK | InterfaceRecord.FLAG_VIRTUAL
+                    | InterfaceRecord.FLAG_POINT_TO_POINT);
+
+    private static final int ALL_FLAGS = InterfaceRecord.FLAG_UP | InterfaceRecord.FLAG_LOOPBACK
+            | InterfaceRecord.FLAG_VIRTUAL | InterfaceRecord.FLAG_POINT_TO_POINT;
+
+    private final transient Pattern mName;
+
+    private final transient int mMinIndex;
+
+    private final transient int mMaxIndex;
+
+    private final transient int mRequiredFlags;
+
+    private final transient int mForbiddenFlags;
+
+    private final transient Class<? extends InetAddress> mAddressFamily;
+
+    private InterfaceFilter(final Pattern name, final int minIndex, final int maxIndex,
+            final int requiredFlags, final int forbiddenFlags,
+            final Class<? extends InetAddress> addressFamily) {
+        mName = name;
+        mMinIndex = minIndex;
+        mMaxIndex = maxIndex;
+        mRequiredFlags = requiredFlags;
+        mForbiddenFlags = forbiddenFlags;
+        mAddressFamily = addressFamily;
+    }
+
+    /**
+     * @param name pattern the whole interface name must match, replacing any earlier one.
+     *
+     * @return a filter also requiring the name to match.
+     */
+    public InterfaceFilter withName(final Pattern name) {
+        return new InterfaceFilter(name, mMinIndex, mMaxIndex, mRequiredFlags, mForbiddenFlags,
+                mAddressFamily);
+    }
+
+    /**
+     * @param minIndex lowest interface index accepted.
+     * @param maxIndex highest interface index accepted.
+     *
+     * @return a filter also requiring the index to be in range. Interfaces of unknown index, -1,
+     *         are only accepted if the range includes it.
+     */
+    public InterfaceFilter withIndexBetween(final int minIndex, final int maxIndex) {
+        return new InterfaceFilter(mName, minIndex, maxIndex, mRequiredFlags, mForbiddenFlags,
+                mAddressFamily);
+    }
+
+    /**
+     * @param flags combination of the {@link InterfaceRecord} FLAG_* bits.
+     *
+     * @return a filter also requiring all of <i>flags</i> to be set.
+     *
+     * @throws IllegalArgumentException if <i>flags</i> has unknown bits, or bits this filter
+     *                                  already requires to be clear.
+     */
+    public InterfaceFilter withFlags(final int flags) {
+        checkFlags(flags, mForbiddenFlags);
+        return new InterfaceFilter(mName, mMinIndex, mMaxIndex, mRequiredFlags | flags,
+                mForbiddenFlags, mAddressFamily);
+    }
+
+    /**
+     * @param flags combination of the {@link InterfaceRecord} FLAG_* bits.
+     *
+     * @return a filter also requiring all of <i>flags</i> to be clear.
+     *
+     * @throws IllegalArgumentException if <i>flags</i> has unknown bits, or bits this filter
+     *                                  already requires to be set.
+     */
+    public InterfaceFilter withoutFlags(final int flags) {
+        checkFlags(flags, mRequiredFlags);
+        return new InterfaceFilter(mName, mMinIndex, mMaxIndex, mRequiredFlags,
+                mForbiddenFlags | flags, mAddressFamily);
+    }
+
+    /**
+     * @param addressFamily {@link java.net.Inet4Address} or {@link java.net.Inet6Address}.
+     *
+     * @return a filter also requiring at least one address of that family, replacing any earlier
+     *         family.
+     */
+    public InterfaceFilter withAddress(final Class<? extends InetAddress> addressFamily) {
+        return new InterfaceFilter(mName, mMinIndex, mMaxIndex, mRequiredFlags, mForbiddenFlags,
+                addressFamily);
+    }
+
+    /**
+     * @param record interface from a snapshot.
+     *
+     * @return true if the interface meets every condition.
+     */
+    public boolean accepts(final InterfaceRecord record) {
+        return acceptsCheap(record.getName(), record.getIndex(), record.isVirtual())
+                && (mAddressFamily == null || record.getFirstAddress(mAddressFamily) != null)
+                && ((record.getFlags() & mRequiredFlags) == mRequiredFlags)
+                && ((record.getFlags() & mForbiddenFlags) == 0);
+    }
+
+    /**
+     * Checks the conditions on a live interface in order of cost, reading only the attributes
+     * needed.
+     *
+     * @param handle interface being enumerated.
+     *
+     * @return true if the interface meets every condition.
+     *
+     * @throws SocketException if a flag could not be read, typically because the interface went
+     *                         away.
+     */
+    boolean accepts(final InterfaceHandle handle) throws SocketException {
+        boolean result = acceptsCheap(handle.getName(), handle.getIndex(), handle.isVirtual())
+                && (mAddressFamily == null || hasAddress(handle));
+        if (result && isConstrained(InterfaceRecord.FLAG_UP)) {
+            result = accepts(InterfaceRecord.FLAG_UP, handle.isUp());
+        }
+        if (result && isConstrained(InterfaceRecord.FLAG_LOOPBACK)) {
+            result = accepts(InterfaceRecord.FLAG_LOOPBACK, handle.isLoopback());
+        }
+        if (result && isConstrained(InterfaceRecord.FLAG_POINT_TO_POINT)) {
+            result = accepts(InterfaceRecord.FLAG_POINT_TO_POINT, handle.isPointToPoint());
+        }
+        return result;
+    }
+
+    /**
+     * @return true if this filter accepts every interface, so there is nothing to check.
+     */
+    boolean isAny() {
+        return mName == null && mMinIndex == Integer.MIN_VALUE && mMaxIndex == Integer.MAX_VALUE
+                && mRequiredFlags == 0 && mForbiddenFlags == 0 && mAddressFamily == null;
+    }
+
+    /**
+     * Conditions on what an enumeration already carries, free to check.
+     */
+    private boolean acceptsCheap(final String name, final int index, final boolean virtual) {
+        return index >= mMinIndex && index <= mMaxIndex
+                && accepts(InterfaceRecord.FLAG_VIRTUAL, virtual)
+                && (mName == null || mName.matcher(name).matches());
+    }
+
+    private boolean hasAddress(final InterfaceHandle handle) {
+        boolean result = false;
+        for (final InetAddress address : handle.getInetAddresses()) {
+            if (mAddressFamily.isInstance(address)) {
+                result = true;
+                break;
+            }
+        }
+        return result;
+    }
+
+    private boolean isConstrained(final int flag) {
+        return ((mRequiredFlags | mForbiddenFlags) & flag) != 0;
+    }
+
+    /**
+     * @return true if <i>flag</i> being <i>set</i> or not meets the conditions on it.
+     */
+    private boolean accepts(final int flag, final boolean set) {
+        return set ? (mForbiddenFlags & flag) == 0 : (mRequiredFlags & flag) == 0;
+    }
+
+    private static void checkFlags(final int flags, final int opposite) {
+        if ((flags & ~ALL_FLAGS) != 0) {
+            throw new IllegalArgumentException("Unknown flags: " + Integer.toHexString(flags));
+        }
+        if ((flags & opposite) != 0) {
+            throw new IllegalArgumentException("Flags both required and forbidden: "
+                    + Integer.toHexString(flags & opposite));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "InterfaceFilter [name=" + mName + ", index=" + mMinIndex + ".." + mMaxIndex
+                + ", flags=" + Integer.toHexString(mRequiredFlags) + ", notFlags="
+                + Integer.toHexString(mForbiddenFlags) + ", address="
+                + (mAddressFamily != null ? mAddressFamily.getSimpleName() : null) + "]";
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.util.List;
+
+/**
+ * One network interface as seen by an {@link NetworkInterfaceInfo.InterfaceQuery} backend. This
+ * is what lets backends other than {@link java.net.NetworkInterface} plug in: attributes are only
+ * read when asked for, so callers only pay for what they use.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+abstract class InterfaceHandle {
+
+    /**
+     * @return the interface name, cheap.
+     */
+    abstract String getName();
+
+    /**
+     * @return the interface index, -1 if unknown, cheap.
+     */
+    abstract int getIndex();
+
+    /**
+     * @return true if this is a virtual (sub) interface, cheap.
+     */
+    abstract boolean isVirtual();
+
+    /**
+     * @return the addresses bound to the interface.
+     */
+    abstract List<InetAddress> getInetAddresses();
+
+    /**
+     * @return the MAC address in the lower 48 bits, or {@link MacAddressParser#INVALID} if the
+     *         interface has no six byte hardware address.
+     *
+     * @throws SocketException if the hardware address cannot be read.
+     */
+    abstract long getMacAddress() throws SocketException;
+
+    /**
+     * @return the maximum transmission unit.
+     *
+     * @throws SocketException if the MTU cannot be read.
+     */
+    abstract int getMtu() throws SocketException;
+
+    /**
+     * @return true if the interface is up and running.
+     *
+     * @throws SocketException if the flags cannot be read.
+     */
+    abstract boolean isUp() throws SocketException;
+
+    /**
+     * @return true if this is a loopback interface.
+     *
+     * @throws SocketException if the flags cannot be read.
+     */
+    abstract boolean isLoopback() throws SocketException;
+
+    /**
+     * @return true if this is a point to point interface.
+     *
+     * @throws SocketException if the flags cannot be read.
+     */
+    abstract boolean isPointToPoint() throws SocketException;
+
+    /**
+     * Reads every attribute into an immutable {@link InterfaceRecord}. Attributes that cannot be
+     * read are left unknown, the way {@link NetworkInterfaceInfo#getNameByMacAddress} skips
+     * interfaces whose hardware address throws "No such device".
+     *
+     * @return record of this interface.
+     */
+    InterfaceRecord toRecord() {
+        long macAddress;
+        try {
+            macAddress = getMacAddress();
+        } catch (SocketException socketException) {
+            macAddress = MacAddressParser.INVALID;
+        }
+
+        int mtu;
+        try {
+            mtu = getMtu();
+        } catch (SocketException socketException) {
+            mtu = -1;
+        }
+
+        int flags = isVirtual() ? InterfaceRecord.FLAG_VIRTUAL : 0;
+        try {
+            flags |= isUp() ? InterfaceRecord.FLAG_UP : 0;
+            flags |= isLoopback() ? InterfaceRecord.FLAG_LOOPBACK : 0;
+            flags |= isPointToPoint() ? InterfaceRecord.FLAG_POINT_TO_POINT : 0;
+        } catch (SocketException socketException) {
+            // Interface went away half way through, it is certainly not up anymore
+            flags &= ~InterfaceRecord.FLAG_UP;
+        }
+
+        final List<InetAddress> addresses = getInetAddresses();
+        return new InterfaceRecord(getName(), getIndex(), macAddress, mtu, flags,
+                addresses.toArray(new InetAddress[addresses.size()]));
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable copy of what is known about a single network interface at the time an
+ * {@link InterfaceSnapshot} was taken.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public final class InterfaceRecord {
+
+    /**
+     * {@link #getFlags()} bit, see {@link java.net.NetworkInterface#isUp()}.
+     */
+    public static final int FLAG_UP = 1;
+
+    /**
+     * {@link #getFlags()} bit, see {@link java.net.NetworkInterface#isLoopback()}.
+     */
+    public static final int FLAG_LOOPBACK = 1 << 1;
+
+    /**
+     * {@link #getFlags()} bit, see {@link java.net.NetworkInterface#isVirtual()}.
+     */
+    public static final int FLAG_VIRTUAL = 1 << 2;
+
+    /**
+     * {@link #getFlags()} bit, see {@link java.net.NetworkInterface#isPointToPoint()}.
+     */
+    public static final int FLAG_POINT_TO_POINT = 1 << 3;
+
+    private final transient String mName;
+
+    private final transient int mIndex;
+
+    private final transient long mMacAddress;
+
+    private final transient int mMtu;
+
+    private final transient int mFlags;
+
+    private final transient List<InetAddress> mInetAddresses;
+
+    /**
+     * First IPv4 address as an int, {@link NetworkInterfaceInfo#NO_IP4_ADDRESS} if none.
+     */
+    private final transient int mIp4Address;
+
+    /**
+     * First IPv6 address as two longs, only meaningful if {@link #mHasIp6Address}.
+     */
+    private final transient long mIp6High;
+
+    private final transient long mIp6Low;
+
+    private final transient boolean mHasIp6Address;
+
+    /**
+     * @param name          interface name.
+     * @param index         interface index, -1 if unknown.
+     * @param macAddress    MAC address in the lower 48 bits, or {@link MacAddressParser#INVALID} if
+     *                      the interface has none or it could not be read.
+     * @param mtu           maximum transmission unit, -1 if unknown.
+     * @param flags         combination of the FLAG_* bits.
+     * @param inetAddresses addresses bound to the interface, copied.
+     */
+    InterfaceRecord(final String name, final int index, final long macAddress, final int mtu,
+            final int flags, final InetAddress... inetAddresses) {
+        mName = name;
+        mIndex = index;
+        mMacAddress = macAddress;
+        mMtu = mtu;
+        mFlags = flags;
+        mInetAddresses = Collections.unmodifiableList(Arrays.asList(inetAddresses.clone()));
+
+        final InetAddress ip4Address = getFirstAddress(Inet4Address.class);
+        mIp4Address = ip4Address != null ? InetAddressFormat.ip4ToInt(ip4Address.getAddress())
+                : NetworkInterfaceInfo.NO_IP4_ADDRESS;
+        final InetAddress ip6Address = getFirstAddress(Inet6Address.class);
+        mHasIp6Address = ip6Address != null;
+        final byte[] ip6Bytes = mHasIp6Address ? ip6Address.getAddress() : null;
+        mIp6High = mHasIp6Address ? InetAddressFormat.ip6HalfToLong(ip6Bytes, 0) : 0;
+        mIp6Low = mHasIp6Address ? InetAddressFormat.ip6HalfToLong(ip6Bytes, 8) : 0;
+    }
+
+    /**
+     * @return the interface name.
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * @return the interface index, or -1 if unknown.
+     */
+    public int getIndex() {
+        return mIndex;
+    }
+
+    /**
+     * @return true if a six byte hardware address was read for the interface.
+     */
+    public boolean hasMacAddress() {
+        return mMacAddress != MacAddressParser.INVALID;
+    }
+
+    /**
+     * @return the MAC address in the lower 48 bits, or {@link MacAddressParser#INVALID}.
+     */
+    public long getMacAddressValue() {
+        return mMacAddress;
+    }
+
+    /**
+     * @return the MAC address, or null if there is none.
+     */
+    public MacAddress getMacAddress() {
+        return hasMacAddress() ? MacAddress.valueOf(mMacAddress) : null;
+    }
+
+    /**
+     * @return the maximum transmission unit, or -1 if it could not be read.
+     */
+    public int getMtu() {
+        return mMtu;
+    }
+
+    /**
+     * @return combination of the FLAG_* bits.
+     */
+    public int getFlags() {
+        return mFlags;
+    }
+
+    /**
+     * @return true if the interface is up and running.
+     */
+    public boolean isUp() {
+        return (mFlags & FLAG_UP) != 0;
+    }
+
+    /**
+     * @return true if the interface is a loopback interface.
+     */
+    public boolean isLoopback() {
+        return (mFlags & FLAG_LOOPBACK) != 0;
+    }
+
+    /**
+     * @return true if the interface is a virtual (sub) interface.
+     */
+    public boolean isVirtual() {
+        return (mFlags & FLAG_VIRTUAL) != 0;
+    }
+
+    /**
+     * @return true if the interface is a point to point interface, such as a PPP link or tunnel.
+     */
+    public boolean isPointToPoint() {
+        return (mFlags & FLAG_POINT_TO_POINT) != 0;
+    }
+
+    /**
+     * @return unmodifiable list of the addresses bound to the interface.
+     */
+    public List<InetAddress> getInetAddresses() {
+        return mInetAddresses;
+    }
+
+    /**
+     * Returns the first address of the given type, in the same order
+     * {@link java.net.NetworkInterface#getInetAddresses()} returned them.
+     *
+     * @param clazz type of address to return, such as {@link java.net.Inet4Address}.
+     *
+     * @return the first matching address, or null if none match or <i>clazz</i> is null.
+     */
+    public InetAddress getFirstAddress(final Class<?> clazz) {
+        InetAddress result = null;
+        if (clazz != null) {
+            for (final InetAddress current : mInetAddresses) {
+                if (clazz.isInstance(current)) {
+                    result = current;
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the first IPv4 address as an int, most significant byte first, or
+     *         {@link NetworkInterfaceInfo#NO_IP4_ADDRESS}.
+     */
+    public int getIp4Address() {
+        return mIp4Address;
+    }
+
+    /**
+     * Writes the first IPv6 address as two longs, without allocating.
+     *
+     * @param destination receives the upper 64 bits at <i>offset</i> and the lower 64 bits after.
+     * @param offset      index of the upper half in <i>destination</i>.
+     *
+     * @return false, leaving <i>destination</i> untouched, if the interface has no IPv6 address.
+     */
+    public boolean getIp6Address(final long[] destination, final int offset) {
+        if (mHasIp6Address) {
+            destination[offset] = mIp6High;
+            destination[offset + 1] = mIp6Low;
+        }
+        return mHasIp6Address;
+    }
+
+    @Override
+    public String toString() {
+        return mName + "[index=" + mIndex + ", mac="
+                + (hasMacAddress() ? MacAddress.valueOf(mMacAddress) : null)
+                + ", mtu=" + mMtu + ", flags=" + mFlags + ", addresses=" + mInetAddresses + "]";
+    }
+}
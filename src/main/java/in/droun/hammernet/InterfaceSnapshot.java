@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable view of every network interface on the device, taken in a single enumeration. Safe to
+ * share between threads.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public final class InterfaceSnapshot {
+
+    private final transient List<InterfaceRecord> mRecords;
+
+    private final transient Map<String, InterfaceRecord> mByName;
+
+    private final transient long[] mMacAddresses;
+
+    private final transient long mCaptureTime;
+
+    private final transient String mDefaultRouteInterfaceName;
+
+    /**
+     * MAC address index, built on first use or derived from the previous snapshot's index. Only
+     * ever replaced by an equivalent index, so racing builds are harmless.
+     */
+    private transient volatile MacIndex mMacIndex;
+
+    /**
+     * @param captureTime {@link System#nanoTime()} at which the snapshot was taken.
+     * @param records     the interfaces, copied.
+     */
+    InterfaceSnapshot(final long captureTime, final InterfaceRecord... records) {
+        this(captureTime, null, records);
+    }
+
+    /**
+     * @param captureTime               {@link System#nanoTime()} at which the snapshot was taken.
+     * @param defaultRouteInterfaceName interface of the default route, null if unknown.
+     * @param records                   the interfaces, copied.
+     */
+    InterfaceSnapshot(final long captureTime, final String defaultRouteInterfaceName,
+            final InterfaceRecord... records) {
+        mCaptureTime = captureTime;
+        mDefaultRouteInterfaceName = defaultRouteInterfaceName;
+        mRecords = Collections.unmodifiableList(Arrays.asList(records.clone()));
+        mByName = new HashMap<String, InterfaceRecord>(records.length * 2);
+        mMacAddresses = new long[records.length];
+        for (int i = 0; i < records.length; i++) {
+            mMacAddresses[i] = records[i].getMacAddressValue();
+        }
+        for (final InterfaceRecord record : records) {
+            if (!mByName.containsKey(record.getName())) {
+                mByName.put(record.getName(), record);
+            }
+        }
+    }
+
+    /**
+     * @return {@link System#nanoTime()} at which the snapshot was taken.
+     */
+    public long getCaptureTime() {
+        return mCaptureTime;
+    }
+
+    /**
+     * @return name of the interface the default route went through when the snapshot was taken,
+     *         or null if there was none or it could not be found.
+     */
+    public String getDefaultRouteInterfaceName() {
+        return mDefaultRouteInterfaceName;
+    }
+
+    /**
+     * @return unmodifiable list of interfaces, in enumeration order.
+     */
+    public List<InterfaceRecord> getRecords() {
+        return mRecords;
+    }
+
+    /**
+     * @return number of interfaces.
+     */
+    public int size() {
+        return mRecords.size();
+    }
+
+    /**
+     * @param name interface name.
+     *
+     * @return the interface, or null if there is no interface with that name.
+     */
+    public InterfaceRecord getByName(final String name) {
+        return name != null ? mByName.get(name) : null;
+    }
+
+    /**
+     * Looks up an interface by MAC address through a primitive hash index, without touching the
+     * other interfaces.
+     *
+     * @param macAddress MAC address in the lower 48 bits.
+     *
+     * @return the first interface with that MAC address, or null if there is none.
+     */
+    public InterfaceRecord getByMacAddress(final long macAddress) {
+        final int position = macIndex().get(macAddress);
+        return position != MacIndex.NOT_FOUND ? mRecords.get(position) : null;
+    }
+
+    private MacIndex macIndex() {
+        MacIndex result = mMacIndex;
+        if (result == null) {
+            result = MacIndex.build(mMacAddresses);
+            mMacIndex = result;
+        }
+        return result;
+    }
+
+    /**
+     * Builds this snapshot's MAC address index from the index of an older snapshot, taking it
+     * over as is if no MAC address changed. Meant to be called before the snapshot is published.
+     *
+     * @param previous older snapshot of the same interfaces, may be null.
+     */
+    void inheritMacIndex(final InterfaceSnapshot previous) {
+        final MacIndex previousIndex = previous != null ? previous.mMacIndex : null;
+        if (mMacIndex == null && previousIndex != null) {
+            mMacIndex = previousIndex.update(previous.mMacAddresses, mMacAddresses);
+        }
+    }
+}
@@ -0,0 +1,480 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import in.droun.hammernet.NetInfoMetrics.Operation;
+import in.droun.hammernet.NetworkInterfaceInfo.InterfaceQuery;
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the latest {@link InterfaceSnapshot} and only enumerates the interfaces again once it is
+ * older than the configured time to live, or after {@link #invalidate()}.
+ * <p>
+ * Pass an instance to {@link NetworkInterfaceInfo#NetworkInterfaceInfo(InterfaceSnapshotCache)}
+ * to have lookups served from memory:
+ *
+ * <pre>
+ *{@code
+ *    final NetworkInterfaceInfo interfaceInfo = new NetworkInterfaceInfo(
+ *            new InterfaceSnapshotCache(30, TimeUnit.SECONDS));
+ *}
+ * </pre>
+ *
+ * Any number of threads may share an instance. Readers get the current snapshot, which is
+ * immutable, through a single volatile read and never wait on a refresh: while one thread
+ * enumerates the interfaces, the others keep being served the expired snapshot. Threads that find
+ * the cache expired at the same time collapse into that single enumeration. Only when there is no
+ * snapshot to serve at all, at first or after {@link #invalidate()}, do readers wait for it.
+ * <p>
+ * To avoid even that first wait after a restart, have the cache save its snapshots and start
+ * from the last one saved, while the interfaces are enumerated in the background:
+ *
+ * <pre>
+ *{@code
+ *    final InterfaceSnapshotCache cache = new InterfaceSnapshotCache(30, TimeUnit.SECONDS);
+ *    cache.warmStart(new File(context.getCacheDir(), "interfaces.bin"), 1, TimeUnit.DAYS,
+ *            executor);
+ *}
+ * </pre>
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public class InterfaceSnapshotCache {
+
+    /**
+     * Seconds the shared save thread lingers once idle.
+     */
+    private static final long SAVE_THREAD_KEEP_ALIVE = 30;
+
+    private final transient InterfaceQuery mInterfaceQuery;
+
+    private final transient long mTtlNanos;
+
+    private final transient NetInfoMetrics mMetrics;
+
+    /**
+     * Snapshot served to readers, null at first and after {@link #invalidate()}.
+     */
+    private final transient AtomicReference<InterfaceSnapshot> mSnapshot
+            = new AtomicReference<InterfaceSnapshot>();
+
+    /**
+     * Enumeration under way, null if none.
+     */
+    private final transient AtomicReference<FutureTask<InterfaceSnapshot>> mRefresh
+            = new AtomicReference<FutureTask<InterfaceSnapshot>>();
+
+    /**
+     * Number of {@link #invalidate()} calls, so a refresh that raced one does not stay published.
+     */
+    private final transient AtomicInteger mInvalidations = new AtomicInteger();
+
+    /**
+     * Last snapshot taken, kept across {@link #invalidate()} so its MAC address index can be
+     * reused by the next one. Only touched by the single refresh under way.
+     */
+    private transient volatile InterfaceSnapshot mPrevious;
+
+    /**
+     * Where every snapshot taken is saved, null if nowhere.
+     */
+    private transient volatile File mSnapshotFile;
+
+    /**
+     * Runs the saves, off the thread that took the snapshot.
+     */
+    private transient volatile Executor mSaveExecutor;
+
+    /**
+     * Latest snapshot not saved yet, older ones are skipped.
+     */
+    private final transient AtomicReference<InterfaceSnapshot> mPendingSave
+            = new AtomicReference<InterfaceSnapshot>();
+
+    /**
+     * Set while a save task is scheduled or running, so there is at most one.
+     */
+    private final transient AtomicBoolean mSaving = new AtomicBoolean();
+
+    private final transient Runnable mSaver = new Runnable() {
+        @Override
+        public void run() {
+            saveAll();
+        }
+    };
+
+    /**
+     * Lazily created executor saving snapshots for {@link #setSnapshotFile(File)}.
+     */
+    private static final class SaveExecutorHolder {
+        static final Executor INSTANCE = createSaveExecutor();
+    }
+
+    private final transient Callable<InterfaceSnapshot> mSnapshotTaker
+            = new Callable<InterfaceSnapshot>() {
+                @Override
+                public InterfaceSnapshot call() throws SocketException {
+                    return takeSnapshot();
+                }
+            };
+
+    /**
+     * @param ttl  how long a snapshot is served before the interfaces are enumerated again. Zero
+     *             means every call enumerates.
+     * @param unit unit of <i>ttl</i>.
+     */
+    public InterfaceSnapshotCache(final long ttl, final TimeUnit unit) {
+        this(ttl, unit, NetInfoMetrics.NONE);
+    }
+
+    /**
+     * @param ttl     how long a snapshot is served before the interfaces are enumerated again.
+     * @param unit    unit of <i>ttl</i>.
+     * @param metrics sink for hits, misses and snapshot latencies, also used by the
+     *                {@link NetworkInterfaceInfo} served from this cache.
+     */
+    public InterfaceSnapshotCache(final long ttl, final TimeUnit unit,
+            final NetInfoMetrics metrics) {
+        this(InterfaceQuery.createDefault(), ttl, unit, metrics);
+    }
+
+    /**
+     * This constructor is only intended to aid with unit testing.
+     *
+     * @param interfaceQuery instance of {@link InterfaceQuery} to take snapshots with.
+     * @param ttl            how long a snapshot is served.
+     * @param unit           unit of <i>ttl</i>.
+     */
+    protected InterfaceSnapshotCache(final InterfaceQuery interfaceQuery, final long ttl,
+            final TimeUnit unit) {
+        this(interfaceQuery, ttl, unit, NetInfoMetrics.NONE);
+    }
+
+    /**
+     * This constructor is only intended to aid with unit testing.
+     *
+     * @param interfaceQuery instance of {@link InterfaceQuery} to take snapshots with.
+     * @param ttl            how long a snapshot is served.
+     * @param unit           unit of <i>ttl</i>.
+     * @param metrics        sink for hits, misses and snapshot latencies.
+     */
+    protected InterfaceSnapshotCache(final InterfaceQuery interfaceQuery, final long ttl,
+            final TimeUnit unit, final NetInfoMetrics metrics) {
+        if (ttl < 0) {
+            throw new IllegalArgumentException("Negative TTL: " + ttl);
+        }
+        mInterfaceQuery = interfaceQuery;
+        mTtlNanos = unit.toNanos(ttl);
+        mMetrics = metrics;
+    }
+
+    /**
+     * Returns the current snapshot, taking a new one first if there is none or it has expired.
+     * If another thread is already taking one, the expired snapshot is returned instead of
+     * waiting, or, if there is none, that thread's result.
+     *
+     * @return the current snapshot, never null.
+     *
+     * @throws SocketException if the interfaces could not be enumerated.
+     */
+    public InterfaceSnapshot get() throws SocketException {
+        InterfaceSnapshot result = mSnapshot.get();
+        if (result != null && !isExpired(result)) {
+            mMetrics.cacheHit();
+        } else {
+            result = refresh(result);
+        }
+        return result;
+    }
+
+    /**
+     * Serves the snapshot saved in <i>file</i>, if it is no older than <i>maxAge</i>, until a
+     * fresh one replaces it, and has <i>executor</i> enumerate the interfaces right away to do
+     * so. Snapshots taken from now on are saved to <i>file</i> by <i>executor</i> too, see
+     * {@link #setSnapshotFile(File, Executor)}. Meant to be called once, before the cache is used.
+     *
+     * @param file     file the snapshots are saved to.
+     * @param maxAge   oldest saved snapshot worth serving.
+     * @param unit     unit of <i>maxAge</i>.
+     * @param executor runs the enumeration replacing the saved snapshot, and the saves.
+     *
+     * @return true if the saved snapshot is served, false if there was none, it was too old or
+     *         could not be read, and the interfaces will be enumerated on first use as usual.
+     */
+    public boolean warmStart(final File file, final long maxAge, final TimeUnit unit,
+            final Executor executor) {
+        setSnapshotFile(file, executor);
+        final InterfaceSnapshot saved = readSaved(file, maxAge, unit);
+        final boolean result = saved != null && mSnapshot.compareAndSet(null, saved);
+        if (result) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        refresh(saved);
+                    } catch (SocketException socketException) {
+                        // Readers keep the saved snapshot until one of them retries
+                        return;
+                    }
+                }
+            });
+        }
+        return result;
+    }
+
+    private static InterfaceSnapshot readSaved(final File file, final long maxAge,
+            final TimeUnit unit) {
+        InterfaceSnapshot result;
+        try {
+            result = InterfaceSnapshotFile.read(file, maxAge, unit);
+        } catch (IOException ioException) {
+            // Corrupt or from another version, it will be overwritten by the next snapshot
+            result = null;
+        }
+        return result;
+    }
+
+    /**
+     * Saves every snapshot taken from now on to <i>file</i>, on a shared background thread, see
+     * {@link #setSnapshotFile(File, Executor)}.
+     *
+     * @param file where to save snapshots, null to stop saving them.
+     */
+    public void setSnapshotFile(final File file) {
+        setSnapshotFile(file, SaveExecutorHolder.INSTANCE);
+    }
+
+    /**
+     * Saves every snapshot taken from now on to <i>file</i> through
+     * {@link InterfaceSnapshotFile#write(InterfaceSnapshot, File)}: the file is only rewritten
+     * when the interfaces changed. Saves run on <i>executor</i>, never on the thread that took
+     * the snapshot, so no lookup waits for the disk. Snapshots taken while a save is under way
+     * are coalesced, only the latest is saved next. Failing to save does not fail the lookup.
+     *
+     * @param file     where to save snapshots, null to stop saving them.
+     * @param executor runs the saves.
+     */
+    public void setSnapshotFile(final File file, final Executor executor) {
+        mSaveExecutor = executor;
+        mSnapshotFile = file;
+    }
+
+    /**
+     * Drops the current snapshot, the next {@link #get()} enumerates the interfaces again.
+     */
+    public void invalidate() {
+        mInvalidations.incrementAndGet();
+        mSnapshot.set(null);
+    }
+
+    private boolean isExpired(final InterfaceSnapshot snapshot) {
+        return System.nanoTime() - snapshot.getCaptureTime() >= mTtlNanos;
+    }
+
+    /**
+     * Takes a new snapshot, unless another thread is already taking one.
+     *
+     * @param stale expired snapshot to serve if another thread is taking one, null to wait for
+     *              that thread instead.
+     */
+    private InterfaceSnapshot refresh(final InterfaceSnapshot stale) throws SocketException {
+        InterfaceSnapshot result = null;
+        while (result == null) {
+            final FutureTask<InterfaceSnapshot> running = mRefresh.get();
+            if (running != null) {
+                if (stale != null) {
+                    mMetrics.cacheHit();
+                    result = stale;
+                } else {
+                    result = await(running);
+                }
+            } else {
+                final InterfaceSnapshot current = mSnapshot.get();
+                if (current != null && current != stale && !isExpired(current)) {
+                    // Refreshed by another thread since this one looked
+                    mMetrics.cacheHit();
+                    result = current;
+                } else {
+                    final FutureTask<InterfaceSnapshot> refresh
+                            = new FutureTask<InterfaceSnapshot>(mSnapshotTaker);
+                    if (mRefresh.compareAndSet(null, refresh)) {
+                        mMetrics.cacheMiss();
+                        try {
+                            refresh.run();
+                        } finally {
+                            mRefresh.set(null);
+                        }
+                        result = await(refresh);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Enumerates the interfaces and publishes the result, run by one thread at a time.
+     */
+    private InterfaceSnapshot takeSnapshot() throws SocketException {
+        final int invalidations = mInvalidations.get();
+        final long startTime = mMetrics != NetInfoMetrics.NONE ? System.nanoTime() : 0;
+        final InterfaceSnapshot result;
+        try {
+            result = mInterfaceQuery.snapshot();
+        } finally {
+            if (mMetrics != NetInfoMetrics.NONE) {
+                mMetrics.callCompleted(Operation.SNAPSHOT, System.nanoTime() - startTime);
+            }
+        }
+        result.inheritMacIndex(mPrevious);
+        mPrevious = result;
+        mSnapshot.set(result);
+        if (mInvalidations.get() != invalidations) {
+            // Invalidated while enumerating, the result may predate the change
+            mSnapshot.compareAndSet(result, null);
+        }
+        save(result);
+        return result;
+    }
+
+    /**
+     * Hands a snapshot to the save executor, unless a save task is already there to pick it up.
+     */
+    private void save(final InterfaceSnapshot snapshot) {
+        if (mSnapshotFile != null) {
+            mPendingSave.set(snapshot);
+            if (mSaving.compareAndSet(false, true)) {
+                try {
+                    mSaveExecutor.execute(mSaver);
+                } catch (RejectedExecutionException rejectedExecutionException) {
+                    // Saving is only an optimization, the next snapshot tries again
+                    mSaving.set(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves pending snapshots until there are none left, run by one save task at a time.
+     */
+    private void saveAll() {
+        boolean saving = true;
+        while (saving) {
+            final InterfaceSnapshot snapshot = mPendingSave.getAndSet(null);
+            final File file = mSnapshotFile;
+            if (snapshot != null && file != null) {
+                try {
+                    InterfaceSnapshotFile.write(snapshot, file);
+                } catch (IOException ioException) {
+                    // The interfaces are still served from memory, saving is only an
+                    // optimization
+                    continue;
+                }
+            } else if (snapshot == null) {
+                mSaving.set(false);
+                // A snapshot handed over just before the flag was cleared is saved here
+                saving = mPendingSave.get() != null && mSaving.compareAndSet(false, true);
+            }
+        }
+    }
+
+    private static Executor createSaveExecutor() {
+        final ThreadPoolExecutor result = new ThreadPoolExecutor(1, 1, SAVE_THREAD_KEEP_ALIVE,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(runnable, "hammernet-snapshot-saver");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        result.allowCoreThreadTimeOut(true);
+        return result;
+    }
+
+    /**
+     * Waits for a refresh, even if interrupted, keeping the interrupt for the caller.
+     */
+    private static InterfaceSnapshot await(final FutureTask<InterfaceSnapshot> refresh)
+            throws SocketException {
+        InterfaceSnapshot result = null;
+        boolean interrupted = false;
+        try {
+            boolean finished = false;
+            while (!finished) {
+                try {
+                    result = refresh.get();
+                    finished = true;
+                } catch (InterruptedException interruptedException) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException executionException) {
+            throw CoalescingExecutor.unwrap(executionException);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Takes snapshots reading the interfaces on several threads, see
+     * {@link NetworkInterfaceInfo#setParallelCollection(Executor, int, int)}.
+     *
+     * @param executor        runs up to <i>parallelism</i> - 1 tasks per snapshot, or null to
+     *                        read serially again.
+     * @param parallelism     most threads reading one snapshot, the calling one included.
+     * @param serialThreshold fewest interfaces read in parallel.
+     *
+     * @throws IllegalArgumentException if <i>parallelism</i> is below one or
+     *                                  <i>serialThreshold</i> negative.
+     */
+    public void setParallelCollection(final Executor executor, final int parallelism,
+            final int serialThreshold) {
+        mInterfaceQuery.setParallelCollection(executor, parallelism, serialThreshold);
+    }
+
+    /**
+     * @param unit unit to return the time to live in.
+     *
+     * @return the configured time to live.
+     */
+    public long getTtl(final TimeUnit unit) {
+        return unit.convert(mTtlNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return where hits, misses and snapshot latencies are reported.
+     */
+    protected NetInfoMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * @return the {@link InterfaceQuery} snapshots are taken with.
+     */
+    protected InterfaceQuery getInterfaceQuery() {
+        return mInterfaceQuery;
+    }
+}
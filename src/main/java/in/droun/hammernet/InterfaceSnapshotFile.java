@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Compact, versioned, binary copy of an {@link InterfaceSnapshot} on disk, so a process can serve
+ * the last known interfaces as soon as it starts, see
+ * {@link InterfaceSnapshotCache#warmStart(File, long, TimeUnit, java.util.concurrent.Executor)}.
+ * <p>
+ * A file is a header, magic "HNIS", version, payload length and the CRC32 of the payload, then
+ * the payload: the default route interface name, then per interface its name, index, MAC address,
+ * MTU, flags and addresses. Everything is big endian, names are UTF-8. About 60 bytes per
+ * interface.
+ * <p>
+ * {@link #write(InterfaceSnapshot, File)} only replaces the file when the interfaces changed,
+ * writing a uniquely named temporary file next to it and renaming it over the old one, so readers
+ * never see a partial file. Otherwise it only touches the file's modification time, which is what
+ * the age of a saved snapshot is measured from, and rewrites the file if that fails.
+ * {@link #read(File, long, TimeUnit)} memory maps the file and checks it before trusting any of
+ * it.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public final class InterfaceSnapshotFile {
+
+    /**
+     * "HNIS", first four bytes of a snapshot file.
+     */
+    static final int MAGIC = 0x484E4953;
+
+    static final int VERSION = 1;
+
+    /**
+     * Magic, version, payload length and checksum.
+     */
+    static final int HEADER_SIZE = 16;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Written instead of a name length for a null name.
+     */
+    private static final int NO_NAME = 0xFFFF;
+
+    private static final int UNSIGNED_SHORT_MASK = 0xFFFF;
+
+    private static final int UNSIGNED_BYTE_MASK = 0xFF;
+
+    private static final int IP4_LENGTH = 4;
+
+    private static final int IP6_LENGTH = 16;
+
+    private static final int CHECKSUM_CHUNK_SIZE = 4096;
+
+    private InterfaceSnapshotFile() {
+        // Static methods only
+    }
+
+    /**
+     * Saves a snapshot, unless <i>file</i> already holds the same interfaces.
+     *
+     * @param snapshot snapshot to save.
+     * @param file     where to save it, its directory must exist.
+     *
+     * @return true if the file was written, false if it already held the same interfaces and
+     *         only its modification time was updated.
+     *
+     * @throws IOException if the file could not be written, the previous file is kept then.
+     */
+    public static boolean write(final InterfaceSnapshot snapshot, final File file)
+            throws IOException {
+        final byte[] payload = encode(snapshot);
+        final int checksum = checksum(ByteBuffer.wrap(payload));
+        // Rewritten if it cannot be confirmed, it would otherwise age out while still current
+        final boolean result = !holds(file, payload, checksum)
+                || !file.setLastModified(System.currentTimeMillis());
+        if (result) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(payload.length).putInt(checksum);
+            // Unique, processes sharing the directory do not write each other's temporary file
+            final File temporary = File.createTempFile(file.getName() + ".", ".tmp",
+                    file.getAbsoluteFile().getParentFile());
+            boolean renamed = false;
+            try {
+                final FileOutputStream stream = new FileOutputStream(temporary);
+                try {
+                    stream.write(header.array());
+                    stream.write(payload);
+                    stream.getFD().sync();
+                } finally {
+                    stream.close();
+                }
+                renamed = temporary.renameTo(file);
+                if (!renamed) {
+                    throw new IOException("Could not rename " + temporary + " to " + file);
+                }
+            } finally {
+                if (!renamed) {
+                    temporary.delete();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads a saved snapshot, if it is recent enough. Its capture time is set as far in the past
+     * as the file's age, so an {@link InterfaceSnapshotCache} expires it on time.
+     *
+     * @param file   file written by {@link #write(InterfaceSnapshot, File)}.
+     * @param maxAge how long since it was last written or confirmed a snapshot is still used.
+     * @param unit   unit of <i>maxAge</i>.
+     *
+     * @return the snapshot, or null if there is no file or it is older than <i>maxAge</i>, or
+     *         dated in the future, as after the clock was reset.
+     *
+     * @throws IOException if the file cannot be read, is corrupt or of another version.
+     */
+    public static InterfaceSnapshot read(final File file, final long maxAge, final TimeUnit unit)
+            throws IOException {
+        InterfaceSnapshot result = null;
+        final long age = System.currentTimeMillis() - file.lastModified();
+        if (file.isFile() && age >= 0 && age <= unit.toMillis(maxAge)) {
+            final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+            try {
+                final FileChannel channel = randomAccessFile.getChannel();
+                result = decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()),
+                        System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(age));
+            } finally {
+                randomAccessFile.close();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the payload of a snapshot file.
+     */
+    static byte[] encode(final InterfaceSnapshot snapshot) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(bytes);
+        writeName(output, snapshot.getDefaultRouteInterfaceName());
+        output.writeInt(snapshot.size());
+        for (final InterfaceRecord record : snapshot.getRecords()) {
+            writeName(output, record.getName());
+            output.writeInt(record.getIndex());
+            output.writeLong(record.getMacAddressValue());
+            output.writeInt(record.getMtu());
+            output.writeByte(record.getFlags());
+            final List<InetAddress> addresses = record.getInetAddresses();
+            output.writeShort(addresses.size());
+            for (final InetAddress address : addresses) {
+                final byte[] raw = address.getAddress();
+                output.writeByte(raw.length);
+                output.write(raw);
+                if (address instanceof Inet6Address) {
+                    output.writeInt(((Inet6Address) address).getScopeId());
+                }
+            }
+        }
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeName(final DataOutputStream output, final String name)
+            throws IOException {
+        if (name != null) {
+            final byte[] raw = name.getBytes(UTF_8);
+            output.writeShort(raw.length);
+            output.write(raw);
+        } else {
+            output.writeShort(NO_NAME);
+        }
+    }
+
+    /**
+     * Checks and parses a whole snapshot file.
+     *
+     * @param buffer      the file, not modified.
+     * @param captureTime capture time to give the snapshot.
+     *
+     * @throws IOException if <i>buffer</i> does not hold a valid snapshot of this version.
+     */
+    static InterfaceSnapshot decode(final ByteBuffer buffer, final long captureTime)
+            throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an interface snapshot file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported interface snapshot version " + buffer.getInt(4));
+        }
+        final int length = buffer.getInt(8);
+        if (length < 0 || length != buffer.capacity() - HEADER_SIZE) {
+            throw new IOException("Interface snapshot file of the wrong length");
+        }
+        final ByteBuffer payload = buffer.duplicate();
+        payload.position(HEADER_SIZE);
+        if (checksum(payload.slice()) != buffer.getInt(12)) {
+            throw new IOException("Corrupt interface snapshot file, checksum mismatch");
+        }
+        try {
+            final String defaultRouteInterfaceName = readName(payload);
+            final int count = payload.getInt();
+            if (count < 0 || count > payload.remaining()) {
+                throw new IOException("Corrupt interface snapshot file, " + count + " interfaces");
+            }
+            final InterfaceRecord[] records = new InterfaceRecord[count];
+            for (int i = 0; i < count; i++) {
+                final String name = readName(payload);
+                final int index = payload.getInt();
+                final long macAddress = payload.getLong();
+                final int mtu = payload.getInt();
+                final int flags = payload.get() & UNSIGNED_BYTE_MASK;
+                final InetAddress[] addresses
+                        = new InetAddress[payload.getShort() & UNSIGNED_SHORT_MASK];
+                for (int j = 0; j < addresses.length; j++) {
+                    addresses[j] = readAddress(payload);
+                }
+                records[i] = new InterfaceRecord(name, index, macAddress, mtu, flags, addresses);
+            }
+            return new InterfaceSnapshot(captureTime, defaultRouteInterfaceName, records);
+        } catch (BufferUnderflowException bufferUnderflowException) {
+            throw new IOException("Corrupt interface snapshot file, records overrun it");
+        }
+    }
+
+    private static String readName(final ByteBuffer payload) {
+        final int length = payload.getShort() & UNSIGNED_SHORT_MASK;
+        String result = null;
+        if (length != NO_NAME) {
+            final byte[] raw = new byte[length];
+            payload.get(raw);
+            result = new String(raw, UTF_8);
+        }
+        return result;
+    }
+
+    private static InetAddress readAddress(final ByteBuffer payload) throws IOException {
+        final byte[] raw = new byte[payload.get() & UNSIGNED_BYTE_MASK];
+        payload.get(raw);
+        final InetAddress result;
+        if (raw.length == IP4_LENGTH) {
+            result = InetAddress.getByAddress(raw);
+        } else if (raw.length == IP6_LENGTH) {
+            // Scope zero means none, it would otherwise be printed and compared
+            final int scopeId = payload.getInt();
+            result = scopeId != 0 ? Inet6Address.getByAddress(null, raw, scopeId)
+                    : InetAddress.getByAddress(raw);
+        } else {
+            throw new IOException("Corrupt interface snapshot file, " + raw.length
+                    + " byte address");
+        }
+        return result;
+    }
+
+    /**
+     * @return CRC32 of the remaining bytes of <i>buffer</i>, its position is left unchanged.
+     */
+    private static int checksum(final ByteBuffer buffer) {
+        final ByteBuffer source = buffer.duplicate();
+        final byte[] chunk = new byte[Math.min(CHECKSUM_CHUNK_SIZE, source.remaining())];
+        final CRC32 crc = new CRC32();
+        while (source.hasRemaining()) {
+            final int length = Math.min(chunk.length, source.remaining());
+            source.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @return true if <i>file</i> is a snapshot file with exactly this payload.
+     */
+    private static boolean holds(final File file, final byte[] payload, final int checksum)
+            throws IOException {
+        boolean result = false;
+        if (file.isFile() && file.length() == HEADER_SIZE + payload.length) {
+            final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+            try {
+                final byte[] content = new byte[HEADER_SIZE + payload.length];
+                randomAccessFile.readFully(content);
+                final ByteBuffer header = ByteBuffer.wrap(content);
+                result = header.getInt() == MAGIC && header.getInt() == VERSION
+                        && header.getInt() == payload.length && header.getInt() == checksum
+                        && ByteBuffer.wrap(payload).equals(header);
+            } finally {
+                randomAccessFile.close();
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import in.droun.hammernet.InterfaceChangeEvent.Type;
+import in.droun.hammernet.NetworkInterfaceInfo.InterfaceQuery;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Polls the network interfaces on a fixed schedule and tells registered
+ * {@link InterfaceChangeListener}s what changed since the previous poll, instead of every
+ * consumer re-querying everything itself:
+ *
+ * <pre>
+ *{@code
+ *    final InterfaceWatcher watcher = new InterfaceWatcher(5, TimeUnit.SECONDS);
+ *    watcher.addListener(listener);
+ *    watcher.start();
+ *}
+ * </pre>
+ *
+ * The first poll only records the baseline, it does not report every interface as added.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public class InterfaceWatcher {
+
+    private final transient InterfaceQuery mInterfaceQuery;
+
+    private final transient long mPeriodNanos;
+
+    private final transient List<InterfaceChangeListener> mListeners
+            = new CopyOnWriteArrayList<InterfaceChangeListener>();
+
+    /**
+     * Snapshot taken by the last successful poll, null before the first one.
+     */
+    private transient InterfaceSnapshot mLastSnapshot;
+
+    /**
+     * Executor created by {@link #start()}, shut down by {@link #stop()}.
+     */
+    private transient ScheduledExecutorService mOwnedExecutor;
+
+    private transient ScheduledFuture<?> mScheduled;
+
+    private final transient AtomicInteger mFailedPolls = new AtomicInteger();
+
+    /**
+     * @param period time between the end of one poll and the start of the next.
+     * @param unit   unit of <i>period</i>.
+     */
+    public InterfaceWatcher(final long period, final TimeUnit unit) {
+        this(InterfaceQuery.createDefault(), period, unit);
+    }
+
+    /**
+     * This constructor is only intended to aid with unit testing.
+     *
+     * @param interfaceQuery instance of {@link InterfaceQuery} to take snapshots with.
+     * @param period         time between polls.
+     * @param unit           unit of <i>period</i>.
+     */
+    protected InterfaceWatcher(final InterfaceQuery interfaceQuery, final long period,
+            final TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+        mInterfaceQuery = interfaceQuery;
+        mPeriodNanos = unit.toNanos(period);
+    }
+
+    /**
+     * @param listener listener to notify of changes.
+     */
+    public void addListener(final InterfaceChangeListener listener) {
+        mListeners.add(listener);
+    }
+
+    /**
+     * @param listener listener to stop notifying.
+     */
+    public void removeListener(final InterfaceChangeListener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Starts polling on a private daemon thread. Does nothing if already started.
+     */
+    public synchronized void start() {
+        if (mScheduled == null) {
+            mOwnedExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "hammernet-interface-watcher");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            start(mOwnedExecutor);
+        }
+    }
+
+    /**
+     * Starts polling on the given executor, which stays owned by the caller. Does nothing if
+     * already started.
+     *
+     * @param executor executor to poll on.
+     */
+    public synchronized void start(final ScheduledExecutorService executor) {
+        if (mScheduled == null) {
+            mScheduled = executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        poll();
+                    } catch (SocketException socketException) {
+                        // Transient enumeration failure, the next poll diffs against the last
+                        // good snapshot.
+                        mFailedPolls.incrementAndGet();
+                    } catch (RuntimeException exception) { // NOPMD - AvoidCatchingGenericException
+                        // Thrown out of run() it would cancel the schedule for good, silently
+                        mFailedPolls.incrementAndGet();
+                    }
+                }
+            }, 0, mPeriodNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Stops polling. The baseline is kept, a later start reports what changed while stopped.
+     */
+    public synchronized void stop() {
+        if (mScheduled != null) {
+            mScheduled.cancel(false);
+            mScheduled = null;
+        }
+        if (mOwnedExecutor != null) {
+            mOwnedExecutor.shutdown();
+            mOwnedExecutor = null;
+        }
+    }
+
+    /**
+     * @return number of scheduled polls that failed to enumerate the interfaces, or failed with
+     *         any other exception.
+     */
+    public int getFailedPollCount() {
+        return mFailedPolls.get();
+    }
+
+    /**
+     * Takes a snapshot now, diffs it against the previous one and notifies the listeners. Called
+     * by the schedule, but can also be called directly.
+     *
+     * @return the changes found, empty on the first poll.
+     *
+     * @throws SocketException if the interfaces could not be enumerated.
+     */
+    public List<InterfaceChangeEvent> poll() throws SocketException {
+        final List<InterfaceChangeEvent> events;
+        synchronized (this) {
+            final InterfaceSnapshot current = mInterfaceQuery.snapshot();
+            events = mLastSnapshot != null
+                    ? diff(mLastSnapshot, current) : Collections.<InterfaceChangeEvent>emptyList();
+            mLastSnapshot = current;
+        }
+
+        for (final InterfaceChangeEvent event : events) {
+            for (final InterfaceChangeListener listener : mListeners) {
+                try {
+                    listener.interfaceChanged(event);
+                } catch (RuntimeException exception) { // NOPMD - AvoidCatchingGenericException
+                    // A broken listener must not starve the others or stop the schedule
+                    continue;
+                }
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Lists the differences between two snapshots, matching interfaces by name.
+     *
+     * @param previous older snapshot.
+     * @param current  newer snapshot.
+     *
+     * @return the changes, removed interfaces first, then added ones, then per interface changes.
+     */
+    static List<InterfaceChangeEvent> diff(final InterfaceSnapshot previous,
+            final InterfaceSnapshot current) {
+        final List<InterfaceChangeEvent> events = new ArrayList<InterfaceChangeEvent>();
+        for (final InterfaceRecord before : previous.getRecords()) {
+            if (current.getByName(before.getName()) == null) {
+                events.add(new InterfaceChangeEvent(Type.INTERFACE_REMOVED, before, null, null));
+            }
+        }
+        for (final InterfaceRecord after : current.getRecords()) {
+            if (previous.getByName(after.getName()) == null) {
+                events.add(new InterfaceChangeEvent(Type.INTERFACE_ADDED, null, after, null));
+            }
+        }
+        for (final InterfaceRecord after : current.getRecords()) {
+            final InterfaceRecord before = previous.getByName(after.getName());
+            if (before != null) {
+                diff(before, after, events);
+            }
+        }
+        return events;
+    }
+
+    private static void diff(final InterfaceRecord before, final InterfaceRecord after,
+            final List<InterfaceChangeEvent> events) {
+        if (before.getMacAddressValue() != after.getMacAddressValue()) {
+            events.add(new InterfaceChangeEvent(Type.MAC_CHANGED, before, after, null));
+        }
+        if (before.isUp() != after.isUp()) {
+            events.add(new InterfaceChangeEvent(after.isUp() ? Type.LINK_UP : Type.LINK_DOWN,
+                    before, after, null));
+        }
+
+        final Set<InetAddress> beforeAddresses
+                = new HashSet<InetAddress>(before.getInetAddresses());
+        final Set<InetAddress> afterAddresses = new HashSet<InetAddress>(after.getInetAddresses());
+        for (final InetAddress address : before.getInetAddresses()) {
+            if (!afterAddresses.contains(address)) {
+                events.add(new InterfaceChangeEvent(Type.ADDRESS_REMOVED, before, after, address));
+            }
+        }
+        for (final InetAddress address : after.getInetAddresses()) {
+            if (!beforeAddresses.contains(address)) {
+                events.add(new InterfaceChangeEvent(Type.ADDRESS_ADDED, before, after, address));
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+/**
+ * Told about every token a {@link MacAddressScanner} could not parse as a MAC address.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public interface InvalidMacAddressListener {
+
+    /**
+     * Called from the scanning thread for each invalid token, in input order.
+     *
+     * @param position offset of the token's first character from the start of the input, counting
+     *                 every character consumed since the scanner was created or reset.
+     * @param length   number of characters in the token, not counting the separator or a
+     *                 trailing carriage return. For a token too long to ever be valid that is
+     *                 still being streamed in, the number of characters seen so far.
+     */
+    void invalidMacAddress(long position, int length);
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in nanoseconds, in the layout of an HDR histogram: exact below
+ * {@value #SUB_BUCKET_COUNT}, then every power of two range is split in
+ * {@value #HALF_SUB_BUCKET_COUNT} equal buckets, so any recorded value is reported within about
+ * 6% of itself. Values up to 2^{@value #MAX_EXPONENT} ns, over half an hour, are kept apart.
+ * <p>
+ * Recording is a couple of shifts and one atomic increment: lock-free, allocation free and safe
+ * from any number of threads. Reading while recording sees a consistent enough, if not atomic,
+ * view.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT >> 1;
+
+    private static final int MAX_EXPONENT = 41;
+
+    private static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1;
+
+    private final transient AtomicLongArray mCounts = new AtomicLongArray(
+            indexOf(MAX_VALUE) + 1);
+
+    /**
+     * Records one latency. Negative values, from a clock going backwards, count as zero and
+     * values beyond the range count as the largest one.
+     *
+     * @param nanos latency in nanoseconds.
+     */
+    public void record(final long nanos) {
+        mCounts.incrementAndGet(indexOf(Math.min(Math.max(nanos, 0), MAX_VALUE)));
+    }
+
+    /**
+     * @return number of latencies recorded.
+     */
+    public long getCount() {
+        long result = 0;
+        for (int i = 0; i < mCounts.length(); i++) {
+            result += mCounts.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the latency <i>percentile</i> percent of the recorded ones are at or below, such as
+     * the median for 50 or the tail for 99.9.
+     *
+     * @param percentile between 0 and 100.
+     *
+     * @return the largest latency equivalent to the percentile's bucket, in nanoseconds, or 0 if
+     *         nothing was recorded.
+     *
+     * @throws IllegalArgumentException if <i>percentile</i> is out of range.
+     */
+    public long getValueAtPercentile(final double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Percentile out of range: " + percentile);
+        }
+        final long[] counts = new long[mCounts.length()];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = mCounts.get(i);
+            total += counts[i];
+        }
+
+        long result = 0;
+        if (total > 0) {
+            final long wanted = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+            long seen = 0;
+            int index = 0;
+            while (index < counts.length - 1 && seen + counts[index] < wanted) {
+                seen += counts[index];
+                index++;
+            }
+            result = highestEquivalentValue(index);
+        }
+        return result;
+    }
+
+    /**
+     * Forgets everything recorded. Latencies recorded meanwhile may or may not be kept.
+     */
+    public void reset() {
+        for (int i = 0; i < mCounts.length(); i++) {
+            mCounts.set(i, 0);
+        }
+    }
+
+    /**
+     * Bucket of a value between 0 and {@link #MAX_VALUE}.
+     */
+    static int indexOf(final long value) {
+        final int result;
+        if (value < SUB_BUCKET_COUNT) {
+            result = (int) value;
+        } else {
+            // Keep the SUB_BUCKET_BITS most significant bits of the value
+            final int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            result = shift * HALF_SUB_BUCKET_COUNT + (int) (value >>> shift);
+        }
+        return result;
+    }
+
+    /**
+     * Largest value falling in bucket <i>index</i>.
+     */
+    static long highestEquivalentValue(final int index) {
+        final long result;
+        if (index < SUB_BUCKET_COUNT) {
+            result = index;
+        } else {
+            final int shift = index / HALF_SUB_BUCKET_COUNT - 1;
+            final long lowest = (long) (index % HALF_SUB_BUCKET_COUNT + HALF_SUB_BUCKET_COUNT)
+                    << shift;
+            result = lowest + (1L << shift) - 1;
+        }
+        return result;
+    }
+}
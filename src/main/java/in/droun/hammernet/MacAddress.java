@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.math.BigInteger;
+
+/**
+ * Immutable 48-bit MAC address, stored in the lower bits of a single long.
+ * <p>
+ * Unlike the signed {@link BigInteger} form returned by
+ * {@link NetworkInterfaceInfo#macAddressToBigInteger(String)}, the value here is always the
+ * unsigned address, so equality, hashing and ordering are plain primitive operations.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public final class MacAddress implements Comparable<MacAddress> {
+
+    /**
+     * Number of bytes in a MAC address.
+     */
+    public static final int LENGTH = 6;
+
+    /**
+     * Mask of the bits a MAC address may use.
+     */
+    public static final long MASK = 0xFFFFFFFFFFFFL;
+
+    private static final int BYTE_MASK = 0xFF;
+
+    private static final int UNUSED_BITS = 16;
+
+    /**
+     * I/G bit, the lowest bit of the first octet.
+     */
+    private static final long MULTICAST_BIT = 0x010000000000L;
+
+    /**
+     * U/L bit, the second lowest bit of the first octet.
+     */
+    private static final long LOCAL_BIT = 0x020000000000L;
+
+    private final transient long mValue;
+
+    private MacAddress(final long value) {
+        mValue = value;
+    }
+
+    /**
+     * Wraps a primitive MAC address.
+     *
+     * @param value MAC address in the lower 48 bits.
+     *
+     * @return the MAC address.
+     *
+     * @throws IllegalArgumentException if any bits above the lower 48 are set.
+     */
+    public static MacAddress valueOf(final long value) {
+        checkMacAddress(value);
+        return new MacAddress(value);
+    }
+
+    /**
+     * @param macAddress MAC address in the lower 48 bits.
+     *
+     * @throws IllegalArgumentException if any bits above the lower 48 are set.
+     */
+    static void checkMacAddress(final long macAddress) {
+        if ((macAddress & ~MASK) != 0) {
+            throw new IllegalArgumentException("Not a 48-bit MAC address: " + macAddress);
+        }
+    }
+
+    /**
+     * Parses a MAC address string, see {@link MacAddressParser} for accepted formats.
+     *
+     * @param macString MAC address text.
+     *
+     * @return the MAC address, or null if <i>macString</i> is not valid.
+     */
+    public static MacAddress parse(final CharSequence macString) {
+        final long value = MacAddressParser.parse(macString);
+        return value != MacAddressParser.INVALID ? new MacAddress(value) : null;
+    }
+
+    /**
+     * Creates a MAC address from a hardware address as returned by
+     * {@link java.net.NetworkInterface#getHardwareAddress()}.
+     *
+     * @param hardwareAddress six byte hardware address.
+     *
+     * @return the MAC address, or null if <i>hardwareAddress</i> is null or not six bytes long.
+     */
+    public static MacAddress fromBytes(final byte[] hardwareAddress) {
+        final long value = toLong(hardwareAddress);
+        return value != MacAddressParser.INVALID ? new MacAddress(value) : null;
+    }
+
+    /**
+     * Creates a MAC address from the signed BigInteger form used by
+     * {@link NetworkInterfaceInfo#macAddressToBigInteger(String)}.
+     *
+     * @param macAddress signed MAC address value.
+     *
+     * @return the MAC address, or null if <i>macAddress</i> is null or does not fit in 48 bits.
+     */
+    public static MacAddress fromBigInteger(final BigInteger macAddress) {
+        final int maxSignedBits = 47;
+        return macAddress != null && macAddress.bitLength() <= maxSignedBits
+                ? new MacAddress(macAddress.longValue() & MASK) : null;
+    }
+
+    /**
+     * Converts a hardware address to a primitive MAC address without allocating.
+     *
+     * @param hardwareAddress six byte hardware address.
+     *
+     * @return the MAC address in the lower 48 bits, or {@link MacAddressParser#INVALID} if
+     *         <i>hardwareAddress</i> is null or not six bytes long.
+     */
+    public static long toLong(final byte[] hardwareAddress) {
+        long result = MacAddressParser.INVALID;
+        if (hardwareAddress != null && hardwareAddress.length == LENGTH) {
+            result = 0;
+            for (final byte current : hardwareAddress) {
+                result = result << Byte.SIZE | current & BYTE_MASK;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param macAddress MAC address in the lower 48 bits.
+     *
+     * @return true if the I/G bit is set, the address of a group rather than a single interface.
+     */
+    public static boolean isMulticast(final long macAddress) {
+        return (macAddress & MULTICAST_BIT) != 0;
+    }
+
+    /**
+     * @param macAddress MAC address in the lower 48 bits.
+     *
+     * @return true if the U/L bit is set, the address was not assigned from a vendor's OUI.
+     */
+    public static boolean isLocallyAdministered(final long macAddress) {
+        return (macAddress & LOCAL_BIT) != 0;
+    }
+
+    /**
+     * Tells whether an address looks like one of the random addresses Android, iOS and Windows use
+     * for privacy: any locally administered unicast address. Those randomize every bit but these
+     * two, so no narrower test exists, and an administrator could have set the same address by
+     * hand.
+     *
+     * @param macAddress MAC address in the lower 48 bits.
+     *
+     * @return true if the address is likely randomized.
+     */
+    public static boolean isLikelyRandomized(final long macAddress) {
+        return isLocallyAdministered(macAddress) && !isMulticast(macAddress);
+    }
+
+    /**
+     * @return true if this is a group address, see {@link #isMulticast(long)}.
+     */
+    public boolean isMulticast() {
+        return isMulticast(mValue);
+    }
+
+    /**
+     * @return true if this address was not assigned from a vendor's OUI, see
+     *         {@link #isLocallyAdministered(long)}.
+     */
+    public boolean isLocallyAdministered() {
+        return isLocallyAdministered(mValue);
+    }
+
+    /**
+     * @return true if this address is likely randomized, see {@link #isLikelyRandomized(long)}.
+     */
+    public boolean isLikelyRandomized() {
+        return isLikelyRandomized(mValue);
+    }
+
+    /**
+     * @return the MAC address in the lower 48 bits.
+     */
+    public long toLong() {
+        return mValue;
+    }
+
+    /**
+     * @return the signed BigInteger form, equal to what
+     *         {@link NetworkInterfaceInfo#macAddressToBigInteger(String)} returns for this address.
+     */
+    public BigInteger toBigInteger() {
+        return BigInteger.valueOf(mValue << UNUSED_BITS >> UNUSED_BITS);
+    }
+
+    /**
+     * @return a new six byte array, in the same form as
+     *         {@link java.net.NetworkInterface#getHardwareAddress()}.
+     */
+    public byte[] toByteArray() {
+        final byte[] result = new byte[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            result[i] = (byte) (mValue >>> (LENGTH - 1 - i) * Byte.SIZE);
+        }
+        return result;
+    }
+
+    @Override
+    public int compareTo(final MacAddress other) {
+        return mValue < other.mValue ? -1 : (mValue == other.mValue ? 0 : 1);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return other instanceof MacAddress && ((MacAddress) other).mValue == mValue;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (mValue ^ mValue >>> Integer.SIZE);
+    }
+
+    /**
+     * @return lower case, colon delimited form, such as "f6:ef:f8:61:22:30". See
+     *         {@link MacAddressFormatter} for other forms, or to write without allocating.
+     */
+    @Override
+    public String toString() {
+        return MacAddressFormatter.COLON.format(mValue);
+    }
+}
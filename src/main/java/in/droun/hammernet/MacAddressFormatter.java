@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Allocation free text formatting of MAC addresses, held as primitive longs or as the
+ * {@code byte[]} of {@link java.net.NetworkInterface#getHardwareAddress()}. Every byte is
+ * written as two chars looked up in a precomputed table, straight into a {@code char[]},
+ * {@link ByteBuffer} or {@link Appendable}, without any intermediate String.
+ * <p>
+ * Every form is accepted back by {@link MacAddressParser} and
+ * {@link NetworkInterfaceInfo#macAddressToBigInteger(String)}, giving the same address:
+ *
+ * <pre>
+ * COLON  50:d1:5f:4e:be:75    COLON_UPPER  50:D1:5F:4E:BE:75
+ * DASH   50-d1-5f-4e-be-75    DASH_UPPER   50-D1-5F-4E-BE-75
+ * DOT    50d1.5f4e.be75       DOT_UPPER    50D1.5F4E.BE75
+ * BARE   50d15f4ebe75         BARE_UPPER   50D15F4EBE75
+ * </pre>
+ *
+ * Instances are immutable and thread safe.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public final class MacAddressFormatter {
+
+    private static final char NO_SEPARATOR = 0;
+
+    private static final int OCTET_MASK = 0xFF;
+
+    private static final char[] LOWER_PAIRS = pairs("0123456789abcdef");
+
+    private static final char[] UPPER_PAIRS = pairs("0123456789ABCDEF");
+
+    /**
+     * Lower case, colon delimited, the form of {@link MacAddress#toString()}.
+     */
+    public static final MacAddressFormatter COLON = new MacAddressFormatter(':', 1, false);
+
+    /**
+     * Upper case, colon delimited.
+     */
+    public static final MacAddressFormatter COLON_UPPER = new MacAddressFormatter(':', 1, true);
+
+    /**
+     * Lower case, dash delimited.
+     */
+    public static final MacAddressFormatter DASH = new MacAddressFormatter('-', 1, false);
+
+    /**
+     * Upper case, dash delimited, the IEEE 802 canonical form.
+     */
+    public static final MacAddressFormatter DASH_UPPER = new MacAddressFormatter('-', 1, true);
+
+    /**
+     * Lower case, groups of four digits delimited by dots.
+     */
+    public static final MacAddressFormatter DOT = new MacAddressFormatter('.', 2, false);
+
+    /**
+     * Upper case, groups of four digits delimited by dots.
+     */
+    public static final MacAddressFormatter DOT_UPPER = new MacAddressFormatter('.', 2, true);
+
+    /**
+     * Lower case, twelve digits without delimiters.
+     */
+    public static final MacAddressFormatter BARE
+            = new MacAddressFormatter(NO_SEPARATOR, MacAddress.LENGTH, false);
+
+    /**
+     * Upper case, twelve digits without delimiters.
+     */
+    public static final MacAddressFormatter BARE_UPPER
+            = new MacAddressFormatter(NO_SEPARATOR, MacAddress.LENGTH, true);
+
+    private final transient char mSeparator;
+
+    private final transient int mBytesPerGroup;
+
+    private final transient char[] mPairs;
+
+    private final transient int mLength;
+
+    private MacAddressFormatter(final char separator, final int bytesPerGroup,
+            final boolean upperCase) {
+        mSeparator = separator;
+        mBytesPerGroup = bytesPerGroup;
+        mPairs = upperCase ? UPPER_PAIRS : LOWER_PAIRS;
+        mLength = MacAddress.LENGTH * 2
+                + (separator != NO_SEPARATOR ? MacAddress.LENGTH / bytesPerGroup - 1 : 0);
+    }
+
+    /**
+     * Two digit text of every byte value, byte <i>b</i> at index 2 * <i>b</i>.
+     */
+    private static char[] pairs(final String hexDigits) {
+        final char[] result = new char[(OCTET_MASK + 1) * 2];
+        for (int i = 0; i <= OCTET_MASK; i++) {
+            result[i * 2] = hexDigits.charAt(i >>> 4);
+            result[i * 2 + 1] = hexDigits.charAt(i & 0x0F);
+        }
+        return result;
+    }
+
+    /**
+     * @return number of chars, or bytes, every address is written in.
+     */
+    public int length() {
+        return mLength;
+    }
+
+    /**
+     * Writes a MAC address.
+     *
+     * @param macAddress  MAC address in the lower 48 bits.
+     * @param destination where to write, needs room for {@link #length()} chars.
+     * @param offset      index of the first char written.
+     *
+     * @return number of chars written, always {@link #length()}.
+     *
+     * @throws IllegalArgumentException if <i>macAddress</i> is not a 48-bit value.
+     */
+    public int format(final long macAddress, final char[] destination, final int offset) {
+        MacAddress.checkMacAddress(macAddress);
+        int position = offset;
+        for (int i = 0; i < MacAddress.LENGTH; i++) {
+            if (i > 0 && i % mBytesPerGroup == 0) {
+                destination[position++] = mSeparator;
+            }
+            final int pair = octet(macAddress, i) * 2;
+            destination[position++] = mPairs[pair];
+            destination[position++] = mPairs[pair + 1];
+        }
+        return position - offset;
+    }
+
+    /**
+     * Writes a hardware address, as returned by
+     * {@link java.net.NetworkInterface#getHardwareAddress()}.
+     *
+     * @param hardwareAddress six byte hardware address.
+     * @param destination     where to write, needs room for {@link #length()} chars.
+     * @param offset          index of the first char written.
+     *
+     * @return number of chars written, always {@link #length()}.
+     *
+     * @throws IllegalArgumentException if <i>hardwareAddress</i> is null or not six bytes long.
+     */
+    public int format(final byte[] hardwareAddress, final char[] destination, final int offset) {
+        return format(MacAddress.toLong(hardwareAddress), destination, offset);
+    }
+
+    /**
+     * Writes a MAC address as ASCII bytes at the buffer's position, advancing it.
+     *
+     * @param macAddress  MAC address in the lower 48 bits.
+     * @param destination where to write.
+     *
+     * @return number of bytes written, always {@link #length()}.
+     *
+     * @throws IllegalArgumentException if <i>macAddress</i> is not a 48-bit value.
+     * @throws BufferOverflowException  if <i>destination</i> has less than {@link #length()}
+     *                                  bytes remaining, nothing is written then.
+     */
+    public int format(final long macAddress, final ByteBuffer destination) {
+        MacAddress.checkMacAddress(macAddress);
+        if (destination.remaining() < mLength) {
+            throw new BufferOverflowException();
+        }
+        for (int i = 0; i < MacAddress.LENGTH; i++) {
+            if (i > 0 && i % mBytesPerGroup == 0) {
+                destination.put((byte) mSeparator);
+            }
+            final int pair = octet(macAddress, i) * 2;
+            destination.put((byte) mPairs[pair]);
+            destination.put((byte) mPairs[pair + 1]);
+        }
+        return mLength;
+    }
+
+    /**
+     * Appends a MAC address, one char at a time.
+     *
+     * @param <A>         type of the destination.
+     * @param macAddress  MAC address in the lower 48 bits.
+     * @param destination where to append, such as a {@link java.io.Writer}.
+     *
+     * @return <i>destination</i>.
+     *
+     * @throws IOException              if <i>destination</i> throws it.
+     * @throws IllegalArgumentException if <i>macAddress</i> is not a 48-bit value.
+     */
+    public <A extends Appendable> A append(final long macAddress, final A destination)
+            throws IOException {
+        MacAddress.checkMacAddress(macAddress);
+        for (int i = 0; i < MacAddress.LENGTH; i++) {
+            if (i > 0 && i % mBytesPerGroup == 0) {
+                destination.append(mSeparator);
+            }
+            final int pair = octet(macAddress, i) * 2;
+            destination.append(mPairs[pair]);
+            destination.append(mPairs[pair + 1]);
+        }
+        return destination;
+    }
+
+    /**
+     * Appends a MAC address.
+     *
+     * @param macAddress  MAC address in the lower 48 bits.
+     * @param destination where to append.
+     *
+     * @return <i>destination</i>.
+     *
+     * @throws IllegalArgumentException if <i>macAddress</i> is not a 48-bit value.
+     */
+    public StringBuilder append(final long macAddress, final StringBuilder destination) {
+        MacAddress.checkMacAddress(macAddress);
+        final int start = destination.length();
+        destination.setLength(start + mLength);
+        for (int i = 0, position = start; i < MacAddress.LENGTH; i++) {
+            if (i > 0 && i % mBytesPerGroup == 0) {
+                destination.setCharAt(position++, mSeparator);
+            }
+            final int pair = octet(macAddress, i) * 2;
+            destination.setCharAt(position++, mPairs[pair]);
+            destination.setCharAt(position++, mPairs[pair + 1]);
+        }
+        return destination;
+    }
+
+    /**
+     * @param macAddress MAC address in the lower 48 bits.
+     *
+     * @return the MAC address as a new String.
+     *
+     * @throws IllegalArgumentException if <i>macAddress</i> is not a 48-bit value.
+     */
+    public String format(final long macAddress) {
+        final char[] text = new char[mLength];
+        format(macAddress, text, 0);
+        return new String(text);
+    }
+
+    /**
+     * @param hardwareAddress six byte hardware address.
+     *
+     * @return the hardware address as a new String.
+     *
+     * @throws IllegalArgumentException if <i>hardwareAddress</i> is null or not six bytes long.
+     */
+    public String format(final byte[] hardwareAddress) {
+        return format(MacAddress.toLong(hardwareAddress));
+    }
+
+    /**
+     * Byte <i>index</i> of a MAC address, 0 being the most significant.
+     */
+    private static int octet(final long macAddress, final int index) {
+        return (int) (macAddress >>> (MacAddress.LENGTH - 1 - index) * Byte.SIZE) & OCTET_MASK;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+/**
+ * Single pass, allocation free MAC address parser. Reads a MAC address in text form straight into
+ * the lower 48 bits of a primitive long.
+ * <p>
+ * Accepts exactly what {@link NetworkInterfaceInfo#macAddressToBigInteger(String)} accepts: at most
+ * 17 characters, of which exactly 12 are hex digits (either case). The delimiters ':', '-', '.' and
+ * whitespace (space, tab, line feed, vertical tab, form feed, carriage return) may appear anywhere
+ * and are ignored. Anything else makes the whole input invalid.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public final class MacAddressParser {
+
+    /**
+     * Returned when the input is not a valid MAC address. No valid MAC address has any of the
+     * upper 16 bits set, so this can never collide with a real value.
+     */
+    public static final long INVALID = -1L;
+
+    /**
+     * Longest text form of a MAC address accepted, "00:11:22:33:44:55".
+     */
+    public static final int MAX_MAC_STRING_LENGTH = 17;
+
+    /**
+     * Number of hex digits in a MAC address.
+     */
+    static final int MAC_NIBBLES = 12;
+
+    /**
+     * {@link #classify(int)} result for characters that are ignored.
+     */
+    static final int DELIMITER = 16;
+
+    /**
+     * {@link #classify(int)} result for characters that invalidate the input.
+     */
+    static final int ILLEGAL = -1;
+
+    private static final int ASCII_SIZE = 128;
+
+    private static final byte[] CHAR_CLASS = new byte[ASCII_SIZE];
+
+    static {
+        for (int i = 0; i < ASCII_SIZE; i++) {
+            CHAR_CLASS[i] = ILLEGAL;
+        }
+        for (int i = 0; i <= 9; i++) {
+            CHAR_CLASS['0' + i] = (byte) i;
+        }
+        final int hexLetterBase = 10;
+        for (int i = 0; i < 6; i++) {
+            CHAR_CLASS['a' + i] = (byte) (hexLetterBase + i);
+            CHAR_CLASS['A' + i] = (byte) (hexLetterBase + i);
+        }
+        final char[] delimiters = { ':', '-', '.', ' ', '\t', '\n', '\u000B', '\f', '\r' };
+        for (final char delimiter : delimiters) {
+            CHAR_CLASS[delimiter] = DELIMITER;
+        }
+    }
+
+    private MacAddressParser() {
+    }
+
+    /**
+     * Classifies a single character of a MAC address string.
+     *
+     * @param character character, or unsigned byte value, to classify.
+     *
+     * @return the nibble value (0-15) for hex digits, {@link #DELIMITER} for ignored characters,
+     *         or {@link #ILLEGAL}.
+     */
+    static int classify(final int character) {
+        return character >= 0 && character < ASCII_SIZE ? CHAR_CLASS[character] : ILLEGAL;
+    }
+
+    /**
+     * Parses a MAC address.
+     *
+     * @param macString Any MAC address in string form, bytes delimited by either ':', '-', '.' or
+     *                  whitespace.
+     *
+     * @return the MAC address in the lower 48 bits, or {@link #INVALID}.
+     */
+    public static long parse(final CharSequence macString) {
+        return macString != null ? parse(macString, 0, macString.length()) : INVALID;
+    }
+
+    /**
+     * Parses the MAC address found between <i>start</i> (inclusive) and <i>end</i> (exclusive).
+     *
+     * @param chars text holding the MAC address.
+     * @param start index of the first character.
+     * @param end   index after the last character.
+     *
+     * @return the MAC address in the lower 48 bits, or {@link #INVALID}.
+     */
+    public static long parse(final CharSequence chars, final int start, final int end) {
+        long result = INVALID;
+        if (end - start <= MAX_MAC_STRING_LENGTH) {
+            long value = 0;
+            int nibbles = 0;
+            for (int i = start; i < end; i++) {
+                final int kind = classify(chars.charAt(i));
+                if (kind == DELIMITER) {
+                    continue;
+                }
+                if (kind == ILLEGAL || ++nibbles > MAC_NIBBLES) {
+                    nibbles = ILLEGAL;
+                    break;
+                }
+                value = value << 4 | kind;
+            }
+            if (nibbles == MAC_NIBBLES) {
+                result = value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Parses the MAC address held in <i>length</i> chars starting at <i>offset</i>.
+     *
+     * @param chars  buffer holding the MAC address.
+     * @param offset index of the first character.
+     * @param length number of characters.
+     *
+     * @return the MAC address in the lower 48 bits, or {@link #INVALID}.
+     */
+    public static long parse(final char[] chars, final int offset, final int length) {
+        long result = INVALID;
+        if (length <= MAX_MAC_STRING_LENGTH) {
+            final int end = offset + length;
+            long value = 0;
+            int nibbles = 0;
+            for (int i = offset; i < end; i++) {
+                final int kind = classify(chars[i]);
+                if (kind == DELIMITER) {
+                    continue;
+                }
+                if (kind == ILLEGAL || ++nibbles > MAC_NIBBLES) {
+                    nibbles = ILLEGAL;
+                    break;
+                }
+                value = value << 4 | kind;
+            }
+            if (nibbles == MAC_NIBBLES) {
+                result = value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Parses the MAC address held in <i>length</i> ASCII bytes starting at <i>offset</i>.
+     *
+     * @param bytes  buffer holding the MAC address as ASCII text.
+     * @param offset index of the first byte.
+     * @param length number of bytes.
+     *
+     * @return the MAC address in the lower 48 bits, or {@link #INVALID}.
+     */
+    public static long parse(final byte[] bytes, final int offset, final int length) {
+        long result = INVALID;
+        if (length <= MAX_MAC_STRING_LENGTH) {
+            final int end = offset + length;
+            long value = 0;
+            int nibbles = 0;
+            for (int i = offset; i < end; i++) {
+                final int kind = classify(bytes[i]);
+                if (kind == DELIMITER) {
+                    continue;
+                }
+                if (kind == ILLEGAL || ++nibbles > MAC_NIBBLES) {
+                    nibbles = ILLEGAL;
+                    break;
+                }
+                value = value << 4 | kind;
+            }
+            if (nibbles == MAC_NIBBLES) {
+                result = value;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Bulk MAC address parser. Scans a {@link ByteBuffer} of ASCII text, such as a memory mapped log
+ * file, or a {@link CharBuffer} of separated MAC addresses straight into a <code>long[]</code> or
+ * {@link LongBuffer}, without creating an object per address.
+ * <p>
+ * Every token between separators is validated exactly like {@link MacAddressParser} does. Empty
+ * tokens are skipped, a carriage return before the separator is dropped so CRLF text works, and
+ * invalid tokens are reported by position to an optional {@link InvalidMacAddressListener}:
+ *
+ * <pre>
+ *{@code
+ *    final MappedByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+ *    final long[] macAddresses = new long[4096];
+ *    final MacAddressScanner scanner = new MacAddressScanner('\n', listener);
+ *    while (log.hasRemaining()) {
+ *        final int count = scanner.scan(log, macAddresses, 0, macAddresses.length, true);
+ *        // Use macAddresses[0] to macAddresses[count - 1]
+ *    }
+ *}
+ * </pre>
+ *
+ * Input can also be streamed in chunks: with <i>endOfInput</i> false, a last token that has no
+ * separator yet is left in the buffer, to be scanned again once more input was appended. A scanner
+ * keeps the position it reached across calls, so it is not thread safe.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public final class MacAddressScanner {
+
+    /**
+     * Longest token that can still hold a valid MAC address, with a trailing carriage return.
+     */
+    private static final int MAX_TOKEN_LENGTH = MacAddressParser.MAX_MAC_STRING_LENGTH + 1;
+
+    private final transient char mSeparator;
+
+    private final transient InvalidMacAddressListener mListener;
+
+    /**
+     * Characters consumed by previous calls, reported positions are relative to this.
+     */
+    private transient long mConsumed;
+
+    /**
+     * Set while the rest of an over long, already reported, streamed token is skipped.
+     */
+    private transient boolean mDiscarding;
+
+    /**
+     * Creates a scanner for one MAC address per line, ignoring invalid lines.
+     */
+    public MacAddressScanner() {
+        this('\n', null);
+    }
+
+    /**
+     * @param separator character between tokens, anything but a hex digit.
+     * @param listener  told about invalid tokens, may be null.
+     *
+     * @throws IllegalArgumentException if <i>separator</i> is a hex digit.
+     */
+    public MacAddressScanner(final char separator, final InvalidMacAddressListener listener) {
+        final int kind = MacAddressParser.classify(separator);
+        if (kind >= 0 && kind < MacAddressParser.DELIMITER) {
+            throw new IllegalArgumentException("Hex digit separator: " + separator);
+        }
+        mSeparator = separator;
+        mListener = listener;
+    }
+
+    /**
+     * Scans ASCII MAC addresses from <i>source</i> into <i>destination</i>, starting at its
+     * position, until either runs out. The source position is left after the last token scanned.
+     *
+     * @param source      text to scan.
+     * @param destination where MAC addresses are written, its position is advanced.
+     * @param endOfInput  false if more input may follow, the last token is then only scanned if
+     *                    terminated by a separator.
+     *
+     * @return number of MAC addresses written.
+     */
+    public int scan(final ByteBuffer source, final LongBuffer destination,
+            final boolean endOfInput) {
+        final int start = source.position();
+        final int limit = source.limit();
+        int position = start;
+        int count = 0;
+        while (destination.hasRemaining() && position < limit) {
+            long value = 0;
+            int nibbles = 0;
+            int end = position;
+            for (; end < limit; end++) {
+                final int character = source.get(end);
+                if (character == mSeparator) {
+                    break;
+                }
+                final int kind = MacAddressParser.classify(character);
+                if (kind == MacAddressParser.DELIMITER) {
+                    continue;
+                }
+                if (kind == MacAddressParser.ILLEGAL || nibbles == MacAddressParser.ILLEGAL
+                        || ++nibbles > MacAddressParser.MAC_NIBBLES) {
+                    nibbles = MacAddressParser.ILLEGAL;
+                } else {
+                    value = value << 4 | kind;
+                }
+            }
+
+            if (end == limit && !endOfInput) {
+                position = unterminated(start, position, limit);
+                break;
+            }
+
+            int length = end - position;
+            if (length > 0 && source.get(end - 1) == '\r') {
+                length--;
+            }
+            if (accept(start, position, length, nibbles)) {
+                destination.put(value);
+                count++;
+            }
+            position = end < limit ? end + 1 : end;
+        }
+        mConsumed += position - start;
+        source.position(position);
+        return count;
+    }
+
+    /**
+     * Scans UTF-16 MAC addresses from <i>source</i> into <i>destination</i>, starting at its
+     * position, until either runs out. The source position is left after the last token scanned.
+     *
+     * @param source      text to scan.
+     * @param destination where MAC addresses are written, its position is advanced.
+     * @param endOfInput  false if more input may follow, the last token is then only scanned if
+     *                    terminated by a separator.
+     *
+     * @return number of MAC addresses written.
+     */
+    public int scan(final CharBuffer source, final LongBuffer destination,
+            final boolean endOfInput) {
+        final int start = source.position();
+        final int limit = source.limit();
+        int position = start;
+        int count = 0;
+        while (destination.hasRemaining() && position < limit) {
+            long value = 0;
+            int nibbles = 0;
+            int end = position;
+            for (; end < limit; end++) {
+                final char character = source.get(end);
+                if (character == mSeparator) {
+                    break;
+                }
+                final int kind = MacAddressParser.classify(character);
+                if (kind == MacAddressParser.DELIMITER) {
+                    continue;
+                }
+                if (kind == MacAddressParser.ILLEGAL || nibbles == MacAddressParser.ILLEGAL
+                        || ++nibbles > MacAddressParser.MAC_NIBBLES) {
+                    nibbles = MacAddressParser.ILLEGAL;
+                } else {
+                    value = value << 4 | kind;
+                }
+            }
+
+            if (end == limit && !endOfInput) {
+                position = unterminated(start, position, limit);
+                break;
+            }
+
+            int length = end - position;
+            if (length > 0 && source.get(end - 1) == '\r') {
+                length--;
+            }
+            if (accept(start, position, length, nibbles)) {
+                destination.put(value);
+                count++;
+            }
+            position = end < limit ? end + 1 : end;
+        }
+        mConsumed += position - start;
+        source.position(position);
+        return count;
+    }
+
+    /**
+     * Same as {@link #scan(ByteBuffer, LongBuffer, boolean)}, writing into <i>length</i> elements
+     * of <i>destination</i> from <i>offset</i>.
+     *
+     * @return number of MAC addresses written.
+     */
+    public int scan(final ByteBuffer source, final long[] destination, final int offset,
+            final int length, final boolean endOfInput) {
+        return scan(source, LongBuffer.wrap(destination, offset, length), endOfInput);
+    }
+
+    /**
+     * Same as {@link #scan(CharBuffer, LongBuffer, boolean)}, writing into <i>length</i> elements
+     * of <i>destination</i> from <i>offset</i>.
+     *
+     * @return number of MAC addresses written.
+     */
+    public int scan(final CharBuffer source, final long[] destination, final int offset,
+            final int length, final boolean endOfInput) {
+        return scan(source, LongBuffer.wrap(destination, offset, length), endOfInput);
+    }
+
+    /**
+     * @return number of characters consumed since the scanner was created or reset.
+     */
+    public long getPosition() {
+        return mConsumed;
+    }
+
+    /**
+     * Forgets the position reached, for scanning unrelated input.
+     */
+    public void reset() {
+        mConsumed = 0;
+        mDiscarding = false;
+    }
+
+    /**
+     * Decides what to do with a complete token, reporting it if invalid.
+     *
+     * @return true if the token is a valid MAC address.
+     */
+    private boolean accept(final int start, final int position, final int length,
+            final int nibbles) {
+        boolean result = false;
+        if (mDiscarding) {
+            // Tail of an over long token, reported when it was first seen
+            mDiscarding = false;
+        } else if (length > 0) {
+            result = nibbles == MacAddressParser.MAC_NIBBLES
+                    && length <= MacAddressParser.MAX_MAC_STRING_LENGTH;
+            if (!result && mListener != null) {
+                mListener.invalidMacAddress(mConsumed + position - start, length);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Handles a last token without a separator while more input may follow. It is normally left
+     * in place, but one that is already too long to ever be valid would never leave a full buffer,
+     * so it is reported and skipped instead.
+     *
+     * @return the position to continue from.
+     */
+    private int unterminated(final int start, final int position, final int limit) {
+        int result = position;
+        if (mDiscarding) {
+            result = limit;
+        } else if (limit - position > MAX_TOKEN_LENGTH) {
+            if (mListener != null) {
+                mListener.invalidMacAddress(mConsumed + position - start, limit - position);
+            }
+            mDiscarding = true;
+            result = limit;
+        }
+        return result;
+    }
+}
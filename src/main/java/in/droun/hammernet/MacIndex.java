@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.util.Arrays;
+
+/**
+ * Immutable open addressing hash index from a primitive MAC address to the position of the first
+ * record holding it. Keys and positions live in two parallel primitive arrays, no boxing, probed
+ * by {@link MacTable}.
+ * <p>
+ * An index can be {@link #update(long[], long[]) updated} for a new list of MAC addresses: an
+ * unchanged list keeps the index as is, anything else is a full build. Rehashing only the changed
+ * positions would not save anything, an interface added or removed moves every later position.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+final class MacIndex extends MacTable {
+
+    /**
+     * Returned by {@link #get(long)} for unknown MAC addresses.
+     */
+    static final int NOT_FOUND = -1;
+
+    /**
+     * At most one slot in two is used, keeping probe sequences short.
+     */
+    private static final int MIN_SLOTS_PER_ENTRY = 2;
+
+    private transient int[] mPositions;
+
+    private MacIndex(final int expectedSize) {
+        super(false);
+        if (expectedSize > MAX_CAPACITY / MIN_SLOTS_PER_ENTRY) {
+            throw new IllegalArgumentException("Too many addresses: " + expectedSize);
+        }
+        int capacity = 2;
+        while (capacity < expectedSize * MIN_SLOTS_PER_ENTRY) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Builds an index over <i>macAddresses</i>, mapping each MAC address to the first position
+     * holding it. {@link MacAddressParser#INVALID} entries are skipped.
+     *
+     * @param macAddresses MAC addresses by position.
+     *
+     * @return the new index.
+     */
+    static MacIndex build(final long[] macAddresses) {
+        final MacIndex result = new MacIndex(macAddresses.length);
+        for (int i = 0; i < macAddresses.length; i++) {
+            final long macAddress = macAddresses[i];
+            if (macAddress != EMPTY) {
+                final int slot = result.slotOf(macAddress);
+                if (result.keyAt(slot) == EMPTY) {
+                    result.insertAt(slot, macAddress);
+                    result.mPositions[slot] = i;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param macAddress MAC address in the lower 48 bits.
+     *
+     * @return the first position holding <i>macAddress</i>, or {@link #NOT_FOUND}.
+     */
+    int get(final long macAddress) {
+        int result = NOT_FOUND;
+        if (macAddress != EMPTY) {
+            final int slot = slotOf(macAddress);
+            if (keyAt(slot) != EMPTY) {
+                result = mPositions[slot];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns an index for <i>newAddresses</i>, derived from this index over
+     * <i>oldAddresses</i>: this index if no MAC address changed, a new one otherwise. Comparing
+     * costs no hashing and no allocation.
+     *
+     * @param oldAddresses MAC addresses by position this index was built for.
+     * @param newAddresses MAC addresses by position to index.
+     *
+     * @return index over <i>newAddresses</i>.
+     */
+    MacIndex update(final long[] oldAddresses, final long[] newAddresses) {
+        return Arrays.equals(oldAddresses, newAddresses) ? this : build(newAddresses);
+    }
+
+    @Override
+    void allocate(final int capacity) {
+        super.allocate(capacity);
+        mPositions = new int[capacity];
+    }
+}
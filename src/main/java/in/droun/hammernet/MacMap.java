@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.util.Arrays;
+
+/**
+ * Map from MAC addresses held as primitive longs to values, in an open addressing hash table of
+ * two parallel arrays. Takes 12 to 16 bytes per slot, at most three slots in four used, plus the
+ * values, and no boxed keys. Null values are not allowed, so {@link #get(long)} returning null
+ * always means absent. Not thread safe.
+ *
+ * @param <V> type of the values.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public final class MacMap<V> extends MacTable {
+
+    private static final int DEFAULT_EXPECTED_SIZE = 16;
+
+    private transient Object[] mValues;
+
+    /**
+     * Creates a map sized for a few entries, growing as needed.
+     */
+    public MacMap() {
+        this(DEFAULT_EXPECTED_SIZE);
+    }
+
+    /**
+     * @param expectedSize number of entries the map is sized for without growing.
+     *
+     * @throws IllegalArgumentException if <i>expectedSize</i> is negative or more than the
+     *                                  largest table holds.
+     */
+    public MacMap(final int expectedSize) {
+        super(false);
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * @param macAddress MAC address in the lower 48 bits.
+     * @param value      value to map the address to, not null.
+     *
+     * @return the value previously mapped to the address, or null.
+     *
+     * @throws IllegalArgumentException if <i>macAddress</i> is not a 48-bit value,
+     *                                  <i>value</i> is null, or the map cannot grow any further.
+     */
+    public V put(final long macAddress, final V value) {
+        MacAddress.checkMacAddress(macAddress);
+        if (value == null) {
+            throw new IllegalArgumentException("Null value for " + MacAddress.valueOf(macAddress));
+        }
+        int slot = slotOf(macAddress);
+        final V result = valueAt(slot);
+        if (result == null) {
+            if (isOverloaded(size() + 1, capacity())) {
+                ensureCapacity(size() + 1);
+                slot = slotOf(macAddress);
+            }
+            insertAt(slot, macAddress);
+        }
+        mValues[slot] = value;
+        return result;
+    }
+
+    /**
+     * @param macAddress MAC address in the lower 48 bits.
+     *
+     * @return the value mapped to the address, or null.
+     */
+    public V get(final long macAddress) {
+        return macAddress != EMPTY ? valueAt(slotOf(macAddress)) : null;
+    }
+
+    /**
+     * @param macAddress MAC address, may be null.
+     *
+     * @return the value mapped to the address, or null.
+     */
+    public V get(final MacAddress macAddress) {
+        return macAddress != null ? get(macAddress.toLong()) : null;
+    }
+
+    /**
+     * @param macAddress MAC address in the lower 48 bits.
+     *
+     * @return true if the address is mapped.
+     */
+    public boolean containsKey(final long macAddress) {
+        return get(macAddress) != null;
+    }
+
+    /**
+     * @param macAddress MAC address in the lower 48 bits.
+     *
+     * @return the value that was mapped to the address, or null.
+     */
+    public V remove(final long macAddress) {
+        V result = null;
+        if (macAddress != EMPTY) {
+            final int slot = slotOf(macAddress);
+            result = valueAt(slot);
+            if (result != null) {
+                removeAt(slot);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes every entry, keeping the table allocated.
+     */
+    @Override
+    public void clear() {
+        super.clear();
+        Arrays.fill(mValues, null);
+    }
+
+    /**
+     * @return the mapped addresses, in no particular order.
+     */
+    public long[] keys() {
+        return copyKeys();
+    }
+
+    @SuppressWarnings("unchecked") // Only V values are ever stored
+    private V valueAt(final int slot) {
+        return (V) mValues[slot];
+    }
+
+    @Override
+    void moveEntry(final int from, final int to) {
+        super.moveEntry(from, to);
+        mValues[to] = mValues[from];
+    }
+
+    @Override
+    void clearEntry(final int slot) {
+        super.clearEntry(slot);
+        mValues[slot] = null;
+    }
+
+    @Override
+    void allocate(final int capacity) {
+        super.allocate(capacity);
+        mValues = new Object[capacity];
+    }
+
+    @Override
+    void rehash(final int capacity) {
+        final long[] keys = heapKeys();
+        final Object[] values = mValues;
+        allocate(capacity);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                final int slot = slotOf(keys[i]);
+                insertAt(slot, keys[i]);
+                mValues[slot] = values[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+/**
+ * Set of MAC addresses held as primitive longs in a single open addressing hash table, for large
+ * allow and deny lists. Takes 11 to 21 bytes per address, where a <code>HashSet</code> of
+ * {@link java.math.BigInteger} takes around 80.
+ * <p>
+ * Works directly on the output of {@link MacAddressParser} and {@link MacAddressScanner}:
+ *
+ * <pre>
+ *{@code
+ *    final int count = scanner.scan(log, macAddresses, 0, macAddresses.length, true);
+ *    final int allowed = allowList.filter(macAddresses, 0, count);
+ *}
+ * </pre>
+ *
+ * See {@link DirectMacSet} to keep the table off the Java heap. Not thread safe.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public final class MacSet extends MacTable {
+
+    private static final int DEFAULT_EXPECTED_SIZE = 16;
+
+    /**
+     * Creates a set sized for a few addresses, growing as needed.
+     */
+    public MacSet() {
+        this(DEFAULT_EXPECTED_SIZE);
+    }
+
+    /**
+     * @param expectedSize number of addresses the set is sized for without growing.
+     *
+     * @throws IllegalArgumentException if <i>expectedSize</i> is negative or more than the
+     *                                  largest table holds.
+     */
+    public MacSet(final int expectedSize) {
+        this(expectedSize, false);
+    }
+
+    /**
+     * @param expectedSize number of addresses the set is sized for without growing.
+     * @param direct       true to keep the table outside the Java heap.
+     */
+    MacSet(final int expectedSize, final boolean direct) {
+        super(direct);
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * @param macAddress MAC address in the lower 48 bits.
+     *
+     * @return true if the address was not in the set yet.
+     *
+     * @throws IllegalArgumentException if <i>macAddress</i> is not a 48-bit value, or the set
+     *                                  cannot grow any further.
+     */
+    public boolean add(final long macAddress) {
+        MacAddress.checkMacAddress(macAddress);
+        int slot = slotOf(macAddress);
+        final boolean result = keyAt(slot) == EMPTY;
+        if (result) {
+            if (isOverloaded(size() + 1, capacity())) {
+                ensureCapacity(size() + 1);
+                slot = slotOf(macAddress);
+            }
+            insertAt(slot, macAddress);
+        }
+        return result;
+    }
+
+    /**
+     * Adds <i>length</i> MAC addresses from <i>offset</i>, as written by
+     * {@link MacAddressScanner}. {@link MacAddressParser#INVALID} entries are skipped.
+     *
+     * @return number of addresses that were not in the set yet.
+     *
+     * @throws IllegalArgumentException if an address is neither a 48-bit value nor INVALID, or
+     *                                  the set cannot grow any further.
+     */
+    public int addAll(final long[] macAddresses, final int offset, final int length) {
+        ensureCapacity((int) Math.min(Integer.MAX_VALUE, (long) size() + length));
+        int result = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (macAddresses[i] != EMPTY && add(macAddresses[i])) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param macAddress MAC address in the lower 48 bits.
+     *
+     * @return true if the address is in the set, always false for
+     *         {@link MacAddressParser#INVALID}.
+     */
+    public boolean contains(final long macAddress) {
+        return macAddress != EMPTY && keyAt(slotOf(macAddress)) != EMPTY;
+    }
+
+    /**
+     * @param macAddress MAC address, may be null.
+     *
+     * @return true if the address is in the set.
+     */
+    public boolean contains(final MacAddress macAddress) {
+        return macAddress != null && contains(macAddress.toLong());
+    }
+
+    /**
+     * Moves the <i>length</i> MAC addresses from <i>offset</i> that are in this set to the front
+     * of the range, keeping their order. Nothing is allocated.
+     *
+     * @return number of addresses kept, from <i>offset</i>.
+     */
+    public int filter(final long[] macAddresses, final int offset, final int length) {
+        int kept = offset;
+        for (int i = offset; i < offset + length; i++) {
+            if (contains(macAddresses[i])) {
+                macAddresses[kept++] = macAddresses[i];
+            }
+        }
+        return kept - offset;
+    }
+
+    /**
+     * @param macAddress MAC address in the lower 48 bits.
+     *
+     * @return true if the address was in the set.
+     */
+    public boolean remove(final long macAddress) {
+        boolean result = false;
+        if (macAddress != EMPTY) {
+            final int slot = slotOf(macAddress);
+            result = keyAt(slot) != EMPTY;
+            if (result) {
+                removeAt(slot);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes every address, keeping the table allocated.
+     */
+    @Override
+    public void clear() {
+        super.clear();
+    }
+
+    /**
+     * @return the addresses in the set, in no particular order.
+     */
+    public long[] toArray() {
+        return copyKeys();
+    }
+}
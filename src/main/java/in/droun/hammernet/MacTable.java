@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * Open addressing hash table of primitive MAC addresses with linear probing, shared by
+ * {@link MacSet}, {@link DirectMacSet}, {@link MacMap} and {@link MacIndex}. Keys live in a
+ * <code>long[]</code> or, for direct tables, in a native order {@link LongBuffer} outside the Java
+ * heap. Removal shifts later entries of the probe sequence back, so no tombstones are needed.
+ * <p>
+ * Subclasses keeping a payload per slot, such as values or positions, allocate it along with
+ * {@link #allocate(int)} and move it along with {@link #moveEntry(int, int)} and
+ * {@link #clearEntry(int)}.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+abstract class MacTable {
+
+    /**
+     * Empty slot marker, never a valid MAC address.
+     */
+    static final long EMPTY = MacAddressParser.INVALID;
+
+    /**
+     * Largest table, a Java array cannot hold 2^31 slots.
+     */
+    static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * Largest direct table, a {@link ByteBuffer} holds at most {@link Integer#MAX_VALUE} bytes.
+     */
+    static final int MAX_DIRECT_CAPACITY = 1 << 27;
+
+    /**
+     * Tables grow once more than three slots in four are used.
+     */
+    private static final int LOAD_NUMERATOR = 3;
+
+    private static final int LOAD_DENOMINATOR = 4;
+
+    private static final int MIN_CAPACITY = 4;
+
+    private final transient boolean mDirect;
+
+    private transient long[] mKeys;
+
+    private transient LongBuffer mDirectKeys;
+
+    private transient int mMask;
+
+    private transient int mSize;
+
+    /**
+     * Subclasses call {@link #allocate(int)} before using the table.
+     *
+     * @param direct true to keep the keys outside the Java heap.
+     */
+    MacTable(final boolean direct) {
+        mDirect = direct;
+    }
+
+    /**
+     * Smallest power of two table capacity holding <i>size</i> entries within the load factor.
+     *
+     * @throws IllegalArgumentException if <i>size</i> is negative or more than the largest table
+     *                                  holds.
+     */
+    static int capacityFor(final int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative size: " + size);
+        }
+        if (isOverloaded(size, MAX_CAPACITY)) {
+            throw new IllegalArgumentException("Too many addresses: " + size);
+        }
+        int result = MIN_CAPACITY;
+        while (isOverloaded(size, result)) {
+            result <<= 1;
+        }
+        return result;
+    }
+
+    /**
+     * @return true if a table of <i>capacity</i> slots holding <i>size</i> entries is too full.
+     */
+    static boolean isOverloaded(final int size, final int capacity) {
+        return (long) size * LOAD_DENOMINATOR > (long) capacity * LOAD_NUMERATOR;
+    }
+
+    /**
+     * Spreads the bits of a MAC address over an int, the 64-bit MurmurHash3 finalizer.
+     *
+     * @param macAddress MAC address in the lower 48 bits.
+     *
+     * @return hash of the address.
+     */
+    static int hash(final long macAddress) {
+        long hash = macAddress;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+
+    /**
+     * @return number of entries in the table.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return true if the table holds no entry.
+     */
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    final int capacity() {
+        return mMask + 1;
+    }
+
+    final long keyAt(final int slot) {
+        return mDirect ? mDirectKeys.get(slot) : mKeys[slot];
+    }
+
+    private void setKeyAt(final int slot, final long key) {
+        if (mDirect) {
+            mDirectKeys.put(slot, key);
+        } else {
+            mKeys[slot] = key;
+        }
+    }
+
+    /**
+     * Slot holding <i>macAddress</i>, or the empty slot ending its probe sequence.
+     */
+    final int slotOf(final long macAddress) {
+        int slot = hash(macAddress) & mMask;
+        long key = keyAt(slot);
+        while (key != EMPTY && key != macAddress) {
+            slot = slot + 1 & mMask;
+            key = keyAt(slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Stores <i>macAddress</i> in the empty slot {@link #slotOf(long)} returned for it.
+     */
+    final void insertAt(final int slot, final long macAddress) {
+        setKeyAt(slot, macAddress);
+        mSize++;
+    }
+
+    /**
+     * Removes the entry at <i>slot</i>, shifting later entries of its probe sequence back.
+     */
+    final void removeAt(final int slot) {
+        mSize--;
+        int hole = slot;
+        int next = hole + 1 & mMask;
+        long key = keyAt(next);
+        while (key != EMPTY) {
+            final int home = hash(key) & mMask;
+            // Move the entry back if its home slot is not between the hole and itself
+            if ((next - home & mMask) >= (next - hole & mMask)) {
+                moveEntry(next, hole);
+                hole = next;
+            }
+            next = next + 1 & mMask;
+            key = keyAt(next);
+        }
+        clearEntry(hole);
+    }
+
+    /**
+     * Moves an entry to another slot, overridden to move payload along.
+     */
+    void moveEntry(final int from, final int to) {
+        setKeyAt(to, keyAt(from));
+    }
+
+    /**
+     * Empties a slot, overridden to drop payload along.
+     */
+    void clearEntry(final int slot) {
+        setKeyAt(slot, EMPTY);
+    }
+
+    /**
+     * Grows the table, if needed, so <i>size</i> entries fit within the load factor. Slots
+     * returned by {@link #slotOf(long)} before are no longer valid if it grew.
+     *
+     * @throws IllegalArgumentException if <i>size</i> entries are more than the largest table
+     *                                  holds.
+     */
+    final void ensureCapacity(final int size) {
+        if (isOverloaded(size, capacity())) {
+            rehash(capacityFor(size));
+        }
+    }
+
+    /**
+     * Removes every entry, keeping the table allocated.
+     */
+    void clear() {
+        if (mDirect) {
+            fillEmpty(mDirectKeys);
+        } else {
+            Arrays.fill(mKeys, EMPTY);
+        }
+        mSize = 0;
+    }
+
+    /**
+     * @return the keys in the table, in no particular order.
+     */
+    final long[] copyKeys() {
+        final long[] result = new long[mSize];
+        int count = 0;
+        for (int slot = 0; slot <= mMask; slot++) {
+            final long key = keyAt(slot);
+            if (key != EMPTY) {
+                result[count++] = key;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the table by an empty one, overridden to allocate payload along.
+     *
+     * @param capacity power of two number of slots.
+     *
+     * @throws IllegalArgumentException if <i>capacity</i> is above the largest table.
+     */
+    void allocate(final int capacity) {
+        if (capacity > (mDirect ? MAX_DIRECT_CAPACITY : MAX_CAPACITY)) {
+            throw new IllegalArgumentException("Table too large: " + capacity);
+        }
+        if (mDirect) {
+            // Native order, so reads are plain loads
+            mDirectKeys = ByteBuffer.allocateDirect(capacity * (Long.SIZE / Byte.SIZE))
+                    .order(ByteOrder.nativeOrder()).asLongBuffer();
+            fillEmpty(mDirectKeys);
+        } else {
+            mKeys = new long[capacity];
+            Arrays.fill(mKeys, EMPTY);
+        }
+        mMask = capacity - 1;
+        mSize = 0;
+    }
+
+    /**
+     * Moves every entry to a new table of <i>capacity</i> slots, overridden by tables with
+     * payload.
+     */
+    void rehash(final int capacity) {
+        final long[] keys = mKeys;
+        final LongBuffer directKeys = mDirectKeys;
+        final int oldCapacity = capacity();
+        allocate(capacity);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            final long key = mDirect ? directKeys.get(slot) : keys[slot];
+            if (key != EMPTY) {
+                insertAt(slotOf(key), key);
+            }
+        }
+    }
+
+    /**
+     * @return the keys of a heap table by slot, for subclasses moving payload along in
+     *         {@link #rehash(int)}.
+     */
+    final long[] heapKeys() {
+        return mKeys;
+    }
+
+    private static void fillEmpty(final LongBuffer keys) {
+        for (int i = 0; i < keys.capacity(); i++) {
+            keys.put(i, EMPTY);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+/**
+ * Told how an asynchronous {@link AsyncNetInfo} request ended. Callers that cancelled their
+ * request are told nothing.
+ *
+ * @param <V> type of the result.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public interface NetInfoCallback<V> {
+
+    /**
+     * Called on the thread that ran the request. Implementations should return quickly, and post
+     * to the main thread themselves to touch Android views.
+     *
+     * @param result the result, may be null.
+     */
+    void onResult(V result);
+
+    /**
+     * Called on the thread that ran the request.
+     *
+     * @param failure what the request threw, such as a {@link java.net.SocketException}.
+     */
+    void onFailure(Throwable failure);
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+/**
+ * Receives measurements of the calls {@link NetworkInterfaceInfo}, {@link InterfaceSnapshotCache}
+ * and {@link AndroidNetInfo} make into the platform, to tell where the time of a slow lookup
+ * goes. Implementations are called from any thread and on the lookup path, so they must be
+ * thread safe and quick; {@link RecordingNetInfoMetrics} is one.
+ * <p>
+ * Nothing is measured, not even the clock read, when the sink is {@link #NONE}, the default.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public interface NetInfoMetrics {
+
+    /**
+     * Platform calls that are measured.
+     */
+    enum Operation {
+
+        /**
+         * Enumerating the interfaces, {@link java.net.NetworkInterface#getNetworkInterfaces()}
+         * or a listing of /sys/class/net.
+         */
+        GET_NETWORK_INTERFACES,
+
+        /**
+         * Looking an interface up by name, {@link java.net.NetworkInterface#getByName(String)}.
+         */
+        GET_BY_NAME,
+
+        /**
+         * Reading one interface's MAC address,
+         * {@link java.net.NetworkInterface#getHardwareAddress()}.
+         */
+        GET_HARDWARE_ADDRESS,
+
+        /**
+         * Taking a whole {@link InterfaceSnapshot}.
+         */
+        SNAPSHOT,
+
+        /**
+         * Asking the WifiManager for the Wi-Fi MAC address.
+         */
+        WIFI_MANAGER
+    }
+
+    /**
+     * Sink that discards everything. Callers compare against it to skip measuring altogether.
+     */
+    NetInfoMetrics NONE = new NetInfoMetrics() {
+        @Override
+        public void callCompleted(final Operation operation, final long nanos) {
+            // Discarded
+        }
+
+        @Override
+        public void interfaceSkipped() {
+            // Discarded
+        }
+
+        @Override
+        public void interfaceFiltered() {
+            // Discarded
+        }
+
+        @Override
+        public void cacheHit() {
+            // Discarded
+        }
+
+        @Override
+        public void cacheMiss() {
+            // Discarded
+        }
+    };
+
+    /**
+     * A platform call returned or threw.
+     *
+     * @param operation call that completed.
+     * @param nanos     how long it took, in nanoseconds.
+     */
+    void callCompleted(Operation operation, long nanos);
+
+    /**
+     * An interface was left out of a MAC address lookup because its hardware address could not
+     * be read, typically "No such device" for an interface that went away.
+     */
+    void interfaceSkipped();
+
+    /**
+     * An interface was left out of a MAC address lookup by an {@link InterfaceFilter} before its
+     * hardware address was read: one {@link Operation#GET_HARDWARE_ADDRESS} call avoided.
+     */
+    void interfaceFiltered();
+
+    /**
+     * A lookup was served from a fresh {@link InterfaceSnapshotCache} snapshot.
+     */
+    void cacheHit();
+
+    /**
+     * A lookup found no snapshot, or an expired one, and the interfaces were enumerated again.
+     */
+    void cacheMiss();
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link InterfaceHandle} backed by {@link java.net.NetworkInterface}. Name, index, virtual flag
+ * and addresses are read during enumeration, every other attribute costs a native call.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+class NetworkInterfaceHandle extends InterfaceHandle {
+
+    private final transient NetworkInterface mNetworkInterface;
+
+    /**
+     * @param networkInterface interface to wrap.
+     */
+    NetworkInterfaceHandle(final NetworkInterface networkInterface) {
+        mNetworkInterface = networkInterface;
+    }
+
+    /**
+     * @return the wrapped interface.
+     */
+    NetworkInterface getNetworkInterface() {
+        return mNetworkInterface;
+    }
+
+    @Override
+    String getName() {
+        return mNetworkInterface.getName();
+    }
+
+    @Override
+    int getIndex() {
+        return mNetworkInterface.getIndex();
+    }
+
+    @Override
+    boolean isVirtual() {
+        return mNetworkInterface.isVirtual();
+    }
+
+    @Override
+    List<InetAddress> getInetAddresses() {
+        return Collections.list(mNetworkInterface.getInetAddresses());
+    }
+
+    @Override
+    long getMacAddress() throws SocketException {
+        return MacAddress.toLong(mNetworkInterface.getHardwareAddress());
+    }
+
+    @Override
+    int getMtu() throws SocketException {
+        return mNetworkInterface.getMTU();
+    }
+
+    @Override
+    boolean isUp() throws SocketException {
+        return mNetworkInterface.isUp();
+    }
+
+    @Override
+    boolean isLoopback() throws SocketException {
+        return mNetworkInterface.isLoopback();
+    }
+
+    @Override
+    boolean isPointToPoint() throws SocketException {
+        return mNetworkInterface.isPointToPoint();
+    }
+}
@@ -9,12 +9,17 @@ package in.droun.hammernet;
 
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
+import in.droun.hammernet.NetInfoMetrics.Operation;
 import java.math.BigInteger;
 import java.net.Inet4Address;
+import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  *
@@ -27,13 +32,43 @@ public class NetworkInterfaceInfo {
      */
     private final transient InterfaceQuery mInterfaceQuery;
 
+    /**
+     * Optional snapshot cache, lookups are served from it when not null.
+     */
+    private final transient InterfaceSnapshotCache mSnapshotCache;
+
+    /**
+     * Where platform calls are reported, {@link NetInfoMetrics#NONE} unless asked for.
+     */
+    private final transient NetInfoMetrics mMetrics;
+
+    /**
+     * Interfaces whose hardware address recently failed, skipped by MAC address lookups.
+     */
+    private final transient FailingInterfaceCache mFailingInterfaces = new FailingInterfaceCache();
+
     public static final int MAX_INTERFACE_NAME_LENGTH = 128;
 
+    /**
+     * Returned by {@link #getIp4AddressByName(String)} when there is no address, 0.0.0.0 is never
+     * bound to an interface.
+     */
+    public static final int NO_IP4_ADDRESS = 0;
+
     /**
      * Simple NetworkInterfaceInfo constructor.
      */
     public NetworkInterfaceInfo() {
-        this(new InterfaceQuery());
+        this(InterfaceQuery.createDefault());
+    }
+
+    /**
+     * Creates a NetworkInterfaceInfo reporting the platform calls it makes to <i>metrics</i>.
+     *
+     * @param metrics sink for call counts, latencies and skipped interfaces.
+     */
+    public NetworkInterfaceInfo(final NetInfoMetrics metrics) {
+        this(InterfaceQuery.createDefault(), metrics);
     }
 
     /**
@@ -43,47 +78,62 @@ public class NetworkInterfaceInfo {
      * @param interfaceQuery instance of {@link  InterfaceQuery}.
      */
     protected NetworkInterfaceInfo(final InterfaceQuery interfaceQuery) {
+        this(interfaceQuery, NetInfoMetrics.NONE);
+    }
+
+    /**
+     * This constructor is only intended to aid with unit testing.
+     *
+     * @param interfaceQuery instance of {@link  InterfaceQuery}.
+     * @param metrics        sink for call counts, latencies and skipped interfaces.
+     */
+    protected NetworkInterfaceInfo(final InterfaceQuery interfaceQuery,
+            final NetInfoMetrics metrics) {
         mInterfaceQuery = interfaceQuery;
+        mSnapshotCache = null;
+        mMetrics = metrics;
+    }
+
+    /**
+     * Creates a NetworkInterfaceInfo that serves lookups from <i>snapshotCache</i> instead of
+     * enumerating the interfaces on every call. Calls are reported to the cache's metrics.
+     *
+     * @param snapshotCache cache to serve lookups from.
+     */
+    public NetworkInterfaceInfo(final InterfaceSnapshotCache snapshotCache) {
+        mInterfaceQuery = snapshotCache.getInterfaceQuery();
+        mSnapshotCache = snapshotCache;
+        mMetrics = snapshotCache.getMetrics();
     }
 
     /**
-     * Converts a MAC address string to byte array.
+     * Converts a MAC address string to a BigInteger.
+     * <p>
+     * This is a thin wrapper around {@link MacAddressParser#parse(CharSequence)}, kept for
+     * compatibility. The result is the signed value of the six address bytes. To convert many
+     * addresses at once, without a String per address, use {@link MacAddressScanner}.
      *
      * @param macString Any MAC address in string form, bytes delimited by either ':', '-', or ' '.
      *
      * @return BigInteger of given MAC address.
      */
     public static BigInteger macAddressToBigInteger(final String macString) {
+        final long macAddress = MacAddressParser.parse(macString);
+        final int unusedBits = 16;
+        return macAddress != MacAddressParser.INVALID
+                ? BigInteger.valueOf(macAddress << unusedBits >> unusedBits) : null;
+    }
 
-        // Validate
-        final int maxMacStringLength = 17;
-        String cleanMacString = null;
-        if (isNotBlank(macString) && macString.length() <= maxMacStringLength) {
-
-            // Cleanup and revalidate
-            cleanMacString = macString.replaceAll("[:\\.\\s-]", "").toLowerCase();
-            if (!cleanMacString.matches("[0-9a-f]{12}")) {
-                cleanMacString = null;
-            }
-        }
-
-        // Convert
-        BigInteger result = null;
-        if (isNotBlank(cleanMacString)) {
-            final char[] macNibbles = cleanMacString.toCharArray();
-
-            final int macByteSize = 6;
-            final byte[] macAddress = new byte[macByteSize];
-            for (int i = 0; i < macByteSize; i++) {
-                final int pos = i * 2;
-                macAddress[i] = Integer.decode("0x" + macNibbles[pos] + macNibbles[pos + 1])
-                        .byteValue();
-            }
-
-            result = new BigInteger(macAddress);
-        }
-
-        return result;
+    /**
+     * Converts a MAC address string to a primitive long without allocating.
+     *
+     * @param macString Any MAC address in string form, bytes delimited by either ':', '-', '.' or
+     *                  whitespace.
+     *
+     * @return the MAC address in the lower 48 bits, or {@link MacAddressParser#INVALID}.
+     */
+    public static long macAddressToLong(final CharSequence macString) {
+        return MacAddressParser.parse(macString);
     }
 
     /**
@@ -103,32 +153,127 @@ public class NetworkInterfaceInfo {
      * <!-- CHECKSTYLE.ON: LineLength -->
      */
     public String getNameByMacAddress(final BigInteger macAddress) throws SocketException {
+        return getNameByMacAddress(MacAddress.fromBigInteger(macAddress));
+    }
+
+    /**
+     * Returns the name of the interface with the given MAC address.
+     *
+     * @param macAddress MAC address of interface name to find.
+     *
+     * @return The interface name, or null if no interface has that MAC address.
+     *
+     * @throws SocketException
+     */
+    public String getNameByMacAddress(final MacAddress macAddress) throws SocketException {
+        return getNameByMacAddress(macAddress, InterfaceFilter.ANY);
+    }
+
+    /**
+     * Returns the name of the interface with the given MAC address, among those accepted by
+     * <i>filter</i>. The filter is checked before the hardware address is read, so the
+     * interfaces it rejects, such as loopback, down or tunnel interfaces with
+     * {@link InterfaceFilter#ADAPTERS}, cost no hardware address read. Each one avoided is
+     * reported to {@link NetInfoMetrics#interfaceFiltered()}.
+     *
+     * @param macAddress MAC address of interface name to find.
+     * @param filter     conditions the interface must meet.
+     *
+     * @return The interface name, or null if no accepted interface has that MAC address.
+     *
+     * @throws SocketException
+     */
+    public String getNameByMacAddress(final MacAddress macAddress, final InterfaceFilter filter)
+            throws SocketException {
+        final String result;
+        if (mSnapshotCache == null) {
+            result = findNameByMacAddress(macAddress, filter);
+        } else {
+            final InterfaceRecord record = macAddress != null
+                    ? findCachedByMacAddress(mSnapshotCache.get(), macAddress.toLong(), filter)
+                    : null;
+            result = record != null ? record.getName() : null;
+        }
+        return result;
+    }
+
+    /**
+     * Lookup of an accepted interface by MAC address in a snapshot, through its index unless
+     * the first interface with that MAC address is rejected.
+     */
+    private static InterfaceRecord findCachedByMacAddress(final InterfaceSnapshot snapshot,
+            final long macAddress, final InterfaceFilter filter) {
+        InterfaceRecord result = snapshot.getByMacAddress(macAddress);
+        if (result != null && !filter.accepts(result)) {
+            // Bridges and VLANs share their MAC address with another interface
+            result = null;
+            for (final InterfaceRecord record : snapshot.getRecords()) {
+                if (record.getMacAddressValue() == macAddress && filter.accepts(record)) {
+                    result = record;
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Uncached implementation of {@link #getNameByMacAddress(MacAddress, InterfaceFilter)}.
+     */
+    private String findNameByMacAddress(final MacAddress macAddress,
+            final InterfaceFilter filter) throws SocketException {
 
         // Fetch list of interfaces on the device and iterate
-        final Enumeration<NetworkInterface> interfaces = mInterfaceQuery.getNetworkInterfaces();
         String result = null;
-        if (macAddress != null && interfaces != null) {
-            while (interfaces.hasMoreElements()) {
-                final NetworkInterface current = interfaces.nextElement();
+        if (macAddress != null) {
+            final long wantedMac = macAddress.toLong();
+            final boolean filtered = !filter.isAny();
+            final List<InterfaceHandle> handles = getInterfaceHandles();
+            mFailingInterfaces.checkInterfaces(handles);
+            final long now = System.nanoTime();
+            for (final InterfaceHandle current : handles) {
 
-                final byte[] hardwareAddress;
                 try {
-                    hardwareAddress = current.getHardwareAddress();
+                    if (filtered && !filter.accepts(current)) {
+                        mMetrics.interfaceFiltered();
+                        continue;
+                    }
                 } catch (SocketException socketException) {
-                    // getHardwareAddress() throws "java.net.SocketException: No such device" on
-                    // the Jenkins, just skip these interfaces.
+                    // Gone before its flags could be read, as below
+                    mMetrics.interfaceSkipped();
+                    continue;
+                }
+
+                final String name = current.getName();
+                final int index = current.getIndex();
+                if (!mFailingInterfaces.isEmpty()
+                        && mFailingInterfaces.isFailing(name, index, now)) {
                     continue;
                 }
 
-                if (hardwareAddress == null) {
+                final long currentMac;
+                final long startTime = startTime();
+                try {
+                    currentMac = current.getMacAddress();
+                } catch (SocketException socketException) {
+                    // getHardwareAddress() throws "java.net.SocketException: No such device" on
+                    // the Jenkins, just skip these interfaces, and do not ask again for a while.
+                    mMetrics.interfaceSkipped();
+                    mFailingInterfaces.failed(name, index, now, handles);
                     continue;
+                } finally {
+                    completed(Operation.GET_HARDWARE_ADDRESS, startTime);
                 }
 
-                // Next NOPMD is for AvoidInstantiatingObjectsInLoops, no choice in the matter
-                final BigInteger currentMac = new BigInteger(hardwareAddress); // NOPMD
-                if (currentMac.equals(macAddress)) {
+                // Null or non six byte hardware addresses come back as INVALID, never matching
+                if (currentMac == MacAddressParser.INVALID) {
+                    mFailingInterfaces.failed(name, index, now, handles);
+                } else {
+                    mFailingInterfaces.succeeded(name);
+                }
+                if (currentMac == wantedMac) {
                     // If the current interface's and WiFi MAC match, we have a winner
-                    result = current.getName();
+                    result = name;
                     break;
                 }
             }
@@ -137,6 +282,138 @@ public class NetworkInterfaceInfo {
         return result;
     }
 
+    /**
+     * Returns the interfaces {@link #getNameByMacAddress(MacAddress, InterfaceFilter)} skips for
+     * a while after their hardware address could not be read or turned out missing, with how
+     * many reads that saved. Its backoff can be changed, or set to zero to always read every
+     * interface. Not used when lookups are served from a snapshot cache.
+     *
+     * @return the negative cache of this instance.
+     */
+    public FailingInterfaceCache getFailingInterfaceCache() {
+        return mFailingInterfaces;
+    }
+
+    /**
+     * Returns everything known about every interface, read in a single enumeration. Callers that
+     * need several facts about the interfaces should use this instead of calling the individual
+     * lookup methods.
+     *
+     * @return snapshot of the interfaces. Served from the snapshot cache if this instance has one.
+     *
+     * @throws SocketException if the interfaces could not be enumerated.
+     */
+    public InterfaceSnapshot snapshot() throws SocketException {
+        final InterfaceSnapshot result;
+        if (mSnapshotCache != null) {
+            result = mSnapshotCache.get();
+        } else {
+            final long startTime = startTime();
+            try {
+                result = mInterfaceQuery.snapshot();
+            } finally {
+                completed(Operation.SNAPSHOT, startTime);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the interfaces of every snapshot on several threads, for hosts with thousands of
+     * interfaces where reading them one after the other takes long. Records are merged back in
+     * enumeration order, so snapshots are the same as when read serially. The calling thread
+     * reads its share too, and everything if the executor is busy or rejects the work, so the
+     * executor may be shared and bounded. Applies to the snapshot cache too if this instance has
+     * one.
+     *
+     * @param executor        runs up to <i>parallelism</i> - 1 tasks per snapshot, or null to
+     *                        read serially again.
+     * @param parallelism     most threads reading one snapshot, the calling one included.
+     * @param serialThreshold fewest interfaces read in parallel, fewer are read serially as
+     *                        splitting them costs more than it saves. A few hundred is typical.
+     *
+     * @throws IllegalArgumentException if <i>parallelism</i> is below one or
+     *                                  <i>serialThreshold</i> negative.
+     */
+    public void setParallelCollection(final Executor executor, final int parallelism,
+            final int serialThreshold) {
+        mInterfaceQuery.setParallelCollection(executor, parallelism, serialThreshold);
+    }
+
+    /**
+     * Returns the interface the default route goes through, the one traffic leaves by when
+     * nothing more specific matches: a better fallback than a hard coded interface name when
+     * there is no Wi-Fi interface. Read from the routing tables, or from the snapshot cache if
+     * this instance has one.
+     *
+     * @return the interface name, or null if there is no default route.
+     *
+     * @throws SocketException if the interfaces could not be enumerated for the snapshot cache.
+     */
+    public String getDefaultRouteInterfaceName() throws SocketException {
+        return mSnapshotCache != null ? mSnapshotCache.get().getDefaultRouteInterfaceName()
+                : mInterfaceQuery.getDefaultRouteInterfaceName();
+    }
+
+    /**
+     * Picks the interface address best matching a policy, in one enumeration: every address of
+     * every interface is labelled by <i>classifier</i>, and the first address carrying the
+     * earliest label of <i>preference</i> wins. For example, to advertise a private IPv4 address
+     * before a carrier grade NAT one, and never a link local one:
+     *
+     * <pre>
+     *{@code
+     *    final InetAddress address = interfaceInfo.getAddressByPolicy(CidrTrie.standard(),
+     *            Arrays.asList(CidrTrie.PRIVATE, CidrTrie.CGNAT));
+     *}
+     * </pre>
+     *
+     * @param <L>        type of the labels.
+     * @param classifier labels addresses.
+     * @param preference labels to accept, most preferred first. A null element stands for
+     *                   addresses <i>classifier</i> has no label for, such as public ones.
+     *
+     * @return the best address, or null if no address carries any of the labels.
+     *
+     * @throws SocketException if the interfaces could not be enumerated.
+     */
+    public <L> InetAddress getAddressByPolicy(final CidrTrie<L> classifier,
+            final List<L> preference) throws SocketException {
+        return getAddressByPolicy(classifier, preference, InetAddress.class);
+    }
+
+    /**
+     * Same as {@link #getAddressByPolicy(CidrTrie, List)}, only considering addresses of type
+     * <i>clazz</i>, such as {@link Inet4Address}.
+     *
+     * @param <L>        type of the labels.
+     * @param classifier labels addresses.
+     * @param preference labels to accept, most preferred first, null for unlabelled addresses.
+     * @param clazz      type of address to return.
+     *
+     * @return the best address, or null if no address of type <i>clazz</i> carries any of the
+     *         labels.
+     *
+     * @throws SocketException if the interfaces could not be enumerated.
+     */
+    public <L> InetAddress getAddressByPolicy(final CidrTrie<L> classifier,
+            final List<L> preference, final Class<? extends InetAddress> clazz)
+            throws SocketException {
+        InetAddress result = null;
+        int resultRank = preference.size();
+        for (final InterfaceRecord record : snapshot().getRecords()) {
+            for (final InetAddress address : record.getInetAddresses()) {
+                final int rank = clazz.isInstance(address)
+                        ? preference.indexOf(classifier.lookup(address)) : -1;
+                if (rank >= 0 && rank < resultRank) {
+                    result = address;
+                    resultRank = rank;
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Returns the numeric representation of this IPv4 address (such as
      * "2001:0db8:85a3:0000:0000:8a2e:0370:7334").
@@ -163,21 +440,146 @@ public class NetworkInterfaceInfo {
      *
      * @throws SocketException if a network error occurs.
      */
-    protected String getHostAddressByName(final String interfaceName, final Class clazz)
+    protected String getHostAddressByName(final String interfaceName,
+            final Class<? extends InetAddress> clazz) throws SocketException {
+        final InetAddress address = findAddress(interfaceName, clazz);
+        return address != null ? address.getHostAddress() : null;
+    }
+
+    /**
+     * Returns an interface's IPv4 address as a primitive, for callers that bind sockets or
+     * compare addresses and would only parse {@link #getIp4HostAddressByName(String)} back. Does
+     * not allocate when served from the snapshot cache. See {@link InetAddressFormat} for text.
+     *
+     * @param interfaceName name of interface.
+     *
+     * @return the address, most significant byte first, or {@link #NO_IP4_ADDRESS} if not found.
+     *
+     * @throws SocketException if a network error occurs.
+     */
+    public int getIp4AddressByName(final String interfaceName) throws SocketException {
+        final int result;
+        final String validName = validName(interfaceName);
+        if (mSnapshotCache != null) {
+            final InterfaceRecord record
+                    = validName != null ? mSnapshotCache.get().getByName(validName) : null;
+            result = record != null ? record.getIp4Address() : NO_IP4_ADDRESS;
+        } else {
+            final InetAddress address = findAddressByName(validName, Inet4Address.class);
+            result = address != null ? InetAddressFormat.ip4ToInt(address.getAddress())
+                    : NO_IP4_ADDRESS;
+        }
+        return result;
+    }
+
+    /**
+     * Writes an interface's first IPv6 address as two primitive longs. The scope, such as "%wlan0"
+     * of a link local address, is not part of the result. Does not allocate when served from the
+     * snapshot cache. See {@link InetAddressFormat} for text.
+     *
+     * @param interfaceName name of interface.
+     * @param destination   receives the upper 64 bits at index 0 and the lower 64 bits at 1.
+     *
+     * @return false, leaving <i>destination</i> untouched, if not found.
+     *
+     * @throws SocketException if a network error occurs.
+     */
+    public boolean getIp6AddressByName(final String interfaceName, final long[] destination)
             throws SocketException {
+        boolean result = false;
+        final String validName = validName(interfaceName);
+        if (mSnapshotCache != null) {
+            final InterfaceRecord record
+                    = validName != null ? mSnapshotCache.get().getByName(validName) : null;
+            result = record != null && record.getIp6Address(destination, 0);
+        } else {
+            final InetAddress address = findAddressByName(validName, Inet6Address.class);
+            if (address != null) {
+                final byte[] bytes = address.getAddress();
+                destination[0] = InetAddressFormat.ip6HalfToLong(bytes, 0);
+                destination[1] = InetAddressFormat.ip6HalfToLong(bytes, Long.SIZE / Byte.SIZE);
+                result = true;
+            }
+        }
+        return result;
+    }
 
-        final NetworkInterface adaptor
-                = isNotBlank(interfaceName) && interfaceName.length() <= MAX_INTERFACE_NAME_LENGTH
-                ? mInterfaceQuery.getByName(interfaceName) : null;
+    /**
+     * Cheaply checks an interface found earlier: one lookup by name and one hardware address
+     * read, or none when served from the snapshot cache, instead of going through every
+     * interface.
+     *
+     * @param interfaceName name of the interface found earlier.
+     * @param macAddress    MAC address it had, in the lower 48 bits.
+     *
+     * @return the interface's addresses, or null if it is gone, its MAC address changed or cannot
+     *         be read anymore.
+     *
+     * @throws SocketException if a network error occurs.
+     */
+    List<InetAddress> getInetAddressesByNameAndMac(final String interfaceName,
+            final long macAddress) throws SocketException {
+        List<InetAddress> result = null;
+        final String validName = validName(interfaceName);
+        if (validName != null && mSnapshotCache != null) {
+            final InterfaceRecord record = mSnapshotCache.get().getByName(validName);
+            if (record != null && record.getMacAddressValue() == macAddress) {
+                result = record.getInetAddresses();
+            }
+        } else if (validName != null) {
+            final InterfaceHandle handle = getHandleByName(validName);
+            if (handle != null) {
+                long currentMac = MacAddressParser.INVALID;
+                final long startTime = startTime();
+                try {
+                    currentMac = handle.getMacAddress();
+                } catch (SocketException socketException) {
+                    // Gone half way through, "No such device", so it does not match
+                    mMetrics.interfaceSkipped();
+                } finally {
+                    completed(Operation.GET_HARDWARE_ADDRESS, startTime);
+                }
+                // INVALID never matches, as in findNameByMacAddress
+                if (currentMac == macAddress && currentMac != MacAddressParser.INVALID) {
+                    result = handle.getInetAddresses();
+                }
+            }
+        }
+        return result;
+    }
 
-        // Query for information requested
-        String result = null;
+    /**
+     * @return <i>interfaceName</i> if it could be the name of an interface, null otherwise.
+     */
+    private static String validName(final String interfaceName) {
+        return isNotBlank(interfaceName) && interfaceName.length() <= MAX_INTERFACE_NAME_LENGTH
+                ? interfaceName : null;
+    }
+
+    /**
+     * First address of type <i>clazz</i> bound to an interface, cached or not.
+     */
+    private InetAddress findAddress(final String interfaceName,
+            final Class<? extends InetAddress> clazz) throws SocketException {
+        final String validName = validName(interfaceName);
+        return mSnapshotCache != null
+                ? findCachedAddressByName(validName, clazz) : findAddressByName(validName, clazz);
+    }
+
+    /**
+     * Uncached lookup of the first address of type <i>clazz</i> bound to an interface.
+     */
+    private InetAddress findAddressByName(final String interfaceName,
+            final Class<? extends InetAddress> clazz) throws SocketException {
+
+        final InterfaceHandle adaptor
+                = interfaceName != null ? getHandleByName(interfaceName) : null;
+
+        InetAddress result = null;
         if (adaptor != null && clazz != null) {
-            final Enumeration<InetAddress> addresses = adaptor.getInetAddresses();
-            while (addresses.hasMoreElements()) {
-                final InetAddress currentAddress = addresses.nextElement();
+            for (final InetAddress currentAddress : adaptor.getInetAddresses()) {
                 if (currentAddress != null && clazz.isInstance(currentAddress)) {
-                    result = currentAddress.getHostAddress();
+                    result = currentAddress;
                     break;
                 }
             }
@@ -186,11 +588,76 @@ public class NetworkInterfaceInfo {
     }
 
     /**
-     * This internal class is only intended to be used in unit testing. It wraps around
-     * {@link java.net.NetworkInterface}. It basically allows for easier mocking.
+     * Lookup of the first address of type <i>clazz</i> bound to an interface, served from the
+     * snapshot cache.
+     */
+    private InetAddress findCachedAddressByName(final String interfaceName,
+            final Class<? extends InetAddress> clazz) throws SocketException {
+        final InterfaceRecord record
+                = interfaceName != null ? mSnapshotCache.get().getByName(interfaceName) : null;
+        return record != null ? record.getFirstAddress(clazz) : null;
+    }
+
+    /**
+     * {@link InterfaceQuery#getInterfaceHandles()}, measured.
+     */
+    private List<InterfaceHandle> getInterfaceHandles() throws SocketException {
+        final List<InterfaceHandle> result;
+        final long startTime = startTime();
+        try {
+            result = mInterfaceQuery.getInterfaceHandles();
+        } finally {
+            completed(Operation.GET_NETWORK_INTERFACES, startTime);
+        }
+        return result;
+    }
+
+    /**
+     * {@link InterfaceQuery#getHandleByName(String)}, measured.
+     */
+    private InterfaceHandle getHandleByName(final String interfaceName) throws SocketException {
+        final InterfaceHandle result;
+        final long startTime = startTime();
+        try {
+            result = mInterfaceQuery.getHandleByName(interfaceName);
+        } finally {
+            completed(Operation.GET_BY_NAME, startTime);
+        }
+        return result;
+    }
+
+    /**
+     * @return the time a measured call starts at, without reading the clock if nothing is
+     *         measured.
+     */
+    private long startTime() {
+        return mMetrics != NetInfoMetrics.NONE ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Reports a call started at <i>startTime</i>, if anything is measured.
+     */
+    private void completed(final Operation operation, final long startTime) {
+        if (mMetrics != NetInfoMetrics.NONE) {
+            mMetrics.callCompleted(operation, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * This internal class is mostly intended to be used in unit testing. It wraps around
+     * {@link java.net.NetworkInterface}. It basically allows for easier mocking, and for other
+     * backends, see {@link #createDefault()}.
      */
     protected static class InterfaceQuery {
 
+        private final transient DefaultRouteDetector mDefaultRouteDetector
+                = new DefaultRouteDetector();
+
+        /**
+         * Reads the records of {@link #snapshot()} in parallel, null to read them serially.
+         */
+        private transient volatile RecordCollector mRecordCollector;
+
         /**
          * A wrapper around {@link java.net.NetworkInterface#getByName(java.lang.String)}.
          *
@@ -214,5 +681,96 @@ public class NetworkInterfaceInfo {
         protected Enumeration<NetworkInterface> getNetworkInterfaces() throws SocketException {
             return NetworkInterface.getNetworkInterfaces();
         }
+
+        /**
+         * Wraps every interface of {@link #getNetworkInterfaces()} in an {@link InterfaceHandle}.
+         * Backends that do not use {@link java.net.NetworkInterface} override this.
+         *
+         * @return handles of the current interfaces, empty if there are none.
+         *
+         * @throws SocketException if the interfaces could not be enumerated.
+         */
+        protected List<InterfaceHandle> getInterfaceHandles() throws SocketException {
+            final List<InterfaceHandle> handles = new ArrayList<InterfaceHandle>();
+            final Enumeration<NetworkInterface> interfaces = getNetworkInterfaces();
+            while (interfaces != null && interfaces.hasMoreElements()) {
+                handles.add(wrap(interfaces.nextElement()));
+            }
+            return handles;
+        }
+
+        /**
+         * Wraps {@link #getByName(String)} in an {@link InterfaceHandle}. Backends that do not use
+         * {@link java.net.NetworkInterface} override this.
+         *
+         * @param name interface name.
+         *
+         * @return handle of the interface, or null if there is no such interface.
+         *
+         * @throws SocketException if the interfaces could not be enumerated.
+         */
+        protected InterfaceHandle getHandleByName(final String name) throws SocketException {
+            final NetworkInterface networkInterface = getByName(name);
+            return networkInterface != null ? wrap(networkInterface) : null;
+        }
+
+        /**
+         * Creates the {@link InterfaceHandle} for an enumerated interface.
+         *
+         * @param networkInterface interface to wrap.
+         *
+         * @return handle reading the interface's attributes.
+         */
+        protected InterfaceHandle wrap(final NetworkInterface networkInterface) {
+            return new NetworkInterfaceHandle(networkInterface);
+        }
+
+        /**
+         * Enumerates every interface once and copies everything known about each into an
+         * immutable {@link InterfaceSnapshot}. Attributes that cannot be read are left unknown,
+         * the interface is still kept.
+         *
+         * @return snapshot of the current interfaces.
+         *
+         * @throws SocketException if the interfaces could not be enumerated.
+         */
+        protected InterfaceSnapshot snapshot() throws SocketException {
+            final List<InterfaceHandle> handles = getInterfaceHandles();
+            final RecordCollector recordCollector = mRecordCollector;
+            final InterfaceRecord[] records = recordCollector != null
+                    ? recordCollector.collect(handles) : RecordCollector.collectSerially(handles);
+            return new InterfaceSnapshot(System.nanoTime(), getDefaultRouteInterfaceName(),
+                    records);
+        }
+
+        /**
+         * See {@link NetworkInterfaceInfo#setParallelCollection(Executor, int, int)}.
+         */
+        protected void setParallelCollection(final Executor executor, final int parallelism,
+                final int serialThreshold) {
+            mRecordCollector = executor != null
+                    ? new RecordCollector(executor, parallelism, serialThreshold) : null;
+        }
+
+        /**
+         * Finds the interface of the default route in the kernel routing tables. Backends that
+         * do not run on Linux override this.
+         *
+         * @return the interface name, or null if there is no default route.
+         */
+        protected String getDefaultRouteInterfaceName() {
+            return mDefaultRouteDetector.getInterfaceName();
+        }
+
+        /**
+         * Picks the fastest backend available on this device: {@link SysfsInterfaceQuery} where
+         * Linux sysfs can be read, plain {@link InterfaceQuery} otherwise.
+         *
+         * @return a new InterfaceQuery.
+         */
+        protected static InterfaceQuery createDefault() {
+            return SysfsInterfaceQuery.isAvailable()
+                    ? new SysfsInterfaceQuery() : new InterfaceQuery();
+        }
     }
 }
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Read only IEEE vendor registry, served straight from a memory mapped file written by
+ * {@link OuiRegistryCompiler}. Opening only maps and checks the file, lookups are binary searches
+ * on the mapped pages that allocate nothing, and every JVM mapping the same file shares it through
+ * the page cache.
+ * <p>
+ * The most specific assignment wins: MA-S (36-bit) blocks first, then MA-M (28-bit) and last MA-L
+ * (24-bit) OUIs.
+ *
+ * <pre>
+ *{@code
+ *    final OuiRegistry registry = OuiRegistry.open(new File("oui.bin"));
+ *    final String vendor = registry.getVendor(androidNetInfo.wifiMac());
+ *}
+ * </pre>
+ *
+ * Instances are immutable and thread safe.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public final class OuiRegistry {
+
+    /**
+     * Returned by {@link #findVendorId(long)} for addresses of no known vendor.
+     */
+    public static final int NOT_FOUND = -1;
+
+    /**
+     * "HNOU", first four bytes of a registry file.
+     */
+    static final int MAGIC = 0x484E4F55;
+
+    static final int VERSION = 1;
+
+    /**
+     * Magic, version, and one entry count per prefix length.
+     */
+    static final int HEADER_SIZE = 20;
+
+    /**
+     * Prefix value as a long, then the offset of the vendor name in the name table.
+     */
+    static final int ENTRY_SIZE = 12;
+
+    /**
+     * Prefix lengths in the order their sections appear in the file.
+     */
+    static final int[] PREFIX_LENGTHS = { 24, 28, 36 };
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAC_BITS = 48;
+
+    private static final int UNSIGNED_SHORT_MASK = 0xFFFF;
+
+    private final transient ByteBuffer mBuffer;
+
+    /**
+     * Offset of each prefix length's section, indexed like {@link #PREFIX_LENGTHS}.
+     */
+    private final transient int[] mSectionOffsets = new int[PREFIX_LENGTHS.length];
+
+    private final transient int[] mSectionSizes = new int[PREFIX_LENGTHS.length];
+
+    private final transient int mNamesOffset;
+
+    /**
+     * @param buffer whole registry file, not modified.
+     *
+     * @throws IOException if <i>buffer</i> does not hold a registry of this version.
+     */
+    OuiRegistry(final ByteBuffer buffer) throws IOException {
+        mBuffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an OUI registry file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported OUI registry version " + buffer.getInt(4));
+        }
+        long offset = HEADER_SIZE;
+        for (int i = 0; i < PREFIX_LENGTHS.length; i++) {
+            final int size = buffer.getInt(8 + i * 4);
+            if (size < 0) {
+                throw new IOException("Corrupt OUI registry header");
+            }
+            mSectionOffsets[i] = (int) Math.min(offset, Integer.MAX_VALUE);
+            mSectionSizes[i] = size;
+            offset += (long) size * ENTRY_SIZE;
+        }
+        if (offset > buffer.capacity()) {
+            throw new IOException("Truncated OUI registry file");
+        }
+        mNamesOffset = (int) offset;
+    }
+
+    /**
+     * Maps a registry file written by {@link OuiRegistryCompiler}. The mapping stays valid after
+     * the file is closed.
+     *
+     * @param file registry file.
+     *
+     * @return the registry.
+     *
+     * @throws IOException if the file cannot be read or is not a registry.
+     */
+    public static OuiRegistry open(final File file) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            return new OuiRegistry(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Finds the vendor a MAC address was assigned to, without allocating.
+     *
+     * @param macAddress MAC address in the lower 48 bits.
+     *
+     * @return an id to pass to {@link #getVendorName(int)}, equal for equal vendor names, or
+     *         {@link #NOT_FOUND}.
+     */
+    public int findVendorId(final long macAddress) {
+        int result = NOT_FOUND;
+        if (macAddress != MacAddressParser.INVALID) {
+            // Longest prefix first
+            for (int i = PREFIX_LENGTHS.length - 1; i >= 0 && result == NOT_FOUND; i--) {
+                result = search(i, macAddress >>> MAC_BITS - PREFIX_LENGTHS[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param vendorId id returned by {@link #findVendorId(long)}.
+     *
+     * @return the vendor's organization name.
+     *
+     * @throws IllegalArgumentException if <i>vendorId</i> is not a vendor of this registry.
+     */
+    public String getVendorName(final int vendorId) {
+        final int position = mNamesOffset + vendorId;
+        if (vendorId < 0 || position + 2 > mBuffer.capacity()) {
+            throw new IllegalArgumentException("Unknown vendor id " + vendorId);
+        }
+        final int length = mBuffer.getShort(position) & UNSIGNED_SHORT_MASK;
+        final byte[] name = new byte[length];
+        for (int i = 0; i < length; i++) {
+            name[i] = mBuffer.get(position + 2 + i);
+        }
+        return new String(name, UTF_8);
+    }
+
+    /**
+     * @param macAddress MAC address in the lower 48 bits.
+     *
+     * @return the vendor's organization name, or null if unknown.
+     */
+    public String getVendor(final long macAddress) {
+        final int vendorId = findVendorId(macAddress);
+        return vendorId != NOT_FOUND ? getVendorName(vendorId) : null;
+    }
+
+    /**
+     * @param macAddress MAC address, may be null.
+     *
+     * @return the vendor's organization name, or null if unknown.
+     */
+    public String getVendor(final MacAddress macAddress) {
+        return macAddress != null ? getVendor(macAddress.toLong()) : null;
+    }
+
+    /**
+     * @return number of assignments in the registry, all prefix lengths together.
+     */
+    public int size() {
+        int result = 0;
+        for (final int size : mSectionSizes) {
+            result += size;
+        }
+        return result;
+    }
+
+    /**
+     * Binary search of one prefix length's section, sorted by prefix.
+     *
+     * @return the vendor id of <i>prefix</i>, or {@link #NOT_FOUND}.
+     */
+    private int search(final int section, final long prefix) {
+        final int base = mSectionOffsets[section];
+        int low = 0;
+        int high = mSectionSizes[section] - 1;
+        int result = NOT_FOUND;
+        while (low <= high) {
+            final int middle = low + high >>> 1;
+            final long current = mBuffer.getLong(base + middle * ENTRY_SIZE);
+            if (current < prefix) {
+                low = middle + 1;
+            } else if (current > prefix) {
+                high = middle - 1;
+            } else {
+                result = mBuffer.getInt(base + middle * ENTRY_SIZE + 8);
+                break;
+            }
+        }
+        return result;
+    }
+}
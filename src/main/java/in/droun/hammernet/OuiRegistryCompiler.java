@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles the IEEE registry text files, "oui.txt" (MA-L), "mam.txt" (MA-M) and "oui36.txt"
+ * (MA-S), into the binary file {@link OuiRegistry} maps. Each assignment in those files is a
+ * "(hex)" line with the OUI and organization, followed by a "(base 16)" line that, for MA-M and
+ * MA-S, holds the assigned range of the lower 24 bits:
+ *
+ * <pre>
+ * 70-B3-D5   (hex)            Example Corp
+ * F1D000-F1DFFF     (base 16) Example Corp
+ * </pre>
+ *
+ * The prefix length is worked out from the range, so the files can be given in any order. Also
+ * runs from the command line: <code>OuiRegistryCompiler out.bin oui.txt mam.txt oui36.txt</code>.
+ * Not thread safe.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public final class OuiRegistryCompiler {
+
+    private static final Pattern HEX_LINE = Pattern.compile(
+            "^\\s*([0-9A-Fa-f]{2})-([0-9A-Fa-f]{2})-([0-9A-Fa-f]{2})\\s+\\(hex\\)\\s*(.*?)\\s*$");
+
+    private static final Pattern RANGE_LINE = Pattern.compile(
+            "^\\s*([0-9A-Fa-f]{6})(?:-([0-9A-Fa-f]{6}))?\\s+\\(base 16\\).*$");
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int OUI_BITS = 24;
+
+    private static final int NIBBLE_BITS = 4;
+
+    private static final int LOW_NIBBLES = 6;
+
+    private static final int HEX_RADIX = 16;
+
+    /**
+     * Assignments by prefix length section, as prefix value then vendor name.
+     */
+    private final transient List<Map<Long, String>> mSections;
+
+    /**
+     * Creates a compiler with no assignments yet.
+     */
+    public OuiRegistryCompiler() {
+        mSections = new ArrayList<Map<Long, String>>();
+        for (int i = 0; i < OuiRegistry.PREFIX_LENGTHS.length; i++) {
+            mSections.add(new HashMap<Long, String>());
+        }
+    }
+
+    /**
+     * Reads the assignments of one IEEE registry text file. An assignment already read, from this
+     * or an earlier file, is kept.
+     *
+     * @param reader registry text, not closed.
+     *
+     * @return number of assignments read.
+     *
+     * @throws IOException if reading fails.
+     */
+    public int add(final Reader reader) throws IOException {
+        final BufferedReader lines = new BufferedReader(reader);
+        int result = 0;
+        long oui = -1;
+        String vendor = null;
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            final Matcher hex = HEX_LINE.matcher(line);
+            final Matcher range = RANGE_LINE.matcher(line);
+            if (hex.matches()) {
+                if (oui >= 0) {
+                    // Previous assignment had no "(base 16)" line, so it is a whole OUI
+                    result += assign(OUI_BITS, oui, vendor);
+                }
+                oui = Long.parseLong(hex.group(1) + hex.group(2) + hex.group(3), HEX_RADIX);
+                vendor = hex.group(4);
+            } else if (range.matches() && oui >= 0) {
+                result += assignRange(oui, vendor, range.group(1), range.group(2));
+                oui = -1;
+            }
+        }
+        if (oui >= 0) {
+            result += assign(OUI_BITS, oui, vendor);
+        }
+        return result;
+    }
+
+    /**
+     * Writes every assignment read so far in the {@link OuiRegistry} file format.
+     *
+     * @param outputStream where to write, not closed.
+     *
+     * @throws IOException if writing fails.
+     */
+    public void write(final OutputStream outputStream) throws IOException {
+        final Map<String, Integer> nameOffsets = new HashMap<String, Integer>();
+        final ByteArrayOutputStream names = new ByteArrayOutputStream();
+        final DataOutputStream nameData = new DataOutputStream(names);
+
+        final DataOutputStream output = new DataOutputStream(outputStream);
+        output.writeInt(OuiRegistry.MAGIC);
+        output.writeInt(OuiRegistry.VERSION);
+        for (final Map<Long, String> section : mSections) {
+            output.writeInt(section.size());
+        }
+        for (final Map<Long, String> section : mSections) {
+            final Long[] prefixes = section.keySet().toArray(new Long[section.size()]);
+            Arrays.sort(prefixes);
+            for (final Long prefix : prefixes) {
+                final String name = section.get(prefix);
+                Integer offset = nameOffsets.get(name);
+                if (offset == null) {
+                    offset = names.size();
+                    nameOffsets.put(name, offset);
+                    final byte[] bytes = utf8(name);
+                    nameData.writeShort(bytes.length);
+                    nameData.write(bytes);
+                }
+                output.writeLong(prefix);
+                output.writeInt(offset);
+            }
+        }
+        nameData.flush();
+        names.writeTo(output);
+        output.flush();
+    }
+
+    /**
+     * Compiles registry text files into a registry file.
+     *
+     * @param args output file, then one or more IEEE registry text files.
+     *
+     * @throws IOException if reading or writing fails.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException(
+                    "Usage: OuiRegistryCompiler <output file> <registry text file>...");
+        }
+        final OuiRegistryCompiler compiler = new OuiRegistryCompiler();
+        for (int i = 1; i < args.length; i++) {
+            final Reader reader = new InputStreamReader(new FileInputStream(args[i]), UTF_8);
+            try {
+                compiler.add(reader);
+            } finally {
+                reader.close();
+            }
+        }
+        final OutputStream output = new FileOutputStream(new File(args[0]));
+        try {
+            compiler.write(output);
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Works out the prefix from an assigned range of the lower 24 bits: the leading nibbles the
+     * range's ends share, with the rest all zeros at the start and all F's at the end.
+     */
+    private int assignRange(final long oui, final String vendor, final String low,
+            final String high) {
+        int result = 0;
+        if (high == null) {
+            result = assign(OUI_BITS, oui, vendor);
+        } else {
+            int shared = 0;
+            while (shared < LOW_NIBBLES
+                    && Character.toUpperCase(low.charAt(shared))
+                    == Character.toUpperCase(high.charAt(shared))) {
+                shared++;
+            }
+            if (isAll(low, shared, '0') && isAll(high, shared, 'F')) {
+                final long lower = Long.parseLong(low, HEX_RADIX);
+                final int bits = OUI_BITS + shared * NIBBLE_BITS;
+                result = assign(bits, (oui << OUI_BITS | lower) >>> OUI_BITS + OUI_BITS - bits,
+                        vendor);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true if every character of <i>hex</i> from <i>start</i> is <i>digit</i>.
+     */
+    private static boolean isAll(final String hex, final int start, final char digit) {
+        boolean result = true;
+        for (int i = start; i < hex.length() && result; i++) {
+            result = Character.toUpperCase(hex.charAt(i)) == digit;
+        }
+        return result;
+    }
+
+    /**
+     * @return 1 if the assignment was added, 0 if its prefix length is not supported or it was
+     *         already known.
+     */
+    private int assign(final int bits, final long prefix, final String vendor) {
+        final int section = Arrays.binarySearch(OuiRegistry.PREFIX_LENGTHS, bits);
+        int result = 0;
+        if (section >= 0 && !mSections.get(section).containsKey(prefix)) {
+            mSections.get(section).put(prefix, vendor);
+            result = 1;
+        }
+        return result;
+    }
+
+    /**
+     * @return UTF-8 form of <i>name</i>, cut to fit the name table's unsigned short length.
+     */
+    private static byte[] utf8(final String name) {
+        byte[] result = name.getBytes(UTF_8);
+        final int maxLength = 0xFFFF;
+        if (result.length > maxLength) {
+            result = Arrays.copyOf(result, maxLength);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reads the attributes of many interfaces at once, {@link InterfaceHandle#toRecord()} on several
+ * threads, for hosts with thousands of interfaces where reading them one after the other, a few
+ * blocking system calls each, takes long.
+ * <p>
+ * The interfaces are split in chunks that the calling thread and up to <i>parallelism</i> - 1
+ * tasks on the executor claim one at a time, each record landing at its interface's position, so
+ * the result is in enumeration order whoever read what. The calling thread never waits for a
+ * chunk nobody started: if the executor is busy, or rejects the tasks, it reads everything
+ * itself. Below the serial threshold nothing is handed to the executor at all, splitting costing
+ * more than it saves.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+class RecordCollector {
+
+    /**
+     * Chunks per thread, so a thread slowed down by a slow interface does not hold everyone back.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final transient Executor mExecutor;
+
+    private final transient int mParallelism;
+
+    private final transient int mSerialThreshold;
+
+    /**
+     * @param executor        runs the helper tasks.
+     * @param parallelism     most threads reading at once, the calling one included.
+     * @param serialThreshold fewest interfaces read in parallel.
+     *
+     * @throws IllegalArgumentException if <i>parallelism</i> is below one or
+     *                                  <i>serialThreshold</i> negative.
+     */
+    RecordCollector(final Executor executor, final int parallelism, final int serialThreshold) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism below one: " + parallelism);
+        }
+        if (serialThreshold < 0) {
+            throw new IllegalArgumentException("Negative serial threshold: " + serialThreshold);
+        }
+        mExecutor = executor;
+        mParallelism = parallelism;
+        mSerialThreshold = serialThreshold;
+    }
+
+    /**
+     * Reads every interface serially, as a collector without an executor does.
+     *
+     * @param handles interfaces to read.
+     *
+     * @return their records, in the same order.
+     */
+    static InterfaceRecord[] collectSerially(final List<InterfaceHandle> handles) {
+        final InterfaceRecord[] result = new InterfaceRecord[handles.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = handles.get(i).toRecord();
+        }
+        return result;
+    }
+
+    /**
+     * @param handles interfaces to read, the list must not change while being read.
+     *
+     * @return their records, in the same order.
+     */
+    InterfaceRecord[] collect(final List<InterfaceHandle> handles) {
+        final InterfaceRecord[] result;
+        if (mParallelism == 1 || handles.size() < Math.max(mSerialThreshold, 2)) {
+            result = collectSerially(handles);
+        } else {
+            final Batch batch = new Batch(handles, mParallelism);
+            for (int i = 1; i < mParallelism && i < batch.mChunkCount; i++) {
+                try {
+                    mExecutor.execute(batch);
+                } catch (RejectedExecutionException rejectedExecutionException) {
+                    // Saturated, whatever was not handed out is read here
+                    break;
+                }
+            }
+            batch.run();
+            result = batch.await();
+        }
+        return result;
+    }
+
+    /**
+     * One parallel read, run by the calling thread and by every helper task.
+     */
+    private static final class Batch implements Runnable {
+
+        private final transient List<InterfaceHandle> mHandles;
+
+        private final transient InterfaceRecord[] mRecords;
+
+        private final transient int mChunkSize;
+
+        private final transient int mChunkCount;
+
+        /**
+         * Next chunk to claim.
+         */
+        private final transient AtomicInteger mNextChunk = new AtomicInteger();
+
+        /**
+         * Counted down as chunks are done, whoever did them.
+         */
+        private final transient CountDownLatch mPending;
+
+        private final transient AtomicReference<RuntimeException> mFailure
+                = new AtomicReference<RuntimeException>();
+
+        Batch(final List<InterfaceHandle> handles, final int parallelism) {
+            mHandles = handles;
+            mRecords = new InterfaceRecord[handles.size()];
+            final int chunks = parallelism * CHUNKS_PER_THREAD;
+            mChunkSize = (mRecords.length + chunks - 1) / chunks;
+            mChunkCount = (mRecords.length + mChunkSize - 1) / mChunkSize;
+            mPending = new CountDownLatch(mChunkCount);
+        }
+
+        @Override
+        public void run() {
+            int chunk = mNextChunk.getAndIncrement();
+            while (chunk < mChunkCount) {
+                try {
+                    final int end = Math.min(mRecords.length, (chunk + 1) * mChunkSize);
+                    for (int i = chunk * mChunkSize; i < end; i++) {
+                        mRecords[i] = mHandles.get(i).toRecord();
+                    }
+                } catch (RuntimeException runtimeException) {
+                    // Reported by the calling thread, the other chunks still complete
+                    mFailure.compareAndSet(null, runtimeException);
+                } finally {
+                    mPending.countDown();
+                }
+                chunk = mNextChunk.getAndIncrement();
+            }
+        }
+
+        /**
+         * Waits for the chunks still being read by helpers. Interrupts are deferred, the chunks
+         * are in progress and finish soon.
+         *
+         * @return every record.
+         */
+        InterfaceRecord[] await() {
+            boolean interrupted = false;
+            try {
+                while (mPending.getCount() > 0) {
+                    try {
+                        mPending.await();
+                    } catch (InterruptedException interruptedException) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            final RuntimeException failure = mFailure.get();
+            if (failure != null) {
+                throw failure;
+            }
+            // The latch makes the helpers' writes to the array visible here
+            return mRecords;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link NetInfoMetrics} keeping call counts and a {@link LatencyHistogram} per
+ * {@link NetInfoMetrics.Operation}, and counting skipped and filtered interfaces and cache hits
+ * and misses. Recording is lock-free. Export the numbers to whatever monitoring is at hand by
+ * polling the getters:
+ *
+ * <pre>
+ *{@code
+ *    final RecordingNetInfoMetrics metrics = new RecordingNetInfoMetrics();
+ *    final AndroidNetInfo androidNetInfo = new AndroidNetInfo(context, metrics);
+ *    ...
+ *    final long p99 = metrics.getHistogram(Operation.GET_HARDWARE_ADDRESS)
+ *            .getValueAtPercentile(99);
+ *}
+ * </pre>
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public final class RecordingNetInfoMetrics implements NetInfoMetrics {
+
+    private final transient Map<Operation, LatencyHistogram> mHistograms
+            = new EnumMap<Operation, LatencyHistogram>(Operation.class);
+
+    private final transient AtomicLong mSkippedInterfaces = new AtomicLong();
+
+    private final transient AtomicLong mFilteredInterfaces = new AtomicLong();
+
+    private final transient AtomicLong mCacheHits = new AtomicLong();
+
+    private final transient AtomicLong mCacheMisses = new AtomicLong();
+
+    /**
+     * Creates an instance with nothing recorded.
+     */
+    public RecordingNetInfoMetrics() {
+        // Filled up front and never modified, so reading the map needs no locking
+        for (final Operation operation : Operation.values()) {
+            mHistograms.put(operation, new LatencyHistogram());
+        }
+    }
+
+    @Override
+    public void callCompleted(final Operation operation, final long nanos) {
+        mHistograms.get(operation).record(nanos);
+    }
+
+    @Override
+    public void interfaceSkipped() {
+        mSkippedInterfaces.incrementAndGet();
+    }
+
+    @Override
+    public void interfaceFiltered() {
+        mFilteredInterfaces.incrementAndGet();
+    }
+
+    @Override
+    public void cacheHit() {
+        mCacheHits.incrementAndGet();
+    }
+
+    @Override
+    public void cacheMiss() {
+        mCacheMisses.incrementAndGet();
+    }
+
+    /**
+     * @param operation platform call.
+     *
+     * @return latencies of the call, live.
+     */
+    public LatencyHistogram getHistogram(final Operation operation) {
+        return mHistograms.get(operation);
+    }
+
+    /**
+     * @param operation platform call.
+     *
+     * @return how many times the call was made.
+     */
+    public long getCallCount(final Operation operation) {
+        return mHistograms.get(operation).getCount();
+    }
+
+    /**
+     * @return how many interfaces were skipped because their hardware address could not be read.
+     */
+    public long getSkippedInterfaceCount() {
+        return mSkippedInterfaces.get();
+    }
+
+    /**
+     * @return how many interfaces an {@link InterfaceFilter} rejected before their hardware
+     *         address was read, that is how many hardware address reads were avoided.
+     */
+    public long getFilteredInterfaceCount() {
+        return mFilteredInterfaces.get();
+    }
+
+    /**
+     * @return how many lookups were served from a fresh snapshot.
+     */
+    public long getCacheHitCount() {
+        return mCacheHits.get();
+    }
+
+    /**
+     * @return how many lookups had to take a new snapshot.
+     */
+    public long getCacheMissCount() {
+        return mCacheMisses.get();
+    }
+
+    /**
+     * @return share of the snapshot cache lookups that were hits, between 0 and 1, or 0 if there
+     *         were none.
+     */
+    public double getCacheHitRatio() {
+        final long hits = mCacheHits.get();
+        final long total = hits + mCacheMisses.get();
+        return total > 0 ? (double) hits / total : 0;
+    }
+
+    /**
+     * Forgets everything recorded.
+     */
+    public void reset() {
+        for (final LatencyHistogram histogram : mHistograms.values()) {
+            histogram.reset();
+        }
+        mSkippedInterfaces.set(0);
+        mFilteredInterfaces.set(0);
+        mCacheHits.set(0);
+        mCacheMisses.set(0);
+    }
+}
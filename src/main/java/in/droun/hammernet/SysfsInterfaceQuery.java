@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import in.droun.hammernet.NetworkInterfaceInfo.InterfaceQuery;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Linux {@link InterfaceQuery} that reads hardware address, MTU and flags from
+ * <code>/sys/class/net/&lt;name&gt;/</code> instead of issuing one socket ioctl per attribute
+ * through {@link java.net.NetworkInterface}.
+ * <p>
+ * The list of interfaces, their indexes and addresses still come from the single
+ * {@link java.net.NetworkInterface#getNetworkInterfaces()} pass: sysfs has no IPv4 addresses, and
+ * {@link java.net.NetworkInterface} leaves out interfaces without any address, so this is the
+ * only way to return exactly the same results. Any attribute that cannot be read from sysfs
+ * falls back to {@link java.net.NetworkInterface}.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+class SysfsInterfaceQuery extends InterfaceQuery {
+
+    /**
+     * Where Linux publishes one directory per network interface.
+     */
+    static final File SYS_CLASS_NET = new File("/sys/class/net");
+
+    // From linux/if.h
+    private static final int IFF_UP = 0x1;
+    private static final int IFF_LOOPBACK = 0x8;
+    private static final int IFF_POINTOPOINT = 0x10;
+
+    /**
+     * Largest attribute read, "address" of an InfiniBand interface is 59 characters.
+     */
+    private static final int ATTRIBUTE_BUFFER_SIZE = 128;
+
+    private static final int RADIX_HEX = 16;
+
+    private static final int RADIX_DECIMAL = 10;
+
+    private final transient File mSysClassNet;
+
+    SysfsInterfaceQuery() {
+        this(SYS_CLASS_NET);
+    }
+
+    /**
+     * @param sysClassNet directory to read interface attributes from, for testing.
+     */
+    SysfsInterfaceQuery(final File sysClassNet) {
+        super();
+        mSysClassNet = sysClassNet;
+    }
+
+    /**
+     * @return true if {@link #SYS_CLASS_NET} can be read on this device.
+     */
+    static boolean isAvailable() {
+        return isAvailable(SYS_CLASS_NET);
+    }
+
+    /**
+     * Checks that interface attributes can be read, using the loopback interface every Linux
+     * system has.
+     *
+     * @param sysClassNet directory to check.
+     *
+     * @return true if attributes under <i>sysClassNet</i> can be read.
+     */
+    static boolean isAvailable(final File sysClassNet) {
+        final ByteBuffer buffer = ByteBuffer.allocate(ATTRIBUTE_BUFFER_SIZE);
+        return readAttribute(new File(sysClassNet, "lo"), "flags", buffer)
+                && parseNumber(buffer, RADIX_HEX) >= 0;
+    }
+
+    @Override
+    protected InterfaceHandle wrap(final NetworkInterface networkInterface) {
+        return new SysfsInterfaceHandle(networkInterface,
+                new File(mSysClassNet, networkInterface.getName()));
+    }
+
+    /**
+     * Reads a whole sysfs attribute file into <i>buffer</i>, flipped for reading, with the
+     * trailing new line dropped.
+     *
+     * @return false if the file could not be read or does not fit.
+     */
+    static boolean readAttribute(final File directory, final String attribute,
+            final ByteBuffer buffer) {
+        buffer.clear();
+        boolean result;
+        FileInputStream stream = null;
+        try {
+            stream = new FileInputStream(new File(directory, attribute));
+            final FileChannel channel = stream.getChannel();
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                continue;
+            }
+            result = buffer.hasRemaining();
+        } catch (IOException ioException) {
+            result = false;
+        } finally {
+            closeQuietly(stream);
+        }
+        buffer.flip();
+        if (buffer.hasRemaining() && buffer.get(buffer.limit() - 1) == '\n') {
+            buffer.limit(buffer.limit() - 1);
+        }
+        return result;
+    }
+
+    private static void closeQuietly(final FileInputStream stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException ioException) {
+                // Read only file, nothing lost
+                return;
+            }
+        }
+    }
+
+    /**
+     * Parses a non negative number, with an optional "0x" prefix for hex.
+     *
+     * @return the number, or -1 if the buffer does not hold one.
+     */
+    static int parseNumber(final ByteBuffer buffer, final int radix) {
+        int position = buffer.position();
+        final int limit = buffer.limit();
+        if (radix == RADIX_HEX && limit - position > 2 && buffer.get(position) == '0'
+                && (buffer.get(position + 1) | 0x20) == 'x') {
+            position += 2;
+        }
+        long value = position < limit ? 0 : -1;
+        for (int i = position; i < limit && value >= 0; i++) {
+            final int digit = Character.digit(buffer.get(i), radix);
+            value = digit >= 0 && value <= Integer.MAX_VALUE ? value * radix + digit : -1;
+        }
+        return value <= Integer.MAX_VALUE ? (int) value : -1;
+    }
+
+    /**
+     * Parses an "address" attribute the way {@link java.net.NetworkInterface} reports it: the
+     * first six bytes, zero padded, with an all zero address meaning none.
+     *
+     * @return the MAC address, or {@link MacAddressParser#INVALID}.
+     */
+    static long parseHardwareAddress(final ByteBuffer buffer) {
+        long value = 0;
+        int nibbles = 0;
+        boolean valid = true;
+        for (int i = buffer.position(); i < buffer.limit() && valid; i++) {
+            final int kind = MacAddressParser.classify(buffer.get(i));
+            if (kind == MacAddressParser.DELIMITER) {
+                // A single digit byte is possible in theory, sysfs always prints two though
+                valid = nibbles % 2 == 0;
+            } else if (kind == MacAddressParser.ILLEGAL) {
+                valid = false;
+            } else if (nibbles < MacAddressParser.MAC_NIBBLES) {
+                value = value << 4 | kind;
+                nibbles++;
+            }
+        }
+        value <<= (MacAddressParser.MAC_NIBBLES - nibbles) * 4;
+        return valid && value != 0 ? value : MacAddressParser.INVALID;
+    }
+
+    /**
+     * @return true if <i>buffer</i> holds exactly <i>text</i>.
+     */
+    static boolean contentEquals(final ByteBuffer buffer, final String text) {
+        boolean result = buffer.remaining() == text.length();
+        for (int i = 0; i < text.length() && result; i++) {
+            result = buffer.get(buffer.position() + i) == text.charAt(i);
+        }
+        return result;
+    }
+
+    /**
+     * Handle reading attributes from sysfs, falling back to {@link java.net.NetworkInterface}
+     * for those it cannot read. Meant to be used by a single thread.
+     */
+    private static class SysfsInterfaceHandle extends NetworkInterfaceHandle {
+
+        private static final int FLAGS_UNREAD = -1;
+
+        private static final int FLAGS_UNAVAILABLE = -2;
+
+        private final transient File mDirectory;
+
+        private final transient ByteBuffer mBuffer = ByteBuffer.allocate(ATTRIBUTE_BUFFER_SIZE);
+
+        /**
+         * Kernel IFF_* flags, with IFF_UP only kept if the interface is also running.
+         */
+        private transient int mFlags = FLAGS_UNREAD;
+
+        SysfsInterfaceHandle(final NetworkInterface networkInterface, final File directory) {
+            super(networkInterface);
+            mDirectory = directory;
+        }
+
+        @Override
+        long getMacAddress() throws SocketException {
+            return readAttribute(mDirectory, "address", mBuffer)
+                    ? parseHardwareAddress(mBuffer) : super.getMacAddress();
+        }
+
+        @Override
+        int getMtu() throws SocketException {
+            final int mtu = readAttribute(mDirectory, "mtu", mBuffer)
+                    ? parseNumber(mBuffer, RADIX_DECIMAL) : -1;
+            return mtu >= 0 ? mtu : super.getMtu();
+        }
+
+        @Override
+        boolean isUp() throws SocketException {
+            final int flags = flags();
+            return flags != FLAGS_UNAVAILABLE ? (flags & IFF_UP) != 0 : super.isUp();
+        }
+
+        @Override
+        boolean isLoopback() throws SocketException {
+            final int flags = flags();
+            return flags != FLAGS_UNAVAILABLE ? (flags & IFF_LOOPBACK) != 0 : super.isLoopback();
+        }
+
+        @Override
+        boolean isPointToPoint() throws SocketException {
+            final int flags = flags();
+            return flags != FLAGS_UNAVAILABLE
+                    ? (flags & IFF_POINTOPOINT) != 0 : super.isPointToPoint();
+        }
+
+        /**
+         * Reads "flags" once, and "operstate" if the interface is up. NetworkInterface.isUp()
+         * wants IFF_UP and IFF_RUNNING, which the kernel derives from an "up" or "unknown"
+         * operational state.
+         */
+        private int flags() {
+            if (mFlags == FLAGS_UNREAD) {
+                int flags = readAttribute(mDirectory, "flags", mBuffer)
+                        ? parseNumber(mBuffer, RADIX_HEX) : -1;
+                final boolean administrativelyUp = flags >= 0 && (flags & IFF_UP) != 0;
+                if (flags < 0 || administrativelyUp
+                        && !readAttribute(mDirectory, "operstate", mBuffer)) {
+                    flags = FLAGS_UNAVAILABLE;
+                } else if (administrativelyUp && !contentEquals(mBuffer, "up")
+                        && !contentEquals(mBuffer, "unknown")) {
+                    flags &= ~IFF_UP;
+                }
+                mFlags = flags;
+            }
+            return mFlags;
+        }
+    }
+}
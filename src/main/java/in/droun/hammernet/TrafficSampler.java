@@ -0,0 +1,527 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples per interface traffic counters, received and transmitted bytes, packets, errors and
+ * drops, from a single read of <code>/proc/net/dev</code>, and smooths them into per second
+ * rates, cheap enough to sample a hundred times a second for throttling decisions.
+ * <p>
+ * The interfaces to watch are fixed when the sampler is created, usually from an
+ * {@link InterfaceSnapshot}, and are addressed by slot. The file is kept open and read again from
+ * its start into a reused direct buffer, and every counter and rate lives in a preallocated
+ * primitive array, so once the buffer has grown to fit the file a sample allocates nothing. Each
+ * line is matched to its slot in constant time, first against the slot the same line held in the
+ * previous sample, as the kernel keeps the interfaces in order, then through a hash of the name:
+ *
+ * <pre>
+ *{@code
+ *    final TrafficSampler sampler = new TrafficSampler(snapshot, 1, TimeUnit.SECONDS);
+ *    final int wifi = sampler.slotOf("wlan0");
+ *    ...
+ *    sampler.sample();
+ *    final double bytesPerSecond = sampler.getRate(wifi, TrafficSampler.RX_BYTES);
+ *}
+ * </pre>
+ *
+ * Rates are exponentially weighted moving averages. The weight of a new sample grows with the
+ * time since the previous one, 1 - e<sup>-elapsed / time constant</sup>, so irregular sampling
+ * still gives consistent rates. A counter going backwards, because the interface was recreated
+ * or a 32-bit counter wrapped, leaves its rate unchanged for that sample.
+ * <p>
+ * A sampler keeps the counters it last read, so it is not thread safe: sample and read it from a
+ * single thread, or synchronize externally.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+public final class TrafficSampler implements Closeable {
+
+    /**
+     * Counter of bytes received.
+     */
+    public static final int RX_BYTES = 0;
+
+    /**
+     * Counter of packets received.
+     */
+    public static final int RX_PACKETS = 1;
+
+    /**
+     * Counter of receive errors.
+     */
+    public static final int RX_ERRORS = 2;
+
+    /**
+     * Counter of received packets dropped.
+     */
+    public static final int RX_DROPS = 3;
+
+    /**
+     * Counter of bytes transmitted.
+     */
+    public static final int TX_BYTES = 4;
+
+    /**
+     * Counter of packets transmitted.
+     */
+    public static final int TX_PACKETS = 5;
+
+    /**
+     * Counter of transmit errors.
+     */
+    public static final int TX_ERRORS = 6;
+
+    /**
+     * Counter of packets dropped before being transmitted.
+     */
+    public static final int TX_DROPS = 7;
+
+    /**
+     * Number of counters sampled per interface.
+     */
+    public static final int COUNTERS = 8;
+
+    /**
+     * Where Linux publishes the traffic counters of every interface, one line each.
+     */
+    static final File PROC_NET_DEV = new File("/proc/net/dev");
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    /**
+     * Column, after the "name:", of each counter, see dev_seq_printf_stats() in
+     * net/core/net-procfs.c.
+     */
+    private static final int[] COLUMNS = { 0, 1, 2, 3, 8, 9, 10, 11 };
+
+    private static final int LAST_COLUMN = 11;
+
+    /**
+     * Fits the header and about thirty interfaces.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Entry of {@link #mSlotTable} holding no slot.
+     */
+    private static final int NO_SLOT = 0;
+
+    private final transient RandomAccessFile mFile;
+
+    private final transient FileChannel mChannel;
+
+    private final transient String[] mNames;
+
+    private final transient byte[][] mNameBytes;
+
+    /**
+     * Slots by hash of their name, open addressing with linear probing, each entry holding
+     * slot + 1 or {@link #NO_SLOT}. Only the first slot of a name is there.
+     */
+    private final transient int[] mSlotTable;
+
+    private final transient int mSlotMask;
+
+    /**
+     * Slot each line held in the last sample, -1 for the header and unwatched interfaces.
+     */
+    private transient int[] mLineSlots;
+
+    private final transient double mTimeConstant;
+
+    /**
+     * Last counters read, {@link #COUNTERS} per slot.
+     */
+    private final transient long[] mCounters;
+
+    /**
+     * Smoothed rates per second, laid out like {@link #mCounters}.
+     */
+    private final transient double[] mRates;
+
+    /**
+     * Counters of the line being parsed, only kept if the whole line parses.
+     */
+    private final transient long[] mLine = new long[COUNTERS];
+
+    /**
+     * {@link System#nanoTime()} at which each slot's counters were read.
+     */
+    private final transient long[] mSampleTimes;
+
+    private final transient boolean[] mHasCounters;
+
+    private final transient boolean[] mHasRates;
+
+    /**
+     * Whether each slot was in the last sample.
+     */
+    private final transient boolean[] mPresent;
+
+    private transient ByteBuffer mBuffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+
+    /**
+     * Watches every interface of a snapshot, in the same order.
+     *
+     * @param snapshot     interfaces to watch, slot <i>i</i> being record <i>i</i>.
+     * @param timeConstant time constant of the rate smoothing, the longer the smoother.
+     * @param unit         unit of <i>timeConstant</i>.
+     *
+     * @throws IOException              if <code>/proc/net/dev</code> cannot be opened.
+     * @throws IllegalArgumentException if <i>timeConstant</i> is not positive.
+     */
+    public TrafficSampler(final InterfaceSnapshot snapshot, final long timeConstant,
+            final TimeUnit unit) throws IOException {
+        this(PROC_NET_DEV, timeConstant, unit, namesOf(snapshot.getRecords()));
+    }
+
+    /**
+     * @param timeConstant   time constant of the rate smoothing, the longer the smoother.
+     * @param unit           unit of <i>timeConstant</i>.
+     * @param interfaceNames interfaces to watch, slot <i>i</i> being name <i>i</i>.
+     *
+     * @throws IOException              if <code>/proc/net/dev</code> cannot be opened.
+     * @throws IllegalArgumentException if <i>timeConstant</i> is not positive.
+     */
+    public TrafficSampler(final long timeConstant, final TimeUnit unit,
+            final String... interfaceNames) throws IOException {
+        this(PROC_NET_DEV, timeConstant, unit, interfaceNames);
+    }
+
+    /**
+     * @param procNetDev file to read counters from, for testing.
+     */
+    TrafficSampler(final File procNetDev, final long timeConstant, final TimeUnit unit,
+            final String... interfaceNames) throws IOException {
+        if (timeConstant <= 0) {
+            throw new IllegalArgumentException("Time constant must be positive: " + timeConstant);
+        }
+        mTimeConstant = unit.toNanos(timeConstant);
+        mNames = interfaceNames.clone();
+        mNameBytes = new byte[mNames.length][];
+        int capacity = 2;
+        while (capacity < mNames.length * 2) {
+            capacity <<= 1;
+        }
+        mSlotTable = new int[capacity];
+        mSlotMask = capacity - 1;
+        for (int i = 0; i < mNames.length; i++) {
+            mNameBytes[i] = mNames[i].getBytes(US_ASCII);
+            addSlot(i);
+        }
+        mLineSlots = new int[mNames.length + 2];
+        Arrays.fill(mLineSlots, -1);
+        mCounters = new long[mNames.length * COUNTERS];
+        mRates = new double[mNames.length * COUNTERS];
+        mSampleTimes = new long[mNames.length];
+        mHasCounters = new boolean[mNames.length];
+        mHasRates = new boolean[mNames.length];
+        mPresent = new boolean[mNames.length];
+        mFile = new RandomAccessFile(procNetDev, "r");
+        mChannel = mFile.getChannel();
+    }
+
+    private static String[] namesOf(final List<InterfaceRecord> records) {
+        final String[] result = new String[records.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = records.get(i).getName();
+        }
+        return result;
+    }
+
+    /**
+     * @return true if <code>/proc/net/dev</code> can be read on this device.
+     */
+    static boolean isAvailable() {
+        return PROC_NET_DEV.canRead();
+    }
+
+    /**
+     * Reads the counters of every watched interface and updates their rates.
+     *
+     * @return number of watched interfaces found.
+     *
+     * @throws IOException if the counters could not be read, nothing is updated then.
+     */
+    public int sample() throws IOException {
+        return sample(System.nanoTime());
+    }
+
+    /**
+     * @param now {@link System#nanoTime()} to record the sample at, for testing.
+     */
+    int sample(final long now) throws IOException {
+        read();
+        Arrays.fill(mPresent, false);
+        int result = 0;
+        final int limit = mBuffer.limit();
+        int lineStart = 0;
+        int line = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            int colon = -1;
+            for (; lineEnd < limit && mBuffer.get(lineEnd) != '\n'; lineEnd++) {
+                if (mBuffer.get(lineEnd) == ':') {
+                    colon = lineEnd;
+                }
+            }
+            final int slot = colon >= 0 ? slotOf(line, lineStart, colon) : -1;
+            if (slot >= 0 && !mPresent[slot] && parseLine(colon + 1, lineEnd)) {
+                update(slot, now);
+                result++;
+            }
+            lineStart = lineEnd + 1;
+            line++;
+        }
+        return result;
+    }
+
+    /**
+     * Reads the whole file from its start, growing the buffer if it does not fit.
+     */
+    private void read() throws IOException {
+        mBuffer.clear();
+        long position = 0;
+        while (true) {
+            if (!mBuffer.hasRemaining()) {
+                final ByteBuffer grown = ByteBuffer.allocateDirect(mBuffer.capacity() * 2);
+                mBuffer.flip();
+                grown.put(mBuffer);
+                mBuffer = grown;
+            }
+            final int read = mChannel.read(mBuffer, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+        mBuffer.flip();
+    }
+
+    /**
+     * Adds a slot to {@link #mSlotTable}, unless an earlier slot has the same name.
+     */
+    private void addSlot(final int slot) {
+        final byte[] name = mNameBytes[slot];
+        int hash = 0;
+        for (final byte character : name) {
+            hash = 31 * hash + character;
+        }
+        int index = mix(hash) & mSlotMask;
+        while (mSlotTable[index] != NO_SLOT
+                && !Arrays.equals(mNameBytes[mSlotTable[index] - 1], name)) {
+            index = index + 1 & mSlotMask;
+        }
+        if (mSlotTable[index] == NO_SLOT) {
+            mSlotTable[index] = slot + 1;
+        }
+    }
+
+    /**
+     * @param line number of the line, from 0.
+     *
+     * @return the slot of the interface named between <i>start</i>, ignoring leading blanks,
+     *         and <i>end</i>, or -1 if it is not watched.
+     */
+    private int slotOf(final int line, final int start, final int end) {
+        int nameStart = start;
+        while (nameStart < end && mBuffer.get(nameStart) == ' ') {
+            nameStart++;
+        }
+        if (line >= mLineSlots.length) {
+            final int length = mLineSlots.length;
+            mLineSlots = Arrays.copyOf(mLineSlots, Math.max(line + 1, length * 2));
+            Arrays.fill(mLineSlots, length, mLineSlots.length, -1);
+        }
+        int result = mLineSlots[line];
+        if (result < 0 || !matches(result, nameStart, end)) {
+            result = lookup(nameStart, end);
+            mLineSlots[line] = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return the slot of the interface named between <i>start</i> and <i>end</i> through
+     *         {@link #mSlotTable}, or -1 if it is not watched.
+     */
+    private int lookup(final int start, final int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + mBuffer.get(i);
+        }
+        int index = mix(hash) & mSlotMask;
+        int result = -1;
+        while (result < 0 && mSlotTable[index] != NO_SLOT) {
+            final int slot = mSlotTable[index] - 1;
+            result = matches(slot, start, end) ? slot : -1;
+            index = index + 1 & mSlotMask;
+        }
+        return result;
+    }
+
+    /**
+     * @return true if <i>slot</i>'s name is between <i>start</i> and <i>end</i>.
+     */
+    private boolean matches(final int slot, final int start, final int end) {
+        final byte[] name = mNameBytes[slot];
+        boolean result = name.length == end - start;
+        for (int i = 0; i < name.length && result; i++) {
+            result = mBuffer.get(start + i) == name[i];
+        }
+        return result;
+    }
+
+    /**
+     * Spreads the bits of a name hash so consecutive names such as veth1, veth2 do not cluster.
+     */
+    private static int mix(final int hash) {
+        final int result = (hash ^ hash >>> 16) * 0x85ebca6b;
+        return result ^ result >>> 13;
+    }
+
+    /**
+     * Parses the counters of a line into {@link #mLine}.
+     *
+     * @return false if the line has too few columns or anything but digits in them.
+     */
+    private boolean parseLine(final int start, final int end) {
+        int position = start;
+        int column = 0;
+        int counter = 0;
+        boolean result = true;
+        while (column <= LAST_COLUMN && result) {
+            while (position < end && mBuffer.get(position) == ' ') {
+                position++;
+            }
+            long value = 0;
+            int digits = 0;
+            for (; position < end && mBuffer.get(position) != ' '; position++, digits++) {
+                final int digit = mBuffer.get(position) - '0';
+                result &= digit >= 0 && digit <= 9;
+                value = value * 10 + digit;
+            }
+            result &= digits > 0;
+            if (column == COLUMNS[counter]) {
+                mLine[counter++] = value;
+            }
+            column++;
+        }
+        return result;
+    }
+
+    /**
+     * Stores the counters just parsed for <i>slot</i>, updating its rates if it was sampled
+     * before.
+     */
+    private void update(final int slot, final long now) {
+        final int base = slot * COUNTERS;
+        final long elapsed = now - mSampleTimes[slot];
+        if (mHasCounters[slot] && elapsed > 0) {
+            final double weight = mHasRates[slot] ? 1 - Math.exp(-elapsed / mTimeConstant) : 1;
+            for (int counter = 0; counter < COUNTERS; counter++) {
+                final long delta = mLine[counter] - mCounters[base + counter];
+                if (delta >= 0) {
+                    final double rate = delta * NANOS_PER_SECOND / elapsed;
+                    mRates[base + counter] += weight * (rate - mRates[base + counter]);
+                }
+            }
+            mHasRates[slot] = true;
+        }
+        System.arraycopy(mLine, 0, mCounters, base, COUNTERS);
+        mSampleTimes[slot] = now;
+        mHasCounters[slot] = true;
+        mPresent[slot] = true;
+    }
+
+    /**
+     * @return number of interfaces watched.
+     */
+    public int size() {
+        return mNames.length;
+    }
+
+    /**
+     * @param slot slot of a watched interface.
+     *
+     * @return its name.
+     */
+    public String getName(final int slot) {
+        return mNames[slot];
+    }
+
+    /**
+     * @param name interface name.
+     *
+     * @return the slot of the first watched interface with that name, or -1 if it is not watched.
+     */
+    public int slotOf(final String name) {
+        int result = -1;
+        for (int i = 0; i < mNames.length && result < 0; i++) {
+            result = mNames[i].equals(name) ? i : -1;
+        }
+        return result;
+    }
+
+    /**
+     * @param slot slot of a watched interface.
+     *
+     * @return true if the interface was found by the last {@link #sample()}.
+     */
+    public boolean isPresent(final int slot) {
+        return mPresent[slot];
+    }
+
+    /**
+     * @param slot    slot of a watched interface.
+     * @param counter one of the counter constants, such as {@link #RX_BYTES}.
+     *
+     * @return the value last read, 0 if the interface was never found.
+     */
+    public long getCounter(final int slot, final int counter) {
+        return mCounters[index(slot, counter)];
+    }
+
+    /**
+     * @param slot    slot of a watched interface.
+     * @param counter one of the counter constants, such as {@link #RX_BYTES}.
+     *
+     * @return smoothed increase per second, 0 until the interface was found by two samples.
+     */
+    public double getRate(final int slot, final int counter) {
+        return mRates[index(slot, counter)];
+    }
+
+    private int index(final int slot, final int counter) {
+        if (slot < 0 || slot >= mNames.length || counter < 0 || counter >= COUNTERS) {
+            throw new IndexOutOfBoundsException("Slot " + slot + ", counter " + counter);
+        }
+        return slot * COUNTERS + counter;
+    }
+
+    /**
+     * Closes <code>/proc/net/dev</code>, the sampler cannot be used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        mFile.close();
+    }
+}
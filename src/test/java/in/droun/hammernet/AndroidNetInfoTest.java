@@ -10,15 +10,20 @@ package in.droun.hammernet;
 import static org.junit.Assert.*;
 import static org.hamcrest.core.IsEqual.*;
 import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsNot.*;
 import static org.hamcrest.core.IsNull.*;
+import static org.hamcrest.core.IsSame.*;
 import static org.mockito.Mockito.*;
-import static in.droun.hammernet.NetworkInterfaceInfo.macAddressToBigInteger;
 
 import android.content.Context;
 import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
 import java.math.BigInteger;
+import java.net.InetAddress;
 import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 import org.junit.Before;
@@ -80,7 +85,7 @@ public class AndroidNetInfoTest {
 
         // Arrange
         when(mAndroidWifiInfo.getMacAddress()).thenReturn(wifiMacString);
-        when(mNetworkInterfaceInfo.getNameByMacAddress(macAddressToBigInteger(wifiMacString)))
+        when(mNetworkInterfaceInfo.getNameByMacAddress(MacAddress.parse(wifiMacString)))
                 .thenReturn(wifiInterfaceName);
         when(mNetworkInterfaceInfo.getIp4HostAddressByName(wifiInterfaceName))
                 .thenReturn(wifiIpAddress);
@@ -124,6 +129,50 @@ public class AndroidNetInfoTest {
         assertThat(ip4Address, is(nullValue()));
     }
 
+    //----
+    // getWifiOrDefaultRouteIp4Address()
+    //----
+    @Test
+    public void getWifiOrDefaultRouteIp4Address_withWifi_returnWifiIp_test()
+            throws SocketException {
+        final String wifiMacString = "50:d1:5f:4e:be:75";
+        when(mAndroidWifiInfo.getMacAddress()).thenReturn(wifiMacString);
+        when(mNetworkInterfaceInfo.getNameByMacAddress(MacAddress.parse(wifiMacString)))
+                .thenReturn("wlan0utest");
+        when(mNetworkInterfaceInfo.getIp4HostAddressByName("wlan0utest"))
+                .thenReturn("172.25.25.176");
+
+        assertThat(mAndroidNetInfo.getWifiOrDefaultRouteIp4Address(),
+                is(equalTo("172.25.25.176")));
+        verify(mNetworkInterfaceInfo, never()).getDefaultRouteInterfaceName();
+    }
+
+    @Test
+    public void getWifiOrDefaultRouteIp4Address_noWifi_returnDefaultRouteIp_test()
+            throws SocketException {
+        when(mNetworkInterfaceInfo.getDefaultRouteInterfaceName()).thenReturn("eth0utest");
+        when(mNetworkInterfaceInfo.getIp4HostAddressByName("eth0utest"))
+                .thenReturn("172.27.217.176");
+
+        assertThat(mAndroidNetInfo.getWifiOrDefaultRouteIp4Address(),
+                is(equalTo("172.27.217.176")));
+    }
+
+    @Test
+    public void getWifiOrDefaultRouteIp4Address_noWifiNoDefaultRoute_returnNull_test()
+            throws SocketException {
+        assertThat(mAndroidNetInfo.getWifiOrDefaultRouteIp4Address(), is(nullValue()));
+        verify(mNetworkInterfaceInfo, never()).getIp4HostAddressByName(anyString());
+    }
+
+    @Test
+    public void getIp4Address_noWifiNoDefaultGiven_defaultRouteNotUsed_test()
+            throws SocketException {
+        when(mNetworkInterfaceInfo.getDefaultRouteInterfaceName()).thenReturn("eth0utest");
+        assertThat(mAndroidNetInfo.getIp4Address(null), is(nullValue()));
+        verify(mNetworkInterfaceInfo, never()).getDefaultRouteInterfaceName();
+    }
+
     //----
     // wifiMacAddress()
     //----
@@ -175,6 +224,25 @@ public class AndroidNetInfoTest {
         assertThat(wifiMacAddress, is(nullValue()));
     }
 
+    //----
+    // wifiMac()
+    //----
+    @Test
+    public void wifiMac_goodMac_returnValid_test() {
+        // SUCCESS - Context returns valid MAC address, same value as the BigInteger form
+        when(mAndroidWifiInfo.getMacAddress()).thenReturn("1C-7C-D7-09-A3-DE");
+        final MacAddress wifiMac = mAndroidNetInfo.wifiMac();
+        assertThat(wifiMac.toLong(), is(equalTo(0x1C7CD709A3DEL)));
+        assertThat(wifiMac.toBigInteger(), is(equalTo(mAndroidNetInfo.wifiMacAddress())));
+    }
+
+    @Test
+    public void wifiMac_macBadString_returnNull_test() {
+        // FAILURE - Context returns null on bad MAC address
+        when(mAndroidWifiInfo.getMacAddress()).thenReturn("BAD_MAC_ADDRESS_IGNORE_EXCEPTION");
+        assertThat(mAndroidNetInfo.wifiMac(), is(nullValue()));
+    }
+
     //----
     // wifiInterfaceName()
     //----
@@ -183,7 +251,8 @@ public class AndroidNetInfoTest {
         // SUCCESS - Able to locate the wifi interface
         final String expectedName = "wlan76";
         when(mAndroidWifiInfo.getMacAddress()).thenReturn("D8C2.2C61.EA55");
-        when(mNetworkInterfaceInfo.getNameByMacAddress(new BigInteger("-43146496841131")))
+        when(mNetworkInterfaceInfo.getNameByMacAddress(
+                MacAddress.fromBigInteger(new BigInteger("-43146496841131"))))
                 .thenReturn(expectedName);
         final String returnedName = mAndroidNetInfo.wifiInterfaceName();
         assertThat(returnedName, is(equalTo(expectedName)));
@@ -194,7 +263,7 @@ public class AndroidNetInfoTest {
         // FAILURE - WifiInfo returns null MAC address, return null
         when(mAndroidWifiInfo.getMacAddress()).thenReturn(null);
         // Force to fail if called
-        when(mNetworkInterfaceInfo.getNameByMacAddress(any(BigInteger.class)))
+        when(mNetworkInterfaceInfo.getNameByMacAddress(any(MacAddress.class)))
                 .thenReturn("something");
         final String returnedName = mAndroidNetInfo.wifiInterfaceName();
         assertThat(returnedName, is(nullValue()));
@@ -204,9 +273,117 @@ public class AndroidNetInfoTest {
     public void wifiInterfaceName_nullName_returnNull_test() throws SocketException {
         // FAILURE - NetworkInterfaceInfo cannot find the interface, return null
         when(mAndroidWifiInfo.getMacAddress()).thenReturn("4391983D0F98");
-        when(mNetworkInterfaceInfo.getNameByMacAddress(any(BigInteger.class)))
+        when(mNetworkInterfaceInfo.getNameByMacAddress(any(MacAddress.class)))
                 .thenReturn(null);
         final String returnedName = mAndroidNetInfo.wifiInterfaceName();
         assertThat(returnedName, is(nullValue()));
     }
+
+    //----
+    // Remembered WifiManager and Wi-Fi interface
+    //----
+    @Test
+    public void getIp4Address_secondCall_revalidatedOnly_test()
+            throws SocketException, UnknownHostException {
+        final MacAddress wifiMac = MacAddress.parse("50:d1:5f:4e:be:75");
+        when(mAndroidWifiInfo.getMacAddress()).thenReturn(wifiMac.toString());
+        when(mNetworkInterfaceInfo.getNameByMacAddress(wifiMac)).thenReturn("wlan0utest");
+        when(mNetworkInterfaceInfo.getIp4HostAddressByName("wlan0utest"))
+                .thenReturn("172.25.25.176");
+        when(mNetworkInterfaceInfo.getInetAddressesByNameAndMac("wlan0utest", wifiMac.toLong()))
+                .thenReturn(Arrays.asList(InetAddress.getByName("fe80::52d1:5fff:fe4e:be75"),
+                InetAddress.getByName("172.25.25.177")));
+
+        assertThat(mAndroidNetInfo.getIp4Address("TEST_DEFAULT"), is(equalTo("172.25.25.176")));
+        // Address renewed, the interface is the same
+        assertThat(mAndroidNetInfo.getIp4Address("TEST_DEFAULT"), is(equalTo("172.25.25.177")));
+        assertThat(mAndroidNetInfo.wifiInterfaceName(), is(equalTo("wlan0utest")));
+
+        verify(mAndroidContext, times(1)).getSystemService(Context.WIFI_SERVICE);
+        verify(mAndroidWifiManager, times(1)).getConnectionInfo();
+        verify(mNetworkInterfaceInfo, times(1)).getNameByMacAddress(wifiMac);
+    }
+
+    @Test
+    public void getIp4Address_revalidationFails_resolvedAgain_test() throws SocketException {
+        final MacAddress wifiMac = MacAddress.parse("50:d1:5f:4e:be:75");
+        when(mAndroidWifiInfo.getMacAddress()).thenReturn(wifiMac.toString());
+        when(mNetworkInterfaceInfo.getNameByMacAddress(wifiMac)).thenReturn("wlan0utest");
+        when(mNetworkInterfaceInfo.getIp4HostAddressByName("wlan0utest"))
+                .thenReturn("172.25.25.176");
+        // The interface is gone
+        when(mNetworkInterfaceInfo.getInetAddressesByNameAndMac("wlan0utest", wifiMac.toLong()))
+                .thenReturn(null);
+
+        mAndroidNetInfo.getIp4Address("TEST_DEFAULT");
+        assertThat(mAndroidNetInfo.getIp4Address("TEST_DEFAULT"), is(equalTo("172.25.25.176")));
+
+        verify(mNetworkInterfaceInfo, times(2)).getNameByMacAddress(wifiMac);
+        verify(mAndroidContext, times(1)).getSystemService(Context.WIFI_SERVICE);
+    }
+
+    @Test
+    public void getIp4Address_noWifi_notRemembered_test() throws SocketException {
+        when(mNetworkInterfaceInfo.getIp4HostAddressByName("eth0utest"))
+                .thenReturn("172.27.217.176");
+        assertThat(mAndroidNetInfo.getIp4Address("eth0utest"), is(equalTo("172.27.217.176")));
+        assertThat(mAndroidNetInfo.getIp4Address("eth0utest"), is(equalTo("172.27.217.176")));
+        verify(mAndroidWifiManager, times(2)).getConnectionInfo();
+    }
+
+    @Test
+    public void getIp4Address_wifiMacNotFound_notSearchedAgain_test() throws SocketException {
+        when(mAndroidWifiInfo.getMacAddress()).thenReturn("02:00:00:00:00:00");
+        when(mNetworkInterfaceInfo.getIp4HostAddressByName("eth0utest"))
+                .thenReturn("172.27.217.176");
+        assertThat(mAndroidNetInfo.getIp4Address("eth0utest"), is(equalTo("172.27.217.176")));
+        assertThat(mAndroidNetInfo.getIp4Address("eth0utest"), is(equalTo("172.27.217.176")));
+        assertThat(mAndroidNetInfo.wifiInterfaceName(), is(nullValue()));
+        // Only the WifiManager is asked again
+        verify(mAndroidWifiManager, times(3)).getConnectionInfo();
+        verify(mNetworkInterfaceInfo, times(1))
+                .getNameByMacAddress(MacAddress.parse("02:00:00:00:00:00"));
+    }
+
+    @Test
+    public void getIp4Address_wifiMacChanged_searchedAgain_test() throws SocketException {
+        final MacAddress wifiMac = MacAddress.parse("50:d1:5f:4e:be:75");
+        when(mAndroidWifiInfo.getMacAddress()).thenReturn(null, wifiMac.toString());
+        when(mNetworkInterfaceInfo.getNameByMacAddress(wifiMac)).thenReturn("wlan0utest");
+        when(mNetworkInterfaceInfo.getIp4HostAddressByName("wlan0utest"))
+                .thenReturn("172.25.25.176");
+        when(mNetworkInterfaceInfo.getIp4HostAddressByName("eth0utest"))
+                .thenReturn("172.27.217.176");
+        assertThat(mAndroidNetInfo.getIp4Address("eth0utest"), is(equalTo("172.27.217.176")));
+        // Wi-Fi turned on
+        assertThat(mAndroidNetInfo.getIp4Address("eth0utest"), is(equalTo("172.25.25.176")));
+    }
+
+    @Test
+    public void getIp4Address_wifiSearchIntervalZero_searchedEachTime_test()
+            throws SocketException {
+        final MacAddress wifiMac = MacAddress.parse("02:00:00:00:00:00");
+        when(mAndroidWifiInfo.getMacAddress()).thenReturn(wifiMac.toString());
+        mAndroidNetInfo.setWifiSearchInterval(0, TimeUnit.SECONDS);
+        mAndroidNetInfo.getIp4Address("eth0utest");
+        when(mNetworkInterfaceInfo.getNameByMacAddress(wifiMac)).thenReturn("wlan0utest");
+        when(mNetworkInterfaceInfo.getIp4HostAddressByName("wlan0utest"))
+                .thenReturn("172.25.25.176");
+        assertThat(mAndroidNetInfo.getIp4Address("eth0utest"), is(equalTo("172.25.25.176")));
+        verify(mNetworkInterfaceInfo, times(2)).getNameByMacAddress(wifiMac);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setWifiSearchInterval_negative_throws_test() {
+        mAndroidNetInfo.setWifiSearchInterval(-1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void shared_sameApplication_sameInstance_test() {
+        final Context activity = mock(Context.class);
+        when(activity.getApplicationContext()).thenReturn(mAndroidContext);
+        final AndroidNetInfo shared = AndroidNetInfo.shared(activity);
+        assertThat(AndroidNetInfo.shared(mAndroidContext), is(sameInstance(shared)));
+        assertThat(AndroidNetInfo.shared(mock(Context.class)), is(not(sameInstance(shared))));
+    }
 }
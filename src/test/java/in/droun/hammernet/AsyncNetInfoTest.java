@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.hamcrest.core.IsInstanceOf.*;
+import static org.hamcrest.core.IsNot.*;
+import static org.hamcrest.core.IsNull.*;
+import static org.hamcrest.core.IsSame.*;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import android.content.Context;
+import java.net.SocketException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings({ "PMD.AvoidUsingHardCodedIP", // This is test code and have to hardcode values
+    "PMD.TooManyStaticImports" })
+public class AsyncNetInfoTest {
+
+    private static final String IP_ADDRESS = "172.25.25.6";
+
+    private transient AndroidNetInfo mAndroidNetInfo;
+    private transient ExecutorService mExecutor;
+    private transient AsyncNetInfo mAsyncNetInfo;
+    private transient CountDownLatch mRelease;
+    private transient CountDownLatch mStarted;
+    private transient CountDownLatch mInterrupted;
+
+    @Before
+    public void before() throws SocketException {
+        mAndroidNetInfo = mock(AndroidNetInfo.class);
+        mExecutor = Executors.newCachedThreadPool();
+        mAsyncNetInfo = new AsyncNetInfo(mAndroidNetInfo, mExecutor);
+        mRelease = new CountDownLatch(1);
+        mStarted = new CountDownLatch(1);
+        mInterrupted = new CountDownLatch(1);
+        // Blocks until released, like a slow WifiManager
+        when(mAndroidNetInfo.getIp4Address(anyString())).thenAnswer(new Answer<String>() {
+            @Override
+            public String answer(final InvocationOnMock invocation) {
+                mStarted.countDown();
+                String result = null;
+                try {
+                    mRelease.await();
+                    result = IP_ADDRESS;
+                } catch (InterruptedException interruptedException) {
+                    mInterrupted.countDown();
+                }
+                return result;
+            }
+        });
+    }
+
+    @After
+    public void after() {
+        mRelease.countDown();
+        mExecutor.shutdownNow();
+    }
+
+    //----
+    // Coalescing
+    //----
+    @Test
+    public void getIp4Address_concurrent_oneLookup_test() throws Exception {
+        final Future<String> first = mAsyncNetInfo.getIp4Address("eth0");
+        final Future<String> second = mAsyncNetInfo.getIp4Address("eth0");
+        assertThat(mStarted.await(10, TimeUnit.SECONDS), is(true));
+        mRelease.countDown();
+        assertThat(first.get(10, TimeUnit.SECONDS), is(equalTo(IP_ADDRESS)));
+        assertThat(second.get(10, TimeUnit.SECONDS), is(equalTo(IP_ADDRESS)));
+        verify(mAndroidNetInfo, times(1)).getIp4Address("eth0");
+    }
+
+    @Test
+    public void getIp4Address_afterCompletion_newLookup_test() throws Exception {
+        mRelease.countDown();
+        assertThat(mAsyncNetInfo.getIp4Address(null).get(10, TimeUnit.SECONDS),
+                is(equalTo(IP_ADDRESS)));
+        assertThat(mAsyncNetInfo.getIp4Address(null).get(10, TimeUnit.SECONDS),
+                is(equalTo(IP_ADDRESS)));
+        verify(mAndroidNetInfo, times(2)).getIp4Address(null);
+    }
+
+    @Test
+    public void submit_resultVisibleBeforeDone_newLookup_test() throws Exception {
+        final AtomicReference<Runnable> first = new AtomicReference<Runnable>();
+        // Holds on to the first call, runs the others right away
+        final CoalescingExecutor<String, Integer> coalescing
+                = new CoalescingExecutor<String, Integer>(new Executor() {
+                    @Override
+                    public void execute(final Runnable command) {
+                        if (!first.compareAndSet(null, command)) {
+                            command.run();
+                        }
+                    }
+                });
+        final AtomicInteger lookups = new AtomicInteger();
+        final Callable<Integer> lookup = new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return lookups.incrementAndGet();
+            }
+        };
+        coalescing.submit("eth0", lookup, null);
+        final Future<?> call = (Future<?>) first.get();
+        final Integer result;
+        // done() cannot run while this thread holds the call's lock
+        synchronized (call) {
+            final Thread runner = new Thread(first.get());
+            runner.start();
+            while (!call.isDone()) {
+                Thread.yield();
+            }
+            result = coalescing.submit("eth0", lookup, null).get(10, TimeUnit.SECONDS);
+        }
+        assertThat(result, is(equalTo(2)));
+    }
+
+    //----
+    // Cancellation and timeouts
+    //----
+    @Test
+    public void cancel_oneCaller_othersStillServed_test() throws Exception {
+        final Future<String> cancelled = mAsyncNetInfo.getIp4Address("eth0");
+        final Future<String> kept = mAsyncNetInfo.getIp4Address("eth0");
+        assertThat(mStarted.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(cancelled.cancel(true), is(true));
+        assertThat(cancelled.isCancelled(), is(true));
+        mRelease.countDown();
+        assertThat(kept.get(10, TimeUnit.SECONDS), is(equalTo(IP_ADDRESS)));
+        assertThat(mInterrupted.getCount(), is(equalTo(1L)));
+        try {
+            cancelled.get();
+            fail("Cancelled caller got a result");
+        } catch (CancellationException cancellationException) {
+            assertThat(cancellationException, is(notNullValue()));
+        }
+    }
+
+    @Test
+    public void cancel_everyCaller_lookupInterrupted_test() throws Exception {
+        final Future<String> first = mAsyncNetInfo.getIp4Address("eth0");
+        final Future<String> second = mAsyncNetInfo.getIp4Address("eth0");
+        assertThat(mStarted.await(10, TimeUnit.SECONDS), is(true));
+        first.cancel(true);
+        second.cancel(true);
+        assertThat(mInterrupted.await(10, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    public void cancel_whileAnotherThreadWaits_waiterWoken_test() throws Exception {
+        final Future<String> cancelled = mAsyncNetInfo.getIp4Address("eth0");
+        final AtomicReference<Object> outcome = new AtomicReference<Object>();
+        final Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    outcome.set(cancelled.get());
+                } catch (CancellationException cancellationException) {
+                    outcome.set(cancellationException);
+                } catch (Exception exception) {
+                    outcome.set(exception);
+                }
+            }
+        });
+        waiter.start();
+        assertThat(mStarted.await(10, TimeUnit.SECONDS), is(true));
+        cancelled.cancel(true);
+        // The lookup is never released, only the cancellation can wake the waiter
+        waiter.join(TimeUnit.SECONDS.toMillis(10));
+        assertThat(waiter.isAlive(), is(false));
+        assertThat(outcome.get(), is(instanceOf(CancellationException.class)));
+    }
+
+    @Test(expected = CancellationException.class)
+    public void cancel_timedGet_cancellationException_test() throws Exception {
+        final Future<String> cancelled = mAsyncNetInfo.getIp4Address("eth0");
+        cancelled.cancel(true);
+        cancelled.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void getIp4Address_timeout_withdrawsAndInterrupts_test() throws Exception {
+        try {
+            mAsyncNetInfo.getIp4Address("eth0", 50, TimeUnit.MILLISECONDS);
+            fail("Lookup did not time out");
+        } catch (TimeoutException timeoutException) {
+            assertThat(mInterrupted.await(10, TimeUnit.SECONDS), is(true));
+        }
+    }
+
+    //----
+    // Results and failures
+    //----
+    @Test
+    public void getIp4Address_callback_calledWithResult_test() throws Exception {
+        final AtomicReference<Object> outcome = new AtomicReference<Object>();
+        final CountDownLatch called = new CountDownLatch(1);
+        mAsyncNetInfo.getIp4Address("eth0", new NetInfoCallback<String>() {
+            @Override
+            public void onResult(final String result) {
+                outcome.set(result);
+                called.countDown();
+            }
+
+            @Override
+            public void onFailure(final Throwable failure) {
+                outcome.set(failure);
+                called.countDown();
+            }
+        });
+        mRelease.countDown();
+        assertThat(called.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(outcome.get(), is(equalTo((Object) IP_ADDRESS)));
+    }
+
+    @Test
+    public void getIp4Address_socketException_rethrown_test() throws Exception {
+        final AndroidNetInfo failing = mock(AndroidNetInfo.class);
+        when(failing.getIp4Address(anyString())).thenThrow(new SocketException("No such device"));
+        try {
+            new AsyncNetInfo(failing, mExecutor).getIp4Address("eth0", 10, TimeUnit.SECONDS);
+            fail("SocketException not rethrown");
+        } catch (SocketException socketException) {
+            assertThat(socketException.getMessage(), is(equalTo("No such device")));
+        }
+    }
+
+    @Test
+    public void shared_sameApplication_sameInstance_test() {
+        final Context application = mock(Context.class);
+        final Context activity = mock(Context.class);
+        when(activity.getApplicationContext()).thenReturn(application);
+        final AsyncNetInfo shared = AsyncNetInfo.shared(activity);
+        assertThat(AsyncNetInfo.shared(application), is(sameInstance(shared)));
+        assertThat(AsyncNetInfo.shared(mock(Context.class)), is(not(sameInstance(shared))));
+    }
+
+    @Test
+    public void defaultExecutor_runsLookups_test() throws Exception {
+        mRelease.countDown();
+        final AsyncNetInfo asyncNetInfo = new AsyncNetInfo(mAndroidNetInfo);
+        assertThat(asyncNetInfo.getIp4Address(null, 10, TimeUnit.SECONDS),
+                is(equalTo(IP_ADDRESS)));
+        assertThat(AsyncNetInfo.defaultExecutor(), is(instanceOf(Executor.class)));
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.hamcrest.core.IsNull.*;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import in.droun.hammernet.NetworkInterfaceInfo.InterfaceQuery;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/**
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings({ "PMD.AvoidUsingHardCodedIP", // This is test code and have to hardcode values
+    "PMD.TooManyStaticImports" })
+public class CidrTrieTest {
+
+    //----
+    // Lookups
+    //----
+    @Test
+    public void standard_wellKnownRanges_test() throws UnknownHostException {
+        final CidrTrie<String> trie = CidrTrie.standard();
+        assertThat(trie.lookup(address("10.1.2.3")), is(equalTo(CidrTrie.PRIVATE)));
+        assertThat(trie.lookup(address("172.31.255.255")), is(equalTo(CidrTrie.PRIVATE)));
+        assertThat(trie.lookup(address("172.32.0.0")), is(nullValue()));
+        assertThat(trie.lookup(address("100.127.0.1")), is(equalTo(CidrTrie.CGNAT)));
+        assertThat(trie.lookup(address("169.254.10.1")), is(equalTo(CidrTrie.LINK_LOCAL)));
+        assertThat(trie.lookup(address("127.0.0.1")), is(equalTo(CidrTrie.LOOPBACK)));
+        assertThat(trie.lookup(address("8.8.8.8")), is(nullValue()));
+        assertThat(trie.lookup(address("fe80::fc:ff:fe00:1")), is(equalTo(CidrTrie.LINK_LOCAL)));
+        assertThat(trie.lookup(address("fd00::2")), is(equalTo(CidrTrie.ULA)));
+        assertThat(trie.lookup(address("::1")), is(equalTo(CidrTrie.LOOPBACK)));
+        assertThat(trie.lookup(address("::2")), is(nullValue()));
+        assertThat(trie.lookup(address("2001:db8::1")), is(nullValue()));
+        assertThat(trie.lookup((InetAddress) null), is(nullValue()));
+    }
+
+    @Test
+    public void lookup_longestPrefixWins_test() {
+        final CidrTrie<String> trie = new CidrTrie<String>();
+        trie.put("0.0.0.0/0", "any4");
+        trie.put("10.0.0.0/8", "corp");
+        trie.put("10.20.0.0/16", "lab");
+        trie.put("10.20.30.40", "host");
+        assertThat(trie.lookupIp4(0x0A141E28), is(equalTo("host")));
+        assertThat(trie.lookupIp4(0x0A141E29), is(equalTo("lab")));
+        assertThat(trie.lookupIp4(0x0A150000), is(equalTo("corp")));
+        assertThat(trie.lookupIp4(0x0B000000), is(equalTo("any4")));
+        // The IPv4 default route does not cover IPv6
+        assertThat(trie.lookupIp6(0x20010DB800000000L, 1), is(nullValue()));
+        assertThat(trie.size(), is(equalTo(4)));
+        assertThat(trie.put("10.0.0.0/8", "corporate"), is(equalTo("corp")));
+        assertThat(trie.size(), is(equalTo(4)));
+    }
+
+    @Test
+    public void load_lines_test() throws IOException {
+        final CidrTrie<String> trie = CidrTrie.load(new StringReader(
+                "# Site prefixes\n\n192.0.2.0/24 site lab\n2001:db8::/32\tsite\n"));
+        assertThat(trie.lookupIp4(0xC0000263), is(equalTo("site lab")));
+        assertThat(trie.lookupIp6(0x20010DB8FFFF0000L, 0), is(equalTo("site")));
+        assertThat(trie.size(), is(equalTo(2)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void put_hostName_throws_test() {
+        // Hex digits only, must not be looked up in DNS
+        new CidrTrie<String>().put("cafe/16", "x");
+    }
+
+    @Test
+    public void put_notLiterals_throws_test() {
+        // Would all reach DNS, or parse as something else, through InetAddress.getByName()
+        final String[] invalid = { "dead.beef/16", "1.2.3/24", "1.2.3.4.5", "256.0.0.0/8",
+            "1.2.3.04x", "\u0661.2.3.4", "1..2.3", "", "1:2:3:4:5:6:7:8:9", "1::2::3", ":1::",
+            "1:2:", "12345::", "fe80::1%1", "::ffff:1.2.3", "1:2:3:4:5:6:7:1.2.3.4", "g::" };
+        for (final String cidr : invalid) {
+            try {
+                new CidrTrie<String>().put(cidr, "x");
+                fail(cidr);
+            } catch (IllegalArgumentException illegalArgumentException) {
+                assertThat(illegalArgumentException.getMessage().startsWith("Not a numeric"),
+                        is(true));
+            }
+        }
+    }
+
+    @Test
+    public void put_literals_sameAsInetAddress_test() throws UnknownHostException {
+        final String[] valid = { "0.0.0.0", "255.255.255.255", "192.0.2.1", "::", "::1", "1::",
+            "2001:DB8::8:800:200C:417A", "1:2:3:4:5:6:7:8", "1:2:3:4:5:6:7::", "::2:3:4:5:6:7:8",
+            "::ffff:192.0.2.1", "64:ff9b::198.51.100.7", "1:2:3:4:5:6:1.2.3.4", "fe80:0:0::1" };
+        for (final String literal : valid) {
+            final CidrTrie<String> trie = new CidrTrie<String>();
+            trie.put(literal, literal);
+            assertThat(literal, trie.lookup(address(literal)), is(equalTo(literal)));
+            assertThat(literal, trie.size(), is(equalTo(1)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void put_badLength_throws_test() {
+        new CidrTrie<String>().put("10.0.0.0/33", "x");
+    }
+
+    @Test
+    public void randomPrefixes_matchLinearScan_test() {
+        final Random random = new Random(0xC1D4L);
+        final int count = 20000;
+        final long[] highs = new long[count];
+        final long[] lows = new long[count];
+        final int[] lengths = new int[count];
+        final CidrTrie<Integer> trie = new CidrTrie<Integer>();
+        for (int i = 0; i < count; i++) {
+            // Few distinct upper bits so prefixes nest and share paths
+            highs[i] = (long) random.nextInt(8) << 61 | random.nextLong() >>> 3;
+            lows[i] = random.nextLong();
+            lengths[i] = random.nextInt(129);
+            trie.putIp6(highs[i], lows[i], lengths[i], i);
+        }
+        for (int probe = 0; probe < 5000; probe++) {
+            final int base = random.nextInt(count);
+            // Mostly near a known prefix so matches are deep
+            final long high = random.nextBoolean() ? highs[base] : highs[base] ^ random.nextLong();
+            final long low = random.nextBoolean() ? lows[base] : lows[base] ^ random.nextLong();
+            assertThat(trie.lookupIp6(high, low),
+                    is(equalTo(linearScan(highs, lows, lengths, high, low))));
+        }
+    }
+
+    //----
+    // NetworkInterfaceInfo.getAddressByPolicy()
+    //----
+    @Test
+    public void getAddressByPolicy_preferredLabelWins_test() throws SocketException,
+            UnknownHostException {
+        final InterfaceQuery interfaceQuery = mock(InterfaceQuery.class);
+        when(interfaceQuery.snapshot()).thenReturn(new InterfaceSnapshot(System.nanoTime(),
+                new InterfaceRecord("lo", 1, MacAddressParser.INVALID, 65536,
+                InterfaceRecord.FLAG_UP | InterfaceRecord.FLAG_LOOPBACK, address("127.0.0.1")),
+                new InterfaceRecord("rmnet0", 2, MacAddressParser.INVALID, 1500,
+                InterfaceRecord.FLAG_UP, address("2001:db8::5"), address("100.64.1.2")),
+                new InterfaceRecord("wlan0", 3, 0x50D15F4EBE75L, 1500, InterfaceRecord.FLAG_UP,
+                address("fe80::52d1:5fff:fe4e:be75"), address("192.168.1.20"))));
+        final NetworkInterfaceInfo interfaceInfo = new NetworkInterfaceInfo(
+                new InterfaceSnapshotCache(interfaceQuery, 1, TimeUnit.HOURS));
+        final CidrTrie<String> trie = CidrTrie.standard();
+
+        assertThat(interfaceInfo.getAddressByPolicy(trie,
+                Arrays.asList(CidrTrie.PRIVATE, CidrTrie.CGNAT)),
+                is(equalTo(address("192.168.1.20"))));
+        assertThat(interfaceInfo.getAddressByPolicy(trie,
+                Arrays.asList(null, CidrTrie.PRIVATE)), is(equalTo(address("2001:db8::5"))));
+        assertThat(interfaceInfo.getAddressByPolicy(trie,
+                Arrays.asList(null, CidrTrie.CGNAT), Inet4Address.class),
+                is(equalTo(address("100.64.1.2"))));
+        assertThat(interfaceInfo.getAddressByPolicy(trie, Arrays.asList(CidrTrie.ULA)),
+                is(nullValue()));
+    }
+
+    private static Integer linearScan(final long[] highs, final long[] lows, final int[] lengths,
+            final long high, final long low) {
+        Integer result = null;
+        int resultLength = -1;
+        for (int i = 0; i < highs.length; i++) {
+            // Later puts of the same prefix replace earlier ones
+            if (lengths[i] >= resultLength && matches(highs[i], lows[i], lengths[i], high, low)) {
+                result = i;
+                resultLength = lengths[i];
+            }
+        }
+        return result;
+    }
+
+    private static boolean matches(final long prefixHigh, final long prefixLow, final int length,
+            final long high, final long low) {
+        final long highMask = length == 0 ? 0 : length >= 64 ? -1L : -1L << 64 - length;
+        final long lowMask = length <= 64 ? 0 : length == 128 ? -1L : -1L << 128 - length;
+        return ((prefixHigh ^ high) & highMask) == 0 && ((prefixLow ^ low) & lowMask) == 0;
+    }
+
+    private static InetAddress address(final String literal) throws UnknownHostException {
+        return InetAddress.getByName(literal);
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.hamcrest.core.IsNull.*;
+import static org.hamcrest.core.IsSame.*;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.NetworkInterface;
+import java.nio.charset.Charset;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings("PMD.TooManyStaticImports")
+public class DefaultRouteDetectorTest {
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    private static final String ROUTE_HEADER = "Iface\tDestination\tGateway \tFlags\tRefCnt\tUse"
+            + "\tMetric\tMask\t\tMTU\tWindow\tIRTT                                   \n";
+
+    private static final String ZERO_IP6 = "00000000000000000000000000000000";
+
+    @Rule
+    public transient TemporaryFolder mFolder = new TemporaryFolder();
+
+    //----
+    // Real routing tables
+    //----
+    @Test
+    public void getInterfaceName_realRoutes_existingInterface_test() throws IOException {
+        assumeTrue(DefaultRouteDetector.PROC_NET_ROUTE.canRead());
+        final String name = new DefaultRouteDetector().getInterfaceName();
+        assumeThat(name, is(notNullValue()));
+        assertThat(NetworkInterface.getByName(name), is(notNullValue()));
+    }
+
+    //----
+    // IPv4
+    //----
+    @Test
+    public void getInterfaceName_ip4DefaultRoute_found_test() throws IOException {
+        final String route = ROUTE_HEADER
+                + route("eth0", "000200C0", "0001", 0, "00FFFFFF")
+                + route("wlan0", "00000000", "0003", 0, "00000000");
+        assertThat(detector(route, "").getInterfaceName(), is(equalTo("wlan0")));
+    }
+
+    @Test
+    public void getInterfaceName_severalDefaultRoutes_lowestMetric_test() throws IOException {
+        final String route = ROUTE_HEADER
+                + route("wlan0", "00000000", "0003", 600, "00000000")
+                + route("rmnet0", "00000000", "0003", 100, "00000000")
+                + route("eth0", "00000000", "0003", 100, "00000000");
+        assertThat(detector(route, "").getInterfaceName(), is(equalTo("rmnet0")));
+    }
+
+    @Test
+    public void getInterfaceName_unusableDefaultRoutes_skipped_test() throws IOException {
+        final String route = ROUTE_HEADER
+                // Down
+                + route("eth0", "00000000", "0002", 0, "00000000")
+                // Rejecting
+                + route("eth1", "00000000", "0203", 0, "00000000")
+                + route("lo", "00000000", "0003", 0, "00000000")
+                // Not a default route, only the destination is zero
+                + route("eth2", "00000000", "0001", 0, "000000FF")
+                + route("eth3", "00000000", "0003", 50, "00000000");
+        assertThat(detector(route, "").getInterfaceName(), is(equalTo("eth3")));
+    }
+
+    @Test
+    public void getInterfaceName_noTrailingNewLine_found_test() throws IOException {
+        final String route = ROUTE_HEADER + "eth0\t00000000\t010200C0\t0003\t0\t0\t0\t00000000";
+        assertThat(detector(route, "").getInterfaceName(), is(equalTo("eth0")));
+    }
+
+    @Test
+    public void getInterfaceName_malformedLines_skipped_test() throws IOException {
+        final String route = ROUTE_HEADER
+                + "eth0\t00000000\n"
+                + "eth1\t00000000\t00000000\tzz03\t0\t0\t0\t00000000\t0\t0\t0\n"
+                + "averyveryverylongname\t00000000\t00000000\t0003\t0\t0\t0\t00000000\t0\t0\t0\n";
+        assertThat(detector(route, "").getInterfaceName(), is(nullValue()));
+    }
+
+    @Test
+    public void getInterfaceName_largeTable_found_test() throws IOException {
+        final StringBuilder route = new StringBuilder(ROUTE_HEADER);
+        for (int i = 0; i < 100; i++) {
+            route.append(route("veth" + i, "000200C0", "0001", 0, "00FFFFFF"));
+        }
+        route.append(route("eth0", "00000000", "0003", 0, "00000000"));
+        assertThat(detector(route.toString(), "").getInterfaceName(), is(equalTo("eth0")));
+    }
+
+    @Test
+    public void getInterfaceName_sameRoute_sameString_test() throws IOException {
+        final DefaultRouteDetector detector
+                = detector(ROUTE_HEADER + route("eth0", "00000000", "0003", 0, "00000000"), "");
+        assertThat(detector.getInterfaceName(), is(sameInstance(detector.getInterfaceName())));
+    }
+
+    //----
+    // IPv6
+    //----
+    @Test
+    public void getInterfaceName_onlyIp6DefaultRoute_found_test() throws IOException {
+        final String ipv6Route = ip6Route("fd000000000000000000000000000000", "40", 256, "00000001",
+                "eth0")
+                + ip6Route(ZERO_IP6, "00", 1024, "00000003", "wlan0")
+                + ip6Route(ZERO_IP6, "00", -1, "00200200", "lo");
+        assertThat(detector(ROUTE_HEADER, ipv6Route).getInterfaceName(), is(equalTo("wlan0")));
+    }
+
+    @Test
+    public void getInterfaceName_ip4AndIp6DefaultRoutes_ip4Preferred_test() throws IOException {
+        final String route = ROUTE_HEADER + route("eth0", "00000000", "0003", 0, "00000000");
+        final String ipv6Route = ip6Route(ZERO_IP6, "00", 1, "00000003", "wlan0");
+        assertThat(detector(route, ipv6Route).getInterfaceName(), is(equalTo("eth0")));
+    }
+
+    @Test
+    public void getInterfaceName_ip6Rejecting_skipped_test() throws IOException {
+        final String ipv6Route = ip6Route(ZERO_IP6, "00", -1, "00200201", "eth0");
+        assertThat(detector(ROUTE_HEADER, ipv6Route).getInterfaceName(), is(nullValue()));
+    }
+
+    //----
+    // Missing tables
+    //----
+    @Test
+    public void getInterfaceName_missingTables_returnNull_test() {
+        final DefaultRouteDetector detector = new DefaultRouteDetector(
+                new File(mFolder.getRoot(), "route"), new File(mFolder.getRoot(), "ipv6_route"));
+        assertThat(detector.getInterfaceName(), is(nullValue()));
+    }
+
+    @Test
+    public void getInterfaceName_routeChanged_newName_test() throws IOException {
+        final File route = write(ROUTE_HEADER + route("eth0", "00000000", "0003", 0, "00000000"));
+        final DefaultRouteDetector detector = new DefaultRouteDetector(route, write(""));
+        assertThat(detector.getInterfaceName(), is(equalTo("eth0")));
+        rewrite(route, ROUTE_HEADER + route("wlan0", "00000000", "0003", 0, "00000000"));
+        assertThat(detector.getInterfaceName(), is(equalTo("wlan0")));
+        rewrite(route, ROUTE_HEADER);
+        assertThat(detector.getInterfaceName(), is(nullValue()));
+    }
+
+    private DefaultRouteDetector detector(final String route, final String ipv6Route)
+            throws IOException {
+        return new DefaultRouteDetector(write(route), write(ipv6Route));
+    }
+
+    /**
+     * A /proc/net/route line, with the kernel's trailing padding.
+     */
+    private static String route(final String name, final String destination, final String flags,
+            final int metric, final String mask) {
+        return String.format("%s\t%s\t010200C0\t%s\t0\t0\t%d\t%s\t0\t0\t0%-40s\n", name,
+                destination, flags, metric, mask, "");
+    }
+
+    /**
+     * A /proc/net/ipv6_route line.
+     */
+    private static String ip6Route(final String destination, final String prefixLength,
+            final int metric, final String flags, final String name) {
+        return String.format("%s %s %s 00 %s %08x 00000001 00000000 %s %8s\n", destination,
+                prefixLength, ZERO_IP6, ZERO_IP6, metric, flags, name);
+    }
+
+    private File write(final String content) throws IOException {
+        final File result = mFolder.newFile();
+        rewrite(result, content);
+        return result;
+    }
+
+    private static void rewrite(final File file, final String content) throws IOException {
+        final FileOutputStream stream = new FileOutputStream(file);
+        try {
+            stream.write(content.getBytes(US_ASCII));
+        } finally {
+            stream.close();
+        }
+    }
+}
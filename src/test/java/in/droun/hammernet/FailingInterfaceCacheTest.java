@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.junit.Assert.*;
+
+import in.droun.hammernet.NetInfoMetrics.Operation;
+import java.net.SocketException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings("PMD.TooManyStaticImports")
+public class FailingInterfaceCacheTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private transient FailingInterfaceCache mCache;
+    private transient List<InterfaceHandle> mHandles;
+
+    @Before
+    public void before() {
+        mCache = new FailingInterfaceCache();
+        mCache.setBackoff(1, 8, TimeUnit.SECONDS);
+        mHandles = new SyntheticInterfaceQuery(3).getInterfaceHandles();
+    }
+
+    //----
+    // Backoff
+    //----
+    @Test
+    public void isFailing_withinBackoff_true_test() {
+        mCache.failed("eth0", 2, 0, mHandles);
+        assertThat(mCache.isFailing("eth0", 2, SECOND - 1), is(true));
+        assertThat(mCache.isFailing("eth0", 2, SECOND), is(false));
+        assertThat(mCache.getAvoidedReadCount(), is(equalTo(1L)));
+        assertThat(mCache.getSize(), is(equalTo(1)));
+    }
+
+    @Test
+    public void failed_inARow_backoffDoublesUpToMax_test() {
+        long now = 0;
+        final long[] expected = { 1, 2, 4, 8, 8, 8 };
+        for (final long backoff : expected) {
+            mCache.failed("eth0", 2, now, mHandles);
+            assertThat(mCache.isFailing("eth0", 2, now + backoff * SECOND - 1), is(true));
+            now += backoff * SECOND;
+            assertThat(mCache.isFailing("eth0", 2, now), is(false));
+        }
+    }
+
+    @Test
+    public void failed_manyTimes_backoffNeverOverflows_test() {
+        mCache.setBackoff(Long.MAX_VALUE / 4, Long.MAX_VALUE / 2, TimeUnit.NANOSECONDS);
+        for (int i = 0; i < 100; i++) {
+            mCache.failed("eth0", 2, 0, mHandles);
+        }
+        assertThat(mCache.isFailing("eth0", 2, Long.MAX_VALUE / 2 - 1), is(true));
+    }
+
+    @Test
+    public void isFailing_otherIndex_forgotten_test() {
+        mCache.failed("eth0", 2, 0, mHandles);
+        assertThat(mCache.isFailing("eth0", 5, 0), is(false));
+        assertThat(mCache.getSize(), is(equalTo(0)));
+    }
+
+    @Test
+    public void succeeded_forgotten_test() {
+        mCache.failed("eth0", 2, 0, mHandles);
+        mCache.failed("eth0", 2, 0, mHandles);
+        mCache.succeeded("eth0");
+        assertThat(mCache.isFailing("eth0", 2, 0), is(false));
+        // Starts over from the initial backoff
+        mCache.failed("eth0", 2, 0, mHandles);
+        assertThat(mCache.isFailing("eth0", 2, SECOND), is(false));
+    }
+
+    @Test
+    public void failed_noName_notRemembered_test() {
+        mCache.failed(null, 2, 0, mHandles);
+        assertThat(mCache.isEmpty(), is(true));
+        assertThat(mCache.isFailing(null, 2, 0), is(false));
+    }
+
+    @Test
+    public void setBackoff_zero_nothingRemembered_test() {
+        mCache.failed("eth0", 2, 0, mHandles);
+        mCache.setBackoff(0, 0, TimeUnit.SECONDS);
+        assertThat(mCache.isEmpty(), is(true));
+        mCache.failed("eth0", 2, 0, mHandles);
+        assertThat(mCache.isEmpty(), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setBackoff_maxBelowInitial_exception_test() {
+        mCache.setBackoff(2, 1, TimeUnit.SECONDS);
+    }
+
+    //----
+    // Interface set changes
+    //----
+    @Test
+    public void checkInterfaces_sameInterfaces_kept_test() {
+        mCache.failed("eth0", 2, 0, mHandles);
+        mCache.checkInterfaces(new SyntheticInterfaceQuery(3).getInterfaceHandles());
+        assertThat(mCache.getSize(), is(equalTo(1)));
+        assertThat(mCache.getClearCount(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void checkInterfaces_interfacesChanged_cleared_test() {
+        mCache.failed("eth0", 2, 0, mHandles);
+        final SyntheticInterfaceQuery changed = new SyntheticInterfaceQuery(3);
+        changed.churn(1);
+        mCache.checkInterfaces(changed.getInterfaceHandles());
+        assertThat(mCache.isEmpty(), is(true));
+        assertThat(mCache.getClearCount(), is(equalTo(1L)));
+    }
+
+    //----
+    // NetworkInterfaceInfo.getNameByMacAddress()
+    //----
+    @Test
+    public void getNameByMacAddress_failingInterfaces_readOnce_test() throws SocketException {
+        final SyntheticInterfaceQuery interfaceQuery = new SyntheticInterfaceQuery(1000, 0.1, 5);
+        final RecordingNetInfoMetrics metrics = new RecordingNetInfoMetrics();
+        final NetworkInterfaceInfo interfaceInfo
+                = new NetworkInterfaceInfo(interfaceQuery, metrics);
+        final MacAddress missing = MacAddress.valueOf(SyntheticInterfaceQuery.macAddressOf(-1));
+        interfaceInfo.getNameByMacAddress(missing);
+        final long failing = metrics.getSkippedInterfaceCount();
+        final FailingInterfaceCache cache = interfaceInfo.getFailingInterfaceCache();
+        assertThat(cache.getSize(), is(equalTo((int) failing)));
+
+        interfaceInfo.getNameByMacAddress(missing);
+        assertThat(metrics.getSkippedInterfaceCount(), is(equalTo(failing)));
+        assertThat(cache.getAvoidedReadCount(), is(equalTo(failing)));
+        assertThat(metrics.getCallCount(Operation.GET_HARDWARE_ADDRESS),
+                is(equalTo(2000 - failing)));
+    }
+
+    @Test
+    public void getNameByMacAddress_interfacesChanged_readAgain_test() throws SocketException {
+        final SyntheticInterfaceQuery interfaceQuery = new SyntheticInterfaceQuery(100, 0.1, 5);
+        final RecordingNetInfoMetrics metrics = new RecordingNetInfoMetrics();
+        final NetworkInterfaceInfo interfaceInfo
+                = new NetworkInterfaceInfo(interfaceQuery, metrics);
+        final MacAddress missing = MacAddress.valueOf(SyntheticInterfaceQuery.macAddressOf(-1));
+        interfaceInfo.getNameByMacAddress(missing);
+        final long failing = metrics.getSkippedInterfaceCount();
+
+        interfaceQuery.churn(1);
+        interfaceInfo.getNameByMacAddress(missing);
+        assertThat(interfaceInfo.getFailingInterfaceCache().getClearCount(), is(equalTo(1L)));
+        assertThat(metrics.getSkippedInterfaceCount() >= 2 * failing - 1, is(true));
+    }
+
+    @Test
+    public void getNameByMacAddress_disabled_everyInterfaceRead_test() throws SocketException {
+        final SyntheticInterfaceQuery interfaceQuery = new SyntheticInterfaceQuery(100, 0.1, 5);
+        final RecordingNetInfoMetrics metrics = new RecordingNetInfoMetrics();
+        final NetworkInterfaceInfo interfaceInfo
+                = new NetworkInterfaceInfo(interfaceQuery, metrics);
+        interfaceInfo.getFailingInterfaceCache().setBackoff(0, 0, TimeUnit.SECONDS);
+        final MacAddress missing = MacAddress.valueOf(SyntheticInterfaceQuery.macAddressOf(-1));
+        interfaceInfo.getNameByMacAddress(missing);
+        interfaceInfo.getNameByMacAddress(missing);
+        assertThat(metrics.getCallCount(Operation.GET_HARDWARE_ADDRESS), is(equalTo(200L)));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings({ "PMD.AvoidUsingHardCodedIP", // This is test code and have to hardcode values
+    "PMD.TooManyStaticImports" })
+public class InetAddressFormatTest {
+
+    //----
+    // IPv4
+    //----
+    @Test
+    public void appendIp4_values_test() {
+        assertThat(ip4("0.0.0.0"), is(equalTo("0.0.0.0")));
+        assertThat(ip4("192.0.2.1"), is(equalTo("192.0.2.1")));
+        assertThat(ip4("10.100.9.255"), is(equalTo("10.100.9.255")));
+        assertThat(ip4("255.255.255.255"), is(equalTo("255.255.255.255")));
+    }
+
+    @Test
+    public void formatIp4_charArrayOffset_test() {
+        final char[] text = new char[20];
+        Arrays.fill(text, '#');
+        final int length = InetAddressFormat.formatIp4(0xAC191906, text, 2);
+        assertThat(new String(text, 0, length + 3), is(equalTo("##172.25.25.6#")));
+    }
+
+    //----
+    // IPv6, RFC 5952 section 4 and 5
+    //----
+    @Test
+    public void appendIp6_rfc5952_test() {
+        assertThat(ip6("2001:0db8:0000:0000:0000:0000:0000:0001"), is(equalTo("2001:db8::1")));
+        // A single zero group is not shortened
+        assertThat(ip6("2001:db8:0:1:1:1:1:1"), is(equalTo("2001:db8:0:1:1:1:1:1")));
+        // Longest run wins, then the first one
+        assertThat(ip6("2001:0:0:1:0:0:0:1"), is(equalTo("2001:0:0:1::1")));
+        assertThat(ip6("2001:db8:0:0:1:0:0:1"), is(equalTo("2001:db8::1:0:0:1")));
+        assertThat(ip6("2001:DB8::AB:CD"), is(equalTo("2001:db8::ab:cd")));
+        assertThat(ip6("::"), is(equalTo("::")));
+        assertThat(ip6("::1"), is(equalTo("::1")));
+        assertThat(ip6("1::"), is(equalTo("1::")));
+        assertThat(ip6("fe80::fc:ff:fe00:1"), is(equalTo("fe80::fc:ff:fe00:1")));
+        assertThat(ip6("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"),
+                is(equalTo("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff")));
+    }
+
+    @Test
+    public void appendIp6_ip4Mapped_test() {
+        final StringBuilder text = new StringBuilder();
+        InetAddressFormat.appendIp6(0, 0xFFFFC0000201L, text);
+        assertThat(text.toString(), is(equalTo("::ffff:192.0.2.1")));
+    }
+
+    @Test
+    public void formatIp6_random_roundTrips_test() throws UnknownHostException {
+        final Random random = new Random(5952);
+        final char[] text = new char[InetAddressFormat.MAX_IP6_LENGTH];
+        final byte[] bytes = new byte[16];
+        for (int i = 0; i < 10000; i++) {
+            random.nextBytes(bytes);
+            // Sprinkle zero groups so "::" is exercised
+            for (int group = 0; group < 8; group++) {
+                if (random.nextInt(3) == 0) {
+                    bytes[group * 2] = 0;
+                    bytes[group * 2 + 1] = 0;
+                }
+            }
+            final int length = InetAddressFormat.formatIp6(
+                    InetAddressFormat.ip6HalfToLong(bytes, 0),
+                    InetAddressFormat.ip6HalfToLong(bytes, 8), text, 0);
+            final String formatted = new String(text, 0, length);
+            assertThat(formatted, InetAddress.getByName(formatted).getAddress(),
+                    is(equalTo(bytes)));
+        }
+    }
+
+    private static String ip4(final String address) {
+        try {
+            return InetAddressFormat.appendIp4(InetAddressFormat.ip4ToInt(
+                    InetAddress.getByName(address).getAddress()), new StringBuilder()).toString();
+        } catch (UnknownHostException unknownHostException) {
+            throw new IllegalArgumentException(address, unknownHostException);
+        }
+    }
+
+    private static String ip6(final String address) {
+        try {
+            final byte[] bytes = InetAddress.getByName(address).getAddress();
+            return InetAddressFormat.appendIp6(InetAddressFormat.ip6HalfToLong(bytes, 0),
+                    InetAddressFormat.ip6HalfToLong(bytes, 8), new StringBuilder()).toString();
+        } catch (UnknownHostException unknownHostException) {
+            throw new IllegalArgumentException(address, unknownHostException);
+        }
+    }
+}
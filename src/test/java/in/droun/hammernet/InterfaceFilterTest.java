@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.hamcrest.core.IsNull.*;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import in.droun.hammernet.NetworkInterfaceInfo.InterfaceQuery;
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings({ "PMD.AvoidUsingHardCodedIP", // This is test code and have to hardcode values
+    "PMD.TooManyStaticImports" })
+public class InterfaceFilterTest {
+
+    private static final long WLAN_MAC = 0x50D15F4EBE75L;
+
+    private transient InterfaceHandle mLoopback;
+    private transient InterfaceHandle mTunnel;
+    private transient InterfaceHandle mWlan;
+    private transient InterfaceQuery mInterfaceQuery;
+    private transient RecordingNetInfoMetrics mMetrics;
+
+    @Before
+    public void before() throws SocketException, UnknownHostException {
+        mLoopback = handle("lo", 1, true, false, false, InetAddress.getByName("127.0.0.1"));
+        mTunnel = handle("tun0", 7, true, false, true, InetAddress.getByName("fd00::1"));
+        mWlan = handle("wlan0", 3, true, false, false, InetAddress.getByName("172.25.25.6"));
+        // The loopback and tunnel would match too if their hardware addresses were read
+        when(mLoopback.getMacAddress()).thenReturn(WLAN_MAC);
+        when(mTunnel.getMacAddress()).thenReturn(WLAN_MAC);
+        when(mWlan.getMacAddress()).thenReturn(WLAN_MAC);
+        when(mLoopback.isLoopback()).thenReturn(true);
+
+        mInterfaceQuery = mock(InterfaceQuery.class);
+        when(mInterfaceQuery.getInterfaceHandles())
+                .thenReturn(Arrays.asList(mLoopback, mTunnel, mWlan));
+        mMetrics = new RecordingNetInfoMetrics();
+    }
+
+    //----
+    // Records
+    //----
+    @Test
+    public void accepts_any_everyRecord_test() {
+        assertThat(InterfaceFilter.ANY.accepts(new InterfaceRecord(null, -1,
+                MacAddressParser.INVALID, -1, 0)), is(true));
+    }
+
+    @Test
+    public void accepts_records_everyCondition_test() throws UnknownHostException {
+        final InterfaceRecord record = new InterfaceRecord("wlan0", 3, WLAN_MAC, 1500,
+                InterfaceRecord.FLAG_UP, InetAddress.getByName("172.25.25.6"));
+        assertThat(InterfaceFilter.ADAPTERS.accepts(record), is(true));
+        assertThat(InterfaceFilter.ANY.withName(Pattern.compile("wlan\\d")).accepts(record),
+                is(true));
+        assertThat(InterfaceFilter.ANY.withName(Pattern.compile("wlan")).accepts(record),
+                is(false));
+        assertThat(InterfaceFilter.ANY.withIndexBetween(1, 3).accepts(record), is(true));
+        assertThat(InterfaceFilter.ANY.withIndexBetween(4, 9).accepts(record), is(false));
+        assertThat(InterfaceFilter.ANY.withAddress(Inet4Address.class).accepts(record), is(true));
+        assertThat(InterfaceFilter.ANY.withAddress(Inet6Address.class).accepts(record),
+                is(false));
+        assertThat(InterfaceFilter.ANY.withoutFlags(InterfaceRecord.FLAG_UP).accepts(record),
+                is(false));
+        assertThat(InterfaceFilter.ADAPTERS.accepts(new InterfaceRecord("lo", 1,
+                MacAddressParser.INVALID, 65536,
+                InterfaceRecord.FLAG_UP | InterfaceRecord.FLAG_LOOPBACK)), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withFlags_alreadyForbidden_exception_test() {
+        InterfaceFilter.ADAPTERS.withFlags(InterfaceRecord.FLAG_LOOPBACK);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withoutFlags_unknownFlag_exception_test() {
+        InterfaceFilter.ANY.withoutFlags(1 << 4);
+    }
+
+    //----
+    // Live interfaces
+    //----
+    @Test
+    public void accepts_cheapConditionFails_flagsNeverRead_test() throws SocketException {
+        final InterfaceFilter filter = InterfaceFilter.ADAPTERS.withName(Pattern.compile("eth0"));
+        assertThat(filter.accepts(mWlan), is(false));
+        verify(mWlan, never()).isUp();
+        verify(mWlan, never()).getInetAddresses();
+    }
+
+    @Test
+    public void accepts_unconstrainedFlags_neverRead_test() throws SocketException {
+        assertThat(InterfaceFilter.ANY.withFlags(InterfaceRecord.FLAG_UP).accepts(mWlan),
+                is(true));
+        verify(mWlan, times(1)).isUp();
+        verify(mWlan, never()).isLoopback();
+        verify(mWlan, never()).isPointToPoint();
+    }
+
+    @Test(expected = SocketException.class)
+    public void accepts_flagsUnreadable_exception_test() throws SocketException {
+        when(mWlan.isUp()).thenThrow(new SocketException("No such device"));
+        InterfaceFilter.ADAPTERS.accepts(mWlan);
+    }
+
+    //----
+    // NetworkInterfaceInfo.getNameByMacAddress(MacAddress, InterfaceFilter)
+    //----
+    @Test
+    public void getNameByMacAddress_adapters_hardwareAddressReadOnce_test()
+            throws SocketException {
+        final NetworkInterfaceInfo interfaceInfo
+                = new NetworkInterfaceInfo(mInterfaceQuery, mMetrics);
+        assertThat(interfaceInfo.getNameByMacAddress(MacAddress.valueOf(WLAN_MAC),
+                InterfaceFilter.ADAPTERS), is(equalTo("wlan0")));
+        verify(mLoopback, never()).getMacAddress();
+        verify(mTunnel, never()).getMacAddress();
+        assertThat(mMetrics.getCallCount(NetInfoMetrics.Operation.GET_HARDWARE_ADDRESS),
+                is(equalTo(1L)));
+        assertThat(mMetrics.getFilteredInterfaceCount(), is(equalTo(2L)));
+    }
+
+    @Test
+    public void getNameByMacAddress_any_sameAsUnfiltered_test() throws SocketException {
+        final NetworkInterfaceInfo interfaceInfo
+                = new NetworkInterfaceInfo(mInterfaceQuery, mMetrics);
+        assertThat(interfaceInfo.getNameByMacAddress(MacAddress.valueOf(WLAN_MAC),
+                InterfaceFilter.ANY), is(equalTo("lo")));
+        verify(mLoopback, never()).isUp();
+        assertThat(mMetrics.getFilteredInterfaceCount(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void getNameByMacAddress_flagsUnreadable_skipped_test() throws SocketException {
+        when(mWlan.isUp()).thenThrow(new SocketException("No such device"));
+        final NetworkInterfaceInfo interfaceInfo
+                = new NetworkInterfaceInfo(mInterfaceQuery, mMetrics);
+        assertThat(interfaceInfo.getNameByMacAddress(MacAddress.valueOf(WLAN_MAC),
+                InterfaceFilter.ADAPTERS), is(nullValue()));
+        assertThat(mMetrics.getSkippedInterfaceCount(), is(equalTo(1L)));
+        assertThat(mMetrics.getCallCount(NetInfoMetrics.Operation.GET_HARDWARE_ADDRESS),
+                is(equalTo(0L)));
+    }
+
+    @Test
+    public void getNameByMacAddress_cachedSharedMac_acceptedOneFound_test()
+            throws SocketException {
+        when(mInterfaceQuery.snapshot()).thenReturn(new InterfaceSnapshot(System.nanoTime(),
+                new InterfaceRecord("br0", 4, WLAN_MAC, 1500,
+                InterfaceRecord.FLAG_UP | InterfaceRecord.FLAG_VIRTUAL),
+                new InterfaceRecord("wlan0", 3, WLAN_MAC, 1500, InterfaceRecord.FLAG_UP)));
+        final NetworkInterfaceInfo interfaceInfo = new NetworkInterfaceInfo(
+                new InterfaceSnapshotCache(mInterfaceQuery, 1, TimeUnit.HOURS));
+        assertThat(interfaceInfo.getNameByMacAddress(MacAddress.valueOf(WLAN_MAC)),
+                is(equalTo("br0")));
+        assertThat(interfaceInfo.getNameByMacAddress(MacAddress.valueOf(WLAN_MAC),
+                InterfaceFilter.ADAPTERS), is(equalTo("wlan0")));
+        assertThat(interfaceInfo.getNameByMacAddress(MacAddress.valueOf(WLAN_MAC),
+                InterfaceFilter.ANY.withIndexBetween(5, 9)), is(nullValue()));
+    }
+
+    @Test
+    public void getNameByMacAddress_syntheticHost_filterByIndex_test() throws SocketException {
+        final NetworkInterfaceInfo interfaceInfo
+                = new NetworkInterfaceInfo(new SyntheticInterfaceQuery(10000), mMetrics);
+        // The interface sits past most of the others, the index range singles it out
+        assertThat(interfaceInfo.getNameByMacAddress(
+                MacAddress.valueOf(SyntheticInterfaceQuery.macAddressOf(9000)),
+                InterfaceFilter.ANY.withIndexBetween(9000, 9099)),
+                is(equalTo(SyntheticInterfaceQuery.nameOf(9000))));
+        assertThat(mMetrics.getCallCount(NetInfoMetrics.Operation.GET_HARDWARE_ADDRESS),
+                is(equalTo(1L)));
+        assertThat(mMetrics.getFilteredInterfaceCount(), is(equalTo(9000L)));
+    }
+
+    private static InterfaceHandle handle(final String name, final int index, final boolean up,
+            final boolean virtual, final boolean pointToPoint, final InetAddress address)
+            throws SocketException {
+        final InterfaceHandle result = mock(InterfaceHandle.class);
+        when(result.getName()).thenReturn(name);
+        when(result.getIndex()).thenReturn(index);
+        when(result.isUp()).thenReturn(up);
+        when(result.isVirtual()).thenReturn(virtual);
+        when(result.isPointToPoint()).thenReturn(pointToPoint);
+        when(result.getInetAddresses()).thenReturn(Collections.singletonList(address));
+        return result;
+    }
+}
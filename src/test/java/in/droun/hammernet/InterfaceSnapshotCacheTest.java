@@ -0,0 +1,464 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.hamcrest.core.IsNot.*;
+import static org.hamcrest.core.IsNull.*;
+import static org.hamcrest.core.IsSame.*;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import in.droun.hammernet.NetworkInterfaceInfo.InterfaceQuery;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings({ "PMD.AvoidUsingHardCodedIP", // This is test code and have to hardcode values
+    "PMD.TooManyStaticImports" })
+public class InterfaceSnapshotCacheTest {
+
+    private static final long WLAN_MAC = 0x50D15F4EBE75L;
+
+    private transient InterfaceQuery mInterfaceQuery;
+    private transient InterfaceSnapshot mSnapshot;
+
+    @Rule
+    public transient TemporaryFolder mFolder = new TemporaryFolder();
+
+    /**
+     * Tasks handed to {@link #mExecutor}, run by the test when it wants.
+     */
+    private final transient List<Runnable> mTasks = new ArrayList<Runnable>();
+
+    private final transient Executor mExecutor = new Executor() {
+        @Override
+        public void execute(final Runnable task) {
+            mTasks.add(task);
+        }
+    };
+
+    @Before
+    public void before() throws SocketException, UnknownHostException {
+        final InetAddress wlanIp4 = InetAddress.getByAddress(new byte[] { (byte) 172, 25, 25, 6 });
+        final InetAddress wlanIp6 = InetAddress.getByName("fe80::52d1:5fff:fe4e:be75");
+        mSnapshot = new InterfaceSnapshot(System.nanoTime(),
+                new InterfaceRecord("lo", 1, MacAddressParser.INVALID, 65536,
+                InterfaceRecord.FLAG_UP | InterfaceRecord.FLAG_LOOPBACK,
+                InetAddress.getByName("127.0.0.1")),
+                new InterfaceRecord("wlan0", 2, WLAN_MAC, 1500, InterfaceRecord.FLAG_UP,
+                wlanIp6, wlanIp4));
+
+        mInterfaceQuery = mock(InterfaceQuery.class);
+        when(mInterfaceQuery.snapshot()).thenReturn(mSnapshot);
+    }
+
+    //----
+    // get()
+    //----
+    @Test
+    public void get_withinTtl_enumeratesOnce_test() throws SocketException {
+        final InterfaceSnapshotCache cache
+                = new InterfaceSnapshotCache(mInterfaceQuery, 1, TimeUnit.HOURS);
+        assertThat(cache.get(), is(sameInstance(mSnapshot)));
+        assertThat(cache.get(), is(sameInstance(mSnapshot)));
+        verify(mInterfaceQuery, times(1)).snapshot();
+    }
+
+    @Test
+    public void get_zeroTtl_enumeratesEveryTime_test() throws SocketException {
+        final InterfaceSnapshotCache cache
+                = new InterfaceSnapshotCache(mInterfaceQuery, 0, TimeUnit.SECONDS);
+        cache.get();
+        cache.get();
+        verify(mInterfaceQuery, times(2)).snapshot();
+    }
+
+    @Test
+    public void invalidate_forcesNewSnapshot_test() throws SocketException {
+        final InterfaceSnapshotCache cache
+                = new InterfaceSnapshotCache(mInterfaceQuery, 1, TimeUnit.HOURS);
+        cache.get();
+        cache.invalidate();
+        cache.get();
+        verify(mInterfaceQuery, times(2)).snapshot();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_negativeTtl_throws_test() {
+        new InterfaceSnapshotCache(mInterfaceQuery, -1, TimeUnit.SECONDS);
+    }
+
+    //----
+    // warmStart(File, long, TimeUnit, Executor), setSnapshotFile(File)
+    //----
+    @Test
+    public void warmStart_savedSnapshot_servedThenRefreshed_test() throws IOException {
+        final File file = new File(mFolder.getRoot(), "interfaces.bin");
+        InterfaceSnapshotFile.write(mSnapshot, file);
+        final InterfaceSnapshotCache cache
+                = new InterfaceSnapshotCache(mInterfaceQuery, 1, TimeUnit.HOURS);
+
+        assertThat(cache.warmStart(file, 1, TimeUnit.DAYS, mExecutor), is(true));
+        final InterfaceSnapshot saved = cache.get();
+        assertThat(saved, is(not(sameInstance(mSnapshot))));
+        assertThat(saved.getByMacAddress(WLAN_MAC).getName(), is(equalTo("wlan0")));
+        verify(mInterfaceQuery, never()).snapshot();
+
+        assertThat(mTasks.size(), is(equalTo(1)));
+        mTasks.get(0).run();
+        verify(mInterfaceQuery, times(1)).snapshot();
+        assertThat(cache.get(), is(sameInstance(mSnapshot)));
+    }
+
+    @Test
+    public void warmStart_noSavedSnapshot_enumeratesOnFirstUse_test() throws SocketException {
+        final InterfaceSnapshotCache cache
+                = new InterfaceSnapshotCache(mInterfaceQuery, 1, TimeUnit.HOURS);
+        assertThat(cache.warmStart(new File(mFolder.getRoot(), "interfaces.bin"), 1,
+                TimeUnit.DAYS, mExecutor), is(false));
+        assertThat(mTasks.isEmpty(), is(true));
+        assertThat(cache.get(), is(sameInstance(mSnapshot)));
+    }
+
+    @Test
+    public void warmStart_tooOld_enumeratesOnFirstUse_test() throws IOException {
+        final File file = new File(mFolder.getRoot(), "interfaces.bin");
+        InterfaceSnapshotFile.write(mSnapshot, file);
+        assertThat(file.setLastModified(System.currentTimeMillis()
+                - TimeUnit.HOURS.toMillis(2)), is(true));
+        final InterfaceSnapshotCache cache
+                = new InterfaceSnapshotCache(mInterfaceQuery, 1, TimeUnit.HOURS);
+        assertThat(cache.warmStart(file, 1, TimeUnit.HOURS, mExecutor), is(false));
+        assertThat(cache.get(), is(sameInstance(mSnapshot)));
+    }
+
+    @Test
+    public void warmStart_corrupt_enumeratesOnFirstUseAndRewrites_test() throws IOException {
+        final File file = new File(mFolder.getRoot(), "interfaces.bin");
+        final FileOutputStream stream = new FileOutputStream(file);
+        try {
+            stream.write(new byte[] { 'H', 'N', 'I', 'S', 0, 0 });
+        } finally {
+            stream.close();
+        }
+        final InterfaceSnapshotCache cache
+                = new InterfaceSnapshotCache(mInterfaceQuery, 1, TimeUnit.HOURS);
+        assertThat(cache.warmStart(file, 1, TimeUnit.DAYS, mExecutor), is(false));
+        assertThat(cache.get(), is(sameInstance(mSnapshot)));
+        // Saved by the warm start executor
+        runTasks();
+        assertThat(InterfaceSnapshotFile.read(file, 1, TimeUnit.DAYS).size(), is(equalTo(2)));
+    }
+
+    @Test
+    public void setSnapshotFile_refresh_savedInBackground_test() throws IOException {
+        final File file = new File(mFolder.getRoot(), "interfaces.bin");
+        final InterfaceSnapshotCache cache
+                = new InterfaceSnapshotCache(mInterfaceQuery, 1, TimeUnit.HOURS);
+        cache.setSnapshotFile(file, mExecutor);
+        cache.get();
+        // Not on the lookup thread
+        assertThat(file.exists(), is(false));
+        runTasks();
+        final InterfaceSnapshot saved = InterfaceSnapshotFile.read(file, 1, TimeUnit.DAYS);
+        assertThat(saved.getRecords().toString(),
+                is(equalTo(mSnapshot.getRecords().toString())));
+    }
+
+    @Test
+    public void setSnapshotFile_refreshesWhileSaving_latestSavedOnce_test() throws IOException {
+        final GenerationQuery query = new GenerationQuery();
+        final File file = new File(mFolder.getRoot(), "interfaces.bin");
+        final InterfaceSnapshotCache cache = new InterfaceSnapshotCache(query, 0, TimeUnit.SECONDS);
+        cache.setSnapshotFile(file, mExecutor);
+        cache.get();
+        cache.get();
+        final InterfaceSnapshot latest = cache.get();
+        assertThat(mTasks.size(), is(equalTo(1)));
+        runTasks();
+        assertThat(InterfaceSnapshotFile.read(file, 1, TimeUnit.DAYS).getRecords().toString(),
+                is(equalTo(latest.getRecords().toString())));
+        // Once drained, the next snapshot schedules a new save
+        cache.get();
+        assertThat(mTasks.size(), is(equalTo(1)));
+    }
+
+    @Test
+    public void setSnapshotFile_defaultExecutor_saved_test() throws Exception {
+        final File file = new File(mFolder.getRoot(), "interfaces.bin");
+        final InterfaceSnapshotCache cache
+                = new InterfaceSnapshotCache(mInterfaceQuery, 1, TimeUnit.HOURS);
+        cache.setSnapshotFile(file);
+        cache.get();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!file.exists() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(InterfaceSnapshotFile.read(file, 1, TimeUnit.DAYS).size(), is(equalTo(2)));
+    }
+
+    @Test
+    public void setSnapshotFile_unwritable_lookupStillServed_test() throws SocketException {
+        final InterfaceSnapshotCache cache
+                = new InterfaceSnapshotCache(mInterfaceQuery, 1, TimeUnit.HOURS);
+        cache.setSnapshotFile(new File(new File(mFolder.getRoot(), "missing"), "interfaces.bin"));
+        assertThat(cache.get(), is(sameInstance(mSnapshot)));
+    }
+
+    //----
+    // Concurrent readers
+    //----
+    @Test
+    public void get_concurrentFirstLoad_oneEnumeration_test() throws InterruptedException {
+        final GenerationQuery query = new GenerationQuery();
+        query.mRelease = new CountDownLatch(1);
+        final InterfaceSnapshotCache cache = new InterfaceSnapshotCache(query, 1, TimeUnit.HOURS);
+        final List<InterfaceSnapshot> results = startReaders(cache, 8, 1);
+        assertThat(query.mEntered.await(10, TimeUnit.SECONDS), is(true));
+        query.mRelease.countDown();
+        joinReaders();
+        assertThat(query.mEnumerations.get(), is(equalTo(1)));
+        for (final InterfaceSnapshot result : results) {
+            assertThat(result, is(sameInstance(results.get(0))));
+        }
+    }
+
+    @Test
+    public void get_refreshBlocked_readersServedStale_test() throws Exception {
+        final GenerationQuery query = new GenerationQuery();
+        final InterfaceSnapshotCache cache = new InterfaceSnapshotCache(query, 0, TimeUnit.SECONDS);
+        final InterfaceSnapshot first = cache.get();
+
+        query.mEntered = new CountDownLatch(1);
+        query.mRelease = new CountDownLatch(1);
+        final List<InterfaceSnapshot> refreshed = startReaders(cache, 1, 1);
+        assertThat(query.mEntered.await(10, TimeUnit.SECONDS), is(true));
+        // The refresh is stuck in the kernel, readers must not wait for it
+        for (int i = 0; i < 1000; i++) {
+            assertThat(cache.get(), is(sameInstance(first)));
+        }
+        assertThat(query.mEnumerations.get(), is(equalTo(2)));
+
+        query.mRelease.countDown();
+        joinReaders();
+        assertThat(refreshed.get(0).getRecords().get(0).getIndex(), is(equalTo(2)));
+    }
+
+    @Test
+    public void get_stress_noTornReads_test() throws Exception {
+        final GenerationQuery query = new GenerationQuery();
+        // Never expires, so every enumeration but the first follows an invalidation
+        final InterfaceSnapshotCache cache = new InterfaceSnapshotCache(query, 1, TimeUnit.DAYS);
+        final int readers = 8;
+        final int reads = 20000;
+        final AtomicInteger invalidations = new AtomicInteger();
+        final Thread invalidator = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!Thread.currentThread().isInterrupted()) {
+                    cache.invalidate();
+                    invalidations.incrementAndGet();
+                    Thread.yield();
+                }
+            }
+        });
+        invalidator.start();
+        try {
+            startReaders(cache, readers, reads);
+            joinReaders();
+        } finally {
+            invalidator.interrupt();
+            invalidator.join();
+        }
+        assertThat(query.mMaxConcurrent.get(), is(equalTo(1)));
+        final int enumerations = query.mEnumerations.get();
+        assertThat(enumerations >= 1, is(true));
+        assertThat(enumerations + " enumerations for " + invalidations.get() + " invalidations",
+                enumerations <= invalidations.get() + 1, is(true));
+    }
+
+    /**
+     * Runs the tasks handed to {@link #mExecutor}, and those they hand over in turn.
+     */
+    private void runTasks() {
+        while (!mTasks.isEmpty()) {
+            mTasks.remove(0).run();
+        }
+    }
+
+    private final transient List<Thread> mReaders = new ArrayList<Thread>();
+    private final transient AtomicReference<Throwable> mFailure
+            = new AtomicReference<Throwable>();
+
+    /**
+     * Starts threads each calling get() <i>reads</i> times and checking every snapshot is
+     * consistent, one generation throughout, and never older than the previous one.
+     *
+     * @return the last snapshot each thread read, filled in once they are joined.
+     */
+    private List<InterfaceSnapshot> startReaders(final InterfaceSnapshotCache cache,
+            final int count, final int reads) {
+        final List<InterfaceSnapshot> results = new ArrayList<InterfaceSnapshot>();
+        for (int i = 0; i < count; i++) {
+            results.add(null);
+            final int slot = i;
+            final Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        int lastGeneration = 0;
+                        for (int n = 0; n < reads; n++) {
+                            final InterfaceSnapshot snapshot = cache.get();
+                            final int generation = GenerationQuery.check(snapshot);
+                            assertThat(generation >= lastGeneration, is(true));
+                            lastGeneration = generation;
+                            synchronized (results) {
+                                results.set(slot, snapshot);
+                            }
+                        }
+                    } catch (Throwable failure) {
+                        mFailure.compareAndSet(null, failure);
+                    }
+                }
+            });
+            mReaders.add(reader);
+            reader.start();
+        }
+        return results;
+    }
+
+    private void joinReaders() throws InterruptedException {
+        for (final Thread reader : mReaders) {
+            reader.join(TimeUnit.SECONDS.toMillis(60));
+            assertThat(reader.isAlive(), is(false));
+        }
+        if (mFailure.get() != null) {
+            throw new AssertionError(mFailure.get());
+        }
+    }
+
+    /**
+     * Serves snapshots whose every record carries the number of the enumeration that produced
+     * it, as index and in the upper bits of its MAC address, so a torn read shows as a mix.
+     */
+    private static final class GenerationQuery extends InterfaceQuery {
+
+        private static final int INTERFACES = 16;
+
+        private final transient AtomicInteger mEnumerations = new AtomicInteger();
+        private final transient AtomicInteger mConcurrent = new AtomicInteger();
+        private final transient AtomicInteger mMaxConcurrent = new AtomicInteger();
+        private transient volatile CountDownLatch mEntered = new CountDownLatch(1);
+        private transient volatile CountDownLatch mRelease;
+
+        @Override
+        protected InterfaceSnapshot snapshot() {
+            final int concurrent = mConcurrent.incrementAndGet();
+            int max = mMaxConcurrent.get();
+            while (concurrent > max && !mMaxConcurrent.compareAndSet(max, concurrent)) {
+                max = mMaxConcurrent.get();
+            }
+            try {
+                final int generation = mEnumerations.incrementAndGet();
+                mEntered.countDown();
+                if (mRelease != null) {
+                    mRelease.await();
+                }
+                final InterfaceRecord[] records = new InterfaceRecord[INTERFACES];
+                for (int i = 0; i < INTERFACES; i++) {
+                    records[i] = new InterfaceRecord("eth" + i, generation,
+                            (long) generation << Short.SIZE | i, 1500, InterfaceRecord.FLAG_UP);
+                }
+                return new InterfaceSnapshot(System.nanoTime(), records);
+            } catch (InterruptedException interruptedException) {
+                throw new IllegalStateException(interruptedException);
+            } finally {
+                mConcurrent.decrementAndGet();
+            }
+        }
+
+        /**
+         * @return the generation of <i>snapshot</i>, after checking all of it is from it.
+         */
+        static int check(final InterfaceSnapshot snapshot) {
+            final int generation = snapshot.getRecords().get(0).getIndex();
+            assertThat(snapshot.size(), is(equalTo(INTERFACES)));
+            for (int i = 0; i < INTERFACES; i++) {
+                final long mac = (long) generation << Short.SIZE | i;
+                assertThat(snapshot.getRecords().get(i).getIndex(), is(equalTo(generation)));
+                assertThat(snapshot.getByMacAddress(mac).getName(), is(equalTo("eth" + i)));
+            }
+            return generation;
+        }
+    }
+
+    //----
+    // NetworkInterfaceInfo served from the cache
+    //----
+    @Test
+    public void getNameByMacAddress_cached_noEnumeration_test() throws SocketException {
+        final NetworkInterfaceInfo interfaceInfo = new NetworkInterfaceInfo(
+                new InterfaceSnapshotCache(mInterfaceQuery, 1, TimeUnit.HOURS));
+        assertThat(interfaceInfo.getNameByMacAddress(MacAddress.valueOf(WLAN_MAC)),
+                is(equalTo("wlan0")));
+        assertThat(interfaceInfo.getNameByMacAddress(MacAddress.valueOf(WLAN_MAC + 1)),
+                is(nullValue()));
+        verify(mInterfaceQuery, times(1)).snapshot();
+        verify(mInterfaceQuery, never()).getNetworkInterfaces();
+    }
+
+    @Test
+    public void getIp4HostAddressByName_cached_noLookup_test() throws SocketException {
+        final NetworkInterfaceInfo interfaceInfo = new NetworkInterfaceInfo(
+                new InterfaceSnapshotCache(mInterfaceQuery, 1, TimeUnit.HOURS));
+        assertThat(interfaceInfo.getIp4HostAddressByName("wlan0"), is(equalTo("172.25.25.6")));
+        assertThat(interfaceInfo.getIp4HostAddressByName("eth0"), is(nullValue()));
+        assertThat(interfaceInfo.getIp4HostAddressByName(null), is(nullValue()));
+        verify(mInterfaceQuery, never()).getByName(anyString());
+    }
+
+    //----
+    // InterfaceQuery.snapshot()
+    //----
+    @Test
+    public void snapshot_realInterfaces_matchesUncached_test() throws SocketException {
+        // Whatever the machine has, the cached and uncached lookups must agree
+        final InterfaceQuery interfaceQuery = new InterfaceQuery();
+        final NetworkInterfaceInfo uncached = new NetworkInterfaceInfo(interfaceQuery);
+        final NetworkInterfaceInfo cached = new NetworkInterfaceInfo(
+                new InterfaceSnapshotCache(interfaceQuery, 1, TimeUnit.HOURS));
+        for (final InterfaceRecord record : interfaceQuery.snapshot().getRecords()) {
+            assertThat(cached.getIp4HostAddressByName(record.getName()),
+                    is(equalTo(uncached.getIp4HostAddressByName(record.getName()))));
+            if (record.hasMacAddress()) {
+                assertThat(cached.getNameByMacAddress(record.getMacAddress()),
+                        is(equalTo(uncached.getNameByMacAddress(record.getMacAddress()))));
+            }
+        }
+    }
+}
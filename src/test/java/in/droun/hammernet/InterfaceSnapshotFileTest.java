@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.hamcrest.core.IsNull.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings({ "PMD.AvoidUsingHardCodedIP", // This is test code and have to hardcode values
+    "PMD.TooManyStaticImports" })
+public class InterfaceSnapshotFileTest {
+
+    @Rule
+    public transient TemporaryFolder mFolder = new TemporaryFolder();
+
+    private transient InterfaceSnapshot mSnapshot;
+    private transient File mFile;
+
+    @Before
+    public void before() throws IOException {
+        final byte[] linkLocal = InetAddress.getByName("fe80::52d1:5fff:fe4e:be75").getAddress();
+        mSnapshot = new InterfaceSnapshot(System.nanoTime(), "wlan0",
+                new InterfaceRecord("lo", 1, MacAddressParser.INVALID, 65536,
+                InterfaceRecord.FLAG_UP | InterfaceRecord.FLAG_LOOPBACK,
+                InetAddress.getByName("127.0.0.1"), InetAddress.getByName("::1")),
+                new InterfaceRecord("wlan0", 2, 0x50D15F4EBE75L, 1500, InterfaceRecord.FLAG_UP,
+                Inet6Address.getByAddress(null, linkLocal, 2),
+                InetAddress.getByAddress(new byte[] { (byte) 172, 25, 25, 6 })),
+                new InterfaceRecord("tun\u00e9", -1, MacAddressParser.INVALID, -1,
+                InterfaceRecord.FLAG_POINT_TO_POINT | InterfaceRecord.FLAG_VIRTUAL));
+        mFile = new File(mFolder.getRoot(), "interfaces.bin");
+    }
+
+    //----
+    // Round trip
+    //----
+    @Test
+    public void read_written_sameInterfaces_test() throws IOException {
+        assertThat(InterfaceSnapshotFile.write(mSnapshot, mFile), is(true));
+        final InterfaceSnapshot read = InterfaceSnapshotFile.read(mFile, 1, TimeUnit.MINUTES);
+        assertThat(read.getRecords().toString(), is(equalTo(mSnapshot.getRecords().toString())));
+        assertThat(read.getDefaultRouteInterfaceName(), is(equalTo("wlan0")));
+        assertThat(((Inet6Address) read.getByName("wlan0").getInetAddresses().get(0)).getScopeId(),
+                is(equalTo(2)));
+        assertThat(read.getByName("wlan0").getIp4Address(),
+                is(equalTo(mSnapshot.getByName("wlan0").getIp4Address())));
+        assertThat(read.getByMacAddress(0x50D15F4EBE75L).getName(), is(equalTo("wlan0")));
+    }
+
+    @Test
+    public void read_noDefaultRouteNoInterfaces_roundTrip_test() throws IOException {
+        InterfaceSnapshotFile.write(new InterfaceSnapshot(System.nanoTime()), mFile);
+        final InterfaceSnapshot read = InterfaceSnapshotFile.read(mFile, 1, TimeUnit.MINUTES);
+        assertThat(read.size(), is(equalTo(0)));
+        assertThat(read.getDefaultRouteInterfaceName(), is(nullValue()));
+    }
+
+    @Test
+    public void read_agedFile_captureTimeInThePast_test() throws IOException {
+        InterfaceSnapshotFile.write(mSnapshot, mFile);
+        mFile.setLastModified(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(10));
+        final InterfaceSnapshot read = InterfaceSnapshotFile.read(mFile, 1, TimeUnit.HOURS);
+        final long age = System.nanoTime() - read.getCaptureTime();
+        assertThat(age >= TimeUnit.MINUTES.toNanos(9), is(true));
+        assertThat(age <= TimeUnit.MINUTES.toNanos(11), is(true));
+    }
+
+    //----
+    // Write on change
+    //----
+    @Test
+    public void write_unchanged_notRewritten_test() throws IOException {
+        assertThat(InterfaceSnapshotFile.write(mSnapshot, mFile), is(true));
+        final long old = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+        mFile.setLastModified(old);
+
+        final InterfaceSnapshot same = new InterfaceSnapshot(System.nanoTime() + 1, "wlan0",
+                mSnapshot.getRecords().toArray(new InterfaceRecord[0]));
+        assertThat(InterfaceSnapshotFile.write(same, mFile), is(false));
+        // Confirmed, so young again
+        assertThat(mFile.lastModified() > old, is(true));
+        assertThat(mFile.getParentFile().list().length, is(equalTo(1)));
+    }
+
+    @Test
+    public void write_changed_rewritten_test() throws IOException {
+        InterfaceSnapshotFile.write(mSnapshot, mFile);
+        final InterfaceSnapshot changed = new InterfaceSnapshot(System.nanoTime(), "eth0",
+                mSnapshot.getRecords().toArray(new InterfaceRecord[0]));
+        assertThat(InterfaceSnapshotFile.write(changed, mFile), is(true));
+        assertThat(InterfaceSnapshotFile.read(mFile, 1, TimeUnit.MINUTES)
+                .getDefaultRouteInterfaceName(), is(equalTo("eth0")));
+        assertThat(mFile.getParentFile().list().length, is(equalTo(1)));
+    }
+
+    @Test
+    public void write_fixedTemporaryNameTaken_stillWritten_test() throws IOException {
+        // Another process's temporary file under the old fixed name
+        assertThat(new File(mFile.getPath() + ".tmp").mkdir(), is(true));
+        assertThat(InterfaceSnapshotFile.write(mSnapshot, mFile), is(true));
+        assertThat(InterfaceSnapshotFile.read(mFile, 1, TimeUnit.MINUTES).size(),
+                is(equalTo(mSnapshot.size())));
+        assertThat(mFile.getParentFile().list().length, is(equalTo(2)));
+    }
+
+    @Test(expected = IOException.class)
+    public void write_missingDirectory_exception_test() throws IOException {
+        InterfaceSnapshotFile.write(mSnapshot, new File(new File(mFolder.getRoot(), "missing"),
+                "interfaces.bin"));
+    }
+
+    //----
+    // Stale age cap
+    //----
+    @Test
+    public void read_missing_returnNull_test() throws IOException {
+        assertThat(InterfaceSnapshotFile.read(mFile, 1, TimeUnit.DAYS), is(nullValue()));
+    }
+
+    @Test
+    public void read_olderThanMaxAge_returnNull_test() throws IOException {
+        InterfaceSnapshotFile.write(mSnapshot, mFile);
+        mFile.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2));
+        assertThat(InterfaceSnapshotFile.read(mFile, 1, TimeUnit.HOURS), is(nullValue()));
+    }
+
+    @Test
+    public void read_fromTheFuture_returnNull_test() throws IOException {
+        InterfaceSnapshotFile.write(mSnapshot, mFile);
+        mFile.setLastModified(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(2));
+        assertThat(InterfaceSnapshotFile.read(mFile, 1, TimeUnit.HOURS), is(nullValue()));
+    }
+
+    //----
+    // Corrupt files
+    //----
+    @Test(expected = IOException.class)
+    public void read_flippedPayloadByte_exception_test() throws IOException {
+        InterfaceSnapshotFile.write(mSnapshot, mFile);
+        patch(InterfaceSnapshotFile.HEADER_SIZE + 5, (byte) 0x55);
+        InterfaceSnapshotFile.read(mFile, 1, TimeUnit.MINUTES);
+    }
+
+    @Test(expected = IOException.class)
+    public void read_otherVersion_exception_test() throws IOException {
+        InterfaceSnapshotFile.write(mSnapshot, mFile);
+        patch(7, (byte) (InterfaceSnapshotFile.VERSION + 1));
+        InterfaceSnapshotFile.read(mFile, 1, TimeUnit.MINUTES);
+    }
+
+    @Test(expected = IOException.class)
+    public void read_notASnapshot_exception_test() throws IOException {
+        InterfaceSnapshotFile.write(mSnapshot, mFile);
+        patch(0, (byte) 'X');
+        InterfaceSnapshotFile.read(mFile, 1, TimeUnit.MINUTES);
+    }
+
+    @Test(expected = IOException.class)
+    public void read_truncated_exception_test() throws IOException {
+        InterfaceSnapshotFile.write(mSnapshot, mFile);
+        final RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.setLength(file.length() - 1);
+        } finally {
+            file.close();
+        }
+        InterfaceSnapshotFile.read(mFile, 1, TimeUnit.MINUTES);
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_recordsOverrun_exception_test() throws IOException {
+        // Valid header and checksum around a payload announcing more than it holds
+        final byte[] payload = { (byte) 0xFF, (byte) 0xFF, 0, 0, 0, 1, 0, 2, 'l' };
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        final ByteBuffer file = ByteBuffer.allocate(InterfaceSnapshotFile.HEADER_SIZE
+                + payload.length);
+        file.putInt(InterfaceSnapshotFile.MAGIC).putInt(InterfaceSnapshotFile.VERSION)
+                .putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        InterfaceSnapshotFile.decode(file, 0);
+    }
+
+    private void patch(final long position, final byte value) throws IOException {
+        final RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.seek(position);
+            file.write(value);
+        } finally {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import in.droun.hammernet.InterfaceChangeEvent.Type;
+import in.droun.hammernet.NetworkInterfaceInfo.InterfaceQuery;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings({ "PMD.AvoidUsingHardCodedIP", // This is test code and have to hardcode values
+    "PMD.TooManyStaticImports" })
+public class InterfaceWatcherTest {
+
+    private static final long ETH_MAC = 0x001C7CD709A3L;
+
+    private transient InterfaceQuery mInterfaceQuery;
+    private transient InterfaceWatcher mWatcher;
+    private transient List<InterfaceChangeEvent> mReceived;
+
+    @Before
+    public void before() {
+        mInterfaceQuery = mock(InterfaceQuery.class);
+        mWatcher = new InterfaceWatcher(mInterfaceQuery, 1, TimeUnit.HOURS);
+        mReceived = new ArrayList<InterfaceChangeEvent>();
+        mWatcher.addListener(new InterfaceChangeListener() {
+            @Override
+            public void interfaceChanged(final InterfaceChangeEvent event) {
+                mReceived.add(event);
+            }
+        });
+    }
+
+    @Test
+    public void poll_firstPoll_baselineOnly_test() throws SocketException, UnknownHostException {
+        when(mInterfaceQuery.snapshot()).thenReturn(snapshot(eth0(true, "10.0.0.2")));
+        assertThat(mWatcher.poll().isEmpty(), is(true));
+        assertThat(mReceived.isEmpty(), is(true));
+    }
+
+    @Test
+    public void poll_nothingChanged_noEvents_test() throws SocketException, UnknownHostException {
+        when(mInterfaceQuery.snapshot()).thenReturn(snapshot(eth0(true, "10.0.0.2")),
+                snapshot(eth0(true, "10.0.0.2")));
+        mWatcher.poll();
+        assertThat(mWatcher.poll().isEmpty(), is(true));
+    }
+
+    @Test
+    public void poll_interfaceAddedRemoved_events_test()
+            throws SocketException, UnknownHostException {
+        final InterfaceRecord tun = new InterfaceRecord("tun0", 5, MacAddressParser.INVALID, 1400,
+                InterfaceRecord.FLAG_POINT_TO_POINT);
+        when(mInterfaceQuery.snapshot()).thenReturn(snapshot(eth0(true, "10.0.0.2")),
+                snapshot(eth0(true, "10.0.0.2"), tun), snapshot(tun));
+        mWatcher.poll();
+
+        assertEvents(mWatcher.poll(), Type.INTERFACE_ADDED);
+        assertThat(mReceived.get(0).getCurrent(), is(tun));
+
+        assertEvents(mWatcher.poll(), Type.INTERFACE_REMOVED);
+        assertThat(mReceived.get(1).getName(), is(equalTo("eth0")));
+    }
+
+    @Test
+    public void poll_addressChanged_events_test() throws SocketException, UnknownHostException {
+        when(mInterfaceQuery.snapshot()).thenReturn(snapshot(eth0(true, "10.0.0.2")),
+                snapshot(eth0(true, "10.0.0.3")));
+        mWatcher.poll();
+        assertEvents(mWatcher.poll(), Type.ADDRESS_REMOVED, Type.ADDRESS_ADDED);
+        assertThat(mReceived.get(0).getAddress(), is(equalTo(InetAddress.getByName("10.0.0.2"))));
+        assertThat(mReceived.get(1).getAddress(), is(equalTo(InetAddress.getByName("10.0.0.3"))));
+    }
+
+    @Test
+    public void poll_linkAndMacChanged_events_test() throws SocketException, UnknownHostException {
+        final InterfaceRecord down = eth0(false, "10.0.0.2");
+        final InterfaceRecord newMac = new InterfaceRecord("eth0", 2, ETH_MAC + 1, 1500,
+                InterfaceRecord.FLAG_UP, InetAddress.getByName("10.0.0.2"));
+        when(mInterfaceQuery.snapshot()).thenReturn(snapshot(eth0(true, "10.0.0.2")),
+                snapshot(down), snapshot(newMac));
+        mWatcher.poll();
+        assertEvents(mWatcher.poll(), Type.LINK_DOWN);
+        assertEvents(mWatcher.poll(), Type.MAC_CHANGED, Type.LINK_UP);
+    }
+
+    @Test
+    public void poll_brokenListener_othersStillNotified_test()
+            throws SocketException, UnknownHostException {
+        mWatcher.addListener(new InterfaceChangeListener() {
+            @Override
+            public void interfaceChanged(final InterfaceChangeEvent event) {
+                throw new IllegalStateException("Broken listener");
+            }
+        });
+        when(mInterfaceQuery.snapshot()).thenReturn(snapshot(eth0(true, "10.0.0.2")),
+                snapshot(eth0(false, "10.0.0.2")));
+        mWatcher.poll();
+        assertEvents(mWatcher.poll(), Type.LINK_DOWN);
+        assertThat(mReceived.size(), is(equalTo(1)));
+    }
+
+    @Test
+    public void start_scheduledPolls_test() throws SocketException, InterruptedException {
+        final CountDownLatch polled = new CountDownLatch(3);
+        when(mInterfaceQuery.snapshot()).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) {
+                polled.countDown();
+                return snapshot();
+            }
+        });
+        final InterfaceWatcher watcher
+                = new InterfaceWatcher(mInterfaceQuery, 1, TimeUnit.MILLISECONDS);
+        watcher.start();
+        try {
+            assertThat(polled.await(10, TimeUnit.SECONDS), is(true));
+        } finally {
+            watcher.stop();
+        }
+    }
+
+    @Test
+    public void start_pollsFailing_scheduleContinuesAndCounts_test()
+            throws SocketException, InterruptedException {
+        final CountDownLatch polled = new CountDownLatch(3);
+        when(mInterfaceQuery.snapshot()).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(final InvocationOnMock invocation) throws SocketException {
+                polled.countDown();
+                if (polled.getCount() == 2) {
+                    throw new SocketException("No such device");
+                }
+                throw new IllegalStateException("Read failed");
+            }
+        });
+        final InterfaceWatcher watcher
+                = new InterfaceWatcher(mInterfaceQuery, 1, TimeUnit.MILLISECONDS);
+        watcher.start();
+        try {
+            assertThat(polled.await(10, TimeUnit.SECONDS), is(true));
+        } finally {
+            watcher.stop();
+        }
+        assertThat(watcher.getFailedPollCount() >= 2, is(true));
+    }
+
+    private void assertEvents(final List<InterfaceChangeEvent> events, final Type... expected) {
+        assertThat(events.size(), is(equalTo(expected.length)));
+        for (int i = 0; i < expected.length; i++) {
+            assertThat(events.get(i).getType(), is(equalTo(expected[i])));
+        }
+    }
+
+    private static InterfaceRecord eth0(final boolean up, final String address)
+            throws UnknownHostException {
+        return new InterfaceRecord("eth0", 2, ETH_MAC, 1500, up ? InterfaceRecord.FLAG_UP : 0,
+                InetAddress.getByName(address));
+    }
+
+    private static InterfaceSnapshot snapshot(final InterfaceRecord... records) {
+        return new InterfaceSnapshot(System.nanoTime(), records);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings("PMD.TooManyStaticImports")
+public class LatencyHistogramTest {
+
+    private transient LatencyHistogram mHistogram;
+
+    @Before
+    public void before() {
+        mHistogram = new LatencyHistogram();
+    }
+
+    //----
+    // Buckets
+    //----
+    @Test
+    public void indexOf_smallValues_exact_test() {
+        for (int value = 0; value < 32; value++) {
+            assertThat(LatencyHistogram.indexOf(value), is(equalTo(value)));
+            assertThat(LatencyHistogram.highestEquivalentValue(value), is(equalTo((long) value)));
+        }
+    }
+
+    @Test
+    public void indexOf_largeValues_withinPrecision_test() {
+        int previous = LatencyHistogram.indexOf(31);
+        for (long value = 32; value < 1L << 40; value += 1 + value / 7) {
+            final int index = LatencyHistogram.indexOf(value);
+            final long highest = LatencyHistogram.highestEquivalentValue(index);
+            assertThat(index >= previous, is(true));
+            assertThat(highest >= value, is(true));
+            assertThat(highest - value <= value / 16, is(true));
+            previous = index;
+        }
+    }
+
+    @Test
+    public void indexOf_bucketEdges_contiguous_test() {
+        for (int index = 1; index < LatencyHistogram.indexOf((1L << 41) - 1); index++) {
+            final long lowest = LatencyHistogram.highestEquivalentValue(index - 1) + 1;
+            assertThat(LatencyHistogram.indexOf(lowest), is(equalTo(index)));
+        }
+    }
+
+    //----
+    // Recording and percentiles
+    //----
+    @Test
+    public void getValueAtPercentile_empty_zero_test() {
+        assertThat(mHistogram.getCount(), is(equalTo(0L)));
+        assertThat(mHistogram.getValueAtPercentile(99), is(equalTo(0L)));
+    }
+
+    @Test
+    public void getValueAtPercentile_uniform_test() {
+        for (int value = 1; value <= 1000; value++) {
+            mHistogram.record(value * 1000L);
+        }
+        assertThat(mHistogram.getCount(), is(equalTo(1000L)));
+        assertWithin(mHistogram.getValueAtPercentile(50), 500000);
+        assertWithin(mHistogram.getValueAtPercentile(99), 990000);
+        assertWithin(mHistogram.getValueAtPercentile(100), 1000000);
+        assertWithin(mHistogram.getValueAtPercentile(0), 1000);
+    }
+
+    @Test
+    public void record_outOfRange_clamped_test() {
+        mHistogram.record(-5);
+        mHistogram.record(Long.MAX_VALUE);
+        assertThat(mHistogram.getValueAtPercentile(50), is(equalTo(0L)));
+        assertThat(mHistogram.getValueAtPercentile(100) >= 1L << 40, is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getValueAtPercentile_outOfRange_throws_test() {
+        mHistogram.getValueAtPercentile(100.5);
+    }
+
+    @Test
+    public void reset_forgetsEverything_test() {
+        mHistogram.record(42);
+        mHistogram.reset();
+        assertThat(mHistogram.getCount(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void record_concurrent_noLostUpdates_test() throws InterruptedException {
+        final int threads = 4;
+        final int perThread = 100000;
+        final CountDownLatch finished = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < perThread; j++) {
+                        mHistogram.record(j & 1023);
+                    }
+                    finished.countDown();
+                }
+            }).start();
+        }
+        assertThat(finished.await(30, TimeUnit.SECONDS), is(true));
+        assertThat(mHistogram.getCount(), is(equalTo((long) threads * perThread)));
+    }
+
+    private static void assertWithin(final long actual, final long expected) {
+        assertThat(actual + " ~ " + expected, Math.abs(actual - expected) <= expected / 16,
+                is(true));
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings("PMD.TooManyStaticImports")
+public class MacAddressFormatterTest {
+
+    private static final long MAC = 0x50D15F4EBE75L;
+
+    private static final MacAddressFormatter[] FORMATTERS = {
+        MacAddressFormatter.COLON, MacAddressFormatter.COLON_UPPER,
+        MacAddressFormatter.DASH, MacAddressFormatter.DASH_UPPER,
+        MacAddressFormatter.DOT, MacAddressFormatter.DOT_UPPER,
+        MacAddressFormatter.BARE, MacAddressFormatter.BARE_UPPER };
+
+    private static final String[] EXPECTED = {
+        "50:d1:5f:4e:be:75", "50:D1:5F:4E:BE:75",
+        "50-d1-5f-4e-be-75", "50-D1-5F-4E-BE-75",
+        "50d1.5f4e.be75", "50D1.5F4E.BE75",
+        "50d15f4ebe75", "50D15F4EBE75" };
+
+    //----
+    // Forms
+    //----
+    @Test
+    public void format_everyForm_expectedText_test() {
+        for (int i = 0; i < FORMATTERS.length; i++) {
+            assertThat(FORMATTERS[i].format(MAC), is(equalTo(EXPECTED[i])));
+            assertThat(FORMATTERS[i].length(), is(equalTo(EXPECTED[i].length())));
+        }
+    }
+
+    @Test
+    public void format_extremes_test() {
+        assertThat(MacAddressFormatter.COLON.format(0), is(equalTo("00:00:00:00:00:00")));
+        assertThat(MacAddressFormatter.DOT_UPPER.format(MacAddress.MASK),
+                is(equalTo("FFFF.FFFF.FFFF")));
+    }
+
+    @Test
+    public void toString_colonForm_test() {
+        assertThat(MacAddress.valueOf(MAC).toString(), is(equalTo(EXPECTED[0])));
+    }
+
+    //----
+    // Round trips
+    //----
+    @Test
+    public void format_randomAddresses_roundTrip_test() {
+        final Random random = new Random(42);
+        final char[] text = new char[MacAddressParser.MAX_MAC_STRING_LENGTH];
+        for (int n = 0; n < 10000; n++) {
+            final long mac = random.nextLong() & MacAddress.MASK;
+            for (final MacAddressFormatter formatter : FORMATTERS) {
+                final int length = formatter.format(mac, text, 0);
+                assertThat(MacAddressParser.parse(text, 0, length), is(equalTo(mac)));
+            }
+        }
+    }
+
+    @Test
+    public void format_macAddressToBigInteger_roundTrip_test() {
+        final BigInteger expected = NetworkInterfaceInfo.macAddressToBigInteger(EXPECTED[0]);
+        for (final MacAddressFormatter formatter : FORMATTERS) {
+            assertThat(NetworkInterfaceInfo.macAddressToBigInteger(formatter.format(MAC)),
+                    is(equalTo(expected)));
+        }
+    }
+
+    //----
+    // Destinations
+    //----
+    @Test
+    public void format_charArrayOffset_test() {
+        final char[] text = "[                 ]".toCharArray();
+        assertThat(MacAddressFormatter.COLON.format(MAC, text, 1), is(equalTo(17)));
+        assertThat(new String(text), is(equalTo("[50:d1:5f:4e:be:75]")));
+    }
+
+    @Test
+    public void format_hardwareAddress_test() {
+        final byte[] hardwareAddress = MacAddress.valueOf(MAC).toByteArray();
+        assertThat(MacAddressFormatter.DASH_UPPER.format(hardwareAddress),
+                is(equalTo(EXPECTED[3])));
+        final char[] text = new char[12];
+        MacAddressFormatter.BARE.format(hardwareAddress, text, 0);
+        assertThat(new String(text), is(equalTo(EXPECTED[6])));
+    }
+
+    @Test
+    public void format_byteBuffer_asciiAdvancesPosition_test() {
+        final ByteBuffer buffer = ByteBuffer.allocate(32);
+        buffer.put((byte) '>');
+        assertThat(MacAddressFormatter.DOT.format(MAC, buffer), is(equalTo(14)));
+        assertThat(buffer.position(), is(equalTo(15)));
+        buffer.flip();
+        assertThat(Charset.forName("US-ASCII").decode(buffer).toString(),
+                is(equalTo(">" + EXPECTED[4])));
+    }
+
+    @Test
+    public void format_byteBufferTooSmall_nothingWritten_test() {
+        final ByteBuffer buffer = ByteBuffer.allocate(16);
+        try {
+            MacAddressFormatter.COLON.format(MAC, buffer);
+            fail("Wrote past the end of the buffer");
+        } catch (BufferOverflowException bufferOverflowException) {
+            assertThat(buffer.position(), is(equalTo(0)));
+        }
+    }
+
+    @Test
+    public void append_appendableAndStringBuilder_test() throws IOException {
+        final StringWriter writer = new StringWriter();
+        MacAddressFormatter.COLON_UPPER.append(MAC, writer.append("mac=")).append(';');
+        assertThat(writer.toString(), is(equalTo("mac=" + EXPECTED[1] + ";")));
+
+        final StringBuilder builder = new StringBuilder("mac=");
+        MacAddressFormatter.DASH.append(MAC, builder).append(';');
+        assertThat(builder.toString(), is(equalTo("mac=" + EXPECTED[2] + ";")));
+    }
+
+    //----
+    // Invalid input
+    //----
+    @Test(expected = IllegalArgumentException.class)
+    public void format_invalid_throws_test() {
+        MacAddressFormatter.COLON.format(MacAddressParser.INVALID);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void format_shortHardwareAddress_throws_test() {
+        MacAddressFormatter.COLON.format(new byte[] { 1, 2, 3 });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void append_invalid_throws_test() {
+        MacAddressFormatter.COLON.append(1L << 48, new StringBuilder());
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.junit.Assert.*;
+
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Runs the {@link NetworkInterfaceInfoData} MAC address data through every
+ * {@link MacAddressParser} entry point.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@RunWith(Parameterized.class)
+@SuppressWarnings("PMD.TooManyStaticImports")
+public class MacAddressParserTest {
+
+    private static final long MAC_MASK = 0xFFFFFFFFFFFFL;
+    private static final String PADDING = "#~";
+
+    @Parameters(name = "{index}: f({0})={1}")
+    public static Iterable<Object[]> data() {
+        return NetworkInterfaceInfoData
+                .macAddressToByteArrayData();
+    }
+
+    private final transient long mExpected;
+    private final transient String mInput;
+
+    public MacAddressParserTest(final String input, final BigInteger expected) {
+        mInput = input;
+        mExpected = expected != null ? expected.longValue() & MAC_MASK : MacAddressParser.INVALID;
+    }
+
+    @Test
+    public void parse_charSequence_validOutput_test() {
+        assertThat(MacAddressParser.parse(mInput), is(equalTo(mExpected)));
+    }
+
+    @Test
+    public void parse_charSequenceRange_validOutput_test() {
+        // Surround the input with garbage that must not be looked at
+        if (mInput != null) {
+            final String padded = PADDING + mInput + PADDING;
+            final long result = MacAddressParser.parse(padded, PADDING.length(),
+                    PADDING.length() + mInput.length());
+            assertThat(result, is(equalTo(mExpected)));
+        }
+    }
+
+    @Test
+    public void parse_charArray_validOutput_test() {
+        if (mInput != null) {
+            final char[] padded = (PADDING + mInput + PADDING).toCharArray();
+            final long result = MacAddressParser.parse(padded, PADDING.length(), mInput.length());
+            assertThat(result, is(equalTo(mExpected)));
+        }
+    }
+
+    @Test
+    public void parse_byteArray_validOutput_test() {
+        if (mInput != null) {
+            final byte[] padded = (PADDING + mInput + PADDING)
+                    .getBytes(Charset.forName("US-ASCII"));
+            final long result = MacAddressParser.parse(padded, PADDING.length(), mInput.length());
+            assertThat(result, is(equalTo(mExpected)));
+        }
+    }
+
+    @Test
+    public void macAddressToLong_matchesBigInteger_test() {
+        final BigInteger bigInteger = NetworkInterfaceInfo.macAddressToBigInteger(mInput);
+        final long value = NetworkInterfaceInfo.macAddressToLong(mInput);
+        final long expected = bigInteger != null
+                ? bigInteger.longValue() & MAC_MASK : MacAddressParser.INVALID;
+        assertThat(value, is(equalTo(expected)));
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings("PMD.TooManyStaticImports")
+public class MacAddressScannerTest {
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    private transient List<Long> mInvalid;
+    private transient InvalidMacAddressListener mListener;
+
+    @Before
+    public void before() {
+        mInvalid = new ArrayList<Long>();
+        mListener = new InvalidMacAddressListener() {
+            @Override
+            public void invalidMacAddress(final long position, final int length) {
+                // Position in the upper bits, length in the lower ones
+                mInvalid.add(position << 16 | length);
+            }
+        };
+    }
+
+    //----
+    // Validation, same as MacAddressParser
+    //----
+    @Test
+    public void scan_parserData_sameAsParser_test() {
+        final StringBuilder text = new StringBuilder();
+        final List<Long> expected = new ArrayList<Long>();
+        for (final Object[] data : NetworkInterfaceInfoData.macAddressToByteArrayData()) {
+            final String macString = (String) data[0];
+            if (macString != null && !macString.isEmpty() && macString.indexOf(',') < 0) {
+                text.append(macString).append(',');
+                final long macAddress = MacAddressParser.parse(macString);
+                if (macAddress != MacAddressParser.INVALID) {
+                    expected.add(macAddress);
+                }
+            }
+        }
+        final MacAddressScanner scanner = new MacAddressScanner(',', null);
+        final long[] result = new long[expected.size() + 1];
+        final int count = scanner.scan(bytes(text.toString()), result, 0, result.length, true);
+        assertThat(count, is(equalTo(expected.size())));
+        for (int i = 0; i < count; i++) {
+            assertThat(result[i], is(equalTo((long) expected.get(i))));
+        }
+    }
+
+    @Test
+    public void scan_lines_invalidReportedByPosition_test() {
+        final String text = "00:1c:7c:d7:09:a3\r\n\nnot a mac\n50d1.5f4e.be75\r\n"
+                + "56:67:78:89:45:34:\n001C7CD709A3";
+        final long[] result = new long[8];
+        final MacAddressScanner scanner = new MacAddressScanner('\n', mListener);
+        assertThat(scanner.scan(bytes(text), result, 0, result.length, true), is(equalTo(3)));
+        assertThat(Arrays.copyOf(result, 3),
+                is(equalTo(new long[] { 0x001C7CD709A3L, 0x50D15F4EBE75L, 0x001C7CD709A3L })));
+        assertThat(mInvalid, is(equalTo(Arrays.asList(20L << 16 | 9, 46L << 16 | 18))));
+        assertThat(scanner.getPosition(), is(equalTo((long) text.length())));
+    }
+
+    @Test
+    public void scan_charBuffer_sameAsByteBuffer_test() {
+        final String text = "00:1c:7c:d7:09:a3\nzz\n50d1.5f4e.be75\n";
+        final long[] fromBytes = new long[4];
+        final long[] fromChars = new long[4];
+        assertThat(new MacAddressScanner().scan(bytes(text), fromBytes, 0, 4, true),
+                is(equalTo(2)));
+        assertThat(new MacAddressScanner('\n', mListener).scan(CharBuffer.wrap(text), fromChars,
+                0, 4, true), is(equalTo(2)));
+        assertThat(fromChars, is(equalTo(fromBytes)));
+        assertThat(mInvalid, is(equalTo(Arrays.asList(18L << 16 | 2))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_hexSeparator_throws_test() {
+        new MacAddressScanner('a', null);
+    }
+
+    //----
+    // Partial scans
+    //----
+    @Test
+    public void scan_destinationFull_resumesAtNextToken_test() {
+        final ByteBuffer source = bytes("000000000001\n000000000002\n000000000003\n");
+        final MacAddressScanner scanner = new MacAddressScanner();
+        final LongBuffer destination = LongBuffer.allocate(2);
+        assertThat(scanner.scan(source, destination, true), is(equalTo(2)));
+        assertThat(source.position(), is(equalTo(26)));
+        destination.clear();
+        assertThat(scanner.scan(source, destination, true), is(equalTo(1)));
+        assertThat(destination.get(0), is(equalTo(3L)));
+        assertThat(source.hasRemaining(), is(false));
+    }
+
+    @Test
+    public void scan_chunkedStream_sameAsWhole_test() {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append(i % 7 == 0 ? "bad" : MacAddress.valueOf(i * 0x10101L).toString())
+                    .append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        final byte[] input = text.toString().getBytes(US_ASCII);
+
+        final long[] whole = new long[200];
+        final int wholeCount = new MacAddressScanner().scan(ByteBuffer.wrap(input), whole, 0,
+                whole.length, true);
+
+        final MacAddressScanner scanner = new MacAddressScanner('\n', mListener);
+        final ByteBuffer chunk = ByteBuffer.allocate(23);
+        final long[] streamed = new long[200];
+        int count = 0;
+        int read = 0;
+        boolean endOfInput = false;
+        while (!endOfInput || chunk.position() > 0) {
+            final int length = Math.min(chunk.remaining(), input.length - read);
+            chunk.put(input, read, length);
+            read += length;
+            endOfInput = read == input.length;
+            chunk.flip();
+            count += scanner.scan(chunk, streamed, count, streamed.length - count, endOfInput);
+            chunk.compact();
+        }
+        assertThat(count, is(equalTo(wholeCount)));
+        assertThat(streamed, is(equalTo(whole)));
+        assertThat(mInvalid.size(), is(equalTo(200 / 7 + 1)));
+        assertThat(mInvalid.get(1), is(equalTo(115L << 16 | 3)));
+    }
+
+    @Test
+    public void scan_overLongStreamedToken_reportedAndSkipped_test() {
+        final MacAddressScanner scanner = new MacAddressScanner('\n', mListener);
+        final long[] result = new long[2];
+        final ByteBuffer first = bytes("000000000001\n0123456789abcdef0123");
+        assertThat(scanner.scan(first, result, 0, 2, false), is(equalTo(1)));
+        assertThat(first.hasRemaining(), is(false));
+        assertThat(mInvalid, is(equalTo(Arrays.asList(13L << 16 | 20))));
+
+        assertThat(scanner.scan(bytes("4567\n000000000002"), result, 1, 1, true), is(equalTo(1)));
+        assertThat(result[1], is(equalTo(2L)));
+        assertThat(mInvalid.size(), is(equalTo(1)));
+    }
+
+    private static ByteBuffer bytes(final String text) {
+        return ByteBuffer.wrap(text.getBytes(US_ASCII));
+    }
+}
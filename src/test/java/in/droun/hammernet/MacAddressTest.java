@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.hamcrest.core.IsNot.*;
+import static org.hamcrest.core.IsNull.*;
+import static org.junit.Assert.*;
+
+import java.math.BigInteger;
+import org.junit.Test;
+
+/**
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings("PMD.TooManyStaticImports")
+public class MacAddressTest {
+
+    // f6:ef:f8:61:22:30, negative as a BigInteger
+    private static final long HIGH_BIT_MAC = 0xF6EFF8612230L;
+
+    //----
+    // valueOf(long)
+    //----
+    @Test
+    public void valueOf_validValue_roundTrips_test() {
+        assertThat(MacAddress.valueOf(HIGH_BIT_MAC).toLong(), is(equalTo(HIGH_BIT_MAC)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void valueOf_tooManyBits_throws_test() {
+        MacAddress.valueOf(MacAddressParser.INVALID);
+    }
+
+    //----
+    // parse(CharSequence)
+    //----
+    @Test
+    public void parse_allFormats_equal_test() {
+        final MacAddress expected = MacAddress.valueOf(HIGH_BIT_MAC);
+        assertThat(MacAddress.parse("F6-EF-F8-61-22-30"), is(equalTo(expected)));
+        assertThat(MacAddress.parse("f6ef.f861.2230"), is(equalTo(expected)));
+        assertThat(MacAddress.parse("f6eff8612230"), is(equalTo(expected)));
+    }
+
+    @Test
+    public void parse_badString_returnNull_test() {
+        assertThat(MacAddress.parse("56:a7:78:g9:4f:34"), is(nullValue()));
+        assertThat(MacAddress.parse(null), is(nullValue()));
+    }
+
+    //----
+    // fromBytes(byte[])
+    //----
+    @Test
+    public void fromBytes_sixBytes_valid_test() {
+        final byte[] hardwareAddress = { (byte) 0xF6, (byte) 0xEF, (byte) 0xF8, 0x61, 0x22, 0x30 };
+        final MacAddress macAddress = MacAddress.fromBytes(hardwareAddress);
+        assertThat(macAddress.toLong(), is(equalTo(HIGH_BIT_MAC)));
+        assertThat(macAddress.toByteArray(), is(equalTo(hardwareAddress)));
+    }
+
+    @Test
+    public void fromBytes_wrongLength_returnNull_test() {
+        assertThat(MacAddress.fromBytes(new byte[MacAddress.LENGTH + 2]), is(nullValue()));
+        assertThat(MacAddress.fromBytes(null), is(nullValue()));
+    }
+
+    //----
+    // BigInteger compatibility
+    //----
+    @Test
+    public void toBigInteger_matchesLegacyForm_test() {
+        for (final Object[] values : NetworkInterfaceInfoData.macAddressToByteArrayData()) {
+            final MacAddress macAddress = MacAddress.parse((String) values[0]);
+            final BigInteger expected = (BigInteger) values[1];
+            assertThat(macAddress != null ? macAddress.toBigInteger() : null,
+                    is(equalTo(expected)));
+            assertThat(MacAddress.fromBigInteger(expected), is(equalTo(macAddress)));
+        }
+    }
+
+    @Test
+    public void fromBigInteger_tooLarge_returnNull_test() {
+        assertThat(MacAddress.fromBigInteger(BigInteger.ONE.shiftLeft(Long.SIZE)), is(nullValue()));
+    }
+
+    //----
+    // equals(), hashCode(), compareTo()
+    //----
+    @Test
+    public void equalsHashCode_sameValue_equal_test() {
+        final MacAddress first = MacAddress.parse("F6:EF:F8:61:22:30");
+        final MacAddress second = MacAddress.valueOf(HIGH_BIT_MAC);
+        assertThat(first, is(equalTo(second)));
+        assertThat(first.hashCode(), is(equalTo(second.hashCode())));
+        assertThat(first, is(not(equalTo(MacAddress.valueOf(HIGH_BIT_MAC - 1)))));
+    }
+
+    @Test
+    public void compareTo_unsignedOrder_test() {
+        // The high bit MAC sorts last even though its BigInteger form is negative
+        final MacAddress low = MacAddress.parse("56:67:78:89:45:34");
+        final MacAddress high = MacAddress.valueOf(HIGH_BIT_MAC);
+        assertThat(low.compareTo(high) < 0, is(true));
+        assertThat(high.compareTo(low) > 0, is(true));
+        assertThat(high.compareTo(MacAddress.valueOf(HIGH_BIT_MAC)), is(equalTo(0)));
+    }
+
+    //----
+    // toString()
+    //----
+    @Test
+    public void toString_colonLowerCase_test() {
+        assertThat(MacAddress.parse("0A-0B-0C-0D-0E-0F").toString(),
+                is(equalTo("0a:0b:0c:0d:0e:0f")));
+    }
+
+    //----
+    // isMulticast(), isLocallyAdministered(), isLikelyRandomized()
+    //----
+    @Test
+    public void addressBits_globalUnicast_test() {
+        final MacAddress vendor = MacAddress.parse("00:1c:7c:d7:09:a3");
+        assertThat(vendor.isMulticast(), is(false));
+        assertThat(vendor.isLocallyAdministered(), is(false));
+        assertThat(vendor.isLikelyRandomized(), is(false));
+    }
+
+    @Test
+    public void addressBits_randomized_test() {
+        // Android style random address
+        final MacAddress random = MacAddress.parse("da:a1:19:4c:6f:2e");
+        assertThat(random.isLocallyAdministered(), is(true));
+        assertThat(random.isLikelyRandomized(), is(true));
+        assertThat(MacAddress.isLikelyRandomized(0x020000000001L), is(true));
+        // Multicast addresses are never an interface's own
+        assertThat(MacAddress.isMulticast(0x333300000001L), is(true));
+        assertThat(MacAddress.isLikelyRandomized(0x330000000001L), is(false));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.hamcrest.core.IsNot.*;
+import static org.hamcrest.core.IsSame.*;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings("PMD.TooManyStaticImports")
+public class MacIndexTest {
+
+    private static final long INVALID = MacAddressParser.INVALID;
+
+    @Test
+    public void build_lookups_firstPositionWins_test() {
+        final long[] macAddresses = { 0x0A0000000001L, INVALID, 0x0A0000000002L, 0x0A0000000001L };
+        final MacIndex index = MacIndex.build(macAddresses);
+        assertThat(index.get(0x0A0000000001L), is(equalTo(0)));
+        assertThat(index.get(0x0A0000000002L), is(equalTo(2)));
+        assertThat(index.get(0x0A0000000003L), is(equalTo(MacIndex.NOT_FOUND)));
+        assertThat(index.get(INVALID), is(equalTo(MacIndex.NOT_FOUND)));
+        assertThat(index.size(), is(equalTo(2)));
+    }
+
+    @Test
+    public void update_nothingChanged_sameIndex_test() {
+        final long[] macAddresses = sequentialMacs(100);
+        final MacIndex index = MacIndex.build(macAddresses);
+        assertThat(index.update(macAddresses, macAddresses.clone()), is(sameInstance(index)));
+    }
+
+    @Test
+    public void update_oneChanged_rebuiltAndOriginalUntouched_test() {
+        final long[] oldAddresses = sequentialMacs(100);
+        final long[] newAddresses = oldAddresses.clone();
+        newAddresses[42] = 0x0B0000000000L;
+        final MacIndex index = MacIndex.build(oldAddresses);
+        final MacIndex updated = index.update(oldAddresses, newAddresses);
+
+        assertThat(updated, is(not(sameInstance(index))));
+        assertIndexes(updated, newAddresses);
+        // The old index is immutable, still answers for the old addresses
+        assertIndexes(index, oldAddresses);
+    }
+
+    @Test
+    public void update_duplicateRemoved_fallsBackToLaterPosition_test() {
+        final long[] oldAddresses = sequentialMacs(50);
+        oldAddresses[40] = oldAddresses[3];
+        final long[] newAddresses = oldAddresses.clone();
+        newAddresses[3] = INVALID;
+        final MacIndex updated = MacIndex.build(oldAddresses).update(oldAddresses, newAddresses);
+        assertThat(updated.get(oldAddresses[3]), is(equalTo(40)));
+    }
+
+    @Test
+    public void update_randomChurn_matchesFullBuild_test() {
+        final Random random = new Random(0x5EEDL);
+        long[] current = sequentialMacs(300);
+        MacIndex index = MacIndex.build(current);
+        for (int round = 0; round < 500; round++) {
+            final long[] next = mutate(current, random);
+            index = index.update(current, next);
+            assertIndexes(index, next);
+            current = next;
+        }
+    }
+
+    private static long[] mutate(final long[] macAddresses, final Random random) {
+        final int length = Math.max(1, macAddresses.length + random.nextInt(5) - 2);
+        final long[] result = new long[length];
+        System.arraycopy(macAddresses, 0, result, 0, Math.min(length, macAddresses.length));
+        for (int i = macAddresses.length; i < length; i++) {
+            result[i] = random.nextLong() & MacAddress.MASK;
+        }
+        final int changes = random.nextInt(4);
+        for (int i = 0; i < changes; i++) {
+            final int position = random.nextInt(length);
+            final int kind = random.nextInt(3);
+            if (kind == 0) {
+                result[position] = INVALID;
+            } else if (kind == 1) {
+                // Duplicate of another interface's address
+                result[position] = result[random.nextInt(length)];
+            } else {
+                result[position] = random.nextLong() & MacAddress.MASK;
+            }
+        }
+        return result;
+    }
+
+    private static void assertIndexes(final MacIndex index, final long[] macAddresses) {
+        final MacIndex expected = MacIndex.build(macAddresses);
+        assertThat(index.size(), is(equalTo(expected.size())));
+        for (final long macAddress : macAddresses) {
+            assertThat(index.get(macAddress), is(equalTo(expected.get(macAddress))));
+        }
+    }
+
+    private static long[] sequentialMacs(final int count) {
+        final long[] result = new long[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = 0x020000000000L + i;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.hamcrest.core.IsNull.*;
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings("PMD.TooManyStaticImports")
+public class MacMapTest {
+
+    @Test
+    public void put_get_remove_test() {
+        final MacMap<String> map = new MacMap<String>();
+        assertThat(map.put(0x001C7CD709A3L, "eth0"), is(nullValue()));
+        assertThat(map.put(0x001C7CD709A3L, "wlan0"), is(equalTo("eth0")));
+        assertThat(map.get(0x001C7CD709A3L), is(equalTo("wlan0")));
+        assertThat(map.get(MacAddress.valueOf(0x001C7CD709A3L)), is(equalTo("wlan0")));
+        assertThat(map.get(MacAddressParser.INVALID), is(nullValue()));
+        assertThat(map.get((MacAddress) null), is(nullValue()));
+        assertThat(map.containsKey(0x001C7CD709A4L), is(false));
+        assertThat(map.size(), is(equalTo(1)));
+        assertThat(map.remove(0x001C7CD709A3L), is(equalTo("wlan0")));
+        assertThat(map.remove(0x001C7CD709A3L), is(nullValue()));
+        assertThat(map.isEmpty(), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void put_nullValue_throws_test() {
+        new MacMap<String>().put(1L, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void put_outOfRangeKey_throws_test() {
+        new MacMap<String>().put(1L << 48, "eth0");
+    }
+
+    @Test
+    public void randomOperations_matchHashMap_test() {
+        final Random random = new Random(0xBEEFL);
+        final MacMap<Integer> map = new MacMap<Integer>(0);
+        final Map<Long, Integer> expected = new HashMap<Long, Integer>();
+        for (int i = 0; i < 50000; i++) {
+            final long macAddress = random.nextInt(2048) * 0x0100010001L & MacAddress.MASK;
+            if (random.nextInt(3) == 0) {
+                assertThat(map.remove(macAddress), is(equalTo(expected.remove(macAddress))));
+            } else {
+                assertThat(map.put(macAddress, i), is(equalTo(expected.put(macAddress, i))));
+            }
+            assertThat(map.size(), is(equalTo(expected.size())));
+        }
+        for (final long key : map.keys()) {
+            assertThat(map.get(key), is(equalTo(expected.get(key))));
+        }
+        assertThat(map.keys().length, is(equalTo(expected.size())));
+        map.clear();
+        assertThat(map.isEmpty(), is(true));
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ * Covers {@link MacSet} and {@link DirectMacSet}.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings("PMD.TooManyStaticImports")
+public class MacSetTest {
+
+    private static final long INVALID = MacAddressParser.INVALID;
+
+    //----
+    // MacSet
+    //----
+    @Test
+    public void add_contains_remove_test() {
+        final MacSet set = new MacSet();
+        assertThat(set.add(0x001C7CD709A3L), is(true));
+        assertThat(set.add(0x001C7CD709A3L), is(false));
+        assertThat(set.contains(0x001C7CD709A3L), is(true));
+        assertThat(set.contains(MacAddress.parse("00:1c:7c:d7:09:a3")), is(true));
+        assertThat(set.contains((MacAddress) null), is(false));
+        assertThat(set.contains(INVALID), is(false));
+        assertThat(set.size(), is(equalTo(1)));
+        assertThat(set.remove(0x001C7CD709A3L), is(true));
+        assertThat(set.remove(0x001C7CD709A3L), is(false));
+        assertThat(set.isEmpty(), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void add_invalid_throws_test() {
+        new MacSet().add(INVALID);
+    }
+
+    @Test
+    public void addAll_scannerOutput_skipsInvalid_test() {
+        final long[] macAddresses = { 1L, INVALID, 2L, 1L, INVALID };
+        final MacSet set = new MacSet(0);
+        assertThat(set.addAll(macAddresses, 0, macAddresses.length), is(equalTo(2)));
+        final long[] contents = set.toArray();
+        Arrays.sort(contents);
+        assertThat(contents, is(equalTo(new long[] { 1L, 2L })));
+    }
+
+    @Test
+    public void filter_keepsMembersInOrder_test() {
+        final MacSet set = new MacSet();
+        set.add(3L);
+        set.add(5L);
+        final long[] macAddresses = { 9L, 5L, 1L, 3L, INVALID, 5L, 8L };
+        assertThat(set.filter(macAddresses, 1, 5), is(equalTo(3)));
+        assertThat(Arrays.copyOfRange(macAddresses, 1, 4), is(equalTo(new long[] { 5L, 3L, 5L })));
+        assertThat(macAddresses[0], is(equalTo(9L)));
+    }
+
+    @Test
+    public void randomOperations_matchHashSet_test() {
+        final Random random = new Random(0xACL);
+        final MacSet set = new MacSet(0);
+        final DirectMacSet directSet = new DirectMacSet(0);
+        final Set<Long> expected = new HashSet<Long>();
+        for (int i = 0; i < 50000; i++) {
+            // Narrow key range so removes and duplicate adds actually hit
+            final long macAddress = random.nextInt(4096) * 0x0100000001L & MacAddress.MASK;
+            if (random.nextInt(3) == 0) {
+                final boolean removed = expected.remove(macAddress);
+                assertThat(set.remove(macAddress), is(removed));
+                assertThat(directSet.remove(macAddress), is(removed));
+            } else {
+                final boolean added = expected.add(macAddress);
+                assertThat(set.add(macAddress), is(added));
+                assertThat(directSet.add(macAddress), is(added));
+            }
+            assertThat(set.size(), is(equalTo(expected.size())));
+            assertThat(directSet.size(), is(equalTo(expected.size())));
+        }
+        for (int i = 0; i < 4096; i++) {
+            final long macAddress = i * 0x0100000001L & MacAddress.MASK;
+            assertThat(set.contains(macAddress), is(expected.contains(macAddress)));
+            assertThat(directSet.contains(macAddress), is(expected.contains(macAddress)));
+        }
+        final long[] contents = set.toArray();
+        final long[] directContents = directSet.toArray();
+        Arrays.sort(contents);
+        Arrays.sort(directContents);
+        assertThat(directContents, is(equalTo(contents)));
+        assertThat(contents.length, is(equalTo(expected.size())));
+    }
+
+    //----
+    // DirectMacSet
+    //----
+    @Test
+    public void direct_addAllFilterClear_test() {
+        final DirectMacSet set = new DirectMacSet(2);
+        final long[] macAddresses = new long[100];
+        for (int i = 0; i < macAddresses.length; i++) {
+            macAddresses[i] = i % 10 == 0 ? INVALID : 0x020000000000L + i;
+        }
+        assertThat(set.addAll(macAddresses, 0, macAddresses.length), is(equalTo(90)));
+        assertThat(set.contains(MacAddress.valueOf(0x020000000001L)), is(true));
+        assertThat(set.filter(new long[] { 0x020000000001L, 7L }, 0, 2), is(equalTo(1)));
+        set.clear();
+        assertThat(set.isEmpty(), is(true));
+        assertThat(set.contains(0x020000000001L), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void direct_tooLarge_throws_test() {
+        // 2^28 slots, more bytes than a ByteBuffer holds
+        new DirectMacSet(200000000);
+    }
+
+    @Test
+    public void capacityFor_withinLoadFactor_test() {
+        assertThat(MacSet.capacityFor(0), is(equalTo(4)));
+        assertThat(MacSet.capacityFor(3), is(equalTo(4)));
+        assertThat(MacSet.capacityFor(4), is(equalTo(8)));
+        assertThat(MacSet.capacityFor(1000000), is(equalTo(2097152)));
+    }
+
+    @Test
+    public void capacityFor_largest_test() {
+        assertThat(MacSet.capacityFor(805306368), is(equalTo(1 << 30)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityFor_tooLarge_throws_test() {
+        MacSet.capacityFor(805306369);
+    }
+}
@@ -15,14 +15,20 @@ import static in.droun.hammernet.NetworkInterfaceInfo.InterfaceQuery;
 import java.math.BigInteger;
 
 import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
 import static org.hamcrest.core.Is.*;
 import static org.hamcrest.core.IsEqual.*;
 import static org.hamcrest.core.IsNull.*;
+import static org.hamcrest.core.IsSame.*;
 import static org.junit.Assert.*;
 
 import org.junit.Test;
 import java.net.NetworkInterface;
 import java.net.SocketException;
+import java.util.Collections;
 import java.util.Enumeration;
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Before;
@@ -145,6 +151,57 @@ public class NetworkInterfaceInfoTest {
         assertThat(ipAddress, is(nullValue()));
     }
 
+    //----
+    // getIp4AddressByName(String), getIp6AddressByName(String, long[])
+    //----
+    @Test
+    public void getIp4AddressByName_validName_sameAsHostAddress_test()
+            throws SocketException, UnknownHostException {
+        assumeThat(sTestAdaptorName, is(notNullValue()));
+        assumeThat(sTestAdaptorIp, is(notNullValue()));
+        final int expected = InetAddressFormat.ip4ToInt(
+                InetAddress.getByName(sTestAdaptorIp).getAddress());
+        assertThat(mNetworkInterfaceInfo.getIp4AddressByName(sTestAdaptorName),
+                is(equalTo(expected)));
+        final NetworkInterfaceInfo cached = new NetworkInterfaceInfo(
+                new InterfaceSnapshotCache(mInterfaceQuery, 1, TimeUnit.HOURS));
+        assertThat(cached.getIp4AddressByName(sTestAdaptorName), is(equalTo(expected)));
+    }
+
+    @Test
+    public void getIp4AddressByName_badNames_noAddress_test() throws SocketException {
+        assertThat(mNetworkInterfaceInfo.getIp4AddressByName(null),
+                is(equalTo(NetworkInterfaceInfo.NO_IP4_ADDRESS)));
+        assertThat(mNetworkInterfaceInfo.getIp4AddressByName(StringUtils.repeat("x",
+                NetworkInterfaceInfo.MAX_INTERFACE_NAME_LENGTH + 1)),
+                is(equalTo(NetworkInterfaceInfo.NO_IP4_ADDRESS)));
+        verify(mInterfaceQuery, never()).getByName(anyString());
+    }
+
+    @Test
+    public void getIp6AddressByName_realInterfaces_sameAsInetAddress_test()
+            throws SocketException {
+        final NetworkInterfaceInfo cached = new NetworkInterfaceInfo(
+                new InterfaceSnapshotCache(mInterfaceQuery, 1, TimeUnit.HOURS));
+        for (final InterfaceRecord record : mInterfaceQuery.snapshot().getRecords()) {
+            final InetAddress expected = record.getFirstAddress(Inet6Address.class);
+            final long[] uncachedHalves = new long[2];
+            final long[] cachedHalves = new long[2];
+            assertThat(mNetworkInterfaceInfo.getIp6AddressByName(record.getName(),
+                    uncachedHalves), is(expected != null));
+            assertThat(cached.getIp6AddressByName(record.getName(), cachedHalves),
+                    is(expected != null));
+            assertThat(cachedHalves, is(equalTo(uncachedHalves)));
+            if (expected != null) {
+                final byte[] bytes = expected.getAddress();
+                assertThat(uncachedHalves[0],
+                        is(equalTo(InetAddressFormat.ip6HalfToLong(bytes, 0))));
+                assertThat(uncachedHalves[1],
+                        is(equalTo(InetAddressFormat.ip6HalfToLong(bytes, 8))));
+            }
+        }
+    }
+
     //----
     // getHostAddressByName(String, Class)
     //----
@@ -172,7 +229,7 @@ public class NetworkInterfaceInfoTest {
     @Test
     public void getNameByMacAddress_nullMac_nullResult_test() throws SocketException {
         // Null MAC results is null return
-        final String name = mNetworkInterfaceInfo.getNameByMacAddress(null);
+        final String name = mNetworkInterfaceInfo.getNameByMacAddress((BigInteger) null);
         assertThat(name, is(nullValue()));
     }
 
@@ -193,4 +250,105 @@ public class NetworkInterfaceInfoTest {
         assertThat(name, is(nullValue()));
     }
 
+    //----
+    // getNameByMacAddress(MacAddress)
+    //----
+    @Test
+    public void getNameByMacAddress_goodMacAddress_goodResult_test() throws SocketException {
+        // Same lookup as the BigInteger version, through the primitive comparison
+        assumeThat(sTestAdaptorMac, is(notNullValue()));
+        assumeThat(sTestAdaptorName, is(notNullValue()));
+        final String name = mNetworkInterfaceInfo
+                .getNameByMacAddress(MacAddress.fromBigInteger(sTestAdaptorMac));
+        assertThat(name, is(equalTo(sTestAdaptorName)));
+    }
+
+    @Test
+    public void getNameByMacAddress_nullMacAddress_nullResult_test() throws SocketException {
+        // Null MAC results is null return
+        final String name = mNetworkInterfaceInfo.getNameByMacAddress((MacAddress) null);
+        assertThat(name, is(nullValue()));
+    }
+
+    //----
+    // getInetAddressesByNameAndMac(String, long)
+    //----
+    @Test
+    public void getInetAddressesByNameAndMac_sameMac_addresses_test() throws SocketException {
+        assumeThat(sTestAdaptorName, is(notNullValue()));
+        final long mac = MacAddress.fromBigInteger(sTestAdaptorMac).toLong();
+        assertThat(mNetworkInterfaceInfo.getInetAddressesByNameAndMac(sTestAdaptorName, mac),
+                is(equalTo(Collections.list(
+                NetworkInterface.getByName(sTestAdaptorName).getInetAddresses()))));
+        verify(mInterfaceQuery, never()).getNetworkInterfaces();
+    }
+
+    @Test
+    public void getInetAddressesByNameAndMac_otherMacOrName_null_test() throws SocketException {
+        assumeThat(sTestAdaptorName, is(notNullValue()));
+        final long mac = MacAddress.fromBigInteger(sTestAdaptorMac).toLong();
+        assertThat(mNetworkInterfaceInfo.getInetAddressesByNameAndMac(sTestAdaptorName, mac ^ 1),
+                is(nullValue()));
+        assertThat(mNetworkInterfaceInfo.getInetAddressesByNameAndMac("p2putest", mac),
+                is(nullValue()));
+        assertThat(mNetworkInterfaceInfo.getInetAddressesByNameAndMac(null, mac),
+                is(nullValue()));
+        assertThat(mNetworkInterfaceInfo.getInetAddressesByNameAndMac("lo",
+                MacAddressParser.INVALID), is(nullValue()));
+    }
+
+    //----
+    // getDefaultRouteInterfaceName()
+    //----
+    @Test
+    public void getDefaultRouteInterfaceName_noCache_readsRoutesOnly_test()
+            throws SocketException {
+        doReturn("eth9utest").when(mInterfaceQuery).getDefaultRouteInterfaceName();
+        assertThat(mNetworkInterfaceInfo.getDefaultRouteInterfaceName(),
+                is(equalTo("eth9utest")));
+        verify(mInterfaceQuery, never()).getNetworkInterfaces();
+    }
+
+    @Test
+    public void getDefaultRouteInterfaceName_snapshot_carriesIt_test() throws SocketException {
+        doReturn("eth9utest").when(mInterfaceQuery).getDefaultRouteInterfaceName();
+        assertThat(mNetworkInterfaceInfo.snapshot().getDefaultRouteInterfaceName(),
+                is(equalTo("eth9utest")));
+    }
+
+    @Test
+    public void getDefaultRouteInterfaceName_cache_readOncePerSnapshot_test()
+            throws SocketException {
+        doReturn("eth9utest").when(mInterfaceQuery).getDefaultRouteInterfaceName();
+        final NetworkInterfaceInfo cached = new NetworkInterfaceInfo(
+                new InterfaceSnapshotCache(mInterfaceQuery, 1, TimeUnit.HOURS));
+        assertThat(cached.getDefaultRouteInterfaceName(), is(equalTo("eth9utest")));
+        assertThat(cached.getDefaultRouteInterfaceName(), is(equalTo("eth9utest")));
+        verify(mInterfaceQuery, times(1)).getDefaultRouteInterfaceName();
+    }
+
+    //----
+    // snapshot()
+    //----
+    @Test
+    public void snapshot_realInterfaces_matchNetworkInterface_test() throws SocketException {
+        // Every record must agree with what NetworkInterface reports on its own
+        final InterfaceSnapshot snapshot = mNetworkInterfaceInfo.snapshot();
+        verify(mInterfaceQuery, times(1)).getNetworkInterfaces();
+        for (final InterfaceRecord record : snapshot.getRecords()) {
+            final NetworkInterface adaptor = NetworkInterface.getByName(record.getName());
+            assumeThat(adaptor, is(notNullValue()));
+            assertThat(record.getIndex(), is(equalTo(adaptor.getIndex())));
+            assertThat(record.getMacAddress(),
+                    is(equalTo(MacAddress.fromBytes(adaptor.getHardwareAddress()))));
+            assertThat(record.getMtu(), is(equalTo(adaptor.getMTU())));
+            assertThat(record.isUp(), is(equalTo(adaptor.isUp())));
+            assertThat(record.isLoopback(), is(equalTo(adaptor.isLoopback())));
+            assertThat(record.isVirtual(), is(equalTo(adaptor.isVirtual())));
+            assertThat(record.isPointToPoint(), is(equalTo(adaptor.isPointToPoint())));
+            assertThat(record.getInetAddresses(),
+                    is(equalTo(Collections.list(adaptor.getInetAddresses()))));
+            assertThat(snapshot.getByName(record.getName()), is(sameInstance(record)));
+        }
+    }
 }
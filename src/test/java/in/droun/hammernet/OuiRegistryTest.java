@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.hamcrest.core.IsNot.*;
+import static org.hamcrest.core.IsNull.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Covers {@link OuiRegistry} and {@link OuiRegistryCompiler}.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings("PMD.TooManyStaticImports")
+public class OuiRegistryTest {
+
+    // Excerpts in the layout of the IEEE oui.txt, mam.txt and oui36.txt files
+    private static final String MA_L = "OUI/MA-L\t\t\t\t\t\t\tOrganization\n"
+            + "company_id\t\t\t\t\t\t\tOrganization\n"
+            + "\t\t\t\t\t\t\t\tAddress\n\n"
+            + "00-1C-7C   (hex)\t\tPerq Systems Corporation\n"
+            + "001C7C     (base 16)\t\tPerq Systems Corporation\n"
+            + "\t\t\t\tPittsburgh  PA  15213\n\t\t\t\tUS\n\n"
+            + "70-B3-D5   (hex)\t\tIEEE Registration Authority\n"
+            + "70B3D5     (base 16)\t\tIEEE Registration Authority\n"
+            + "\t\t\t\t445 Hoes Lane\n\t\t\t\tPiscataway  NJ  08554\n\t\t\t\tUS\n\n"
+            + "50-D1-5F   (hex)\t\tIEEE Registration Authority\n"
+            + "50D15F     (base 16)\t\tIEEE Registration Authority\n";
+
+    private static final String MA_M = "50-D1-5F   (hex)\t\tMedium Block Inc.\n"
+            + "400000-4FFFFF     (base 16)\t\tMedium Block Inc.\n"
+            + "\t\t\t\tSomewhere\n\n";
+
+    private static final String MA_S = "70-B3-D5   (hex)\t\tSmall Block GmbH\n"
+            + "F1D000-F1DFFF     (base 16)\t\tSmall Block GmbH\n\n"
+            + "70-B3-D5   (hex)\t\tPerq Systems Corporation\n"
+            + "0A2000-0A2FFF     (base 16)\t\tPerq Systems Corporation\n";
+
+    private static final String IEEE_RA = "IEEE Registration Authority";
+
+    @Rule
+    public transient TemporaryFolder mFolder = new TemporaryFolder();
+
+    private transient OuiRegistry mRegistry;
+
+    @Before
+    public void before() throws IOException {
+        final OuiRegistryCompiler compiler = new OuiRegistryCompiler();
+        // Most specific first on purpose, order does not matter
+        assertThat(compiler.add(new StringReader(MA_S)), is(equalTo(2)));
+        assertThat(compiler.add(new StringReader(MA_L)), is(equalTo(3)));
+        assertThat(compiler.add(new StringReader(MA_M)), is(equalTo(1)));
+
+        final File file = mFolder.newFile("oui.bin");
+        final FileOutputStream output = new FileOutputStream(file);
+        try {
+            compiler.write(output);
+        } finally {
+            output.close();
+        }
+        mRegistry = OuiRegistry.open(file);
+    }
+
+    //----
+    // Lookups
+    //----
+    @Test
+    public void getVendor_maL_test() {
+        assertThat(mRegistry.getVendor(0x001C7CD709A3L), is(equalTo("Perq Systems Corporation")));
+        assertThat(mRegistry.getVendor(MacAddress.parse("00:1c:7c:00:00:00")),
+                is(equalTo("Perq Systems Corporation")));
+    }
+
+    @Test
+    public void getVendor_longestPrefixWins_test() {
+        assertThat(mRegistry.getVendor(0x70B3D5F1D123L), is(equalTo("Small Block GmbH")));
+        assertThat(mRegistry.getVendor(0x70B3D5F1E000L), is(equalTo(IEEE_RA)));
+        assertThat(mRegistry.getVendor(0x50D15F4EBE75L), is(equalTo("Medium Block Inc.")));
+        assertThat(mRegistry.getVendor(0x50D15F5EBE75L), is(equalTo(IEEE_RA)));
+    }
+
+    @Test
+    public void getVendor_unknown_null_test() {
+        assertThat(mRegistry.getVendor(0x001C7DD709A3L), is(nullValue()));
+        assertThat(mRegistry.getVendor(MacAddressParser.INVALID), is(nullValue()));
+        assertThat(mRegistry.getVendor((MacAddress) null), is(nullValue()));
+        assertThat(mRegistry.findVendorId(0xFFFFFFFFFFFFL), is(equalTo(OuiRegistry.NOT_FOUND)));
+    }
+
+    @Test
+    public void findVendorId_sameNameSameId_test() {
+        assertThat(mRegistry.findVendorId(0x70B3D50A2001L),
+                is(equalTo(mRegistry.findVendorId(0x001C7C000001L))));
+        assertThat(mRegistry.findVendorId(0x70B3D5F1D000L),
+                is(not(equalTo(mRegistry.findVendorId(0x001C7C000001L)))));
+        assertThat(mRegistry.size(), is(equalTo(6)));
+    }
+
+    //----
+    // File format
+    //----
+    @Test
+    public void constructor_heapBuffer_sameLookups_test() throws IOException {
+        final OuiRegistryCompiler compiler = new OuiRegistryCompiler();
+        compiler.add(new StringReader(MA_L));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        compiler.write(output);
+        final OuiRegistry registry = new OuiRegistry(ByteBuffer.wrap(output.toByteArray()));
+        assertThat(registry.getVendor(0x001C7CD709A3L), is(equalTo("Perq Systems Corporation")));
+    }
+
+    @Test(expected = IOException.class)
+    public void constructor_notRegistry_throws_test() throws IOException {
+        new OuiRegistry(ByteBuffer.wrap("00-1C-7C   (hex)\t\tPerq Systems".getBytes("US-ASCII")));
+    }
+
+    @Test(expected = IOException.class)
+    public void constructor_truncated_throws_test() throws IOException {
+        final OuiRegistryCompiler compiler = new OuiRegistryCompiler();
+        compiler.add(new StringReader(MA_L));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        compiler.write(output);
+        new OuiRegistry(ByteBuffer.wrap(output.toByteArray(), 0, OuiRegistry.HEADER_SIZE + 1)
+                .slice());
+    }
+}
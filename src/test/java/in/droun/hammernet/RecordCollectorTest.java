@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings("PMD.TooManyStaticImports")
+public class RecordCollectorTest {
+
+    private transient ExecutorService mPool;
+    private transient SyntheticInterfaceQuery mInterfaceQuery;
+    private transient List<InterfaceHandle> mHandles;
+
+    @Before
+    public void before() {
+        mPool = Executors.newFixedThreadPool(3);
+        mInterfaceQuery = new SyntheticInterfaceQuery(1000, 0.05, 3);
+        mHandles = mInterfaceQuery.getInterfaceHandles();
+    }
+
+    @After
+    public void after() throws InterruptedException {
+        mPool.shutdownNow();
+        mPool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    //----
+    // Parallel
+    //----
+    @Test
+    public void collect_parallel_sameAsSerial_test() {
+        final InterfaceRecord[] records = new RecordCollector(mPool, 4, 10).collect(mHandles);
+        assertThat(Arrays.toString(records),
+                is(equalTo(Arrays.toString(RecordCollector.collectSerially(mHandles)))));
+    }
+
+    @Test
+    public void collect_parallel_helpersBounded_test() {
+        final AtomicInteger executed = new AtomicInteger();
+        final Executor counting = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                executed.incrementAndGet();
+                mPool.execute(command);
+            }
+        };
+        new RecordCollector(counting, 4, 10).collect(mHandles);
+        assertThat(executed.get(), is(equalTo(3)));
+    }
+
+    @Test
+    public void collect_fewChunks_fewerHelpers_test() {
+        final AtomicInteger executed = new AtomicInteger();
+        final Executor counting = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                executed.incrementAndGet();
+                mPool.execute(command);
+            }
+        };
+        // Two interfaces, two chunks of one, one helper at most
+        new RecordCollector(counting, 8, 0).collect(mHandles.subList(0, 2));
+        assertThat(executed.get(), is(equalTo(1)));
+    }
+
+    @Test
+    public void collect_executorNeverRuns_callerReadsAll_test() {
+        final List<Runnable> queued = new ArrayList<Runnable>();
+        final Executor stalled = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                queued.add(command);
+            }
+        };
+        final InterfaceRecord[] records = new RecordCollector(stalled, 4, 10).collect(mHandles);
+        assertThat(records.length, is(equalTo(1000)));
+        assertThat(records[999].getName(), is(equalTo(SyntheticInterfaceQuery.nameOf(999))));
+        // Helpers starting late find nothing left to do
+        for (final Runnable runnable : queued) {
+            runnable.run();
+        }
+        assertThat(queued.size(), is(equalTo(3)));
+    }
+
+    @Test
+    public void collect_executorRejects_callerReadsAll_test() {
+        final Executor rejecting = mock(Executor.class);
+        doThrow(new RejectedExecutionException()).when(rejecting).execute(any(Runnable.class));
+        final InterfaceRecord[] records = new RecordCollector(rejecting, 4, 10).collect(mHandles);
+        assertThat(Arrays.toString(records),
+                is(equalTo(Arrays.toString(RecordCollector.collectSerially(mHandles)))));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void collect_readFails_exceptionRethrown_test() {
+        final InterfaceHandle failing = mock(InterfaceHandle.class);
+        when(failing.toRecord()).thenThrow(new IllegalStateException());
+        final List<InterfaceHandle> handles = new ArrayList<InterfaceHandle>(mHandles);
+        handles.set(500, failing);
+        new RecordCollector(mPool, 4, 10).collect(handles);
+    }
+
+    //----
+    // Serial fallback
+    //----
+    @Test
+    public void collect_belowThreshold_executorUnused_test() {
+        final Executor executor = mock(Executor.class);
+        final InterfaceRecord[] records = new RecordCollector(executor, 4, 1001).collect(mHandles);
+        assertThat(records.length, is(equalTo(1000)));
+        verify(executor, never()).execute(any(Runnable.class));
+    }
+
+    @Test
+    public void collect_parallelismOne_executorUnused_test() {
+        final Executor executor = mock(Executor.class);
+        new RecordCollector(executor, 1, 0).collect(mHandles);
+        verify(executor, never()).execute(any(Runnable.class));
+    }
+
+    @Test
+    public void collect_noInterfaces_empty_test() {
+        assertThat(new RecordCollector(mPool, 4, 0)
+                .collect(new ArrayList<InterfaceHandle>()).length, is(equalTo(0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_noParallelism_exception_test() {
+        new RecordCollector(mPool, 0, 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_negativeThreshold_exception_test() {
+        new RecordCollector(mPool, 2, -1);
+    }
+
+    //----
+    // NetworkInterfaceInfo.setParallelCollection()
+    //----
+    @Test
+    public void snapshot_parallelCollection_sameSnapshot_test() throws SocketException {
+        final NetworkInterfaceInfo interfaceInfo = new NetworkInterfaceInfo(mInterfaceQuery);
+        final InterfaceSnapshot serial = interfaceInfo.snapshot();
+        interfaceInfo.setParallelCollection(mPool, 4, 100);
+        final InterfaceSnapshot parallel = interfaceInfo.snapshot();
+        assertThat(parallel.getRecords().toString(), is(equalTo(serial.getRecords().toString())));
+        assertThat(parallel.getDefaultRouteInterfaceName(),
+                is(equalTo(serial.getDefaultRouteInterfaceName())));
+
+        interfaceInfo.setParallelCollection(null, 1, 0);
+        assertThat(interfaceInfo.snapshot().getRecords().toString(),
+                is(equalTo(serial.getRecords().toString())));
+    }
+
+    @Test
+    public void get_cacheParallelCollection_sameSnapshot_test() throws SocketException {
+        final InterfaceSnapshotCache cache
+                = new InterfaceSnapshotCache(mInterfaceQuery, 0, TimeUnit.SECONDS);
+        final InterfaceSnapshot serial = cache.get();
+        cache.setParallelCollection(mPool, 4, 100);
+        assertThat(cache.get().getRecords().toString(),
+                is(equalTo(serial.getRecords().toString())));
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import android.content.Context;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import in.droun.hammernet.NetInfoMetrics.Operation;
+import in.droun.hammernet.NetworkInterfaceInfo.InterfaceQuery;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings({ "PMD.AvoidUsingHardCodedIP", // This is test code and have to hardcode values
+    "PMD.TooManyStaticImports" })
+public class RecordingNetInfoMetricsTest {
+
+    private static final long WLAN_MAC = 0x50D15F4EBE75L;
+
+    private transient RecordingNetInfoMetrics mMetrics;
+    private transient InterfaceQuery mInterfaceQuery;
+    private transient InterfaceHandle mGone;
+    private transient InterfaceHandle mWlan;
+
+    @Before
+    public void before() throws SocketException, UnknownHostException {
+        mMetrics = new RecordingNetInfoMetrics();
+
+        mGone = mock(InterfaceHandle.class);
+        when(mGone.getMacAddress()).thenThrow(new SocketException("No such device"));
+
+        mWlan = mock(InterfaceHandle.class);
+        when(mWlan.getName()).thenReturn("wlan0");
+        when(mWlan.getMacAddress()).thenReturn(WLAN_MAC);
+        when(mWlan.getInetAddresses()).thenReturn(Collections.<InetAddress>singletonList(
+                InetAddress.getByAddress(new byte[] { (byte) 172, 25, 25, 6 })));
+
+        mInterfaceQuery = mock(InterfaceQuery.class);
+        when(mInterfaceQuery.getInterfaceHandles()).thenReturn(Arrays.asList(mGone, mWlan));
+        when(mInterfaceQuery.getHandleByName("wlan0")).thenReturn(mWlan);
+        when(mInterfaceQuery.snapshot()).thenReturn(new InterfaceSnapshot(System.nanoTime(),
+                new InterfaceRecord("wlan0", 2, WLAN_MAC, 1500, InterfaceRecord.FLAG_UP)));
+    }
+
+    //----
+    // NetworkInterfaceInfo
+    //----
+    @Test
+    public void getNameByMacAddress_callsAndSkipsCounted_test() throws SocketException {
+        final NetworkInterfaceInfo interfaceInfo
+                = new NetworkInterfaceInfo(mInterfaceQuery, mMetrics);
+        assertThat(interfaceInfo.getNameByMacAddress(MacAddress.valueOf(WLAN_MAC)),
+                is(equalTo("wlan0")));
+        assertThat(mMetrics.getCallCount(Operation.GET_NETWORK_INTERFACES), is(equalTo(1L)));
+        assertThat(mMetrics.getCallCount(Operation.GET_HARDWARE_ADDRESS), is(equalTo(2L)));
+        assertThat(mMetrics.getSkippedInterfaceCount(), is(equalTo(1L)));
+    }
+
+    @Test
+    public void getNameByMacAddress_filtered_avoidedCallsCounted_test() throws SocketException {
+        when(mGone.getName()).thenReturn("eth0");
+        final NetworkInterfaceInfo interfaceInfo
+                = new NetworkInterfaceInfo(mInterfaceQuery, mMetrics);
+        assertThat(interfaceInfo.getNameByMacAddress(MacAddress.valueOf(WLAN_MAC),
+                InterfaceFilter.ANY.withName(Pattern.compile("wlan\\d+"))), is(equalTo("wlan0")));
+        assertThat(mMetrics.getCallCount(Operation.GET_HARDWARE_ADDRESS), is(equalTo(1L)));
+        assertThat(mMetrics.getFilteredInterfaceCount(), is(equalTo(1L)));
+        assertThat(mMetrics.getSkippedInterfaceCount(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void getIp4HostAddressByName_getByNameCounted_test() throws SocketException {
+        final NetworkInterfaceInfo interfaceInfo
+                = new NetworkInterfaceInfo(mInterfaceQuery, mMetrics);
+        assertThat(interfaceInfo.getIp4HostAddressByName("wlan0"), is(equalTo("172.25.25.6")));
+        assertThat(interfaceInfo.getIp4AddressByName("wlan0"), is(equalTo(0xAC191906)));
+        assertThat(mMetrics.getCallCount(Operation.GET_BY_NAME), is(equalTo(2L)));
+        assertThat(mMetrics.getCallCount(Operation.GET_NETWORK_INTERFACES), is(equalTo(0L)));
+    }
+
+    @Test
+    public void snapshotCache_hitsAndMissesCounted_test() throws SocketException {
+        final NetworkInterfaceInfo interfaceInfo = new NetworkInterfaceInfo(
+                new InterfaceSnapshotCache(mInterfaceQuery, 1, TimeUnit.HOURS, mMetrics));
+        for (int i = 0; i < 4; i++) {
+            interfaceInfo.getNameByMacAddress(MacAddress.valueOf(WLAN_MAC));
+        }
+        assertThat(mMetrics.getCacheMissCount(), is(equalTo(1L)));
+        assertThat(mMetrics.getCacheHitCount(), is(equalTo(3L)));
+        assertThat(mMetrics.getCacheHitRatio(), is(equalTo(0.75)));
+        assertThat(mMetrics.getCallCount(Operation.SNAPSHOT), is(equalTo(1L)));
+    }
+
+    @Test
+    public void noMetrics_nothingRecorded_test() throws SocketException {
+        final NetInfoMetrics metrics = mock(NetInfoMetrics.class);
+        // Only the NONE sink is skipped, any other one, even this mock, is called
+        new NetworkInterfaceInfo(mInterfaceQuery, metrics)
+                .getNameByMacAddress(MacAddress.valueOf(WLAN_MAC));
+        verify(metrics, times(1)).interfaceSkipped();
+
+        new NetworkInterfaceInfo(mInterfaceQuery).getNameByMacAddress(MacAddress.valueOf(WLAN_MAC));
+        assertThat(mMetrics.getCallCount(Operation.GET_NETWORK_INTERFACES), is(equalTo(0L)));
+    }
+
+    //----
+    // AndroidNetInfo
+    //----
+    @Test
+    public void wifiMac_wifiManagerCounted_test() {
+        final WifiInfo wifiInfo = mock(WifiInfo.class);
+        when(wifiInfo.getMacAddress()).thenReturn("50:d1:5f:4e:be:75");
+        final WifiManager wifiManager = mock(WifiManager.class);
+        when(wifiManager.getConnectionInfo()).thenReturn(wifiInfo);
+        final Context context = mock(Context.class);
+        when(context.getSystemService(Context.WIFI_SERVICE)).thenReturn(wifiManager);
+
+        final AndroidNetInfo androidNetInfo = new AndroidNetInfo(context,
+                new NetworkInterfaceInfo(mInterfaceQuery, mMetrics), mMetrics);
+        assertThat(androidNetInfo.wifiMac(), is(equalTo(MacAddress.valueOf(WLAN_MAC))));
+        assertThat(mMetrics.getCallCount(Operation.WIFI_MANAGER), is(equalTo(1L)));
+        assertThat(mMetrics.getHistogram(Operation.WIFI_MANAGER).getValueAtPercentile(100)
+                < TimeUnit.SECONDS.toNanos(10), is(true));
+    }
+
+    //----
+    // reset()
+    //----
+    @Test
+    public void reset_forgetsEverything_test() throws SocketException {
+        new NetworkInterfaceInfo(mInterfaceQuery, mMetrics)
+                .getNameByMacAddress(MacAddress.valueOf(WLAN_MAC));
+        mMetrics.cacheHit();
+        mMetrics.interfaceFiltered();
+        mMetrics.reset();
+        assertThat(mMetrics.getCallCount(Operation.GET_HARDWARE_ADDRESS), is(equalTo(0L)));
+        assertThat(mMetrics.getSkippedInterfaceCount(), is(equalTo(0L)));
+        assertThat(mMetrics.getFilteredInterfaceCount(), is(equalTo(0L)));
+        assertThat(mMetrics.getCacheHitRatio(), is(equalTo(0.0)));
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import in.droun.hammernet.NetworkInterfaceInfo.InterfaceQuery;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link InterfaceQuery} serving any number of synthetic interfaces from memory, so tests and
+ * benchmarks exercise the lookup code rather than the kernel, and scale past the few interfaces a
+ * real machine has to the tens of thousands of a container host. Interface <i>id</i> is named
+ * {@link #nameOf(int)}, has MAC address {@link #macAddressOf(int)}, index <i>id</i> and one IPv4
+ * and one IPv6 address. The first interface listed is the default route.
+ * <p>
+ * The hosts real code meets can be modelled on top of that:
+ * <ul>
+ * <li>Latency, see {@link #setLatencies(long, long, TimeUnit)}: enumerating costs a fixed time
+ * per interface listed, and so does every hardware address read. The time is spent spinning, as
+ * a system call would, not sleeping.</li>
+ * <li>Failures: a fraction of the interfaces, picked at random, throw "No such device" from every
+ * attribute read but the name, index and addresses, as on some build servers.</li>
+ * <li>Churn, see {@link #churn(int)}: interfaces are replaced by new ones with other names and
+ * MAC addresses. Handles to removed interfaces start failing, as a real interface deleted while
+ * being walked does.</li>
+ * </ul>
+ * Everything is safe to use from any number of threads, and the same seed always generates the
+ * same interfaces.
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+class SyntheticInterfaceQuery extends InterfaceQuery {
+
+    /**
+     * Locally administered, so never a real vendor's.
+     */
+    private static final long FIRST_MAC_ADDRESS = 0x020000000000L;
+
+    private static final long DEFAULT_SEED = 0x48414D4DL;
+
+    private static final int MTU = 1500;
+
+    private final transient double mFailureRate;
+
+    /**
+     * Picks failing and churned interfaces. Guarded by this.
+     */
+    private final transient Random mRandom;
+
+    /**
+     * Id of the next interface created. Guarded by this.
+     */
+    private transient int mNextId;
+
+    /**
+     * Current interfaces, replaced as a whole on churn so readers never see half of a change.
+     */
+    private transient volatile Table mTable;
+
+    private transient volatile long mEnumerationLatency;
+
+    private transient volatile long mHardwareAddressLatency;
+
+    /**
+     * @param interfaceCount number of interfaces to serve, none of them failing.
+     */
+    SyntheticInterfaceQuery(final int interfaceCount) {
+        this(interfaceCount, 0, DEFAULT_SEED);
+    }
+
+    /**
+     * @param interfaceCount number of interfaces to serve.
+     * @param failureRate    chance of each interface, including those created by churn, failing
+     *                       with "No such device", between 0 and 1.
+     * @param seed           seed of the choice of failing and churned interfaces.
+     *
+     * @throws IllegalArgumentException if <i>interfaceCount</i> is negative or
+     *                                  <i>failureRate</i> out of range.
+     */
+    SyntheticInterfaceQuery(final int interfaceCount, final double failureRate,
+            final long seed) {
+        if (interfaceCount < 0) {
+            throw new IllegalArgumentException("Negative interface count: " + interfaceCount);
+        }
+        if (!(failureRate >= 0 && failureRate <= 1)) {
+            throw new IllegalArgumentException("Failure rate out of range: " + failureRate);
+        }
+        mFailureRate = failureRate;
+        mRandom = new Random(seed);
+        final List<SyntheticHandle> handles = new ArrayList<SyntheticHandle>(interfaceCount);
+        synchronized (this) {
+            for (int i = 0; i < interfaceCount; i++) {
+                handles.add(newHandle());
+            }
+        }
+        mTable = new Table(handles);
+    }
+
+    /**
+     * @param id id of a synthetic interface.
+     *
+     * @return its name.
+     */
+    static String nameOf(final int id) {
+        return "fake" + id;
+    }
+
+    /**
+     * @param id id of a synthetic interface.
+     *
+     * @return its MAC address.
+     */
+    static long macAddressOf(final int id) {
+        return FIRST_MAC_ADDRESS + id;
+    }
+
+    /**
+     * Sets the time the platform calls take, none by default.
+     *
+     * @param enumerationLatency     time enumerating takes per interface listed, also the time a
+     *                               lookup by name takes.
+     * @param hardwareAddressLatency time every hardware address read takes.
+     * @param unit                   unit of both latencies.
+     */
+    void setLatencies(final long enumerationLatency, final long hardwareAddressLatency,
+            final TimeUnit unit) {
+        mEnumerationLatency = unit.toNanos(enumerationLatency);
+        mHardwareAddressLatency = unit.toNanos(hardwareAddressLatency);
+    }
+
+    /**
+     * Replaces interfaces picked at random by as many new ones, appended after the others. The
+     * removed interfaces' handles fail from then on.
+     *
+     * @param count number of interfaces to replace, at most all of them.
+     */
+    synchronized void churn(final int count) {
+        final List<SyntheticHandle> handles = new ArrayList<SyntheticHandle>(mTable.mHandles);
+        final int replaced = Math.min(count, handles.size());
+        final List<SyntheticHandle> removed = new ArrayList<SyntheticHandle>(replaced);
+        for (int i = 0; i < replaced; i++) {
+            removed.add(handles.remove(mRandom.nextInt(handles.size())));
+        }
+        for (int i = 0; i < replaced; i++) {
+            handles.add(newHandle());
+        }
+        mTable = new Table(handles);
+        for (final SyntheticHandle handle : removed) {
+            handle.mGone = true;
+        }
+    }
+
+    /**
+     * @return the current interfaces' ids, in enumeration order.
+     */
+    int[] getIds() {
+        final List<SyntheticHandle> handles = mTable.mHandles;
+        final int[] result = new int[handles.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = handles.get(i).mId;
+        }
+        return result;
+    }
+
+    /**
+     * @param id id of an interface.
+     *
+     * @return true if it is one of the current interfaces and fails with "No such device".
+     */
+    boolean isFailing(final int id) {
+        final SyntheticHandle handle = mTable.mHandlesByName.get(nameOf(id));
+        return handle != null && handle.mFailing;
+    }
+
+    @Override
+    protected List<InterfaceHandle> getInterfaceHandles() {
+        final Table table = mTable;
+        spin(mEnumerationLatency * table.mHandles.size());
+        return table.mPublicHandles;
+    }
+
+    @Override
+    protected InterfaceHandle getHandleByName(final String name) {
+        spin(mEnumerationLatency);
+        return mTable.mHandlesByName.get(name);
+    }
+
+    @Override
+    protected String getDefaultRouteInterfaceName() {
+        final List<SyntheticHandle> handles = mTable.mHandles;
+        return handles.isEmpty() ? null : handles.get(0).mName;
+    }
+
+    /**
+     * Creates the next interface. Call with the lock held.
+     */
+    private SyntheticHandle newHandle() {
+        return new SyntheticHandle(mNextId++, mRandom.nextDouble() < mFailureRate);
+    }
+
+    /**
+     * Burns <i>nanos</i> of CPU, the way a system call does, more precisely than sleeping would.
+     */
+    private static void spin(final long nanos) {
+        if (nanos > 0) {
+            final long end = System.nanoTime() + nanos;
+            while (System.nanoTime() - end < 0) {
+                // Busy, in the kernel
+                continue;
+            }
+        }
+    }
+
+    /**
+     * Interfaces at one point in time.
+     */
+    private static final class Table {
+
+        private final transient List<SyntheticHandle> mHandles;
+
+        /**
+         * Same as {@link #mHandles}, typed for {@link #getInterfaceHandles()}.
+         */
+        private final transient List<InterfaceHandle> mPublicHandles;
+
+        private final transient Map<String, SyntheticHandle> mHandlesByName;
+
+        Table(final List<SyntheticHandle> handles) {
+            mHandles = Collections.unmodifiableList(handles);
+            mPublicHandles = Collections.<InterfaceHandle>unmodifiableList(handles);
+            mHandlesByName = new HashMap<String, SyntheticHandle>(handles.size() * 2);
+            for (final SyntheticHandle handle : handles) {
+                mHandlesByName.put(handle.mName, handle);
+            }
+        }
+    }
+
+    /**
+     * Synthetic interface, up, with attributes that only fail if it is failing or gone.
+     */
+    private final class SyntheticHandle extends InterfaceHandle {
+
+        private final transient int mId;
+
+        private final transient String mName;
+
+        private final transient boolean mFailing;
+
+        private final transient List<InetAddress> mInetAddresses;
+
+        /**
+         * Set once the interface was churned away.
+         */
+        private transient volatile boolean mGone;
+
+        SyntheticHandle(final int id, final boolean failing) {
+            mId = id;
+            mName = nameOf(id);
+            mFailing = failing;
+            try {
+                mInetAddresses = Collections.unmodifiableList(Arrays.asList(
+                        InetAddress.getByAddress(new byte[] { 10, (byte) (id >>> 16),
+                            (byte) (id >>> 8), (byte) id }),
+                        InetAddress.getByAddress(new byte[] { (byte) 0xfd, 0, 0, 0, 0, 0, 0, 0,
+                            0, 0, 0, 0, (byte) (id >>> 24), (byte) (id >>> 16),
+                            (byte) (id >>> 8), (byte) id })));
+            } catch (UnknownHostException unknownHostException) {
+                throw new IllegalStateException(unknownHostException);
+            }
+        }
+
+        @Override
+        String getName() {
+            return mName;
+        }
+
+        @Override
+        int getIndex() {
+            return mId;
+        }
+
+        @Override
+        boolean isVirtual() {
+            return false;
+        }
+
+        @Override
+        List<InetAddress> getInetAddresses() {
+            return mGone ? Collections.<InetAddress>emptyList() : mInetAddresses;
+        }
+
+        @Override
+        long getMacAddress() throws SocketException {
+            spin(mHardwareAddressLatency);
+            check();
+            return macAddressOf(mId);
+        }
+
+        @Override
+        int getMtu() throws SocketException {
+            check();
+            return MTU;
+        }
+
+        @Override
+        boolean isUp() throws SocketException {
+            check();
+            return true;
+        }
+
+        @Override
+        boolean isLoopback() throws SocketException {
+            check();
+            return false;
+        }
+
+        @Override
+        boolean isPointToPoint() throws SocketException {
+            check();
+            return false;
+        }
+
+        private void check() throws SocketException {
+            if (mFailing || mGone) {
+                throw new SocketException("No such device");
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.hamcrest.core.IsNot.*;
+import static org.hamcrest.core.IsNull.*;
+import static org.junit.Assert.*;
+
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+/**
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings("PMD.TooManyStaticImports")
+public class SyntheticInterfaceQueryTest {
+
+    //----
+    // Generation
+    //----
+    @Test
+    public void snapshot_interfaces_generated_test() throws SocketException {
+        final InterfaceSnapshot snapshot = new SyntheticInterfaceQuery(3).snapshot();
+        assertThat(snapshot.size(), is(equalTo(3)));
+        final InterfaceRecord record = snapshot.getByName(SyntheticInterfaceQuery.nameOf(2));
+        assertThat(record.getIndex(), is(equalTo(2)));
+        assertThat(record.getMacAddressValue(),
+                is(equalTo(SyntheticInterfaceQuery.macAddressOf(2))));
+        assertThat(record.getIp4Address(), is(equalTo(0x0A000002)));
+        assertThat(record.isUp(), is(true));
+        assertThat(snapshot.getDefaultRouteInterfaceName(),
+                is(equalTo(SyntheticInterfaceQuery.nameOf(0))));
+    }
+
+    @Test
+    public void snapshot_noInterfaces_noDefaultRoute_test() throws SocketException {
+        final InterfaceSnapshot snapshot = new SyntheticInterfaceQuery(0).snapshot();
+        assertThat(snapshot.size(), is(equalTo(0)));
+        assertThat(snapshot.getDefaultRouteInterfaceName(), is(nullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_negativeCount_exception_test() {
+        new SyntheticInterfaceQuery(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_failureRateOutOfRange_exception_test() {
+        new SyntheticInterfaceQuery(1, 1.5, 0);
+    }
+
+    //----
+    // Failures
+    //----
+    @Test
+    public void isFailing_sameSeed_sameInterfacesFail_test() {
+        final SyntheticInterfaceQuery first = new SyntheticInterfaceQuery(1000, 0.1, 7);
+        final SyntheticInterfaceQuery second = new SyntheticInterfaceQuery(1000, 0.1, 7);
+        int failing = 0;
+        for (int i = 0; i < 1000; i++) {
+            assertThat(second.isFailing(i), is(equalTo(first.isFailing(i))));
+            failing += first.isFailing(i) ? 1 : 0;
+        }
+        assertThat(failing > 50 && failing < 150, is(true));
+    }
+
+    @Test
+    public void getNameByMacAddress_failingInterfaces_skipped_test() throws SocketException {
+        final SyntheticInterfaceQuery interfaceQuery
+                = new SyntheticInterfaceQuery(20000, 0.25, 11);
+        final NetworkInterfaceInfo interfaceInfo = new NetworkInterfaceInfo(interfaceQuery);
+        final RecordingNetInfoMetrics metrics = new RecordingNetInfoMetrics();
+        final NetworkInterfaceInfo measured = new NetworkInterfaceInfo(interfaceQuery, metrics);
+        int failing = 0;
+        for (int i = 0; i < 20000; i += 997) {
+            final String name = interfaceInfo.getNameByMacAddress(
+                    MacAddress.valueOf(SyntheticInterfaceQuery.macAddressOf(i)));
+            if (interfaceQuery.isFailing(i)) {
+                assertThat(name, is(nullValue()));
+                failing++;
+            } else {
+                assertThat(name, is(equalTo(SyntheticInterfaceQuery.nameOf(i))));
+            }
+        }
+        assertThat(failing, is(not(equalTo(0))));
+
+        assertThat(measured.getNameByMacAddress(
+                MacAddress.valueOf(SyntheticInterfaceQuery.macAddressOf(-1))), is(nullValue()));
+        assertThat(metrics.getSkippedInterfaceCount() > 4000, is(true));
+    }
+
+    @Test
+    public void snapshot_failingInterface_unknownAttributes_test() throws SocketException {
+        final InterfaceRecord record = new SyntheticInterfaceQuery(1, 1, 0).snapshot()
+                .getByName(SyntheticInterfaceQuery.nameOf(0));
+        assertThat(record.getMacAddressValue(), is(equalTo(MacAddressParser.INVALID)));
+        assertThat(record.getMtu(), is(equalTo(-1)));
+        assertThat(record.isUp(), is(false));
+        assertThat(record.getIp4Address(), is(equalTo(0x0A000000)));
+    }
+
+    //----
+    // Churn
+    //----
+    @Test
+    public void churn_someInterfaces_replacedByNewOnes_test() throws SocketException {
+        final SyntheticInterfaceQuery interfaceQuery = new SyntheticInterfaceQuery(10);
+        final InterfaceHandle[] before = interfaceQuery.getInterfaceHandles()
+                .toArray(new InterfaceHandle[0]);
+        interfaceQuery.churn(3);
+
+        final int[] ids = interfaceQuery.getIds();
+        assertThat(ids.length, is(equalTo(10)));
+        assertThat(Arrays.copyOfRange(ids, 7, 10), is(equalTo(new int[] { 10, 11, 12 })));
+        int gone = 0;
+        for (final InterfaceHandle handle : before) {
+            if (interfaceQuery.getHandleByName(handle.getName()) == null) {
+                gone++;
+                assertThat(handle.getInetAddresses().isEmpty(), is(true));
+                try {
+                    handle.getMacAddress();
+                    fail("Removed interface still has a hardware address");
+                } catch (SocketException socketException) {
+                    assertThat(socketException.getMessage(), is(equalTo("No such device")));
+                }
+            } else {
+                assertThat(handle.getMacAddress(), is(not(equalTo(MacAddressParser.INVALID))));
+            }
+        }
+        assertThat(gone, is(equalTo(3)));
+    }
+
+    @Test
+    public void churn_moreThanAll_replacesAll_test() {
+        final SyntheticInterfaceQuery interfaceQuery = new SyntheticInterfaceQuery(2);
+        interfaceQuery.churn(5);
+        final int[] ids = interfaceQuery.getIds();
+        Arrays.sort(ids);
+        assertThat(ids, is(equalTo(new int[] { 2, 3 })));
+    }
+
+    @Test
+    public void snapshot_concurrentChurn_consistent_test() throws Exception {
+        final SyntheticInterfaceQuery interfaceQuery = new SyntheticInterfaceQuery(500);
+        final AtomicBoolean done = new AtomicBoolean();
+        final Thread churner = new Thread() {
+            @Override
+            public void run() {
+                while (!done.get()) {
+                    interfaceQuery.churn(5);
+                }
+            }
+        };
+        churner.start();
+        try {
+            for (int i = 0; i < 200; i++) {
+                final InterfaceSnapshot snapshot = interfaceQuery.snapshot();
+                assertThat(snapshot.size(), is(equalTo(500)));
+                // Interfaces removed mid way lose attributes, but never get another's
+                for (final InterfaceRecord record : snapshot.getRecords()) {
+                    final long mac = record.getMacAddressValue();
+                    assertThat(mac == MacAddressParser.INVALID
+                            || mac == SyntheticInterfaceQuery.macAddressOf(record.getIndex()),
+                            is(true));
+                }
+            }
+        } finally {
+            done.set(true);
+            churner.join();
+        }
+    }
+
+    //----
+    // Latency
+    //----
+    @Test
+    public void getMacAddress_latency_spent_test() throws SocketException {
+        final SyntheticInterfaceQuery interfaceQuery = new SyntheticInterfaceQuery(1);
+        interfaceQuery.setLatencies(0, 2, TimeUnit.MILLISECONDS);
+        final InterfaceHandle handle = interfaceQuery.getInterfaceHandles().get(0);
+        final long start = System.nanoTime();
+        handle.getMacAddress();
+        assertThat(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(2), is(true));
+    }
+
+    @Test
+    public void getInterfaceHandles_latency_perInterface_test() {
+        final SyntheticInterfaceQuery interfaceQuery = new SyntheticInterfaceQuery(20);
+        interfaceQuery.setLatencies(100, 0, TimeUnit.MICROSECONDS);
+        final long start = System.nanoTime();
+        interfaceQuery.getInterfaceHandles();
+        assertThat(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(2), is(true));
+    }
+}
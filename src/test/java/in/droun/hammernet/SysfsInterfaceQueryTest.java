@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import in.droun.hammernet.NetworkInterfaceInfo.InterfaceQuery;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings("PMD.TooManyStaticImports")
+public class SysfsInterfaceQueryTest {
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    @Rule
+    public transient TemporaryFolder mFolder = new TemporaryFolder();
+
+    //----
+    // Same results as NetworkInterface
+    //----
+    @Test
+    public void snapshot_realSysfs_matchesNetworkInterface_test() throws SocketException {
+        assumeTrue(SysfsInterfaceQuery.isAvailable());
+        assertSameRecords(new SysfsInterfaceQuery().snapshot(), new InterfaceQuery().snapshot());
+    }
+
+    @Test
+    public void getNameByMacAddress_realSysfs_matchesNetworkInterface_test()
+            throws SocketException {
+        assumeTrue(SysfsInterfaceQuery.isAvailable());
+        final NetworkInterfaceInfo sysfs = new NetworkInterfaceInfo(new SysfsInterfaceQuery());
+        final NetworkInterfaceInfo jdk = new NetworkInterfaceInfo(new InterfaceQuery());
+        for (final InterfaceRecord record : new InterfaceQuery().snapshot().getRecords()) {
+            assertThat(sysfs.getIp4HostAddressByName(record.getName()),
+                    is(equalTo(jdk.getIp4HostAddressByName(record.getName()))));
+            if (record.hasMacAddress()) {
+                assertThat(sysfs.getNameByMacAddress(record.getMacAddress()),
+                        is(equalTo(jdk.getNameByMacAddress(record.getMacAddress()))));
+            }
+        }
+    }
+
+    @Test
+    public void snapshot_missingAttributes_fallsBackToNetworkInterface_test()
+            throws SocketException {
+        assertSameRecords(new SysfsInterfaceQuery(mFolder.getRoot()).snapshot(),
+                new InterfaceQuery().snapshot());
+    }
+
+    //----
+    // Attributes read from sysfs
+    //----
+    @Test
+    public void snapshot_fakeSysfs_attributesRead_test() throws IOException {
+        final List<InterfaceRecord> expected = new InterfaceQuery().snapshot().getRecords();
+        assumeTrue(!expected.isEmpty());
+        final String name = expected.get(0).getName();
+        final File directory = mFolder.newFolder(name);
+        write(directory, "address", "02:00:5e:10:00:01\n");
+        write(directory, "mtu", "1234\n");
+        write(directory, "flags", "0x1019\n");
+        write(directory, "operstate", "down\n");
+
+        final InterfaceRecord record
+                = new SysfsInterfaceQuery(mFolder.getRoot()).snapshot().getByName(name);
+        assertThat(record.getMacAddressValue(), is(equalTo(0x02005E100001L)));
+        assertThat(record.getMtu(), is(equalTo(1234)));
+        assertThat(record.isUp(), is(false));
+        assertThat(record.isLoopback(), is(true));
+        assertThat(record.isPointToPoint(), is(true));
+        assertThat(record.getInetAddresses(), is(equalTo(expected.get(0).getInetAddresses())));
+    }
+
+    @Test
+    public void isAvailable_emptyDirectory_false_test() {
+        assertThat(SysfsInterfaceQuery.isAvailable(mFolder.getRoot()), is(false));
+    }
+
+    @Test
+    public void isAvailable_loopbackFlags_true_test() throws IOException {
+        write(mFolder.newFolder("lo"), "flags", "0x9\n");
+        assertThat(SysfsInterfaceQuery.isAvailable(mFolder.getRoot()), is(true));
+    }
+
+    //----
+    // Parsing
+    //----
+    @Test
+    public void parseHardwareAddress_values_test() {
+        assertThat(SysfsInterfaceQuery.parseHardwareAddress(buffer("00:1c:7c:d7:09:a3")),
+                is(equalTo(0x001C7CD709A3L)));
+        assertThat(SysfsInterfaceQuery.parseHardwareAddress(buffer("00:00:00:00:00:00")),
+                is(equalTo(MacAddressParser.INVALID)));
+        assertThat(SysfsInterfaceQuery.parseHardwareAddress(buffer("")),
+                is(equalTo(MacAddressParser.INVALID)));
+        assertThat(SysfsInterfaceQuery.parseHardwareAddress(buffer("0a:0b")),
+                is(equalTo(0x0A0B00000000L)));
+        // InfiniBand, NetworkInterface keeps the first six bytes
+        assertThat(SysfsInterfaceQuery.parseHardwareAddress(buffer(
+                "80:00:02:08:fe:80:00:00:00:00:00:00:00:02:c9:03:00:0e:f3:31")),
+                is(equalTo(0x80000208FE80L)));
+        assertThat(SysfsInterfaceQuery.parseHardwareAddress(buffer("00:1c:7c:d7:09:zz")),
+                is(equalTo(MacAddressParser.INVALID)));
+    }
+
+    @Test
+    public void parseNumber_values_test() {
+        assertThat(SysfsInterfaceQuery.parseNumber(buffer("0x1003"), 16), is(equalTo(0x1003)));
+        assertThat(SysfsInterfaceQuery.parseNumber(buffer("1500"), 10), is(equalTo(1500)));
+        assertThat(SysfsInterfaceQuery.parseNumber(buffer(""), 10), is(equalTo(-1)));
+        assertThat(SysfsInterfaceQuery.parseNumber(buffer("15x0"), 10), is(equalTo(-1)));
+        assertThat(SysfsInterfaceQuery.parseNumber(buffer("99999999999"), 10), is(equalTo(-1)));
+    }
+
+    private static void assertSameRecords(final InterfaceSnapshot actual,
+            final InterfaceSnapshot expected) {
+        assertThat(actual.size(), is(equalTo(expected.size())));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.getRecords().get(i).toString(),
+                    is(equalTo(expected.getRecords().get(i).toString())));
+        }
+    }
+
+    private static ByteBuffer buffer(final String text) {
+        return ByteBuffer.wrap(text.getBytes(US_ASCII));
+    }
+
+    private static void write(final File directory, final String attribute, final String text)
+            throws IOException {
+        final FileOutputStream stream = new FileOutputStream(new File(directory, attribute));
+        try {
+            stream.write(text.getBytes(US_ASCII));
+        } finally {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2013, Pedro F. Hernandez <digitalrounin@gmail.com>
+ *
+ * All rights reserved.
+ *
+ * See the separate "LICENSE.md" file for the distribution license (Modified BSD licence)
+ */
+package in.droun.hammernet;
+
+import static org.hamcrest.core.Is.*;
+import static org.hamcrest.core.IsEqual.*;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author Pedro F. Hernandez <digitalrounin@gmail.com>
+ */
+@SuppressWarnings("PMD.TooManyStaticImports")
+public class TrafficSamplerTest {
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    private static final String HEADER
+            = "Inter-|   Receive                                                |  Transmit\n"
+            + " face |bytes    packets errs drop fifo frame compressed multicast"
+            + "|bytes    packets errs drop fifo colls carrier compressed\n";
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private static final double DELTA = 1e-9;
+
+    @Rule
+    public transient TemporaryFolder mFolder = new TemporaryFolder();
+
+    //----
+    // Real /proc/net/dev
+    //----
+    @Test
+    public void sample_realProcNetDev_loopbackFound_test() throws IOException {
+        assumeTrue(TrafficSampler.isAvailable());
+        final TrafficSampler sampler = new TrafficSampler(1, TimeUnit.SECONDS, "lo", "missing0");
+        try {
+            assertThat(sampler.sample(), is(equalTo(1)));
+            assertThat(sampler.isPresent(0), is(true));
+            assertThat(sampler.isPresent(1), is(false));
+            assertThat(sampler.getCounter(0, TrafficSampler.RX_BYTES) >= 0, is(true));
+            assertThat(sampler.sample(), is(equalTo(1)));
+        } finally {
+            sampler.close();
+        }
+    }
+
+    //----
+    // Counters
+    //----
+    @Test
+    public void sample_counters_read_test() throws IOException {
+        final File file = write(line("eth0", 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16)
+                + line("    lo", 100, 200, 0, 0, 0, 0, 0, 0, 100, 200, 0, 0, 0, 0, 0, 0));
+        final TrafficSampler sampler = sampler(file, "lo", "eth0");
+
+        assertThat(sampler.sample(0), is(equalTo(2)));
+        assertThat(sampler.getCounter(1, TrafficSampler.RX_BYTES), is(equalTo(1L)));
+        assertThat(sampler.getCounter(1, TrafficSampler.RX_PACKETS), is(equalTo(2L)));
+        assertThat(sampler.getCounter(1, TrafficSampler.RX_ERRORS), is(equalTo(3L)));
+        assertThat(sampler.getCounter(1, TrafficSampler.RX_DROPS), is(equalTo(4L)));
+        assertThat(sampler.getCounter(1, TrafficSampler.TX_BYTES), is(equalTo(9L)));
+        assertThat(sampler.getCounter(1, TrafficSampler.TX_PACKETS), is(equalTo(10L)));
+        assertThat(sampler.getCounter(1, TrafficSampler.TX_ERRORS), is(equalTo(11L)));
+        assertThat(sampler.getCounter(1, TrafficSampler.TX_DROPS), is(equalTo(12L)));
+        assertThat(sampler.getCounter(0, TrafficSampler.TX_PACKETS), is(equalTo(200L)));
+        sampler.close();
+    }
+
+    @Test
+    public void sample_largeCounters_read_test() throws IOException {
+        final long large = 1L << 40;
+        final File file = write(line("eth0", large, 0, 0, 0, 0, 0, 0, 0, large + 1, 0, 0, 0, 0,
+                0, 0, 0));
+        final TrafficSampler sampler = sampler(file, "eth0");
+        sampler.sample(0);
+        assertThat(sampler.getCounter(0, TrafficSampler.RX_BYTES), is(equalTo(large)));
+        assertThat(sampler.getCounter(0, TrafficSampler.TX_BYTES), is(equalTo(large + 1)));
+        sampler.close();
+    }
+
+    @Test
+    public void sample_unwatchedAndMissing_ignored_test() throws IOException {
+        final File file = write(line("eth0", 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1));
+        final TrafficSampler sampler = sampler(file, "wlan0", "eth");
+        assertThat(sampler.sample(0), is(equalTo(0)));
+        assertThat(sampler.isPresent(0), is(false));
+        assertThat(sampler.isPresent(1), is(false));
+        assertThat(sampler.getCounter(0, TrafficSampler.RX_BYTES), is(equalTo(0L)));
+        sampler.close();
+    }
+
+    @Test
+    public void sample_malformedLine_ignored_test() throws IOException {
+        final File file = write("  eth0: 1 2 3\n" + "  eth1: 1 2 3 4 5 6 7 8 x 10 11 12\n");
+        final TrafficSampler sampler = sampler(file, "eth0", "eth1");
+        assertThat(sampler.sample(0), is(equalTo(0)));
+        sampler.close();
+    }
+
+    @Test
+    public void sample_interfaceGone_notPresent_test() throws IOException {
+        final File file = write(line("eth0", 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1));
+        final TrafficSampler sampler = sampler(file, "eth0");
+        sampler.sample(0);
+        assertThat(sampler.isPresent(0), is(true));
+
+        rewrite(file, "");
+        assertThat(sampler.sample(SECOND), is(equalTo(0)));
+        assertThat(sampler.isPresent(0), is(false));
+        assertThat(sampler.getCounter(0, TrafficSampler.RX_BYTES), is(equalTo(1L)));
+        sampler.close();
+    }
+
+    @Test
+    public void sample_fileLargerThanBuffer_everyInterfaceFound_test() throws IOException {
+        final StringBuilder content = new StringBuilder();
+        final String[] names = new String[200];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "veth" + i;
+            content.append(line(names[i], i, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0));
+        }
+        final TrafficSampler sampler = sampler(write(content.toString()), names);
+        assertThat(sampler.sample(0), is(equalTo(names.length)));
+        assertThat(sampler.getCounter(199, TrafficSampler.RX_BYTES), is(equalTo(199L)));
+        sampler.close();
+    }
+
+    @Test
+    public void sample_linesMoved_slotsFollowNames_test() throws IOException {
+        final File file = write(bytes("eth0", 1, 0) + bytes("eth1", 2, 0) + bytes("eth2", 3, 0));
+        final TrafficSampler sampler = sampler(file, "eth2", "eth0", "eth1");
+        assertThat(sampler.sample(0), is(equalTo(3)));
+
+        // An interface came up in between, the others moved down
+        rewrite(file, bytes("eth0", 10, 0) + bytes("veth0", 99, 0) + bytes("eth2", 30, 0)
+                + bytes("eth1", 20, 0));
+        assertThat(sampler.sample(SECOND), is(equalTo(3)));
+        assertThat(sampler.getCounter(0, TrafficSampler.RX_BYTES), is(equalTo(30L)));
+        assertThat(sampler.getCounter(1, TrafficSampler.RX_BYTES), is(equalTo(10L)));
+        assertThat(sampler.getCounter(2, TrafficSampler.RX_BYTES), is(equalTo(20L)));
+        sampler.close();
+    }
+
+    @Test
+    public void sample_sameNameTwice_firstSlotOnly_test() throws IOException {
+        final File file = write(bytes("eth0", 1, 0) + bytes("eth1", 2, 0));
+        final TrafficSampler sampler = sampler(file, "eth1", "eth0", "eth1");
+        assertThat(sampler.sample(0), is(equalTo(2)));
+        assertThat(sampler.getCounter(0, TrafficSampler.RX_BYTES), is(equalTo(2L)));
+        assertThat(sampler.isPresent(2), is(false));
+        sampler.close();
+    }
+
+    //----
+    // Rates
+    //----
+    @Test
+    public void getRate_oneSample_zero_test() throws IOException {
+        final TrafficSampler sampler = sampler(write(bytes("eth0", 1000, 0)), "eth0");
+        sampler.sample(0);
+        assertThat(sampler.getRate(0, TrafficSampler.RX_BYTES), is(equalTo(0.0)));
+        sampler.close();
+    }
+
+    @Test
+    public void getRate_twoSamples_perSecond_test() throws IOException {
+        final File file = write(bytes("eth0", 1000, 0));
+        final TrafficSampler sampler = sampler(file, "eth0");
+        sampler.sample(0);
+        rewrite(file, bytes("eth0", 1500, 100));
+        sampler.sample(SECOND / 2);
+        assertEquals(1000.0, sampler.getRate(0, TrafficSampler.RX_BYTES), DELTA);
+        assertEquals(200.0, sampler.getRate(0, TrafficSampler.TX_BYTES), DELTA);
+        sampler.close();
+    }
+
+    @Test
+    public void getRate_moreSamples_smoothed_test() throws IOException {
+        final File file = write(bytes("eth0", 0, 0));
+        final TrafficSampler sampler = sampler(file, "eth0");
+        sampler.sample(0);
+        rewrite(file, bytes("eth0", 1000, 0));
+        sampler.sample(SECOND);
+        rewrite(file, bytes("eth0", 4000, 0));
+        sampler.sample(2 * SECOND);
+        final double weight = 1 - Math.exp(-1);
+        assertEquals(1000 + weight * 2000, sampler.getRate(0, TrafficSampler.RX_BYTES), DELTA);
+        sampler.close();
+    }
+
+    @Test
+    public void getRate_longGap_newRateDominates_test() throws IOException {
+        final File file = write(bytes("eth0", 0, 0));
+        final TrafficSampler sampler = sampler(file, "eth0");
+        sampler.sample(0);
+        rewrite(file, bytes("eth0", 1000, 0));
+        sampler.sample(SECOND);
+        rewrite(file, bytes("eth0", 1000, 0));
+        sampler.sample(60 * SECOND);
+        assertEquals(0.0, sampler.getRate(0, TrafficSampler.RX_BYTES), 1e-6);
+        sampler.close();
+    }
+
+    @Test
+    public void getRate_counterBackwards_rateKept_test() throws IOException {
+        final File file = write(bytes("eth0", 0, 0));
+        final TrafficSampler sampler = sampler(file, "eth0");
+        sampler.sample(0);
+        rewrite(file, bytes("eth0", 1000, 0));
+        sampler.sample(SECOND);
+        rewrite(file, bytes("eth0", 10, 0));
+        sampler.sample(2 * SECOND);
+        assertEquals(1000.0, sampler.getRate(0, TrafficSampler.RX_BYTES), DELTA);
+        assertThat(sampler.getCounter(0, TrafficSampler.RX_BYTES), is(equalTo(10L)));
+        sampler.close();
+    }
+
+    @Test
+    public void getRate_sameTime_unchanged_test() throws IOException {
+        final File file = write(bytes("eth0", 0, 0));
+        final TrafficSampler sampler = sampler(file, "eth0");
+        sampler.sample(SECOND);
+        rewrite(file, bytes("eth0", 1000, 0));
+        sampler.sample(SECOND);
+        assertThat(sampler.getRate(0, TrafficSampler.RX_BYTES), is(equalTo(0.0)));
+        sampler.close();
+    }
+
+    //----
+    // No allocation
+    //----
+    @Test
+    public void sample_steadyState_noAllocation_test() throws IOException {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean allocations
+                = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported()
+                && allocations.isThreadAllocatedMemoryEnabled());
+
+        final StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            content.append(line("eth" + i, i, i, i, i, i, i, i, i, i, i, i, i, i, i, i, i));
+        }
+        final TrafficSampler sampler = sampler(write(content.toString()), "eth3", "eth19");
+        for (int i = 0; i < 1000; i++) {
+            sampler.sample(i);
+        }
+        final long threadId = Thread.currentThread().getId();
+        final long before = allocations.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10000; i++) {
+            sampler.sample(1000 + i);
+        }
+        final long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+        assertThat("Allocated " + allocated + " bytes", allocated < 10000, is(true));
+        sampler.close();
+    }
+
+    //----
+    // Arguments
+    //----
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_zeroTimeConstant_exception_test() throws IOException {
+        sampler(write(""), 0, "eth0");
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getRate_unknownCounter_exception_test() throws IOException {
+        sampler(write(""), "eth0").getRate(0, TrafficSampler.COUNTERS);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getCounter_unknownSlot_exception_test() throws IOException {
+        sampler(write(""), "eth0").getCounter(1, TrafficSampler.RX_BYTES);
+    }
+
+    @Test
+    public void slotOf_names_test() throws IOException {
+        final TrafficSampler sampler = sampler(write(""), "eth0", "wlan0");
+        assertThat(sampler.size(), is(equalTo(2)));
+        assertThat(sampler.slotOf("wlan0"), is(equalTo(1)));
+        assertThat(sampler.slotOf("rmnet0"), is(equalTo(-1)));
+        assertThat(sampler.slotOf(null), is(equalTo(-1)));
+        assertThat(sampler.getName(0), is(equalTo("eth0")));
+        sampler.close();
+    }
+
+    private TrafficSampler sampler(final File file, final String... names) throws IOException {
+        return sampler(file, 1, names);
+    }
+
+    private TrafficSampler sampler(final File file, final long seconds, final String... names)
+            throws IOException {
+        return new TrafficSampler(file, seconds, TimeUnit.SECONDS, names);
+    }
+
+    private static String bytes(final String name, final long received, final long sent) {
+        return line(name, received, 0, 0, 0, 0, 0, 0, 0, sent, 0, 0, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * A /proc/net/dev line, with the kernel's padding.
+     */
+    private static String line(final String name, final long... columns) {
+        final StringBuilder result = new StringBuilder(String.format("%6s:", name));
+        for (final long column : columns) {
+            result.append(String.format(" %7d", column));
+        }
+        return result.append('\n').toString();
+    }
+
+    private File write(final String lines) throws IOException {
+        final File result = mFolder.newFile();
+        rewrite(result, lines);
+        return result;
+    }
+
+    private static void rewrite(final File file, final String lines) throws IOException {
+        final FileOutputStream stream = new FileOutputStream(file);
+        try {
+            stream.write((HEADER + lines).getBytes(US_ASCII));
+        } finally {
+            stream.close();
+        }
+    }
+}